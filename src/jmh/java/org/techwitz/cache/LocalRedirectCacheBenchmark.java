@@ -0,0 +1,119 @@
+package org.techwitz.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.util.Base62;
+import org.techwitz.util.LongIntHashMap;
+import org.techwitz.util.ShortCodeGenerator;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of random cached links in {@link LocalRedirectCache} against the obvious alternative, a
+ * {@code ConcurrentHashMap<String, TinyUrl>}, plus the bare {@link LongIntHashMap} index behind the cache.
+ * The retained heap of each structure is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LocalRedirectCacheBenchmark {
+
+    private static final String URL = "https://example.com/articles/2024/some-long-slug?utm_source=newsletter";
+
+    @Param({"100000", "1000000"})
+    int links;
+
+    private String[] codes;
+    private LocalRedirectCache cache;
+    private LongIntHashMap index;
+    private ConcurrentHashMap<String, TinyUrl> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        codes = new String[links];
+        for (int i = 0; i < links; i++) {
+            codes[i] = generator.generate(6);
+        }
+
+        long before = usedHeap();
+        cache = new LocalRedirectCache((int) Math.min(Integer.MAX_VALUE - 8, links * 192L), Duration.ofHours(1),
+                Duration.ofHours(1));
+        for (int i = 0; i < links; i++) {
+            cache.put(codes[i], new RedirectEntry(i, URL, RedirectEntry.NO_EXPIRATION, false, true, 0, 0, 0, 0));
+        }
+        long cacheBytes = usedHeap() - before;
+
+        before = usedHeap();
+        index = new LongIntHashMap(links);
+        for (int i = 0; i < links; i++) {
+            index.put(Base62.encode(codes[i]), i);
+        }
+        long indexBytes = usedHeap() - before;
+
+        before = usedHeap();
+        map = new ConcurrentHashMap<>(links);
+        for (int i = 0; i < links; i++) {
+            TinyUrl tinyUrl = new TinyUrl();
+            tinyUrl.id = (long) i;
+            tinyUrl.setShortCode(new String(codes[i].toCharArray()));
+            // Copies per link, as entities loaded from the store would have
+            tinyUrl.setOriginalUrl(new String(URL.toCharArray()));
+            tinyUrl.setActive(true);
+            tinyUrl.setCreatedAt(LocalDateTime.now());
+            map.put(tinyUrl.getShortCode(), tinyUrl);
+        }
+        long mapBytes = usedHeap() - before;
+
+        System.out.printf("%nRetained heap for %d links: LocalRedirectCache %d MB (%d cached), LongIntHashMap %d MB, "
+                        + "ConcurrentHashMap<String, TinyUrl> %d MB%n",
+                links, cacheBytes >> 20, cache.size(), indexBytes >> 20, mapBytes >> 20);
+    }
+
+    @Benchmark
+    public RedirectEntry localRedirectCache() {
+        return cache.get(randomCode());
+    }
+
+    @Benchmark
+    public int longIntHashMap() {
+        return index.get(Base62.encode(randomCode()));
+    }
+
+    @Benchmark
+    public TinyUrl concurrentHashMap() {
+        return map.get(randomCode());
+    }
+
+    private String randomCode() {
+        return codes[ThreadLocalRandom.current().nextInt(codes.length)];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
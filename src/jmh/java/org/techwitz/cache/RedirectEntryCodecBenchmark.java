@@ -0,0 +1,77 @@
+package org.techwitz.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary redirect entry codec with the Jackson JSON encoding used by
+ * {@code redisDataSource.value(Object.class)}. Encoded sizes are printed once per fork during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectEntryCodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RedirectEntry entry;
+    private byte[] binary;
+    private byte[] json;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setUp() throws Exception {
+        entry = new RedirectEntry(1_234_567L,
+                "https://example.com/very/long/url/path?param=value&utm_source=newsletter",
+                RedirectEntry.toEpochSecond(LocalDateTime.of(2030, 12, 31, 23, 59, 59)),
+                false, true, 1_523, 10_000, 1_600, 0);
+        binary = RedirectEntryCodec.encode(entry);
+        json = objectMapper.writeValueAsBytes(entry);
+        direct = ByteBuffer.allocateDirect(256);
+        System.out.printf("%nEncoded size: binary=%d bytes, jackson=%d bytes%n", binary.length, json.length);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return RedirectEntryCodec.encode(entry);
+    }
+
+    @Benchmark
+    public RedirectEntry binaryDecode() {
+        return RedirectEntryCodec.decode(binary);
+    }
+
+    @Benchmark
+    public RedirectEntry binaryRoundTripOffHeap() {
+        direct.clear();
+        RedirectEntryCodec.encode(entry, direct);
+        direct.flip();
+        return RedirectEntryCodec.decode(direct);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncode() throws Exception {
+        return objectMapper.writeValueAsBytes(entry);
+    }
+
+    @Benchmark
+    public RedirectEntry jacksonDecode() throws Exception {
+        return objectMapper.readValue(json, RedirectEntry.class);
+    }
+}
@@ -0,0 +1,66 @@
+package org.techwitz.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TinyUrl#isExpired()}, evaluated on every redirect. With an expiration time set it reads the
+ * clock through {@link LocalDateTime#now()}; without one it only checks the counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TinyUrlBenchmark {
+
+    private TinyUrl withExpiration;
+    private TinyUrl withoutExpiration;
+    private TinyUrl usageLimited;
+
+    @Setup
+    public void setUp() {
+        withExpiration = tinyUrl();
+        withExpiration.setExpirationTime(LocalDateTime.now().plusDays(30));
+        withoutExpiration = tinyUrl();
+        usageLimited = tinyUrl();
+        usageLimited.setMaxUsage(1_000);
+        usageLimited.setUsageCount(10);
+    }
+
+    @Benchmark
+    public boolean isExpiredWithExpirationTime() {
+        return withExpiration.isExpired();
+    }
+
+    @Benchmark
+    public boolean isExpiredWithoutExpirationTime() {
+        return withoutExpiration.isExpired();
+    }
+
+    @Benchmark
+    public boolean isExpiredWithUsageLimit() {
+        return usageLimited.isExpired();
+    }
+
+    private static TinyUrl tinyUrl() {
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode("Ab3C7z");
+        tinyUrl.setOriginalUrl("https://example.com/some/long/path?with=query&and=more");
+        tinyUrl.setActive(true);
+        tinyUrl.setCreatedAt(LocalDateTime.now());
+        return tinyUrl;
+    }
+}
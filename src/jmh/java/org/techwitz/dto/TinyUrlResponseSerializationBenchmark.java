@@ -0,0 +1,86 @@
+package org.techwitz.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.techwitz.config.GlobalExceptionHandler;
+import org.techwitz.domain.RedirectPolicy;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of {@link TinyUrlResponse}, configured like the Quarkus default mapper
+ * (registered modules, ISO dates). Compares going through the mapper with a prepared writer, and both with the
+ * pre-encoded {@link TinyUrlResponseJson} the API writes instead; likewise for a 404 error body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TinyUrlResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter writer;
+    private TinyUrlResponseJson json;
+    private TinyUrlResponse response;
+    private String notFoundMessage;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        writer = objectMapper.writerFor(TinyUrlResponse.class);
+        json = new TinyUrlResponseJson("http://localhost:8080/t/");
+        response = new TinyUrlResponse();
+        response.setOriginalUrl("https://example.com/some/long/path?with=query&and=more");
+        response.setShortUrl("http://localhost:8080/t/Ab3C7z");
+        response.setExpirationTime(LocalDateTime.of(2030, 1, 1, 12, 0));
+        response.setMaxUsage(1_000);
+        response.setUsageCount(10);
+        response.setMaxAttempts(5_000);
+        response.setAttemptCount(12);
+        response.setRedirectPolicy(RedirectPolicy.TEMPORARY);
+        response.setVersion(22);
+        notFoundMessage = "Tiny URL not found for code: Ab3C7z";
+    }
+
+    @Benchmark
+    public byte[] objectMapper() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] preparedWriter() throws Exception {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] preEncoded() {
+        return json.encode(response);
+    }
+
+    @Benchmark
+    public byte[] errorBodyObjectMapper() throws Exception {
+        return objectMapper.writeValueAsBytes(Map.of("error", notFoundMessage));
+    }
+
+    @Benchmark
+    public byte[] errorBodyPreEncoded() {
+        return GlobalExceptionHandler.errorBody(notFoundMessage);
+    }
+}
@@ -0,0 +1,188 @@
+package org.techwitz.interceptor;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import jakarta.interceptor.InvocationContext;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Per-call overhead of {@link LoggingInterceptor} around a method returning a {@link Uni}, compared with
+ * a direct call and with the previous interceptor that logged arguments and results at INFO on every call.
+ * Log records are formatted but discarded, so the numbers exclude I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.jboss.logging.provider=jdk")
+public class LoggingInterceptorBenchmark {
+
+    private final Target target = new Target();
+    private StubInvocationContext context;
+    private LoggingInterceptor interceptor;
+    private LegacyLoggingInterceptor legacyInterceptor;
+
+    @Setup
+    public void setUp() throws Exception {
+        java.util.logging.Logger root = java.util.logging.Logger.getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            root.removeHandler(handler);
+        }
+        root.addHandler(new FormattingNullHandler());
+        root.setLevel(java.util.logging.Level.INFO);
+
+        context = new StubInvocationContext(target, Target.class.getMethod("resolve", String.class), "Ab3C7z");
+        interceptor = new LoggingInterceptor();
+        interceptor.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        interceptor.logSampleRate = 0.01;
+        legacyInterceptor = new LegacyLoggingInterceptor();
+    }
+
+    @Benchmark
+    public Object directCall() {
+        return target.resolve("Ab3C7z").await().indefinitely();
+    }
+
+    @Benchmark
+    public Object legacyInterceptor() throws Exception {
+        return ((Uni<?>) legacyInterceptor.logMethodCall(context)).await().indefinitely();
+    }
+
+    @Benchmark
+    public Object sampledInterceptor() throws Exception {
+        return ((Uni<?>) interceptor.logMethodCall(context)).await().indefinitely();
+    }
+
+    public static class Target {
+        public Uni<String> resolve(String shortCode) {
+            return Uni.createFrom().item("https://example.com/" + shortCode);
+        }
+    }
+
+    static final class StubInvocationContext implements InvocationContext {
+        private final Target target;
+        private final Method method;
+        private final Object[] parameters;
+
+        StubInvocationContext(Target target, Method method, Object... parameters) {
+            this.target = target;
+            this.method = method;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Object proceed() {
+            return target.resolve((String) parameters[0]);
+        }
+    }
+
+    static final class FormattingNullHandler extends Handler {
+        private final SimpleFormatter formatter = new SimpleFormatter();
+
+        @Override
+        public void publish(LogRecord record) {
+            formatter.format(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The interceptor as it was before sampling and metrics were introduced.
+     */
+    static final class LegacyLoggingInterceptor {
+        private static final Logger LOG = Logger.getLogger(LegacyLoggingInterceptor.class);
+
+        Object logMethodCall(InvocationContext context) throws Exception {
+            final String className = context.getTarget().getClass().getName();
+            final String methodName = context.getMethod().getName();
+            final Object[] parameters = context.getParameters();
+
+            LOG.infof("Entering: %s.%s with parameters: %s",
+                    className, methodName, Arrays.toString(parameters));
+
+            try {
+                Object result = context.proceed();
+                if (result instanceof Uni<?>) {
+                    return ((Uni<?>) result)
+                            .onItem().invoke(item -> LOG.infof("Exiting: %s.%s with result: %s",
+                                    className, methodName, item))
+                            .onFailure().invoke(failure -> LOG.errorf(failure,
+                                    "Failed execution: %s.%s with error: %s",
+                                    className, methodName, failure.getMessage()));
+                } else {
+                    LOG.infof("Exiting: %s.%s with result: %s",
+                            className, methodName, result);
+                    return result;
+                }
+            } catch (Exception e) {
+                LOG.errorf(e, "Exception in: %s.%s with error: %s",
+                        className, methodName, e.getMessage());
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.techwitz.interceptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of the request log line written for requests sampled by {@link LoggingFilter}, for a
+ * redirect (status line only) and a create with headers, payload and response captured. The line
+ * builder is reused like on the writer thread, so allocation is the strings being appended.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestLogFormatBenchmark {
+
+    private final StringBuilder line = new StringBuilder(512);
+    private RequestLogWriter writer;
+    private RequestLogEntry redirect;
+    private RequestLogEntry create;
+
+    @Setup
+    public void setUp() {
+        RequestLogSampler sampler = new RequestLogSampler();
+        sampler.maxBodyBytes = 1000;
+        writer = new RequestLogWriter();
+        writer.sampler = sampler;
+        redirect = new RequestLogEntry("9f1c2a7e-5b0d-4c1e-8f3a-2d6b7c9e0a11", "GET", "/t/Ab3C7z", null,
+                302, 412_000, null, null, false, null);
+        create = new RequestLogEntry("9f1c2a7e-5b0d-4c1e-8f3a-2d6b7c9e0a12", "POST", "/api/urls",
+                "application/json", 201, 2_350_000,
+                Map.of("Content-Type", List.of("application/json"), "User-Agent", List.of("curl/8.5.0")),
+                "{\"originalUrl\":\"https://example.com/some/long/path\",\"maxUsage\":10}"
+                        .getBytes(StandardCharsets.UTF_8),
+                false, "TinyUrlResponse(originalUrl=https://example.com/some/long/path, "
+                        + "shortUrl=http://localhost:8080/t/Ab3C7z, maxUsage=10)");
+    }
+
+    @Benchmark
+    public int formatRedirect() {
+        line.setLength(0);
+        writer.format(redirect, line);
+        return line.length();
+    }
+
+    @Benchmark
+    public int formatCreate() {
+        line.setLength(0);
+        writer.format(create, line);
+        return line.length();
+    }
+}
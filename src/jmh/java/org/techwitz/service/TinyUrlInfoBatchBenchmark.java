@@ -0,0 +1,120 @@
+package org.techwitz.service;
+
+import io.smallrye.mutiny.Uni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.techwitz.cache.TinyUrlInfoCache;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.dto.TinyUrlResponse;
+import org.techwitz.repository.TinyUrlRepository;
+import org.techwitz.storage.StoreCircuitBreaker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares {@link TinyUrlService#getTinyUrlInfoBatch} with N sequential {@link TinyUrlService#getTinyUrlInfo}
+ * calls, the way the link checker calls the service today. The info cache is off, so every link is loaded, and
+ * the database is replaced with an in-process stub that charges a fixed round-trip time per query, so the
+ * result shows how much of the latency is round trips rather than work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class TinyUrlInfoBatchBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int codes;
+
+    @Param({"200"})
+    long roundTripMicros;
+
+    private TinyUrlService service;
+    private List<String> shortCodes;
+
+    @Setup
+    public void setUp() {
+        Map<String, TinyUrl> rows = new HashMap<>();
+        shortCodes = new ArrayList<>(codes);
+        for (int i = 0; i < codes; i++) {
+            TinyUrl tinyUrl = new TinyUrl();
+            tinyUrl.id = (long) i;
+            tinyUrl.setShortCode("c" + i);
+            tinyUrl.setOriginalUrl("https://example.com/page/" + i);
+            rows.put(tinyUrl.getShortCode(), tinyUrl);
+            shortCodes.add(tinyUrl.getShortCode());
+        }
+
+        long roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+        service = new TinyUrlService();
+        service.baseUrl = "http://localhost:8080/t/";
+        service.batchInfoMaxSize = codes;
+        service.tinyUrlStore = new StubRepository(rows, roundTripNanos);
+        service.tinyUrlInfoCache = new TinyUrlInfoCache();
+        service.storeCircuitBreaker = new StoreCircuitBreaker();
+    }
+
+    @Benchmark
+    public void singleCalls(Blackhole blackhole) {
+        for (String shortCode : shortCodes) {
+            blackhole.consume(service.getTinyUrlInfo(shortCode).await().indefinitely());
+        }
+    }
+
+    @Benchmark
+    public Map<String, TinyUrlResponse> batchCall() {
+        return service.getTinyUrlInfoBatch(shortCodes).await().indefinitely();
+    }
+
+    private static <T> Uni<T> afterRoundTrip(long roundTripNanos, T item) {
+        return Uni.createFrom().item(() -> {
+            LockSupport.parkNanos(roundTripNanos);
+            return item;
+        });
+    }
+
+    static final class StubRepository extends TinyUrlRepository {
+        private final Map<String, TinyUrl> rows;
+        private final long roundTripNanos;
+
+        StubRepository(Map<String, TinyUrl> rows, long roundTripNanos) {
+            this.rows = rows;
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        @Override
+        public Uni<TinyUrl> findByShortCodeAsync(String shortCode) {
+            return afterRoundTrip(roundTripNanos, rows.get(shortCode));
+        }
+
+        @Override
+        public Uni<List<TinyUrl>> findByShortCodesAsync(Collection<String> shortCodes) {
+            List<TinyUrl> found = new ArrayList<>(shortCodes.size());
+            for (String shortCode : shortCodes) {
+                TinyUrl tinyUrl = rows.get(shortCode);
+                if (tinyUrl != null) {
+                    found.add(tinyUrl);
+                }
+            }
+            return afterRoundTrip(roundTripNanos, found);
+        }
+    }
+}
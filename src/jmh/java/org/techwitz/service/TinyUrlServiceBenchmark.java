@@ -0,0 +1,69 @@
+package org.techwitz.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.dto.TinyUrlResponse;
+import org.techwitz.exception.TinyUrlException;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The synchronous helpers of {@link TinyUrlService}: mapping an entity to a response and URL
+ * validation. A rejected URL costs an exception with a stack trace, measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TinyUrlServiceBenchmark {
+
+    private TinyUrlService service;
+    private TinyUrl tinyUrl;
+    private final String validUrl = "https://example.com/some/long/path?with=query&and=more#fragment";
+    private final String invalidUrl = "https://example.com/some path with spaces";
+
+    @Setup
+    public void setUp() {
+        service = new TinyUrlService();
+        service.baseUrl = "http://localhost:8080/t/";
+        tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode("Ab3C7z");
+        tinyUrl.setOriginalUrl(validUrl);
+        tinyUrl.setExpirationTime(LocalDateTime.now().plusDays(30));
+        tinyUrl.setMaxUsage(1_000);
+        tinyUrl.setUsageCount(10);
+    }
+
+    @Benchmark
+    public TinyUrlResponse buildResponse() {
+        return service.buildResponse(tinyUrl);
+    }
+
+    @Benchmark
+    public String validateValidUrl() {
+        service.validateUrl(validUrl);
+        return validUrl;
+    }
+
+    @Benchmark
+    public TinyUrlException validateInvalidUrl() {
+        try {
+            service.validateUrl(invalidUrl);
+            return null;
+        } catch (TinyUrlException e) {
+            return e;
+        }
+    }
+}
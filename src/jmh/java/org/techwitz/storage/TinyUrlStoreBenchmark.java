@@ -0,0 +1,116 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.techwitz.domain.TinyUrl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Redirect (count an access) and create (insert) throughput of the embedded storage engines, with as
+ * many concurrent callers as a busy node has event loops. For the log engine every operation waits for
+ * its fsync, shared with the operations committed along with it. The Postgres engine is compared on a
+ * running instance with the load generator instead, see the README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(16)
+@Fork(1)
+public class TinyUrlStoreBenchmark {
+
+    @Param({"memory", "log"})
+    String engine;
+
+    @Param({"100000"})
+    int links;
+
+    private final AtomicLong created = new AtomicLong();
+    private Path directory;
+    private TinyUrlStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (engine.equals("log")) {
+            directory = Files.createTempDirectory("tiny-url-store-benchmark");
+            LogTinyUrlStore log = new LogTinyUrlStore();
+            log.directory = directory.toString();
+            log.initialSizeMb = 64;
+            log.indexSlots = 1 << 18;
+            log.groupCommitDelay = Duration.ZERO;
+            log.checkpointInterval = Duration.ofSeconds(30);
+            log.compactionMinSizeMb = 64;
+            log.compactionGarbageRatio = 0.5;
+            log.open();
+            store = log;
+        } else {
+            store = new InMemoryTinyUrlStore(links);
+        }
+        // In batches, so the log engine commits many inserts per fsync
+        for (int from = 0; from < links; from += 1000) {
+            List<Uni<TinyUrl>> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(links, from + 1000); i++) {
+                batch.add(store.insertAsync(tinyUrl("s" + i)));
+            }
+            Uni.join().all(batch).andFailFast().await().indefinitely();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (store instanceof LogTinyUrlStore log) {
+            log.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean redirect() {
+        String shortCode = "s" + ThreadLocalRandom.current().nextInt(links);
+        return store.recordAccessAsync(shortCode, LocalDateTime.now()).await().indefinitely();
+    }
+
+    @Benchmark
+    public TinyUrl create() {
+        return store.insertAsync(tinyUrl("c" + created.incrementAndGet())).await().indefinitely();
+    }
+
+    private static TinyUrl tinyUrl(String shortCode) {
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode(shortCode);
+        tinyUrl.setOriginalUrl("https://example.com/some/long/path/" + shortCode);
+        tinyUrl.setActive(true);
+        tinyUrl.setCreatedAt(LocalDateTime.now());
+        return tinyUrl;
+    }
+}
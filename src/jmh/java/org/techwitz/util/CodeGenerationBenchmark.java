@@ -0,0 +1,43 @@
+package org.techwitz.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random code generation: {@link ShortCodeGenerator#generate(int)} on the create path and
+ * {@link StringUtils#randomString(byte)}, which goes through a UUID and a regex replace; compare their
+ * allocation rates under {@code -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeGenerationBenchmark {
+
+    @Param({"6", "10"})
+    int length;
+
+    private final ShortCodeGenerator generator = new ShortCodeGenerator();
+
+    @Benchmark
+    public String generate() {
+        return generator.generate(length);
+    }
+
+    @Benchmark
+    public String randomString() {
+        return StringUtils.randomString((byte) length);
+    }
+}
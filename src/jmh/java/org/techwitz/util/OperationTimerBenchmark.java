@@ -0,0 +1,46 @@
+package org.techwitz.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link OperationTimer} recording path, by held reference and by name lookup.
+ * Run with {@code -prof gc} to confirm the recording path does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class OperationTimerBenchmark {
+
+    private OperationTimer timer;
+
+    @Setup
+    public void setUp() {
+        timer = LoggingUtils.timer("benchmark.recording");
+    }
+
+    @Benchmark
+    public void recordSince() {
+        timer.recordSince(System.nanoTime() - 1_500);
+    }
+
+    @Benchmark
+    public void recordByName() {
+        LoggingUtils.timer("benchmark.recording").recordNanos(1_500);
+    }
+}
@@ -0,0 +1,38 @@
+package org.techwitz.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StringUtils#isBlank(String)} on blank input and on a URL with leading whitespace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+    private final String blank = "   \t  ";
+    private final String notBlank = "  https://example.com/some/path";
+
+    @Benchmark
+    public boolean isBlankOnBlank() {
+        return StringUtils.isBlank(blank);
+    }
+
+    @Benchmark
+    public boolean isBlankOnText() {
+        return StringUtils.isBlank(notBlank);
+    }
+}
@@ -0,0 +1,264 @@
+package org.techwitz.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.techwitz.loadtest.Scenario.Operation;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-loop load generator for a running instance.
+ * <p>
+ * Seeds the scenario's links through {@code POST /api/urls}, then sends requests at the configured
+ * arrival rate for the warmup and measured periods, picking the operation by the scenario's mix and the
+ * link by Zipfian popularity. Arrivals are scheduled independently of responses, and latency is
+ * measured from the time a request was scheduled rather than sent, so a stalled server shows up as
+ * queueing delay in the percentiles instead of as fewer, faster samples (coordinated omission). Service
+ * time, measured from the actual send, is reported next to it; the gap between the two is the time
+ * requests waited for a connection or a free in-flight slot.
+ * <p>
+ * Usage: {@code ./gradlew loadTest -Pscenario=scenarios/redirect-heavy.properties}
+ */
+public final class LoadGenerator {
+
+    private static final Pattern SHORT_URL = Pattern.compile("\"shortUrl\"\\s*:\\s*\"([^\"]*)\"");
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final Scenario scenario;
+    private final HttpClient client;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong createdLinks = new AtomicLong();
+
+    LoadGenerator(Scenario scenario) {
+        this.scenario = scenario;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(scenario.timeout())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        for (Operation operation : scenario.mix().keySet()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String location = args.length > 0 ? args[0] : "scenarios/redirect-heavy.properties";
+        Scenario scenario = Scenario.load(location);
+        LoadGenerator generator = new LoadGenerator(scenario);
+        List<String> codes = generator.seed();
+        generator.run(codes);
+        generator.report(System.out);
+        generator.writeDistributions();
+    }
+
+    /**
+     * Creates the scenario's links.
+     *
+     * @return The short codes in random order, so popularity does not follow creation order
+     */
+    List<String> seed() throws InterruptedException {
+        System.out.printf("Seeding %d links on %s%n", scenario.links(), scenario.baseUrl());
+        List<String> codes = Collections.synchronizedList(new ArrayList<>(scenario.links()));
+        Semaphore parallel = new Semaphore(scenario.seedParallel());
+        LongAdder failures = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < scenario.links(); i++) {
+            parallel.acquire();
+            client.sendAsync(createRequest("seed/" + i), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, failure) -> {
+                        String code = failure == null && response.statusCode() == 201
+                                ? shortCode(response.body())
+                                : null;
+                        if (code != null) {
+                            codes.add(code);
+                        } else {
+                            failures.increment();
+                        }
+                        parallel.release();
+                    });
+        }
+        // All permits back means all creations completed
+        parallel.acquire(scenario.seedParallel());
+        if (codes.isEmpty()) {
+            throw new IllegalStateException("No link could be created on " + scenario.baseUrl()
+                    + ", is the service running?");
+        }
+        System.out.printf("Seeded %d links (%d failed) in %d ms%n", codes.size(), failures.sum(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        List<String> shuffled = new ArrayList<>(codes);
+        Collections.shuffle(shuffled);
+        return shuffled;
+    }
+
+    /**
+     * Drives the scenario's mix at its arrival rate.
+     *
+     * @param codes The links to request
+     */
+    void run(List<String> codes) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom();
+        ZipfianGenerator popularity = new ZipfianGenerator(codes.size(), scenario.zipfExponent());
+        Operation[] choices = weightedChoices();
+        Semaphore inFlight = new Semaphore(scenario.maxInFlight());
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.rate();
+
+        long start = System.nanoTime();
+        long measureFrom = start + scenario.warmup().toNanos();
+        long end = measureFrom + scenario.duration().toNanos();
+        System.out.printf("Running %s: %.0f req/s for %s after %s warmup%n", scenario.name(), scenario.rate(),
+                scenario.duration(), scenario.warmup());
+
+        double intended = start;
+        while (intended < end) {
+            long scheduled = (long) intended;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = choices[random.nextInt(choices.length)];
+            String code = codes.get(popularity.next(random) - 1);
+            // Blocks when the cap is reached; the wait counts toward latency because it is measured from scheduled
+            inFlight.acquire();
+            send(operation, code, scheduled, scheduled >= measureFrom)
+                    .whenComplete((ignored, failure) -> inFlight.release());
+
+            intended += scenario.poisson()
+                    ? -Math.log(1.0 - random.nextDouble()) * meanIntervalNanos
+                    : meanIntervalNanos;
+        }
+        // Let requests still in flight finish, they are part of the measured period
+        if (!inFlight.tryAcquire(scenario.maxInFlight(), scenario.timeout().toMillis() + 1_000,
+                TimeUnit.MILLISECONDS)) {
+            System.out.println("Some requests did not complete before the end of the run");
+        }
+    }
+
+    private CompletableFuture<Void> send(Operation operation, String code, long scheduledNanos, boolean measured) {
+        HttpRequest request = switch (operation) {
+            case REDIRECT -> HttpRequest.newBuilder(scenario.baseUrl().resolve("/t/" + code))
+                    .timeout(scenario.timeout()).GET().build();
+            case INFO -> HttpRequest.newBuilder(scenario.baseUrl().resolve("/api/urls/info/" + code))
+                    .timeout(scenario.timeout()).GET().build();
+            case CREATE -> createRequest("run/" + createdLinks.incrementAndGet());
+        };
+        long sentNanos = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    if (measured) {
+                        long now = System.nanoTime();
+                        int status = failure == null ? response.statusCode() : -1;
+                        stats.get(operation).record(now - scheduledNanos, now - sentNanos,
+                                status == operation.expectedStatus(), status);
+                    }
+                    return null;
+                });
+    }
+
+    private HttpRequest createRequest(String path) {
+        String body = "{\"originalUrl\":\"https://example.com/load-test/" + path + "\"}";
+        return HttpRequest.newBuilder(scenario.baseUrl().resolve("/api/urls"))
+                .timeout(scenario.timeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private Operation[] weightedChoices() {
+        List<Operation> choices = new ArrayList<>();
+        scenario.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                choices.add(operation);
+            }
+        });
+        return choices.toArray(new Operation[0]);
+    }
+
+    private static String shortCode(String body) {
+        Matcher matcher = SHORT_URL.matcher(body);
+        if (!matcher.find()) {
+            return null;
+        }
+        String shortUrl = matcher.group(1);
+        return shortUrl.substring(shortUrl.lastIndexOf('/') + 1);
+    }
+
+    void report(PrintStream out) {
+        double seconds = scenario.duration().toNanos() / 1e9;
+        out.printf("%nScenario %s, %s measured, target %.0f req/s%n", scenario.name(), scenario.duration(),
+                scenario.rate());
+        out.printf("%-9s %9s %9s %7s | %-44s | %s%n", "operation", "requests", "req/s", "errors",
+                "latency p50 / p90 / p99 / p99.9 / max (ms)", "service time p50 / p99 (ms)");
+        long total = 0;
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats operationStats = entry.getValue();
+            Histogram latency = operationStats.latency;
+            Histogram service = operationStats.serviceTime;
+            long count = latency.getTotalCount();
+            total += count;
+            out.printf("%-9s %9d %9.1f %7d | %7.2f / %7.2f / %7.2f / %7.2f / %7.2f | %7.2f / %7.2f%n",
+                    entry.getKey().key(), count, count / seconds, operationStats.errors.sum(),
+                    millis(latency, 50), millis(latency, 90), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1e6, millis(service, 50), millis(service, 99));
+            if (!operationStats.unexpectedStatuses.isEmpty()) {
+                out.printf("          unexpected statuses (-1 is a timeout or I/O error): %s%n",
+                        operationStats.unexpectedStatuses);
+            }
+        }
+        out.printf("total     %9d %9.1f%n", total, total / seconds);
+    }
+
+    /**
+     * Writes the full latency distribution of each operation in HdrHistogram's percentile format, which
+     * can be plotted with the HdrHistogram plotter or compared between runs.
+     */
+    void writeDistributions() throws IOException {
+        Files.createDirectories(scenario.outputDir());
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            Path file = scenario.outputDir().resolve(scenario.name() + "-" + entry.getKey().key() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                entry.getValue().latency.outputPercentileDistribution(out, 1e6);
+            }
+        }
+        System.out.printf("Latency distributions written to %s%n", scenario.outputDir().toAbsolutePath());
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    private static final class OperationStats {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+        final Map<Integer, Long> unexpectedStatuses = Collections.synchronizedMap(new TreeMap<>());
+
+        void record(long latencyNanos, long serviceNanos, boolean success, int status) {
+            latency.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+            serviceTime.recordValue(Math.min(serviceNanos, HIGHEST_TRACKABLE_NANOS));
+            if (!success) {
+                errors.increment();
+                unexpectedStatuses.merge(status, 1L, Long::sum);
+            }
+        }
+    }
+}
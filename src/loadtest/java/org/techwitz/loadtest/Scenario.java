@@ -0,0 +1,127 @@
+package org.techwitz.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A load test scenario, read from a properties file. Every key can be overridden with a
+ * {@code loadtest.<key>} system property, e.g. {@code -Dloadtest.rate=5000}.
+ *
+ * @param name          Name used in the report and output file names
+ * @param baseUrl       The instance under test
+ * @param links         Links created before the run; their popularity follows the Zipfian distribution
+ * @param zipfExponent  Skew of the link popularity
+ * @param rate          Arrivals per second, independent of how fast responses come back
+ * @param poisson       Exponentially distributed inter-arrival times instead of a fixed interval
+ * @param warmup        Time driven at full rate but left out of the report
+ * @param duration      Measured time
+ * @param mix           Relative weight of each operation
+ * @param maxInFlight   Requests in flight at most; further arrivals queue, and their wait is measured
+ * @param timeout       Per request timeout
+ * @param seedParallel  Concurrent requests while seeding links
+ * @param outputDir     Directory for the percentile distribution files
+ */
+record Scenario(String name,
+                URI baseUrl,
+                int links,
+                double zipfExponent,
+                double rate,
+                boolean poisson,
+                Duration warmup,
+                Duration duration,
+                Map<Operation, Integer> mix,
+                int maxInFlight,
+                Duration timeout,
+                int seedParallel,
+                Path outputDir) {
+
+    /**
+     * Loads a scenario from a file path or, if there is no such file, from the classpath.
+     *
+     * @param location The file or classpath resource
+     * @return The scenario
+     */
+    static Scenario load(String location) {
+        Properties properties = new Properties();
+        Path file = Path.of(location);
+        try (InputStream in = Files.exists(file)
+                ? Files.newInputStream(file)
+                : Scenario.class.getClassLoader().getResourceAsStream(location)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Scenario not found: " + location);
+            }
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read scenario " + location, e);
+        }
+        System.getProperties().forEach((key, value) -> {
+            String name = key.toString();
+            if (name.startsWith("loadtest.")) {
+                properties.setProperty(name.substring("loadtest.".length()), value.toString());
+            }
+        });
+
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            int weight = Integer.parseInt(properties.getProperty("mix." + operation.key(), "0"));
+            if (weight > 0) {
+                mix.put(operation, weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Scenario needs at least one mix.<operation> weight");
+        }
+        String arrival = properties.getProperty("arrival", "poisson");
+        if (!arrival.equals("poisson") && !arrival.equals("uniform")) {
+            throw new IllegalArgumentException("arrival must be poisson or uniform, not " + arrival);
+        }
+
+        return new Scenario(
+                properties.getProperty("name", "scenario"),
+                URI.create(properties.getProperty("base-url", "http://localhost:8080")),
+                Integer.parseInt(properties.getProperty("links", "10000")),
+                Double.parseDouble(properties.getProperty("zipf.exponent", "0.99")),
+                Double.parseDouble(properties.getProperty("rate", "1000")),
+                arrival.equals("poisson"),
+                Duration.parse(properties.getProperty("warmup", "PT10S")),
+                Duration.parse(properties.getProperty("duration", "PT60S")),
+                mix,
+                Integer.parseInt(properties.getProperty("max-in-flight", "1000")),
+                Duration.parse(properties.getProperty("timeout", "PT5S")),
+                Integer.parseInt(properties.getProperty("seed.parallel", "64")),
+                Path.of(properties.getProperty("output-dir", "build/loadtest")));
+    }
+
+    /**
+     * The operations a scenario can mix.
+     */
+    enum Operation {
+        REDIRECT("redirect", 302),
+        INFO("info", 200),
+        CREATE("create", 201);
+
+        private final String key;
+        private final int expectedStatus;
+
+        Operation(String key, int expectedStatus) {
+            this.key = key;
+            this.expectedStatus = expectedStatus;
+        }
+
+        String key() {
+            return key;
+        }
+
+        int expectedStatus() {
+            return expectedStatus;
+        }
+    }
+}
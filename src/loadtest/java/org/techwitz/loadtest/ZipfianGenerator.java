@@ -0,0 +1,93 @@
+package org.techwitz.loadtest;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws ranks {@code 1..n} with Zipfian popularity: rank {@code k} has probability proportional to
+ * {@code 1 / k^exponent}.
+ * <p>
+ * Uses rejection-inversion sampling (Hörmann and Derflinger, "Rejection-inversion to generate variates
+ * from monotone discrete distributions"), which needs constant time and memory per draw for any
+ * {@code n}, unlike the table of harmonic numbers the classic YCSB generator precomputes.
+ */
+final class ZipfianGenerator {
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    /**
+     * @param n        Number of ranks
+     * @param exponent Skew; 0 is uniform, around 1 is typical for link popularity
+     */
+    ZipfianGenerator(int n, double exponent) {
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Zipfian generator needs n >= 1 and exponent >= 0");
+        }
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1.0;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * @param random The source of randomness
+     * @return A rank between 1 (most popular) and n
+     */
+    int next(RandomGenerator random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1.0 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1.0 - exponent);
+        if (t < -1.0) {
+            // Limit rounding errors near the lower bound
+            t = -1.0;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * {@code log(1 + x) / x}, accurate near 0.
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    /**
+     * {@code (exp(x) - 1) / x}, accurate near 0.
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+    }
+}
@@ -0,0 +1,265 @@
+package org.techwitz.analytics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.repository.ClickRollupRepository;
+import org.techwitz.repository.DatabaseErrors;
+import org.techwitz.util.BoundedRingBuffer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Folds click events into per-minute rollups and writes them to {@code tiny_url_clicks_rollup}.
+ * <p>
+ * The redirect path only offers a {@link ClickEvent} to a bounded lock-free ring buffer and never
+ * blocks; when the buffer is full the event is dropped and counted. A single background thread drains
+ * the buffer into in-memory minute buckets and every {@code tiny.url.analytics.flush-interval} writes
+ * them with one batched upsert. The upsert adds to the stored counts, so a batch is only handed back
+ * to the next flush once its write has failed: while a write is still running, even past
+ * {@code tiny.url.analytics.flush-timeout}, flushes leave it alone and keep collecting. Failed batches
+ * are retried up to {@code tiny.url.analytics.max-pending-buckets}, except those the database rejected,
+ * which are dropped. The same thread feeds the {@link HotLinkTracker} and the {@link UniqueVisitorTracker}.
+ */
+@ApplicationScoped
+public class ClickAggregator {
+    private static final Logger LOG = Logger.getLogger(ClickAggregator.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int DRAIN_BATCH = 4096;
+
+    @Inject
+    ClickRollupRepository clickRollupRepository;
+
+    @Inject
+    HotLinkTracker hotLinkTracker;
+
+    @Inject
+    UniqueVisitorTracker uniqueVisitorTracker;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.analytics.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.analytics.buffer-size", defaultValue = "65536")
+    int bufferSize;
+
+    @ConfigProperty(name = "tiny.url.analytics.flush-interval", defaultValue = "PT10S")
+    Duration flushInterval;
+
+    @ConfigProperty(name = "tiny.url.analytics.flush-timeout", defaultValue = "PT30S")
+    Duration flushTimeout;
+
+    @ConfigProperty(name = "tiny.url.analytics.max-pending-buckets", defaultValue = "100000")
+    int maxPendingBuckets;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private Map<BucketKey, Counts> pending = new HashMap<>();
+    private Map<BucketKey, Counts> writing = Map.of();
+    private CompletableFuture<Void> write;
+    private BoundedRingBuffer<ClickEvent> buffer;
+    private volatile int pendingBuckets;
+    private volatile boolean running;
+    private Thread worker;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        buffer = new BoundedRingBuffer<>(bufferSize);
+        metricRegistry.gauge("clickEventsDropped", dropped::sum);
+        metricRegistry.gauge("clickEventsAggregated", aggregated::sum);
+        metricRegistry.gauge("clickEventsBuffered", buffer::size);
+        metricRegistry.gauge("clickRollupPendingBuckets", () -> pendingBuckets);
+        metricRegistry.gauge("clickRollupFlushFailures", flushFailures::sum);
+        metricRegistry.gauge("clickRollupBucketsRejected", rejected::sum);
+        metricRegistry.gauge("uniqueVisitorsDropped", uniqueVisitorTracker::getDroppedCount);
+        metricRegistry.gauge("uniqueVisitorSketchesRejected", uniqueVisitorTracker::getRejectedCount);
+        metricRegistry.gauge("uniqueVisitorPendingSketches", uniqueVisitorTracker::getPendingCount);
+
+        running = true;
+        worker = new Thread(this::run, "click-aggregator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(flushTimeout.toMillis() + TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a click. Never blocks.
+     *
+     * @param shortCode   The requested short code
+     * @param status      The HTTP status the request was answered with
+     * @param visitorHash Hash identifying the visitor, 0 if unknown
+     */
+    public void record(String shortCode, int status, long visitorHash) {
+        if (buffer != null
+                && !buffer.offer(new ClickEvent(shortCode, System.currentTimeMillis(), status, visitorHash))) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        long flushIntervalNanos = flushInterval.toNanos();
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (running) {
+            if (buffer.drain(this::fold, DRAIN_BATCH) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            if (System.nanoTime() - nextFlush >= 0) {
+                flush();
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+        // Flush whatever was recorded before shutdown
+        buffer.drain(this::fold, Integer.MAX_VALUE);
+        awaitWrite();
+        flush();
+        awaitWrite();
+        if (!settleWrite()) {
+            LOG.warnf("Click rollup write of %d buckets still running at shutdown, it may or may not be counted",
+                    writing.size());
+        }
+    }
+
+    private void fold(ClickEvent event) {
+        hotLinkTracker.record(event.shortCode(), event.epochMillis());
+        uniqueVisitorTracker.record(event);
+        BucketKey key = new BucketKey(event.shortCode(), event.epochMillis() / 60_000);
+        Counts counts = pending.get(key);
+        if (counts == null) {
+            if (pending.size() >= maxPendingBuckets) {
+                dropped.increment();
+                return;
+            }
+            counts = new Counts();
+            pending.put(key, counts);
+            pendingBuckets = pending.size() + writing.size();
+        }
+        counts.clicks++;
+        if (event.redirected()) {
+            counts.redirected++;
+        } else {
+            counts.rejected++;
+        }
+        aggregated.increment();
+    }
+
+    private void flush() {
+        uniqueVisitorTracker.flush(flushTimeout);
+        if (!settleWrite()) {
+            LOG.debugf("Click rollup write of %d buckets still running, flushing later", writing.size());
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        List<ClickRollup> rollups = new ArrayList<>(pending.size());
+        for (Map.Entry<BucketKey, Counts> entry : pending.entrySet()) {
+            BucketKey key = entry.getKey();
+            Counts counts = entry.getValue();
+            LocalDateTime bucketStart = LocalDateTime.ofInstant(Instant.ofEpochMilli(key.epochMinute() * 60_000), zone);
+            rollups.add(new ClickRollup(key.shortCode(), bucketStart, counts.clicks, counts.redirected, counts.rejected));
+        }
+        // Hand the batch over, so later clicks are never part of a write that may still commit
+        writing = pending;
+        pending = new HashMap<>();
+        write = clickRollupRepository.addAllAsync(rollups).subscribeAsCompletionStage();
+    }
+
+    /**
+     * Takes the outcome of the last write, if it has one: a failed batch goes back to pending unless the
+     * database rejected it.
+     *
+     * @return Whether no write is running any more
+     */
+    private boolean settleWrite() {
+        if (write == null) {
+            return true;
+        }
+        if (!write.isDone()) {
+            return false;
+        }
+        Throwable failure = write.handle((ignored, e) -> e).join();
+        if (failure == null) {
+            LOG.debugf("Flushed %d click rollup buckets", writing.size());
+        } else if (DatabaseErrors.isRejectedData(failure)) {
+            // Retrying cannot help, and would fail every later flush along with it
+            rejected.add(writing.size());
+            LOG.errorf("Dropped %d click rollup buckets the database rejected: %s", writing.size(), failure.getMessage());
+        } else {
+            flushFailures.increment();
+            LOG.warnf("Failed to flush %d click rollup buckets, retrying with the next flush: %s",
+                    writing.size(), failure.getMessage());
+            writing.forEach((key, counts) -> pending.merge(key, counts, Counts::add));
+        }
+        write = null;
+        writing = Map.of();
+        pendingBuckets = pending.size() + writing.size();
+        return true;
+    }
+
+    private void awaitWrite() {
+        if (write == null) {
+            return;
+        }
+        try {
+            write.get(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Settled by the caller
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record BucketKey(String shortCode, long epochMinute) {
+    }
+
+    private static final class Counts {
+        long clicks;
+        long redirected;
+        long rejected;
+
+        Counts add(Counts other) {
+            clicks += other.clicks;
+            redirected += other.redirected;
+            rejected += other.rejected;
+            return this;
+        }
+    }
+}
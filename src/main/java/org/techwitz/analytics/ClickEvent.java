@@ -0,0 +1,19 @@
+package org.techwitz.analytics;
+
+/**
+ * A single redirect attempt as published by the redirect path.
+ *
+ * @param shortCode   The requested short code
+ * @param epochMillis When the redirect was answered
+ * @param status      The HTTP status of the answer
+ * @param visitorHash Hash of the client address and user agent, 0 if unknown
+ */
+public record ClickEvent(String shortCode, long epochMillis, int status, long visitorHash) {
+
+    /**
+     * @return Whether the click was answered with a redirect
+     */
+    public boolean redirected() {
+        return status >= 300 && status < 400;
+    }
+}
@@ -0,0 +1,54 @@
+package org.techwitz.analytics;
+
+import org.techwitz.exception.TinyUrlException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * Bucket sizes the click rollups can be read at. Rollups are stored per minute and summed up for the
+ * coarser granularities.
+ */
+public enum ClickGranularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    ClickGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Parses a request parameter value such as {@code hour}.
+     *
+     * @param value The parameter value
+     * @return The granularity
+     * @throws TinyUrlException if the value is not a known granularity
+     */
+    public static ClickGranularity fromParameter(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new TinyUrlException("Unknown granularity: " + value + " (expected minute, hour or day)");
+        }
+    }
+
+    /**
+     * @return The unit name understood by PostgreSQL's {@code date_trunc}
+     */
+    public String sqlUnit() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public long bucketsBetween(LocalDateTime from, LocalDateTime to) {
+        return Duration.between(truncate(from), to).toMillis() / unit.getDuration().toMillis() + 1;
+    }
+}
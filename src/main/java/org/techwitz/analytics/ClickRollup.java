@@ -0,0 +1,15 @@
+package org.techwitz.analytics;
+
+import java.time.LocalDateTime;
+
+/**
+ * Click counts for one short code and one bucket.
+ *
+ * @param shortCode   The short code
+ * @param bucketStart Start of the bucket (local time, like the other timestamps of the service)
+ * @param clicks      All redirect attempts
+ * @param redirected  Attempts answered with a redirect
+ * @param rejected    Attempts answered with an error (not found, expired, limits exceeded, ...)
+ */
+public record ClickRollup(String shortCode, LocalDateTime bucketStart, long clicks, long redirected, long rejected) {
+}
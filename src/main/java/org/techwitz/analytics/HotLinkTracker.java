@@ -0,0 +1,245 @@
+package org.techwitz.analytics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.techwitz.dto.HotLinksResponse;
+import org.techwitz.util.CountMinSketch;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming heavy-hitter tracker for short codes.
+ * <p>
+ * Time is cut into {@code tiny.url.analytics.hot-links.slice} slices kept in a ring of
+ * {@code slices} entries. Each slice has a {@link CountMinSketch} and a bounded min-heap of the
+ * {@code capacity} codes with the highest estimates in that slice. A query sums the sketches of the
+ * slices inside the window for every code found in their heaps; slices falling out of the window are
+ * reused, so old clicks stop counting as the window slides. Memory is fixed by the configuration, and a
+ * click costs {@code O(depth)} sketch updates plus {@code O(log capacity)} heap work.
+ * <p>
+ * Clicks are added by the click aggregator thread only, off the redirect path.
+ */
+@ApplicationScoped
+public class HotLinkTracker {
+
+    @ConfigProperty(name = "tiny.url.analytics.hot-links.slice", defaultValue = "PT1M")
+    Duration slice;
+
+    @ConfigProperty(name = "tiny.url.analytics.hot-links.slices", defaultValue = "60")
+    int sliceCount;
+
+    @ConfigProperty(name = "tiny.url.analytics.hot-links.depth", defaultValue = "4")
+    int depth;
+
+    @ConfigProperty(name = "tiny.url.analytics.hot-links.width", defaultValue = "4096")
+    int width;
+
+    @ConfigProperty(name = "tiny.url.analytics.hot-links.capacity", defaultValue = "200")
+    int capacity;
+
+    private Slice[] ring;
+    private long sliceMillis;
+
+    @PostConstruct
+    void init() {
+        sliceMillis = slice.toMillis();
+        ring = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            ring[i] = new Slice(new CountMinSketch(depth, width), new TopK(capacity));
+        }
+    }
+
+    /**
+     * Counts a click.
+     *
+     * @param shortCode   The clicked short code
+     * @param epochMillis When the click happened
+     */
+    public synchronized void record(String shortCode, long epochMillis) {
+        long id = epochMillis / sliceMillis;
+        Slice current = ring[(int) (id % sliceCount)];
+        if (current.id != id) {
+            if (current.id > id) {
+                // Older than anything the ring still holds
+                return;
+            }
+            current.reset(id);
+        }
+        current.topK.offer(shortCode, current.sketch.add(shortCode));
+    }
+
+    /**
+     * @return The longest window that can be queried
+     */
+    public Duration maxWindow() {
+        return slice.multipliedBy(sliceCount);
+    }
+
+    /**
+     * @return The most codes a query can return
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the hottest codes in the window ending now. The window is rounded up to whole slices and
+     * includes the current, partial slice.
+     *
+     * @param window How far back to look
+     * @param limit  Maximum number of codes to return
+     * @return The hottest codes, hottest first
+     */
+    public synchronized HotLinksResponse hottest(Duration window, int limit) {
+        long currentId = System.currentTimeMillis() / sliceMillis;
+        long slicesInWindow = Math.min(sliceCount, Math.max(1, (window.toMillis() + sliceMillis - 1) / sliceMillis));
+
+        List<Slice> inWindow = new ArrayList<>();
+        Set<String> candidates = new HashSet<>();
+        long total = 0;
+        for (Slice candidateSlice : ring) {
+            if (candidateSlice.id > currentId - slicesInWindow && candidateSlice.id <= currentId) {
+                inWindow.add(candidateSlice);
+                candidateSlice.topK.collectKeys(candidates);
+                total += candidateSlice.sketch.total();
+            }
+        }
+
+        List<HotLinksResponse.HotLink> links = new ArrayList<>(candidates.size());
+        for (String shortCode : candidates) {
+            long estimate = 0;
+            for (Slice windowSlice : inWindow) {
+                estimate += windowSlice.sketch.estimate(shortCode);
+            }
+            HotLinksResponse.HotLink link = new HotLinksResponse.HotLink();
+            link.setShortCode(shortCode);
+            link.setEstimatedClicks(estimate);
+            link.setShare(total == 0 ? 0 : (double) estimate / total);
+            links.add(link);
+        }
+        links.sort((a, b) -> Long.compare(b.getEstimatedClicks(), a.getEstimatedClicks()));
+
+        HotLinksResponse response = new HotLinksResponse();
+        response.setWindow(Duration.ofMillis(slicesInWindow * sliceMillis).toString());
+        response.setGeneratedAt(LocalDateTime.now());
+        response.setTotalClicks(total);
+        response.setMaxOvercount((long) Math.ceil(Math.E / ring[0].sketch.width() * total));
+        response.setLinks(links.subList(0, Math.min(limit, links.size())));
+        return response;
+    }
+
+    private static final class Slice {
+        final CountMinSketch sketch;
+        final TopK topK;
+        long id = -1;
+
+        Slice(CountMinSketch sketch, TopK topK) {
+            this.sketch = sketch;
+            this.topK = topK;
+        }
+
+        void reset(long newId) {
+            sketch.clear();
+            topK.clear();
+            id = newId;
+        }
+    }
+
+    /**
+     * Bounded min-heap of keys by count, with an index so a key already in the heap is updated in place.
+     */
+    static final class TopK {
+        private final String[] keys;
+        private final int[] counts;
+        private final Map<String, Integer> positions;
+        private int size;
+
+        TopK(int capacity) {
+            this.keys = new String[capacity];
+            this.counts = new int[capacity];
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        /**
+         * Offers a key with its current count; counts only grow within a slice.
+         */
+        void offer(String key, int count) {
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position] = count;
+                siftDown(position);
+            } else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = count;
+                positions.put(key, size);
+                siftUp(size++);
+            } else if (count > counts[0]) {
+                positions.remove(keys[0]);
+                keys[0] = key;
+                counts[0] = count;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        void collectKeys(Set<String> into) {
+            into.addAll(Arrays.asList(keys).subList(0, size));
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0, size, null);
+            positions.clear();
+            size = 0;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String key = keys[a];
+            int count = counts[a];
+            keys[a] = keys[b];
+            counts[a] = counts[b];
+            keys[b] = key;
+            counts[b] = count;
+            positions.put(keys[a], a);
+            positions.put(keys[b], b);
+        }
+    }
+}
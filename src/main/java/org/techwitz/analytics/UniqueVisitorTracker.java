@@ -0,0 +1,134 @@
+package org.techwitz.analytics;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.techwitz.repository.DatabaseErrors;
+import org.techwitz.repository.VisitorSketchRepository;
+import org.techwitz.util.HyperLogLog;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects unique visitors per short code and day in {@link HyperLogLog} sketches.
+ * <p>
+ * Visitors are identified by a hash of client address and user agent computed on the redirect path;
+ * addresses themselves are never kept. Sketches of the current flush interval live in memory (sparse
+ * while small) and are merged into {@code tiny_url_visitors_hll} on every click aggregator flush. Only
+ * the click aggregator thread calls {@link #record(ClickEvent)} and {@link #flush(Duration)}.
+ */
+@ApplicationScoped
+public class UniqueVisitorTracker {
+    private static final Logger LOG = Logger.getLogger(UniqueVisitorTracker.class);
+
+    @Inject
+    VisitorSketchRepository visitorSketchRepository;
+
+    @ConfigProperty(name = "tiny.url.analytics.unique-visitors.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.analytics.unique-visitors.precision", defaultValue = "12")
+    int precision;
+
+    @ConfigProperty(name = "tiny.url.analytics.unique-visitors.max-pending-sketches", defaultValue = "50000")
+    int maxPendingSketches;
+
+    private Map<VisitorSketchKey, HyperLogLog> pending = new HashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Adds the visitor of a click to the sketch of its code and day, if the click was redirected to an
+     * existing link.
+     *
+     * @param event The click
+     */
+    public void record(ClickEvent event) {
+        if (!enabled || event.visitorHash() == 0 || !event.redirected()) {
+            return;
+        }
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(event.epochMillis()), zone);
+        HyperLogLog sketch = sketchFor(event.shortCode(), day);
+        if (sketch == null) {
+            dropped.increment();
+            return;
+        }
+        sketch.add(event.visitorHash());
+    }
+
+    /**
+     * Merges the pending sketches into the database. On failure they stay pending and are merged with
+     * the next flush, unless the database rejected them.
+     *
+     * @param timeout How long to wait for the database
+     */
+    public void flush(Duration timeout) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Hand the batch over, so a write still running after a timeout never sees later updates
+        Map<VisitorSketchKey, HyperLogLog> batch = pending;
+        pending = new HashMap<>();
+        try {
+            visitorSketchRepository.mergeAllAsync(batch).await().atMost(timeout);
+            LOG.debugf("Merged %d unique visitor sketches", batch.size());
+        } catch (RuntimeException e) {
+            if (DatabaseErrors.isRejectedData(e)) {
+                // Retrying cannot help, and would fail every later flush along with it
+                rejected.add(batch.size());
+                LOG.errorf("Dropped %d unique visitor sketches the database rejected: %s", batch.size(), e.getMessage());
+                return;
+            }
+            LOG.warnf("Failed to merge %d unique visitor sketches, retrying with the next flush: %s",
+                    batch.size(), e.getMessage());
+            // Merging is idempotent, so this is safe even if part of the batch was written
+            batch.forEach((key, sketch) -> pending.merge(key, sketch, (current, failed) -> {
+                current.merge(failed);
+                return current;
+            }));
+        }
+    }
+
+    /**
+     * @return Visitors not counted because too many sketches were pending
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Sketches dropped because the database rejected them
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private HyperLogLog sketchFor(String shortCode, LocalDate day) {
+        VisitorSketchKey key = new VisitorSketchKey(shortCode, day);
+        HyperLogLog sketch = pending.get(key);
+        if (sketch == null) {
+            if (pending.size() >= maxPendingSketches) {
+                return null;
+            }
+            sketch = new HyperLogLog(precision);
+            pending.put(key, sketch);
+        }
+        return sketch;
+    }
+}
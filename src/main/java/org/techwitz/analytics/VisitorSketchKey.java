@@ -0,0 +1,12 @@
+package org.techwitz.analytics;
+
+import java.time.LocalDate;
+
+/**
+ * Identifies the unique-visitor sketch of one short code on one day.
+ *
+ * @param shortCode The short code
+ * @param day       The day (local time)
+ */
+public record VisitorSketchKey(String shortCode, LocalDate day) {
+}
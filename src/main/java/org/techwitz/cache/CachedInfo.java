@@ -0,0 +1,12 @@
+package org.techwitz.cache;
+
+import org.techwitz.dto.TinyUrlResponse;
+
+/**
+ * A {@link TinyUrlResponse} in the {@code tiny-url-info} cache, with the time it was loaded from the store.
+ *
+ * @param response       The cached response
+ * @param cachedAtMillis When it was loaded, epoch millis
+ */
+public record CachedInfo(TinyUrlResponse response, long cachedAtMillis) {
+}
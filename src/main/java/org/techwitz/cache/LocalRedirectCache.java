@@ -0,0 +1,549 @@
+package org.techwitz.cache;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.domain.RedirectPolicy;
+import org.techwitz.util.Base62;
+import org.techwitz.util.LongIntHashMap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * In-process cache of {@link RedirectEntry}s, in front of the store on the redirect path.
+ * <p>
+ * Entries are fixed-layout records appended to a byte arena used as a ring: when it is full, the oldest
+ * records are evicted to make room, so memory is bounded by {@code tiny.url.cache.local.max-size-mb} and
+ * eviction is first-in first-out with no bookkeeping per access. A {@link LongIntHashMap} maps the
+ * {@link Base62} key of each short code to the offset of its record, so there is no object per entry:
+ * besides its record, an entry costs 16 to 32 bytes of index. Codes that are not base-62 are never cached.
+ * <p>
+ * Record layout, 8-byte aligned:
+ * <pre>
+ * long  key (0 for padding up to the end of the arena)
+ * long  id
+ * long  expiration epoch seconds ({@link RedirectEntry#NO_EXPIRATION} if none)
+ * long  cached at, epoch millis
+ * int   usageCount, maxUsage, attemptCount, maxAttempts
+ * int   URL length in bytes
+ * int   flags (bit 0 oneTimeUse, bit 1 active, bits 2-3 redirect policy ordinal)
+ * byte  UTF-8 encoded URL
+ * </pre>
+ * The version of the tiny URL is not kept: the cache only serves redirects, and entries come back with version 0.
+ * The store stays authoritative for limits: counters are bumped here after it counted an access, and
+ * entries are dropped when it refuses one. Changes made on other nodes are seen once an entry is reloaded:
+ * in the background when it is older than {@code tiny.url.cache.local.soft-ttl} and still being used (see
+ * {@link RefreshAhead}), in line when it is older than {@code hard-ttl}. Lookups are
+ * optimistic reads of a {@link StampedLock}, falling back to its read lock when a write got in the way;
+ * writes are exclusive. Counters are bumped atomically under the read lock, which keeps the record in place
+ * without holding up lookups or failing their optimistic reads.
+ */
+@ApplicationScoped
+public class LocalRedirectCache {
+    private static final Logger LOG = Logger.getLogger(LocalRedirectCache.class);
+
+    private static final int KEY = 0;
+    private static final int ID = 8;
+    private static final int EXPIRATION = 16;
+    private static final int CACHED_AT = 24;
+    private static final int USAGE = 32;
+    private static final int MAX_USAGE = 36;
+    private static final int ATTEMPTS = 40;
+    private static final int MAX_ATTEMPTS = 44;
+    private static final int URL_LENGTH = 48;
+    private static final int FLAGS = 52;
+    private static final int URL = 56;
+
+    private static final int ONE_TIME_USE = 1;
+    private static final int ACTIVE = 1 << 1;
+    private static final int POLICY_SHIFT = 2;
+    private static final RedirectPolicy[] POLICIES = RedirectPolicy.values();
+    // Generations start at 0 and only grow
+    private static final long ANY_GENERATION = -1;
+    // The ints of the arena in the byte order of its ByteBuffer view, for atomic counter updates
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.cache.local.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.cache.local.max-size-mb", defaultValue = "64")
+    int maxSizeMb;
+
+    @ConfigProperty(name = "tiny.url.cache.local.soft-ttl", defaultValue = "PT20S")
+    Duration softTtl;
+
+    @ConfigProperty(name = "tiny.url.cache.local.hard-ttl", defaultValue = "PT30S")
+    Duration hardTtl;
+
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private byte[] arena;
+    private ByteBuffer records;
+    private LongIntHashMap index;
+    private RefreshAhead refreshAhead;
+    private long hardTtlMillis;
+    // Positions grow forever; the offset in the arena is the position modulo its size
+    private long head;
+    private long tail;
+
+    public LocalRedirectCache() {
+    }
+
+    /**
+     * Creates an enabled cache without metrics, for tests and benchmarks.
+     *
+     * @param sizeBytes Size of the arena
+     * @param softTtl   Age after which entries are refreshed in the background
+     * @param hardTtl   Age after which entries are misses
+     */
+    public LocalRedirectCache(int sizeBytes, Duration softTtl, Duration hardTtl) {
+        this.enabled = true;
+        this.softTtl = softTtl;
+        this.hardTtl = hardTtl;
+        allocateArena(sizeBytes);
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            LOG.info("Local redirect cache disabled");
+            return;
+        }
+        allocateArena((int) Math.min(Integer.MAX_VALUE - 8, maxSizeMb * 1024L * 1024L));
+        metricRegistry.gauge("localRedirectCacheHits", hits::sum);
+        metricRegistry.gauge("localRedirectCacheMisses", misses::sum);
+        metricRegistry.gauge("localRedirectCacheEntries", this::size);
+        metricRegistry.gauge("localRedirectCacheBytes", this::sizeInBytes);
+        refreshAhead.registerGauges(metricRegistry, "localRedirectCache");
+        LOG.infof("Local redirect cache of %d MB, entries refreshed after %s and dropped after %s",
+                maxSizeMb, softTtl, hardTtl);
+    }
+
+    private void allocateArena(int sizeBytes) {
+        arena = new byte[sizeBytes & ~7];
+        records = ByteBuffer.wrap(arena);
+        index = new LongIntHashMap(arena.length / 128);
+        refreshAhead = new RefreshAhead(softTtl, hardTtl);
+        hardTtlMillis = refreshAhead.hardTtlMillis();
+    }
+
+    /**
+     * Looks up the entry of a short code, without refreshing it.
+     *
+     * @param shortCode The short code
+     * @return The entry, or null if it is not cached or older than the hard TTL
+     */
+    public RedirectEntry get(String shortCode) {
+        return get(shortCode, null);
+    }
+
+    /**
+     * Looks up the entry of a short code. An entry older than the soft TTL is still returned, and reloaded
+     * in the background unless that is already under way; the reloaded entry replaces it, or drops it if
+     * the reloader finds no tiny URL. A reloaded entry is not cached if the code was invalidated meanwhile.
+     *
+     * @param shortCode The short code
+     * @param reloader  Loads the entry of a short code outside of the caller's session, or null not to refresh
+     * @return The entry, or null if it is not cached or older than the hard TTL
+     */
+    public RedirectEntry get(String shortCode, Function<String, Uni<RedirectEntry>> reloader) {
+        return get(shortCode, hardTtlMillis, reloader);
+    }
+
+    /**
+     * Looks up the entry of a short code however long ago it was cached, for serving redirects while the
+     * store is unavailable.
+     *
+     * @param shortCode The short code
+     * @return The entry, or null if it is not cached
+     */
+    public RedirectEntry getAnyAge(String shortCode) {
+        return get(shortCode, Long.MAX_VALUE, null);
+    }
+
+    private RedirectEntry get(String shortCode, long maxAgeMillis, Function<String, Uni<RedirectEntry>> reloader) {
+        if (arena == null) {
+            return null;
+        }
+        long key = Base62.encode(shortCode);
+        long now = System.currentTimeMillis();
+        RedirectEntry entry = null;
+        long cachedAt = 0;
+        long stamp = lock.tryOptimisticRead();
+        boolean locked = false;
+        try {
+            while (true) {
+                try {
+                    int offset = index.get(key);
+                    cachedAt = offset < 0 ? 0 : records.getLong(offset + CACHED_AT);
+                    entry = offset < 0 || now - cachedAt > maxAgeMillis ? null : read(offset);
+                } catch (IndexOutOfBoundsException e) {
+                    // Read halfway through a write, retried under the read lock
+                    if (locked) {
+                        throw e;
+                    }
+                }
+                if (locked || lock.validate(stamp)) {
+                    break;
+                }
+                stamp = lock.readLock();
+                locked = true;
+            }
+        } finally {
+            if (locked) {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (reloader != null && refreshAhead.freshness(cachedAt, now) == RefreshAhead.Freshness.STALE) {
+            refreshAhead.serveStale(key, () -> {
+                long generation = refreshAhead.generation(key);
+                return reloader.apply(shortCode).invoke(reloaded -> {
+                    if (reloaded == null) {
+                        invalidate(shortCode);
+                    } else {
+                        put(shortCode, reloaded, generation);
+                    }
+                });
+            });
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the entry of a short code, replacing any previous one.
+     *
+     * @param shortCode The short code
+     * @param entry     The entry
+     */
+    public void put(String shortCode, RedirectEntry entry) {
+        put(shortCode, entry, ANY_GENERATION);
+    }
+
+    /**
+     * Caches the entry of a short code unless it was invalidated since the given generation, checked under
+     * the write lock so that an invalidation is either seen or comes after.
+     */
+    private void put(String shortCode, RedirectEntry entry, long generation) {
+        long key = Base62.encode(shortCode);
+        if (arena == null || key <= 0) {
+            return;
+        }
+        byte[] url = entry.originalUrl().getBytes(StandardCharsets.UTF_8);
+        int size = recordSize(url.length);
+        if (size > arena.length / 4) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long stamp = lock.writeLock();
+        try {
+            if (generation != ANY_GENERATION && refreshAhead.generation(key) != generation) {
+                return;
+            }
+            index.remove(key);
+            int offset = allocate(size);
+            records.putLong(offset + KEY, key);
+            records.putLong(offset + ID, entry.id());
+            records.putLong(offset + EXPIRATION, entry.expiresAtEpochSecond());
+            records.putLong(offset + CACHED_AT, now);
+            records.putInt(offset + USAGE, entry.usageCount());
+            records.putInt(offset + MAX_USAGE, entry.maxUsage());
+            records.putInt(offset + ATTEMPTS, entry.attemptCount());
+            records.putInt(offset + MAX_ATTEMPTS, entry.maxAttempts());
+            records.putInt(offset + URL_LENGTH, url.length);
+            records.putInt(offset + FLAGS, (entry.oneTimeUse() ? ONE_TIME_USE : 0) | (entry.active() ? ACTIVE : 0)
+                    | entry.redirectPolicy().ordinal() << POLICY_SHIFT);
+            System.arraycopy(url, 0, arena, offset + URL, url.length);
+            index.put(key, offset);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies cached records, in the layout of the arena, for a snapshot: the most recently cached entries
+     * first, then those of the given codes, so that loading the snapshot into a cache too small for it
+     * evicts the hottest entries last. Entries older than the hard TTL are left out.
+     *
+     * @param hottest    Codes to include ahead of any other, hottest first
+     * @param maxEntries Maximum number of entries to copy
+     * @param target     Called once with the number of bytes to copy, returns the buffer to copy them to
+     * @return The number of entries copied
+     */
+    int exportTo(List<String> hottest, int maxEntries, IntFunction<ByteBuffer> target) {
+        if (arena == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long stamp = lock.readLock();
+        try {
+            LongIntHashMap hot = new LongIntHashMap(Math.min(hottest.size(), maxEntries));
+            for (String shortCode : hottest) {
+                long key = Base62.encode(shortCode);
+                int offset = index.get(key);
+                if (hot.size() < maxEntries && offset >= 0 && isLive(offset, now)) {
+                    hot.put(key, offset);
+                }
+            }
+            int others = 0;
+            for (long position = head; position < tail; position += recordSizeAt(position)) {
+                others += isOther((int) (position % arena.length), hot, now) ? 1 : 0;
+            }
+            int skip = Math.max(0, others - (maxEntries - hot.size()));
+
+            int[] offsets = new int[others - skip + hot.size()];
+            int count = 0;
+            int bytes = 0;
+            for (long position = head; position < tail; position += recordSizeAt(position)) {
+                int offset = (int) (position % arena.length);
+                if (isOther(offset, hot, now) && skip-- <= 0) {
+                    offsets[count++] = offset;
+                    bytes += recordSize(records.getInt(offset + URL_LENGTH));
+                }
+            }
+            for (int i = hottest.size() - 1; i >= 0; i--) {
+                // Removed as it is taken, in case a code is listed twice
+                int offset = hot.remove(Base62.encode(hottest.get(i)));
+                if (offset >= 0) {
+                    offsets[count++] = offset;
+                    bytes += recordSize(records.getInt(offset + URL_LENGTH));
+                }
+            }
+
+            ByteBuffer buffer = target.apply(bytes);
+            for (int i = 0; i < count; i++) {
+                int offset = offsets[i];
+                int size = recordSize(records.getInt(offset + URL_LENGTH));
+                buffer.put(arena, offset, size);
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Caches records copied by {@link #exportTo}. They are not checked against the store: like any cached
+     * entry, the store validates them on the first redirect, and they are refreshed and dropped by their age
+     * counted from now. Entries that expired in the meantime, and codes cached since, are skipped.
+     *
+     * @param source         The records, from its position to its limit
+     * @param nowEpochSecond The current time in epoch seconds (UTC), to skip expired entries
+     * @return The number of entries cached
+     */
+    int importFrom(ByteBuffer source, long nowEpochSecond) {
+        if (arena == null) {
+            return 0;
+        }
+        int loaded = 0;
+        long now = System.currentTimeMillis();
+        long stamp = lock.writeLock();
+        try {
+            int position = source.position();
+            while (source.limit() - position >= URL) {
+                long key = source.getLong(position + KEY);
+                int urlLength = source.getInt(position + URL_LENGTH);
+                if (key <= 0 || urlLength < 0 || urlLength > source.limit() - position - URL) {
+                    LOG.warnf("Stopped loading cached redirects at a malformed record, byte %d", position);
+                    break;
+                }
+                int size = recordSize(urlLength);
+                if (size <= arena.length / 4 && index.get(key) < 0
+                        && !toEntry(source, position, "").isExpired(nowEpochSecond)) {
+                    int offset = allocate(size);
+                    source.get(position, arena, offset, Math.min(size, source.limit() - position));
+                    records.putLong(offset + CACHED_AT, now);
+                    index.put(key, offset);
+                    loaded++;
+                }
+                position += size;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return loaded;
+    }
+
+    /**
+     * Counts an access the store has counted, so the cached entry's limits stay in step with it.
+     *
+     * @param shortCode The short code
+     */
+    public void recordAccess(String shortCode) {
+        if (arena == null) {
+            return;
+        }
+        long key = Base62.encode(shortCode);
+        // Shared, so concurrent accesses to the same entry must add atomically
+        long stamp = lock.readLock();
+        try {
+            int offset = index.get(key);
+            if (offset >= 0) {
+                INTS.getAndAdd(arena, offset + USAGE, 1);
+                INTS.getAndAdd(arena, offset + ATTEMPTS, 1);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops the entry of a short code; its record is reclaimed when the arena wraps around to it.
+     *
+     * @param shortCode The short code
+     */
+    public void invalidate(String shortCode) {
+        if (arena == null) {
+            return;
+        }
+        long key = Base62.encode(shortCode);
+        long stamp = lock.writeLock();
+        try {
+            refreshAhead.invalidated(key);
+            index.remove(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Number of cached entries
+     */
+    public int size() {
+        if (arena == null) {
+            return 0;
+        }
+        long stamp = lock.readLock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Bytes taken by the arena and the index
+     */
+    public long sizeInBytes() {
+        if (arena == null) {
+            return 0;
+        }
+        long stamp = lock.readLock();
+        try {
+            return arena.length + index.sizeInBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads the entry at an offset. Without the read lock, writes can be seen halfway, so the result only
+     * counts once the stamp is validated, and lengths are bounded so a torn read fails fast.
+     */
+    private RedirectEntry read(int offset) {
+        int urlLength = records.getInt(offset + URL_LENGTH);
+        if (urlLength < 0 || urlLength > arena.length - offset - URL) {
+            return null;
+        }
+        return toEntry(records, offset, new String(arena, offset + URL, urlLength, StandardCharsets.UTF_8));
+    }
+
+    private static RedirectEntry toEntry(ByteBuffer buffer, int offset, String originalUrl) {
+        int flags = buffer.getInt(offset + FLAGS);
+        return new RedirectEntry(
+                buffer.getLong(offset + ID),
+                originalUrl,
+                buffer.getLong(offset + EXPIRATION),
+                (flags & ONE_TIME_USE) != 0,
+                (flags & ACTIVE) != 0,
+                buffer.getInt(offset + USAGE),
+                buffer.getInt(offset + MAX_USAGE),
+                buffer.getInt(offset + ATTEMPTS),
+                buffer.getInt(offset + MAX_ATTEMPTS),
+                POLICIES[(flags >>> POLICY_SHIFT) & 3],
+                0L);
+    }
+
+    private boolean isLive(int offset, long now) {
+        return now - records.getLong(offset + CACHED_AT) <= hardTtlMillis;
+    }
+
+    /**
+     * @return Whether the record at an offset is a current, fresh entry that is not one of the hot ones
+     */
+    private boolean isOther(int offset, LongIntHashMap hot, long now) {
+        long key = records.getLong(offset + KEY);
+        return key != 0 && index.get(key) == offset && hot.get(key) < 0 && isLive(offset, now);
+    }
+
+    private int recordSizeAt(long position) {
+        int offset = (int) (position % arena.length);
+        return records.getLong(offset + KEY) == 0
+                ? arena.length - offset
+                : recordSize(records.getInt(offset + URL_LENGTH));
+    }
+
+    /**
+     * Takes the bytes for a record at the tail, evicting the oldest records as needed.
+     *
+     * @return The offset of the record
+     */
+    private int allocate(int size) {
+        int offset = (int) (tail % arena.length);
+        if (offset + size > arena.length) {
+            // Records do not wrap; pad up to the end of the arena and start over at its beginning
+            reserve(arena.length - offset);
+            records.putLong(offset + KEY, 0);
+            tail += arena.length - offset;
+            offset = 0;
+        }
+        reserve(size);
+        tail += size;
+        return offset;
+    }
+
+    /**
+     * Evicts the oldest records until the bytes after the tail are free.
+     */
+    private void reserve(int bytes) {
+        while (tail + bytes - head > arena.length) {
+            int offset = (int) (head % arena.length);
+            long key = records.getLong(offset + KEY);
+            if (key == 0) {
+                head += arena.length - offset;
+                continue;
+            }
+            // The code may have been invalidated or cached again since; only drop the index entry if it is ours
+            if (index.get(key) == offset) {
+                index.remove(key);
+            }
+            head += recordSize(records.getInt(offset + URL_LENGTH));
+        }
+    }
+
+    private static int recordSize(int urlLength) {
+        return (URL + urlLength + 7) & ~7;
+    }
+}
@@ -0,0 +1,207 @@
+package org.techwitz.cache;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.jboss.logging.Logger;
+import org.techwitz.analytics.HotLinkTracker;
+import org.techwitz.dto.HotLinksResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshots of the {@link LocalRedirectCache}, so a restarted node does not send every redirect to the
+ * store until its cache is warm again.
+ * <p>
+ * Every {@code tiny.url.cache.local.snapshot.interval}, and on shutdown, up to {@code max-entries} cached
+ * entries are written to a memory-mapped file: the hottest links according to the {@link HotLinkTracker}
+ * and the most recently cached others. The file is written next to the previous snapshot and renamed over
+ * it, so a crash while writing leaves the previous one. Layout: a {@value #HEADER_SIZE}-byte header (magic,
+ * version, written-at epoch millis, entry count, body length, CRC32C of the body) followed by the records
+ * in the layout of the cache's arena.
+ * <p>
+ * On startup the snapshot is loaded into the cache, unless it is older than {@code max-age}; readiness
+ * reports DOWN until then. Entries are not checked against the store when loading; the store validates
+ * each on its first redirect, like any cached entry.
+ */
+@Readiness
+@ApplicationScoped
+public class RedirectCacheSnapshot implements HealthCheck {
+    private static final Logger LOG = Logger.getLogger(RedirectCacheSnapshot.class);
+
+    static final int HEADER_SIZE = 32;
+    static final int MAGIC = 0x54555243; // "TURC"
+    static final int VERSION = 1;
+
+    @Inject
+    LocalRedirectCache cache;
+
+    @Inject
+    HotLinkTracker hotLinkTracker;
+
+    @ConfigProperty(name = "tiny.url.cache.local.snapshot.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.cache.local.snapshot.file", defaultValue = "data/redirect-cache.snapshot")
+    String file;
+
+    @ConfigProperty(name = "tiny.url.cache.local.snapshot.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    @ConfigProperty(name = "tiny.url.cache.local.snapshot.max-age", defaultValue = "PT1H")
+    Duration maxAge;
+
+    private volatile boolean loaded;
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled) {
+            load();
+        }
+        loaded = true;
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (enabled) {
+            write();
+        }
+    }
+
+    @Scheduled(every = "${tiny.url.cache.local.snapshot.interval:5m}", delayed = "${tiny.url.cache.local.snapshot.interval:5m}")
+    void writePeriodically() {
+        if (enabled) {
+            write();
+        }
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("redirect-cache-snapshot").status(loaded).build();
+    }
+
+    /**
+     * Loads the snapshot into the cache.
+     *
+     * @return The number of entries loaded
+     */
+    int load() {
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            LOG.infof("No redirect cache snapshot at %s, starting with an empty cache", path.toAbsolutePath());
+            return 0;
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                LOG.warnf("Ignoring redirect cache snapshot %s of %d bytes", path, channel.size());
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long writtenAt = buffer.getLong(8);
+            int count = buffer.getInt(16);
+            int bodyLength = buffer.getInt(20);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || bodyLength < 0
+                    || HEADER_SIZE + (long) bodyLength != channel.size()
+                    || crc(buffer.slice(HEADER_SIZE, bodyLength)) != buffer.getInt(24)) {
+                LOG.warnf("Ignoring redirect cache snapshot %s: not a version %d snapshot or corrupt", path, VERSION);
+                return 0;
+            }
+            Duration age = Duration.ofMillis(Math.max(0, System.currentTimeMillis() - writtenAt));
+            if (age.compareTo(maxAge) > 0) {
+                LOG.infof("Ignoring redirect cache snapshot %s: %s old, more than %s", path, age, maxAge);
+                return 0;
+            }
+            int entries = cache.importFrom(buffer.slice(HEADER_SIZE, bodyLength), RedirectEntry.nowEpochSecond());
+            LOG.infof("Loaded %d of %d redirect cache entries from snapshot %s, %s old, in %d ms",
+                    entries, count, path, age, Duration.ofNanos(System.nanoTime() - started).toMillis());
+            return entries;
+        } catch (IOException e) {
+            LOG.warnf(e, "Could not load redirect cache snapshot %s", path);
+            return 0;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the cache, replacing the previous one.
+     *
+     * @return The number of entries written
+     */
+    synchronized int write() {
+        Path path = Paths.get(file);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long started = System.nanoTime();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            int entries;
+            MappedByteBuffer[] mapped = new MappedByteBuffer[1];
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                entries = cache.exportTo(hottest(), maxEntries, bytes -> {
+                    try {
+                        mapped[0] = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) bytes);
+                        return mapped[0].slice(HEADER_SIZE, bytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            MappedByteBuffer buffer = mapped[0];
+            if (buffer == null) {
+                // The cache is disabled
+                Files.delete(temporary);
+                return 0;
+            }
+            int bodyLength = buffer.capacity() - HEADER_SIZE;
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, System.currentTimeMillis());
+            buffer.putInt(16, entries);
+            buffer.putInt(20, bodyLength);
+            buffer.putInt(24, crc(buffer.slice(HEADER_SIZE, bodyLength)));
+            buffer.force();
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long millis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+            LOG.debugf("Wrote redirect cache snapshot %s, %d entries, in %d ms", path, entries, millis);
+            return entries;
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warnf(e, "Could not write redirect cache snapshot %s", path);
+            return 0;
+        }
+    }
+
+    private List<String> hottest() {
+        HotLinksResponse hot = hotLinkTracker.hottest(hotLinkTracker.maxWindow(), maxEntries);
+        List<String> codes = new ArrayList<>(hot.getLinks().size());
+        for (HotLinksResponse.HotLink link : hot.getLinks()) {
+            codes.add(link.getShortCode());
+        }
+        return codes;
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        return (int) crc.getValue();
+    }
+}
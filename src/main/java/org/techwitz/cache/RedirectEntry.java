@@ -0,0 +1,122 @@
+package org.techwitz.cache;
+
+import org.techwitz.domain.RedirectPolicy;
+import org.techwitz.domain.TinyUrl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Immutable snapshot of the fields of a {@link TinyUrl} that the redirect path needs.
+ * <p>
+ * Expiration is held as epoch seconds (UTC) so that it can be compared without
+ * allocating a {@link LocalDateTime}; {@link #NO_EXPIRATION} marks a link that never expires. The version is
+ * that of the tiny URL when the entry was taken, 0 where it is not kept (see {@link LocalRedirectCache}).
+ */
+public record RedirectEntry(long id,
+                            String originalUrl,
+                            long expiresAtEpochSecond,
+                            boolean oneTimeUse,
+                            boolean active,
+                            int usageCount,
+                            int maxUsage,
+                            int attemptCount,
+                            int maxAttempts,
+                            RedirectPolicy redirectPolicy,
+                            long version) {
+
+    public static final long NO_EXPIRATION = Long.MAX_VALUE;
+
+    public RedirectEntry {
+        if (redirectPolicy == null) {
+            redirectPolicy = RedirectPolicy.TEMPORARY;
+        }
+    }
+
+    /**
+     * Creates an entry redirected with the default {@link RedirectPolicy#TEMPORARY} policy, of unknown version.
+     */
+    public RedirectEntry(long id, String originalUrl, long expiresAtEpochSecond, boolean oneTimeUse, boolean active,
+                         int usageCount, int maxUsage, int attemptCount, int maxAttempts) {
+        this(id, originalUrl, expiresAtEpochSecond, oneTimeUse, active, usageCount, maxUsage, attemptCount,
+                maxAttempts, RedirectPolicy.TEMPORARY, 0L);
+    }
+
+    /**
+     * Creates a redirect entry from a persisted tiny URL.
+     *
+     * @param tinyUrl The entity to snapshot
+     * @return The redirect entry
+     */
+    public static RedirectEntry from(TinyUrl tinyUrl) {
+        return new RedirectEntry(
+                tinyUrl.id == null ? 0L : tinyUrl.id,
+                tinyUrl.getOriginalUrl(),
+                toEpochSecond(tinyUrl.getExpirationTime()),
+                tinyUrl.isOneTimeUse(),
+                tinyUrl.isActive(),
+                tinyUrl.getUsageCount(),
+                tinyUrl.getMaxUsage(),
+                tinyUrl.getAttemptCount(),
+                tinyUrl.getMaxAttempts(),
+                tinyUrl.getRedirectPolicy(),
+                tinyUrl.getVersion());
+    }
+
+    /**
+     * @return true if the link is one-time or has a usage or attempt limit, which only the store can enforce
+     */
+    public boolean hasLimits() {
+        return oneTimeUse || maxUsage > 0 || maxAttempts > 0;
+    }
+
+    /**
+     * @return true if redirects may be answered permanently: the policy asks for it, and the link neither
+     * expires nor has limits, so a client caching the redirect for good cannot bypass anything
+     */
+    public boolean isPermanent() {
+        return redirectPolicy.isPermanent() && !hasExpiration() && !hasLimits();
+    }
+
+    public boolean hasExpiration() {
+        return expiresAtEpochSecond != NO_EXPIRATION;
+    }
+
+    /**
+     * Mirrors {@link TinyUrl#isExpired()} against the given clock reading.
+     *
+     * @param nowEpochSecond The current time in epoch seconds (UTC)
+     * @return true if the link can no longer be used
+     */
+    public boolean isExpired(long nowEpochSecond) {
+        if (nowEpochSecond > expiresAtEpochSecond) {
+            return true;
+        }
+
+        if (oneTimeUse && usageCount >= 1) {
+            return true;
+        }
+
+        if (maxUsage > 0 && usageCount >= maxUsage) {
+            return true;
+        }
+
+        if (maxAttempts > 0 && attemptCount >= maxAttempts) {
+            return true;
+        }
+
+        return !active;
+    }
+
+    public LocalDateTime expirationTime() {
+        return hasExpiration() ? LocalDateTime.ofEpochSecond(expiresAtEpochSecond, 0, ZoneOffset.UTC) : null;
+    }
+
+    public static long toEpochSecond(LocalDateTime time) {
+        return time == null ? NO_EXPIRATION : time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static long nowEpochSecond() {
+        return LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,232 @@
+package org.techwitz.cache;
+
+import org.techwitz.domain.RedirectPolicy;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Versioned binary encoding of {@link RedirectEntry}, for caches that keep entries as bytes, in Redis or off-heap.
+ * <p>
+ * Layout (version 2):
+ * <pre>
+ * byte    version
+ * byte    flags (bit 0 oneTimeUse, bit 1 active, bit 2 has expiration, bits 3-4 redirect policy ordinal)
+ * varint  id
+ * varint  version of the tiny URL
+ * varint  usageCount, maxUsage, attemptCount, maxAttempts (unsigned 32-bit)
+ * varint  expiration epoch seconds, zig-zag encoded (only when flag bit 2 is set)
+ * varint  URL length in bytes, followed by the UTF-8 encoded URL
+ * </pre>
+ * Decoding works on any {@link ByteBuffer}, heap or direct, and advances its position past the entry.
+ */
+public final class RedirectEntryCodec {
+
+    public static final byte VERSION = 2;
+
+    private static final int FLAG_ONE_TIME_USE = 1;
+    private static final int FLAG_ACTIVE = 1 << 1;
+    private static final int FLAG_HAS_EXPIRATION = 1 << 2;
+    private static final int POLICY_SHIFT = 3;
+    private static final int POLICY_MASK = 3 << POLICY_SHIFT;
+    private static final RedirectPolicy[] POLICIES = RedirectPolicy.values();
+
+    private RedirectEntryCodec() {
+    }
+
+    /**
+     * Encodes an entry into a new, exactly sized byte array.
+     *
+     * @param entry The entry to encode
+     * @return The encoded bytes
+     */
+    public static byte[] encode(RedirectEntry entry) {
+        byte[] url = entry.originalUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[encodedSize(entry, url.length)];
+        write(entry, url, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Encodes an entry into the given buffer at its current position.
+     *
+     * @param entry  The entry to encode
+     * @param target The buffer to write into; must have {@link #encodedSize(RedirectEntry)} bytes remaining
+     */
+    public static void encode(RedirectEntry entry, ByteBuffer target) {
+        write(entry, entry.originalUrl().getBytes(StandardCharsets.UTF_8), target);
+    }
+
+    /**
+     * Computes the number of bytes {@link #encode(RedirectEntry)} will produce.
+     *
+     * @param entry The entry to measure
+     * @return The encoded size in bytes
+     */
+    public static int encodedSize(RedirectEntry entry) {
+        return encodedSize(entry, utf8Length(entry.originalUrl()));
+    }
+
+    /**
+     * Decodes an entry from a byte array.
+     *
+     * @param bytes The encoded bytes
+     * @return The decoded entry
+     * @throws IllegalArgumentException if the bytes are not a valid encoded entry
+     */
+    public static RedirectEntry decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes an entry starting at the buffer's current position.
+     *
+     * @param source The buffer to read from
+     * @return The decoded entry
+     * @throws IllegalArgumentException if the buffer does not hold a valid encoded entry
+     */
+    public static RedirectEntry decode(ByteBuffer source) {
+        try {
+            byte version = source.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported redirect entry version: " + version);
+            }
+
+            int flags = source.get();
+            int policy = (flags & POLICY_MASK) >>> POLICY_SHIFT;
+            if (policy >= POLICIES.length) {
+                throw new IllegalArgumentException("Unknown redirect policy in redirect entry: " + policy);
+            }
+            long id = readVarLong(source);
+            long tinyUrlVersion = readVarLong(source);
+            int usageCount = (int) readVarLong(source);
+            int maxUsage = (int) readVarLong(source);
+            int attemptCount = (int) readVarLong(source);
+            int maxAttempts = (int) readVarLong(source);
+            long expiresAt = (flags & FLAG_HAS_EXPIRATION) != 0
+                    ? zigZagDecode(readVarLong(source))
+                    : RedirectEntry.NO_EXPIRATION;
+
+            int urlLength = (int) readVarLong(source);
+            if (urlLength < 0 || urlLength > source.remaining()) {
+                throw new IllegalArgumentException("Invalid URL length in redirect entry: " + urlLength);
+            }
+            String originalUrl;
+            if (source.hasArray()) {
+                originalUrl = new String(source.array(), source.arrayOffset() + source.position(), urlLength,
+                        StandardCharsets.UTF_8);
+                source.position(source.position() + urlLength);
+            } else {
+                byte[] url = new byte[urlLength];
+                source.get(url);
+                originalUrl = new String(url, StandardCharsets.UTF_8);
+            }
+
+            return new RedirectEntry(id, originalUrl, expiresAt,
+                    (flags & FLAG_ONE_TIME_USE) != 0, (flags & FLAG_ACTIVE) != 0,
+                    usageCount, maxUsage, attemptCount, maxAttempts,
+                    POLICIES[policy], tinyUrlVersion);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated redirect entry", e);
+        }
+    }
+
+    private static void write(RedirectEntry entry, byte[] url, ByteBuffer target) {
+        int flags = 0;
+        if (entry.oneTimeUse()) {
+            flags |= FLAG_ONE_TIME_USE;
+        }
+        if (entry.active()) {
+            flags |= FLAG_ACTIVE;
+        }
+        if (entry.hasExpiration()) {
+            flags |= FLAG_HAS_EXPIRATION;
+        }
+        flags |= entry.redirectPolicy().ordinal() << POLICY_SHIFT;
+
+        target.put(VERSION);
+        target.put((byte) flags);
+        writeVarLong(target, entry.id());
+        writeVarLong(target, entry.version());
+        writeVarLong(target, Integer.toUnsignedLong(entry.usageCount()));
+        writeVarLong(target, Integer.toUnsignedLong(entry.maxUsage()));
+        writeVarLong(target, Integer.toUnsignedLong(entry.attemptCount()));
+        writeVarLong(target, Integer.toUnsignedLong(entry.maxAttempts()));
+        if (entry.hasExpiration()) {
+            writeVarLong(target, zigZagEncode(entry.expiresAtEpochSecond()));
+        }
+        writeVarLong(target, url.length);
+        target.put(url);
+    }
+
+    private static int encodedSize(RedirectEntry entry, int urlLength) {
+        int size = 2
+                + varLongSize(entry.id())
+                + varLongSize(entry.version())
+                + varLongSize(Integer.toUnsignedLong(entry.usageCount()))
+                + varLongSize(Integer.toUnsignedLong(entry.maxUsage()))
+                + varLongSize(Integer.toUnsignedLong(entry.attemptCount()))
+                + varLongSize(Integer.toUnsignedLong(entry.maxAttempts()))
+                + varLongSize(urlLength)
+                + urlLength;
+        if (entry.hasExpiration()) {
+            size += varLongSize(zigZagEncode(entry.expiresAtEpochSecond()));
+        }
+        return size;
+    }
+
+    static void writeVarLong(ByteBuffer target, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer source) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = source.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in redirect entry");
+    }
+
+    static int varLongSize(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced with '?' by String#getBytes
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,133 @@
+package org.techwitz.cache;
+
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Stale-while-revalidate policy of a cache: a soft and a hard TTL, and single-flight background refreshes.
+ * <p>
+ * An entry younger than the soft TTL is fresh. Between the soft and the hard TTL it is stale: it is still
+ * served, and the first caller to see it starts a refresh in the background, which the callers after it
+ * do not repeat while it runs. Past the hard TTL the entry is a miss and is loaded in line. Popular links
+ * are thus reloaded before they expire instead of making a caller wait for the store.
+ * <p>
+ * Keys hash to one of {@value #GENERATION_STRIPES} generations, which the cache bumps when it drops an
+ * entry. A refresh takes the generation before it loads and only puts what it loaded if it is unchanged, so
+ * a refresh that read the store before an update cannot undo the invalidation that followed it. Keys
+ * sharing a generation only cost each other a refresh.
+ */
+public final class RefreshAhead {
+    private static final Logger LOG = Logger.getLogger(RefreshAhead.class);
+
+    public enum Freshness {
+        FRESH, STALE, EXPIRED
+    }
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final long softTtlMillis;
+    private final long hardTtlMillis;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @param softTtl Age after which entries are refreshed in the background
+     * @param hardTtl Age after which entries are misses; at least the soft TTL
+     */
+    public RefreshAhead(Duration softTtl, Duration hardTtl) {
+        this.hardTtlMillis = hardTtl.toMillis();
+        this.softTtlMillis = Math.min(softTtl.toMillis(), hardTtlMillis);
+    }
+
+    /**
+     * @param cachedAtMillis When the entry was loaded, epoch millis
+     * @param nowMillis      The current time, epoch millis
+     * @return The freshness of the entry
+     */
+    public Freshness freshness(long cachedAtMillis, long nowMillis) {
+        long age = nowMillis - cachedAtMillis;
+        return age <= softTtlMillis ? Freshness.FRESH : age <= hardTtlMillis ? Freshness.STALE : Freshness.EXPIRED;
+    }
+
+    public long hardTtlMillis() {
+        return hardTtlMillis;
+    }
+
+    /**
+     * @param key The key of an entry
+     * @return The generation of the key, taken before reloading it
+     */
+    public long generation(Object key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * Bumps the generation of a key, so the refreshes of it under way are not cached.
+     *
+     * @param key The key of the entry dropped
+     */
+    public void invalidated(Object key) {
+        generations.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ hash >>> 16) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Counts a stale entry served, and refreshes it unless a refresh of the key is already running.
+     *
+     * @param key     The key of the entry
+     * @param refresh Reloads the entry and puts it in the cache
+     */
+    public void serveStale(Object key, Supplier<Uni<?>> refresh) {
+        staleServed.increment();
+        if (!refreshing.add(key)) {
+            return;
+        }
+        refreshes.increment();
+        Uni<?> reload;
+        try {
+            reload = refresh.get();
+        } catch (RuntimeException e) {
+            reload = Uni.createFrom().failure(e);
+        }
+        reload.subscribe().with(
+                item -> refreshing.remove(key),
+                failure -> {
+                    refreshing.remove(key);
+                    refreshFailures.increment();
+                    LOG.debugf("Background refresh of %s failed: %s", key, failure.getMessage());
+                });
+    }
+
+    /**
+     * Registers the {@code <prefix>StaleServed}, {@code <prefix>Refreshes} and {@code <prefix>RefreshFailures}
+     * gauges.
+     */
+    public void registerGauges(MetricRegistry registry, String prefix) {
+        registry.gauge(prefix + "StaleServed", staleServed::sum);
+        registry.gauge(prefix + "Refreshes", refreshes::sum);
+        registry.gauge(prefix + "RefreshFailures", refreshFailures::sum);
+    }
+
+    public long getStaleServed() {
+        return staleServed.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+}
@@ -0,0 +1,260 @@
+package org.techwitz.cache;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.config.RedisConfig;
+import org.techwitz.dto.TinyUrlResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The {@code tiny-url-info} cache of link details, with stale-while-revalidate on top of the Quarkus cache.
+ * <p>
+ * Each response is cached with the time it was loaded. Once it is older than
+ * {@code tiny.url.cache.info.soft-ttl} it is still served, and reloaded in the background; once it is older
+ * than {@code hard-ttl} it is reloaded in line (see {@link RefreshAhead}). The cache backend should expire
+ * entries after the hard TTL as well, so links nobody asks for do not stay in it.
+ * <p>
+ * Single and batch info requests share the cache, so both are as fresh as each other. Details reloaded
+ * in the background, or by a batch, are only cached if the link was not invalidated while they loaded.
+ * <p>
+ * A batch reads all its codes at once instead of one lookup per code: with a Caffeine backend from the
+ * local map, otherwise with a single Redis {@code MGET} of the keys the Redis backend writes,
+ * {@code tiny.url.cache.info.redis-key-prefix} followed by {@code :} and the short code.
+ */
+@ApplicationScoped
+public class TinyUrlInfoCache {
+    private static final Logger LOG = Logger.getLogger(TinyUrlInfoCache.class);
+
+    @Inject
+    @CacheName("tiny-url-info")
+    Cache cache;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @Inject
+    RedisConfig redisConfig;
+
+    @ConfigProperty(name = "tiny.url.cache.info.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.cache.info.soft-ttl", defaultValue = "PT4M")
+    Duration softTtl;
+
+    @ConfigProperty(name = "tiny.url.cache.info.hard-ttl", defaultValue = "PT5M")
+    Duration hardTtl;
+
+    // Must match quarkus.cache.redis."tiny-url-info".prefix, whose default this is
+    @ConfigProperty(name = "tiny.url.cache.info.redis-key-prefix", defaultValue = "cache:tiny-url-info")
+    String redisKeyPrefix;
+
+    private RefreshAhead refreshAhead;
+    private BatchLookup batchLookup;
+
+    public TinyUrlInfoCache() {
+    }
+
+    /**
+     * Creates an enabled cache on top of the given one, without metrics, for tests.
+     */
+    public TinyUrlInfoCache(Cache cache, Duration softTtl, Duration hardTtl) {
+        this(cache, null, softTtl, hardTtl);
+    }
+
+    /**
+     * Creates an enabled cache on top of the given one, whose batches read it with the given lookup, without
+     * metrics, for tests.
+     */
+    TinyUrlInfoCache(Cache cache, BatchLookup batchLookup, Duration softTtl, Duration hardTtl) {
+        this.cache = cache;
+        this.enabled = true;
+        this.refreshAhead = new RefreshAhead(softTtl, hardTtl);
+        this.batchLookup = batchLookup != null ? batchLookup : batchLookup();
+    }
+
+    @PostConstruct
+    void init() {
+        refreshAhead = new RefreshAhead(softTtl, hardTtl);
+        refreshAhead.registerGauges(metricRegistry, "tinyUrlInfoCache");
+        batchLookup = batchLookup();
+    }
+
+    private BatchLookup batchLookup() {
+        if (cache instanceof CaffeineCache caffeine) {
+            return codes -> Uni.createFrom().item(() -> getAllPresent(caffeine, codes));
+        }
+        return codes -> redisConfig.getCachedInfosAsync(redisKeyPrefix, codes);
+    }
+
+    /**
+     * Gets the details of a link from the cache, loading them on a miss.
+     *
+     * @param shortCode The short code
+     * @param loader    Loads the details in line; fails if the link does not exist
+     * @param reloader  Loads the details in the background, outside of the caller's session; null if the
+     *                  link no longer exists
+     * @return Uni with the details
+     */
+    public Uni<TinyUrlResponse> get(String shortCode, Supplier<Uni<TinyUrlResponse>> loader,
+                                    Supplier<Uni<TinyUrlResponse>> reloader) {
+        if (!enabled || cache == null) {
+            return loader.get();
+        }
+        return cache.<String, CachedInfo>getAsync(shortCode, code -> loader.get().map(TinyUrlInfoCache::cached))
+                .flatMap(info -> switch (refreshAhead.freshness(info.cachedAtMillis(), System.currentTimeMillis())) {
+                    case FRESH -> Uni.createFrom().item(info.response());
+                    case STALE -> {
+                        refreshAhead.serveStale(shortCode, () -> refresh(shortCode, reloader));
+                        yield Uni.createFrom().item(info.response());
+                    }
+                    case EXPIRED -> cache.invalidate(shortCode)
+                            .chain(() -> cache.<String, CachedInfo>getAsync(shortCode,
+                                    code -> loader.get().map(TinyUrlInfoCache::cached)))
+                            .map(CachedInfo::response);
+                });
+    }
+
+    /**
+     * Gets the details of several links from the cache with a single read, loading those that are missing or
+     * expired with a single call. Stale ones are served and reloaded in the background, as by {@link #get}.
+     * If the cache cannot be read, all of them are loaded.
+     *
+     * @param shortCodes  The short codes, without duplicates
+     * @param batchLoader Loads the details of the given codes in line, leaving out the links that do not exist
+     * @param reloader    Loads the details of a link in the background, outside of the caller's session; null if
+     *                    the link no longer exists
+     * @return Uni with a map of short code to details, without the links that do not exist
+     */
+    public Uni<Map<String, TinyUrlResponse>> getAll(Collection<String> shortCodes,
+                                                    Function<List<String>, Uni<Map<String, TinyUrlResponse>>> batchLoader,
+                                                    Function<String, Uni<TinyUrlResponse>> reloader) {
+        if (!enabled || cache == null) {
+            return batchLoader.apply(new ArrayList<>(shortCodes));
+        }
+        List<String> codes = new ArrayList<>(shortCodes);
+        return batchLookup.getAll(codes).onFailure().recoverWithItem(failure -> {
+            LOG.warnf("Could not read %d cached link details, loading them: %s", codes.size(), failure.getMessage());
+            return Map.of();
+        }).flatMap(infos -> {
+            long now = System.currentTimeMillis();
+            Map<String, TinyUrlResponse> responses = new HashMap<>(codes.size() * 2);
+            List<String> misses = new ArrayList<>();
+            for (String code : codes) {
+                CachedInfo info = infos.get(code);
+                switch (info == null ? RefreshAhead.Freshness.EXPIRED : refreshAhead.freshness(info.cachedAtMillis(), now)) {
+                    case FRESH -> responses.put(code, info.response());
+                    case STALE -> {
+                        refreshAhead.serveStale(code, () -> refresh(code, () -> reloader.apply(code)));
+                        responses.put(code, info.response());
+                    }
+                    case EXPIRED -> misses.add(code);
+                }
+            }
+            if (misses.isEmpty()) {
+                return Uni.createFrom().item(responses);
+            }
+            long[] generations = new long[misses.size()];
+            for (int i = 0; i < generations.length; i++) {
+                generations[i] = refreshAhead.generation(misses.get(i));
+            }
+            return batchLoader.apply(misses).call(loaded -> {
+                List<Uni<Void>> puts = new ArrayList<>(loaded.size());
+                for (int i = 0; i < generations.length; i++) {
+                    TinyUrlResponse response = loaded.get(misses.get(i));
+                    if (response != null) {
+                        puts.add(replace(misses.get(i), response, generations[i]));
+                    }
+                }
+                return puts.isEmpty() ? Uni.createFrom().voidItem() : Uni.join().all(puts).andFailFast();
+            }).map(loaded -> {
+                responses.putAll(loaded);
+                return responses;
+            });
+        });
+    }
+
+    /**
+     * Drops the cached details of a link.
+     *
+     * @param shortCode The short code
+     * @return Uni completing once the entry is dropped
+     */
+    public Uni<Void> invalidate(String shortCode) {
+        if (!enabled || cache == null) {
+            return Uni.createFrom().voidItem();
+        }
+        refreshAhead.invalidated(shortCode);
+        return cache.invalidate(shortCode);
+    }
+
+    private Uni<Void> refresh(String shortCode, Supplier<Uni<TinyUrlResponse>> reloader) {
+        long generation = refreshAhead.generation(shortCode);
+        return reloader.get().flatMap(response -> replace(shortCode, response, generation));
+    }
+
+    /**
+     * Caches reloaded details, unless the link was invalidated since the given generation. An invalidation
+     * racing with the put is caught by checking again after it.
+     */
+    private Uni<Void> replace(String shortCode, TinyUrlResponse response, long generation) {
+        if (response == null) {
+            return cache.invalidate(shortCode);
+        }
+        if (refreshAhead.generation(shortCode) != generation) {
+            return Uni.createFrom().voidItem();
+        }
+        CachedInfo info = cached(response);
+        return cache.invalidate(shortCode)
+                .chain(() -> cache.<String, CachedInfo>getAsync(shortCode, code -> Uni.createFrom().item(info)))
+                .chain(() -> refreshAhead.generation(shortCode) == generation
+                        ? Uni.createFrom().voidItem()
+                        : cache.invalidate(shortCode));
+    }
+
+    private static CachedInfo cached(TinyUrlResponse response) {
+        return new CachedInfo(response, System.currentTimeMillis());
+    }
+
+    /**
+     * Reads the loaded entries of a Caffeine cache; entries still loading count as misses.
+     */
+    private static Map<String, CachedInfo> getAllPresent(CaffeineCache caffeine, List<String> codes) {
+        Map<String, CachedInfo> found = new HashMap<>(codes.size() * 2);
+        for (String code : codes) {
+            CompletableFuture<CachedInfo> future = caffeine.getIfPresent(code);
+            if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+                found.put(code, future.join());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reads several entries of the cache at once.
+     */
+    @FunctionalInterface
+    interface BatchLookup {
+        /**
+         * @param shortCodes The short codes
+         * @return Uni with a map of short code to cached details, without the codes that are not cached
+         */
+        Uni<Map<String, CachedInfo>> getAll(List<String> shortCodes);
+    }
+}
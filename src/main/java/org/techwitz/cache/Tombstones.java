@@ -0,0 +1,370 @@
+package org.techwitz.cache;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.util.Base62;
+import org.techwitz.util.LongIntHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Short codes known to be dead, with the status their redirects fail with, so requests for them from old
+ * emails and QR codes are answered without touching the store.
+ * <p>
+ * A code is added when a redirect finds its link expired, deactivated or used up ({@value #GONE}), or past its
+ * attempt limit ({@value #TOO_MANY_REQUESTS}), and when it is deactivated. It is removed when the limits of
+ * its link change on this node. Elsewhere, a tombstone lasts at most {@code tiny.url.tombstones.ttl}, which
+ * bounds how long a link revived on another node keeps failing here.
+ * <p>
+ * Like the {@link LocalRedirectCache}, tombstones are held in a {@link LongIntHashMap} keyed by the
+ * {@link Base62} key of the code, 12 to 24 bytes each; the value packs the status with the minute the
+ * tombstone was added. At most {@code max-entries} are kept, and those past their TTL are purged every
+ * {@code persist-interval} so they do not hold that room. When persisted, they are written to
+ * {@code tiny.url.tombstones.file} at the same interval when changed and on shutdown, and loaded on startup. Layout: a
+ * {@value #HEADER_SIZE}-byte header (magic, version, entry count, CRC32C of the body, written-at epoch millis)
+ * followed by {@value #RECORD_SIZE}-byte records (key, value).
+ */
+@ApplicationScoped
+public class Tombstones {
+    private static final Logger LOG = Logger.getLogger(Tombstones.class);
+
+    public static final int GONE = 410;
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 12;
+    static final int MAGIC = 0x54555442; // "TUTB"
+    static final int VERSION = 1;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.tombstones.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.tombstones.max-entries", defaultValue = "1000000")
+    int maxEntries;
+
+    @ConfigProperty(name = "tiny.url.tombstones.ttl", defaultValue = "PT1H")
+    Duration ttl;
+
+    @ConfigProperty(name = "tiny.url.tombstones.persist", defaultValue = "false")
+    boolean persist;
+
+    @ConfigProperty(name = "tiny.url.tombstones.file", defaultValue = "data/tombstones.bin")
+    String file;
+
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private LongIntHashMap entries = new LongIntHashMap(1024);
+    private long ttlMinutes;
+    private volatile boolean dirty;
+
+    public Tombstones() {
+    }
+
+    /**
+     * Creates enabled, unpersisted tombstones without metrics, for tests.
+     */
+    public Tombstones(int maxEntries, Duration ttl) {
+        this.enabled = true;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.ttlMinutes = ttl.toMinutes();
+    }
+
+    @PostConstruct
+    void init() {
+        ttlMinutes = ttl.toMinutes();
+        metricRegistry.gauge("tombstoneHits", hits::sum);
+        metricRegistry.gauge("tombstonesDropped", dropped::sum);
+        metricRegistry.gauge("tombstoneEntries", this::size);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled && persist) {
+            load();
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (enabled && persist && dirty) {
+            write();
+        }
+    }
+
+    @Scheduled(every = "${tiny.url.tombstones.persist-interval:1m}", delayed = "${tiny.url.tombstones.persist-interval:1m}")
+    void purgeAndWritePeriodically() {
+        if (!enabled) {
+            return;
+        }
+        if (persist && dirty) {
+            // Purges as it writes
+            write();
+        } else {
+            purgeExpired();
+        }
+    }
+
+    /**
+     * @param shortCode The short code
+     * @return The status redirects of the code fail with, {@value #GONE} or {@value #TOO_MANY_REQUESTS}, or 0 if
+     * it is not known to be dead
+     */
+    public int statusOf(String shortCode) {
+        if (!enabled) {
+            return 0;
+        }
+        long key = Base62.encode(shortCode);
+        if (key <= 0) {
+            return 0;
+        }
+        int value;
+        long stamp = lock.tryOptimisticRead();
+        try {
+            value = entries.get(key);
+        } catch (IndexOutOfBoundsException e) {
+            // Read halfway through a resize, retried under the read lock
+            value = LongIntHashMap.MISSING;
+            stamp = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = entries.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (value < 0 || !isLive(value, nowMinute())) {
+            return 0;
+        }
+        hits.increment();
+        return status(value);
+    }
+
+    /**
+     * Marks a short code as dead.
+     *
+     * @param shortCode The short code
+     * @param status    {@value #GONE} or {@value #TOO_MANY_REQUESTS}
+     */
+    public void add(String shortCode, int status) {
+        long key = Base62.encode(shortCode);
+        if (!enabled || key <= 0) {
+            return;
+        }
+        int value = (int) (nowMinute() << 1) | (status == TOO_MANY_REQUESTS ? 1 : 0);
+        long stamp = lock.writeLock();
+        try {
+            if (entries.size() >= maxEntries && entries.get(key) == LongIntHashMap.MISSING) {
+                dropped.increment();
+                return;
+            }
+            entries.put(key, value);
+            dirty = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forgets that a short code is dead, e.g. because its limits changed.
+     *
+     * @param shortCode The short code
+     */
+    public void remove(String shortCode) {
+        long key = Base62.encode(shortCode);
+        if (!enabled || key <= 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (entries.remove(key) != LongIntHashMap.MISSING) {
+                dirty = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drops the tombstones past their TTL. They are looked for under the read lock, so the map is only
+     * rebuilt, under the write lock, when some have expired.
+     *
+     * @return The number of tombstones dropped
+     */
+    int purgeExpired() {
+        long nowMinute = nowMinute();
+        int[] expired = new int[1];
+        long stamp = lock.readLock();
+        try {
+            entries.forEach((key, value) -> expired[0] += isLive(value, nowMinute) ? 0 : 1);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        if (expired[0] == 0) {
+            return 0;
+        }
+        stamp = lock.writeLock();
+        try {
+            int before = entries.size();
+            entries = live(nowMinute);
+            return before - entries.size();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Loads the tombstones written by {@link #write()}, skipping those past their TTL.
+     *
+     * @return The number of tombstones loaded
+     */
+    int load() {
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            int count = buffer.capacity() >= HEADER_SIZE ? buffer.getInt(8) : -1;
+            if (count < 0 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.capacity() != HEADER_SIZE + (long) count * RECORD_SIZE
+                    || crc(buffer.slice(HEADER_SIZE, count * RECORD_SIZE)) != buffer.getInt(12)) {
+                LOG.warnf("Ignoring tombstones file %s: not a version %d file or corrupt", path, VERSION);
+                return 0;
+            }
+            long nowMinute = nowMinute();
+            int loaded = 0;
+            long stamp = lock.writeLock();
+            try {
+                for (int offset = HEADER_SIZE; offset < buffer.capacity(); offset += RECORD_SIZE) {
+                    long key = buffer.getLong(offset);
+                    int value = buffer.getInt(offset + 8);
+                    if (key > 0 && value >= 0 && isLive(value, nowMinute) && entries.size() < maxEntries) {
+                        entries.put(key, value);
+                        loaded++;
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            LOG.infof("Loaded %d of %d tombstones from %s", loaded, count, path);
+            return loaded;
+        } catch (IOException e) {
+            LOG.warnf(e, "Could not load tombstones %s", path);
+            return 0;
+        }
+    }
+
+    /**
+     * Drops the tombstones past their TTL and writes the others, replacing the previous file.
+     *
+     * @return The number of tombstones written
+     */
+    synchronized int write() {
+        long nowMinute = nowMinute();
+        ByteBuffer buffer;
+        long stamp = lock.writeLock();
+        try {
+            LongIntHashMap live = live(nowMinute);
+            entries = live;
+            buffer = ByteBuffer.allocate(HEADER_SIZE + live.size() * RECORD_SIZE);
+            ByteBuffer records = buffer.slice(HEADER_SIZE, live.size() * RECORD_SIZE);
+            live.forEach((key, value) -> records.putLong(key).putInt(value));
+            dirty = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        int count = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, count);
+        buffer.putInt(12, crc(buffer.slice(HEADER_SIZE, count * RECORD_SIZE)));
+        buffer.putLong(16, System.currentTimeMillis());
+
+        Path path = Paths.get(file);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            LOG.debugf("Wrote %d tombstones to %s", count, path);
+            return count;
+        } catch (IOException e) {
+            dirty = true;
+            LOG.warnf(e, "Could not write tombstones %s", path);
+            return 0;
+        }
+    }
+
+    /**
+     * @return A copy of the entries without those past their TTL; called under the write lock
+     */
+    private LongIntHashMap live(long nowMinute) {
+        LongIntHashMap live = new LongIntHashMap(entries.size());
+        entries.forEach((key, value) -> {
+            if (isLive(value, nowMinute)) {
+                live.put(key, value);
+            }
+        });
+        return live;
+    }
+
+    private boolean isLive(int value, long nowMinute) {
+        return nowMinute - (value >>> 1) <= ttlMinutes;
+    }
+
+    private static int status(int value) {
+        return (value & 1) == 0 ? GONE : TOO_MANY_REQUESTS;
+    }
+
+    private static long nowMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,409 @@
+package org.techwitz.clicklog;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.repository.ClickEventRepository;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Durable, append-only log of raw clicks, shipped to {@code tiny_url_click_events}.
+ * <p>
+ * Redirects append to the active {@link ClickLogSegment}, a fixed-size memory-mapped file, without
+ * locks or system calls; only the append that finds the segment full takes a short lock to swap in the
+ * next one. Segment files are only ever created by the shipper, ahead of time: if no segment is ready
+ * when the active one fills up, clicks are dropped until the shipper has created one, so the redirect
+ * path never waits for the file system. A background shipper seals the active segment once it
+ * is {@code tiny.url.click-log.roll-interval} old, waits for appends still writing to it, bulk-inserts
+ * its records and deletes the file. Segments found on startup, left over from a crash or a stop before
+ * they were shipped, are shipped first; records carry their segment id and offset, so shipping a segment
+ * twice stores each click once. When {@code tiny.url.click-log.max-segments} segments are waiting, e.g.
+ * while the database is down, new clicks are dropped and counted rather than filling the disk.
+ */
+@ApplicationScoped
+public class ClickLog {
+    private static final Logger LOG = Logger.getLogger(ClickLog.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("clicks-(\\d+)\\.log");
+    private static final long QUIESCE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final byte[] EMPTY = new byte[0];
+
+    @Inject
+    ClickEventRepository clickEventRepository;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.click-log.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.click-log.directory", defaultValue = "data/click-log")
+    String directory;
+
+    @ConfigProperty(name = "tiny.url.click-log.segment-size-mb", defaultValue = "64")
+    int segmentSizeMb;
+
+    @ConfigProperty(name = "tiny.url.click-log.max-segments", defaultValue = "32")
+    int maxSegments;
+
+    @ConfigProperty(name = "tiny.url.click-log.roll-interval", defaultValue = "PT10S")
+    Duration rollInterval;
+
+    @ConfigProperty(name = "tiny.url.click-log.ship-interval", defaultValue = "PT1S")
+    Duration shipInterval;
+
+    @ConfigProperty(name = "tiny.url.click-log.ship-batch-size", defaultValue = "5000")
+    int shipBatchSize;
+
+    @ConfigProperty(name = "tiny.url.click-log.ship-timeout", defaultValue = "PT30S")
+    Duration shipTimeout;
+
+    @ConfigProperty(name = "tiny.url.click-log.max-field-bytes", defaultValue = "512")
+    int maxFieldBytes;
+
+    private final OperationTimer appendTimer = LoggingUtils.timer("clicklog.append");
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder shipped = new LongAdder();
+    private final LongAdder shipFailures = new LongAdder();
+    private final Queue<ClickLogSegment> unshipped = new ConcurrentLinkedQueue<>();
+    private final Object rollLock = new Object();
+    private final SecureRandom random = new SecureRandom();
+    private Path root;
+    private long nextSequence;
+    private volatile ClickLogSegment active;
+    private ClickLogSegment spare;
+    private volatile boolean running;
+    private Thread shipper;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(directory);
+        try {
+            Files.createDirectories(root);
+            recover();
+            active = newSegment();
+        } catch (IOException e) {
+            LOG.errorf(e, "Click log disabled, cannot use directory %s", root.toAbsolutePath());
+            return;
+        }
+
+        metricRegistry.gauge("clickLogAppended", this::getAppendedCount);
+        metricRegistry.gauge("clickLogDropped", this::getDroppedCount);
+        metricRegistry.gauge("clickLogShipped", shipped::sum);
+        metricRegistry.gauge("clickLogShipFailures", shipFailures::sum);
+        metricRegistry.gauge("clickLogUnshippedSegments", unshipped::size);
+        metricRegistry.gauge("clickLogShipperLagMillis", this::getShipperLagMillis);
+
+        running = true;
+        shipper = new Thread(this::runShipper, "click-log-shipper");
+        shipper.setDaemon(true);
+        shipper.start();
+        LOG.infof("Click log writing %d MB segments to %s, %d segments to recover",
+                segmentSizeMb, root.toAbsolutePath(), unshipped.size());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (shipper == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(shipper);
+        try {
+            shipper.join(shipTimeout.toMillis() + TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ClickLogSegment current;
+        ClickLogSegment unused;
+        synchronized (rollLock) {
+            current = active;
+            active = null;
+            unused = spare;
+            spare = null;
+        }
+        // Whatever was not shipped stays on disk and is shipped after the restart
+        if (current != null) {
+            current.seal();
+            awaitQuiescent(current);
+            current.force();
+        }
+        if (unused != null) {
+            deleteQuietly(unused);
+        }
+    }
+
+    /**
+     * Appends a click. Never blocks on I/O; drops the click if the log is disabled, backed up, or has no
+     * segment ready.
+     *
+     * @param shortCode The requested short code
+     * @param status    The HTTP status the request was answered with
+     * @param referrer  The Referer header, may be null
+     * @param userAgent The User-Agent header, may be null
+     */
+    public void append(String shortCode, int status, String referrer, String userAgent) {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        byte[] code = encode(shortCode);
+        byte[] referrerBytes = encode(referrer);
+        byte[] userAgentBytes = encode(userAgent);
+        // At most one retry: a segment freshly rolled to always has room for a single record
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ClickLogSegment segment = active;
+            if (segment == null) {
+                break;
+            }
+            if (segment.append(now, status, code, referrerBytes, userAgentBytes)) {
+                appended.increment();
+                appendTimer.recordSince(start);
+                return;
+            }
+            roll(segment);
+        }
+        dropped.increment();
+    }
+
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    /**
+     * @return Clicks not logged because the log was backed up or no segment was ready
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Age of the oldest click not yet shipped, 0 if everything is shipped
+     */
+    public long getShipperLagMillis() {
+        ClickLogSegment oldest = unshipped.peek();
+        if (oldest == null) {
+            oldest = active;
+            if (oldest == null || !oldest.hasRecords()) {
+                return 0;
+            }
+        }
+        return Math.max(0, System.currentTimeMillis() - oldest.createdAtMillis());
+    }
+
+    private void roll(ClickLogSegment full) {
+        synchronized (rollLock) {
+            if (active != full) {
+                // Another thread rolled already
+                return;
+            }
+            full.seal();
+            unshipped.add(full);
+            active = null;
+            activateNext();
+        }
+        LockSupport.unpark(shipper);
+    }
+
+    /**
+     * Makes the spare segment active unless too many segments wait to be shipped or none is ready; the
+     * log then stays inactive until the shipper prepares one. Holds the roll lock, and never creates files
+     * under it.
+     */
+    private void activateNext() {
+        if (unshipped.size() >= maxSegments || spare == null) {
+            return;
+        }
+        active = spare;
+        spare = null;
+    }
+
+    private void runShipper() {
+        long shipIntervalNanos = shipInterval.toNanos();
+        prepareSegments();
+        while (running) {
+            LockSupport.parkNanos(shipIntervalNanos);
+            ClickLogSegment current = active;
+            if (current != null && current.hasRecords()
+                    && System.currentTimeMillis() - current.createdAtMillis() >= rollInterval.toMillis()) {
+                roll(current);
+            }
+            prepareSegments();
+            shipSealed();
+        }
+    }
+
+    /**
+     * Creates the spare segment off the redirect path, and activates it when the log has no active
+     * segment, after a backlog or when appends found no segment ready. Files are created outside the roll
+     * lock, so appends rolling over meanwhile never wait for them.
+     */
+    private void prepareSegments() {
+        while (running) {
+            synchronized (rollLock) {
+                if (active == null) {
+                    activateNext();
+                }
+                if (spare != null) {
+                    return;
+                }
+            }
+            ClickLogSegment created;
+            try {
+                created = newSegment();
+            } catch (IOException e) {
+                LOG.warnf("Failed to prepare click log segment, dropping clicks once the active one is full: %s",
+                        e.getMessage());
+                return;
+            }
+            boolean installed;
+            synchronized (rollLock) {
+                installed = running && spare == null;
+                if (installed) {
+                    spare = created;
+                }
+            }
+            if (!installed) {
+                deleteQuietly(created);
+                return;
+            }
+        }
+    }
+
+    private void shipSealed() {
+        ClickLogSegment segment;
+        while (running && (segment = unshipped.peek()) != null) {
+            if (!awaitQuiescent(segment)) {
+                LOG.warnf("Appends to click log segment %s did not finish, shipping it later", segment.path());
+                return;
+            }
+            if (!ship(segment)) {
+                return;
+            }
+            unshipped.poll();
+            deleteQuietly(segment);
+        }
+    }
+
+    private boolean ship(ClickLogSegment segment) {
+        List<ClickLogRecord> batch = new ArrayList<>(shipBatchSize);
+        try {
+            int records = segment.read(record -> {
+                batch.add(record);
+                if (batch.size() >= shipBatchSize) {
+                    insert(segment, batch);
+                }
+            });
+            insert(segment, batch);
+            LOG.debugf("Shipped %d clicks from %s", records, segment.path().getFileName());
+            return true;
+        } catch (RuntimeException e) {
+            shipFailures.increment();
+            LOG.warnf("Failed to ship click log segment %s, retrying: %s", segment.path().getFileName(),
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private void insert(ClickLogSegment segment, List<ClickLogRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        clickEventRepository.insertAllAsync(segment.id(), batch).await().atMost(shipTimeout);
+        shipped.add(batch.size());
+        batch.clear();
+    }
+
+    private static boolean awaitQuiescent(ClickLogSegment segment) {
+        long deadline = System.nanoTime() + QUIESCE_TIMEOUT_NANOS;
+        while (!segment.isQuiescent()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    /**
+     * Queues the segments left in the directory for shipping, oldest first.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = listing.filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                nextSequence = Math.max(nextSequence, Long.parseLong(matcher.group(1)) + 1);
+            }
+            try {
+                unshipped.add(ClickLogSegment.open(file));
+            } catch (IOException e) {
+                Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+                LOG.warnf("Skipping unreadable click log segment, moved to %s: %s", corrupt, e.getMessage());
+                Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private ClickLogSegment newSegment() throws IOException {
+        Path path = root.resolve(String.format("clicks-%019d.log", nextSequence++));
+        return ClickLogSegment.create(path, random.nextLong(), segmentSizeMb << 20);
+    }
+
+    private byte[] encode(String value) {
+        if (value == null || value.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxFieldBytes) {
+            return bytes;
+        }
+        int length = maxFieldBytes;
+        // Cut before a continuation byte would split a character
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private static void deleteQuietly(ClickLogSegment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            LOG.warnf("Failed to delete click log segment %s: %s", segment.path(), e.getMessage());
+        }
+    }
+}
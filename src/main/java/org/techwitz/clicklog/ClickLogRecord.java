@@ -0,0 +1,15 @@
+package org.techwitz.clicklog;
+
+/**
+ * A click read back from a {@link ClickLogSegment}.
+ *
+ * @param offset      Position of the record in its segment; with the segment id it identifies the record
+ * @param epochMillis When the click happened
+ * @param status      The HTTP status the redirect was answered with
+ * @param shortCode   The requested short code
+ * @param referrer    The Referer header, truncated; null if absent
+ * @param userAgent   The User-Agent header, truncated; null if absent
+ */
+public record ClickLogRecord(int offset, long epochMillis, int status, String shortCode, String referrer,
+                             String userAgent) {
+}
@@ -0,0 +1,228 @@
+package org.techwitz.clicklog;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One fixed-size, memory-mapped file of the click log.
+ * <p>
+ * Layout: a {@value #HEADER_SIZE}-byte header (magic, version, segment id, creation time) followed by
+ * records, each a 4-byte length and a payload of epoch millis, status and three length-prefixed UTF-8
+ * strings, padded to 4 bytes. Writers reserve space with a single {@code getAndAdd} on the cursor, fill
+ * in the payload and publish the record by writing its length last with release semantics; a length of
+ * 0 marks the end of the committed records, so a segment cut short by a crash is read up to the first
+ * record that was never completed. The file is sparse until written and the page cache writes it back,
+ * so appends never wait for the disk.
+ */
+final class ClickLogSegment {
+
+    static final int HEADER_SIZE = 32;
+    static final int MAGIC = 0x54434c47; // "TCLG"
+    static final short VERSION = 1;
+
+    private static final int RECORD_FIXED_SIZE = 4 + 8 + 2 + 3 * 2;
+    private static final VarHandle LENGTH =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path path;
+    private final long id;
+    private final long createdAtMillis;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger cursor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean sealed;
+
+    private ClickLogSegment(Path path, long id, long createdAtMillis, MappedByteBuffer buffer, boolean sealed) {
+        this.path = path;
+        this.id = id;
+        this.createdAtMillis = createdAtMillis;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+        this.cursor = new AtomicInteger(sealed ? capacity : HEADER_SIZE);
+        this.sealed = sealed;
+    }
+
+    /**
+     * Creates and maps a new, empty segment file.
+     *
+     * @param path The file to create; must not exist
+     * @param id   The segment id, unique across restarts
+     * @param size The file size in bytes
+     * @return The segment, open for appends
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static ClickLogSegment create(Path path, long id, int size) throws IOException {
+        long now = System.currentTimeMillis();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putLong(8, id);
+        buffer.putLong(16, now);
+        return new ClickLogSegment(path, id, now, buffer, false);
+    }
+
+    /**
+     * Maps an existing segment file, e.g. one left over from before a restart. The segment is sealed.
+     *
+     * @param path The segment file
+     * @return The segment
+     * @throws IOException if the file cannot be mapped or is not a click log segment
+     */
+    static ClickLogSegment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid click log segment size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+            throw new IOException("Not a click log segment: " + path);
+        }
+        return new ClickLogSegment(path, buffer.getLong(8), buffer.getLong(16), buffer, true);
+    }
+
+    /**
+     * Appends a record. Lock-free; safe to call from any number of threads.
+     *
+     * @return false if the segment is sealed or has no room left, the caller should roll to a new segment
+     */
+    boolean append(long epochMillis, int status, byte[] shortCode, byte[] referrer, byte[] userAgent) {
+        int size = align(RECORD_FIXED_SIZE + shortCode.length + referrer.length + userAgent.length);
+        inFlight.incrementAndGet();
+        try {
+            // Checked after announcing the write, so a sealer waiting for inFlight == 0 never misses it
+            if (sealed || cursor.get() > capacity - size) {
+                return false;
+            }
+            int offset = cursor.getAndAdd(size);
+            if (offset > capacity - size) {
+                return false;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset + 4);
+            record.putLong(epochMillis);
+            record.putShort((short) status);
+            putString(record, shortCode);
+            putString(record, referrer);
+            putString(record, userAgent);
+            LENGTH.setRelease(buffer, offset, size);
+            return true;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops further appends. Records being written may still complete until {@link #isQuiescent()}.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @return Whether no append is in progress; once sealed and quiescent the segment no longer changes
+     */
+    boolean isQuiescent() {
+        return inFlight.get() == 0;
+    }
+
+    /**
+     * @return Whether at least one record has been reserved
+     */
+    boolean hasRecords() {
+        return cursor.get() > HEADER_SIZE;
+    }
+
+    /**
+     * Reads the committed records in append order.
+     *
+     * @param consumer Receives each record
+     * @return The number of records read
+     */
+    int read(Consumer<ClickLogRecord> consumer) {
+        ByteBuffer view = buffer.duplicate();
+        int offset = HEADER_SIZE;
+        int count = 0;
+        while (offset <= capacity - RECORD_FIXED_SIZE) {
+            int size = (int) LENGTH.getAcquire(buffer, offset);
+            if (size < RECORD_FIXED_SIZE || size > capacity - offset) {
+                // 0 is the end of the log; anything else is a torn write, nothing after it is trusted
+                break;
+            }
+            view.position(offset + 4);
+            long epochMillis = view.getLong();
+            int status = view.getShort();
+            String shortCode = getString(view);
+            String referrer = getString(view);
+            String userAgent = getString(view);
+            consumer.accept(new ClickLogRecord(offset, epochMillis, status, shortCode, referrer, userAgent));
+            offset += size;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the mapped pages back to the file.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long createdAtMillis() {
+        return createdAtMillis;
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        record.putShort((short) value.length);
+        record.put(value);
+    }
+
+    private static String getString(ByteBuffer view) {
+        int length = Short.toUnsignedInt(view.getShort());
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+}
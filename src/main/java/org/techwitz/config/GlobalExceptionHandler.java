@@ -1,50 +1,97 @@
 package org.techwitz.config;
 
 import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.techwitz.exception.MaxAttemptsExceededException;
+import org.techwitz.exception.StoreUnavailableException;
 import org.techwitz.exception.TinyUrlException;
 import org.techwitz.exception.UrlExpiredException;
 import org.techwitz.exception.UrlNotFoundException;
 import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+import org.techwitz.util.JsonBytes;
 
-import java.util.Map;
-
+/**
+ * Maps failures to {@code {"error": message}} JSON bodies. Bodies are encoded here rather than by Jackson: those
+ * of the constant 410 and 429 messages, which dead links answer with over and over, are encoded once.
+ */
 public class GlobalExceptionHandler {
-    // Exception handlers - these need to be updated for reactive handling
+    private static final byte[] ERROR_PREFIX = JsonBytes.ascii("{\"error\":");
+    private static final byte[] GONE_BODY = errorBody(UrlExpiredException.MESSAGE);
+    private static final byte[] TOO_MANY_REQUESTS_BODY = errorBody(MaxAttemptsExceededException.MESSAGE);
+
+    /**
+     * Returns the HTTP status the handlers below answer a failure with, for code that needs it before
+     * the response is built (e.g. click analytics).
+     *
+     * @param failure The failure
+     * @return The HTTP status code
+     */
+    public static int statusOf(Throwable failure) {
+        if (failure instanceof UrlNotFoundException) {
+            return Response.Status.NOT_FOUND.getStatusCode();
+        }
+        if (failure instanceof UrlExpiredException) {
+            return Response.Status.GONE.getStatusCode();
+        }
+        if (failure instanceof MaxAttemptsExceededException) {
+            return Response.Status.TOO_MANY_REQUESTS.getStatusCode();
+        }
+        if (failure instanceof StoreUnavailableException) {
+            return Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+        }
+        if (failure instanceof TinyUrlException) {
+            return Response.Status.BAD_REQUEST.getStatusCode();
+        }
+        return Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+    }
 
     @ServerExceptionMapper
     public Uni<Response> handleUrlNotFoundException(UrlNotFoundException ex) {
-        return Uni.createFrom().item(
-                Response.status(Response.Status.NOT_FOUND)
-                        .entity(Map.of("error", ex.getMessage()))
-                        .build()
-        );
+        return error(Response.Status.NOT_FOUND, errorBody(ex.getMessage()));
     }
 
     @ServerExceptionMapper
     public Uni<Response> handleUrlExpiredException(UrlExpiredException ex) {
-        return Uni.createFrom().item(
-                Response.status(Response.Status.GONE)
-                        .entity(Map.of("error", ex.getMessage()))
-                        .build()
-        );
+        return error(Response.Status.GONE, UrlExpiredException.MESSAGE.equals(ex.getMessage())
+                ? GONE_BODY : errorBody(ex.getMessage()));
     }
 
     @ServerExceptionMapper
     public Uni<Response> handleMaxAttemptsExceededException(MaxAttemptsExceededException ex) {
-        return Uni.createFrom().item(
-                Response.status(Response.Status.TOO_MANY_REQUESTS)
-                        .entity(Map.of("error", ex.getMessage()))
-                        .build()
-        );
+        return error(Response.Status.TOO_MANY_REQUESTS, MaxAttemptsExceededException.MESSAGE.equals(ex.getMessage())
+                ? TOO_MANY_REQUESTS_BODY : errorBody(ex.getMessage()));
+    }
+
+    @ServerExceptionMapper
+    public Uni<Response> handleStoreUnavailableException(StoreUnavailableException ex) {
+        return error(Response.Status.SERVICE_UNAVAILABLE, errorBody(ex.getMessage()));
     }
 
     @ServerExceptionMapper
     public Uni<Response> handleTinyUrlException(TinyUrlException ex) {
+        return error(Response.Status.BAD_REQUEST, errorBody(ex.getMessage()));
+    }
+
+    /**
+     * Encodes {@code {"error": message}} into an exactly sized array.
+     *
+     * @param message The message, may be null
+     * @return The UTF-8 encoded JSON
+     */
+    public static byte[] errorBody(String message) {
+        byte[] body = new byte[ERROR_PREFIX.length + JsonBytes.stringSize(message) + 1];
+        int position = JsonBytes.write(body, 0, ERROR_PREFIX);
+        position = JsonBytes.writeString(body, position, message);
+        body[position] = '}';
+        return body;
+    }
+
+    private static Uni<Response> error(Response.Status status, byte[] body) {
         return Uni.createFrom().item(
-                Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("error", ex.getMessage()))
+                Response.status(status)
+                        .type(MediaType.APPLICATION_JSON_TYPE)
+                        .entity(body)
                         .build()
         );
     }
@@ -1,14 +1,22 @@
 package org.techwitz.config;
 
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.cache.CacheManager;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
 import io.quarkus.redis.datasource.value.ValueCommands;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.annotation.PostConstruct;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import io.quarkus.redis.datasource.value.SetArgs;
 import org.jboss.logging.Logger;
+import org.techwitz.cache.CachedInfo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class RedisConfig {
@@ -17,6 +25,9 @@ public class RedisConfig {
     @Inject
     RedisDataSource redisDataSource;
 
+    @Inject
+    ReactiveRedisDataSource reactiveRedisDataSource;
+
     @Inject
     CacheManager cacheManager;
 
@@ -25,9 +36,12 @@ public class RedisConfig {
 
     private ValueCommands<String, Object> objectValueCommands;
 
+    private ReactiveValueCommands<String, CachedInfo> cachedInfoCommands;
+
     @PostConstruct
     void init() {
         this.objectValueCommands = redisDataSource.value(Object.class);
+        this.cachedInfoCommands = reactiveRedisDataSource.value(CachedInfo.class);
         LOG.info("Redis configuration initialized successfully");
     }
 
@@ -74,4 +88,31 @@ public class RedisConfig {
     public boolean invalidate(String key) {
         return objectValueCommands.getdel(key) != null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves several entries of a Redis-backed cache of link details with a single MGET.
+     *
+     * @param prefix The key prefix of the cache; each key is the prefix, a colon and the short code
+     * @param shortCodes The short codes to look up
+     * @return Uni with a map of short code to entry, containing only the codes that were found
+     */
+    public Uni<Map<String, CachedInfo>> getCachedInfosAsync(String prefix, List<String> shortCodes) {
+        if (shortCodes.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+        String[] keys = new String[shortCodes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = prefix + ':' + shortCodes.get(i);
+        }
+        return cachedInfoCommands.mget(keys).map(values -> {
+            Map<String, CachedInfo> found = new HashMap<>(values.size() * 2);
+            for (int i = 0; i < keys.length; i++) {
+                CachedInfo info = values.get(keys[i]);
+                if (info != null) {
+                    found.put(shortCodes.get(i), info);
+                }
+            }
+            return found;
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package org.techwitz.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveResourceInfo;
+import org.jboss.resteasy.reactive.server.spi.ServerMessageBodyWriter;
+import org.jboss.resteasy.reactive.server.spi.ServerRequestContext;
+import org.techwitz.dto.TinyUrlResponse;
+import org.techwitz.dto.TinyUrlResponseJson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes {@link TinyUrlResponse} bodies with {@link TinyUrlResponseJson} instead of Jackson. The encoded array
+ * is handed to Vert.x as is, which wraps it without copying.
+ * <p>
+ * With {@code tiny.url.json.pre-encoded.enabled=false} the writer declines and Jackson writes them as before.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class TinyUrlResponseWriter implements ServerMessageBodyWriter<TinyUrlResponse> {
+
+    @ConfigProperty(name = "tiny.url.base.url")
+    String baseUrl;
+
+    @ConfigProperty(name = "tiny.url.json.pre-encoded.enabled", defaultValue = "true")
+    boolean enabled;
+
+    private TinyUrlResponseJson json;
+
+    @PostConstruct
+    void init() {
+        json = new TinyUrlResponseJson(baseUrl);
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, ResteasyReactiveResourceInfo target,
+                               MediaType mediaType) {
+        return enabled && TinyUrlResponse.class.equals(type);
+    }
+
+    @Override
+    public void writeResponse(TinyUrlResponse response, Type genericType, ServerRequestContext context) {
+        context.serverResponse().end(json.encode(response));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return enabled && TinyUrlResponse.class.equals(type);
+    }
+
+    @Override
+    public void writeTo(TinyUrlResponse response, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        entityStream.write(json.encode(response));
+    }
+}
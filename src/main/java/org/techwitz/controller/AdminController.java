@@ -0,0 +1,168 @@
+package org.techwitz.controller;
+
+import io.quarkus.runtime.configuration.DurationConverter;
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.techwitz.analytics.HotLinkTracker;
+import org.techwitz.dto.EventLoopBlockingReport;
+import org.techwitz.dto.HotLinksResponse;
+import org.techwitz.exception.TinyUrlException;
+import org.techwitz.jfr.ContinuousRecording;
+import org.techwitz.metrics.EventLoopBlockingWatchdog;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Map;
+
+@Path("/api/admin")
+@Produces(MediaType.APPLICATION_JSON)
+@Tag(name = "Admin API", description = "Operational diagnostics for the Tiny URL service")
+public class AdminController {
+
+    @Inject
+    EventLoopBlockingWatchdog blockingWatchdog;
+
+    @Inject
+    ContinuousRecording continuousRecording;
+
+    @Inject
+    HotLinkTracker hotLinkTracker;
+
+    /**
+     * Returns the stacks most often seen on blocked event-loop threads.
+     *
+     * @param limit Maximum number of sites to return
+     * @return The blocking report
+     */
+    @GET
+    @Path("/event-loop/blocking")
+    @Operation(
+            summary = "Get event-loop blocking sites",
+            description = "Returns the top stacks captured while an event-loop task ran longer than the blocking threshold"
+    )
+    @APIResponse(
+            responseCode = "200",
+            description = "Blocking report",
+            content = @Content(schema = @Schema(implementation = EventLoopBlockingReport.class))
+    )
+    public EventLoopBlockingReport getEventLoopBlocking(
+            @Parameter(description = "Maximum number of sites to return")
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+
+        return blockingWatchdog.report(limit);
+    }
+
+    /**
+     * Clears the collected event-loop blocking sites.
+     *
+     * @return Response with no content
+     */
+    @DELETE
+    @Path("/event-loop/blocking")
+    @Operation(
+            summary = "Reset event-loop blocking sites",
+            description = "Clears the collected blocking sites; the counters on /metrics are not reset"
+    )
+    @APIResponse(responseCode = "204", description = "Blocking sites cleared")
+    public Response resetEventLoopBlocking() {
+        blockingWatchdog.reset();
+        return Response.noContent().build();
+    }
+
+    /**
+     * Dumps the last minutes of the continuous JFR recording.
+     *
+     * @param minutes How many minutes to dump
+     * @return Response with the recording file
+     */
+    @POST
+    @Path("/jfr/dump")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Operation(
+            summary = "Dump the continuous JFR recording",
+            description = "Writes the last minutes of the continuous recording (tiny.url.jfr.continuous.enabled) " +
+                    "to the dump directory and returns the file"
+    )
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The JFR recording"),
+            @APIResponse(
+                    responseCode = "400",
+                    description = "The continuous recording is not running",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Map.class))
+            )
+    })
+    public Response dumpJfrRecording(
+            @Parameter(description = "How many minutes to dump")
+            @QueryParam("minutes") @DefaultValue("5") @Min(1) @Max(1440) int minutes) {
+
+        File dump = continuousRecording.dump(Duration.ofMinutes(minutes)).toFile();
+        return Response.ok(dump)
+                .header("Content-Disposition", "attachment; filename=\"" + dump.getName() + "\"")
+                .build();
+    }
+
+    /**
+     * Returns the most clicked short codes over a recent window.
+     *
+     * @param window How far back to look, e.g. 5m or PT1H
+     * @param n      Maximum number of codes to return
+     * @return The hot links
+     */
+    @GET
+    @Path("/hot-links")
+    @Operation(
+            summary = "Get hot links",
+            description = "Returns the most clicked short codes in the recent window, estimated with a " +
+                    "Count-Min Sketch; counts can be overestimated by at most maxOvercount"
+    )
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "Hot links",
+                    content = @Content(schema = @Schema(implementation = HotLinksResponse.class))
+            ),
+            @APIResponse(
+                    responseCode = "400",
+                    description = "Invalid window or count",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            )
+    })
+    public HotLinksResponse getHotLinks(
+            @Parameter(description = "Window to rank over, e.g. 5m, 1h or PT30M")
+            @QueryParam("window") @DefaultValue("5m") String window,
+            @Parameter(description = "Maximum number of codes to return")
+            @QueryParam("n") @DefaultValue("100") @Min(1) int n) {
+
+        Duration duration;
+        try {
+            duration = DurationConverter.parseDuration(window);
+        } catch (IllegalArgumentException e) {
+            throw new TinyUrlException("Invalid window: " + window);
+        }
+        if (duration == null || duration.isNegative() || duration.isZero()
+                || duration.compareTo(hotLinkTracker.maxWindow()) > 0) {
+            throw new TinyUrlException("Window must be positive and at most " + hotLinkTracker.maxWindow());
+        }
+        if (n > hotLinkTracker.capacity()) {
+            throw new TinyUrlException("At most " + hotLinkTracker.capacity() + " hot links can be requested");
+        }
+        return hotLinkTracker.hottest(duration, n);
+    }
+}
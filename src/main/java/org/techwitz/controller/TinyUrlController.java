@@ -1,19 +1,36 @@
 package org.techwitz.controller;
 
-import io.quarkus.hibernate.reactive.panache.common.WithSession;
-import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import org.techwitz.analytics.ClickAggregator;
+import org.techwitz.cache.RedirectEntry;
+import org.techwitz.clicklog.ClickLog;
+import org.techwitz.config.GlobalExceptionHandler;
+import org.techwitz.domain.RedirectPolicy;
+import org.techwitz.dto.ClickStatsResponse;
+import org.techwitz.dto.TinyUrlBatchInfoRequest;
 import org.techwitz.dto.TinyUrlRequest;
 import org.techwitz.dto.TinyUrlResponse;
+import org.techwitz.exception.MaxAttemptsExceededException;
+import org.techwitz.exception.UrlExpiredException;
+import org.techwitz.service.ClickStatsService;
 import org.techwitz.service.TinyUrlService;
+import org.techwitz.storage.StoreSession;
+import org.techwitz.storage.StoreTransaction;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.net.SocketAddress;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.metrics.annotation.Counted;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -24,8 +41,10 @@ import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.techwitz.util.Hashing;
 import org.techwitz.util.StringUtils;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -35,9 +54,23 @@ import java.util.Map;
 @Tag(name = "Tiny URL API", description = "Asynchronous operations for managing tiny URLs")
 public class TinyUrlController {
 
+    private static final String NO_STORE = "no-store";
+
     @Inject
     TinyUrlService tinyUrlService;
 
+    @Inject
+    ClickStatsService clickStatsService;
+
+    @Inject
+    ClickAggregator clickAggregator;
+
+    @Inject
+    ClickLog clickLog;
+
+    @ConfigProperty(name = "tiny.url.redirect.cache.max-age", defaultValue = "PT24H")
+    Duration redirectMaxAge;
+
     /**
      * Creates a new tiny URL asynchronously.
      *
@@ -46,7 +79,7 @@ public class TinyUrlController {
      */
     @POST
     @Path("/api/urls")
-    @WithTransaction
+    @StoreTransaction
     @Operation(
             summary = "Create a new tiny URL",
             description = "Creates a shortened URL with optional expiration time, usage limits, and attempt limits asynchronously"
@@ -91,14 +124,19 @@ public class TinyUrlController {
      * @return Uni with Response redirecting to the original URL
      */
     @GET
-    @WithSession
+    @StoreSession
     @Path("/t/{shortCode}")
     @Operation(
             summary = "Redirect to the original URL",
             description = "Resolves a short code and redirects to the original URL while tracking usage and attempt statistics asynchronously"
     )
     @APIResponses({
-            @APIResponse(responseCode = "302", description = "Redirect to original URL"),
+            @APIResponse(responseCode = "302", description = "Redirect to original URL; cacheable until the URL expires if it "
+                    + "was created with a permanent redirect policy, never if it has usage or attempt limits"),
+            @APIResponse(responseCode = "301", description = "Permanent, cacheable redirect of a URL created with the "
+                    + "MOVED_PERMANENTLY policy that never expires and has no limits"),
+            @APIResponse(responseCode = "308", description = "Permanent, cacheable redirect of a URL created with the "
+                    + "PERMANENT_REDIRECT policy that never expires and has no limits"),
             @APIResponse(responseCode = "404", description = "URL not found"),
             @APIResponse(responseCode = "410", description = "URL expired or usage limit exceeded"),
             @APIResponse(responseCode = "429", description = "Maximum number of attempts exceeded")
@@ -111,23 +149,79 @@ public class TinyUrlController {
                     required = true,
                     example = "Ab3C7z"
             )
-            @PathParam("shortCode") @NotEmpty String shortCode) {
+            @PathParam("shortCode") @NotEmpty String shortCode,
+            @Context HttpServerRequest request) {
 
-        return tinyUrlService.resolveUrl(shortCode)
-                .map(originalUrl -> Response.status(Response.Status.FOUND)
-                        .header("Location", originalUrl)
-                        .build()
-                );
+        // Identifies unique visitors without keeping their address
+        SocketAddress remoteAddress = request.remoteAddress();
+        String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
+        long visitorHash = Hashing.hash64(remoteAddress != null ? remoteAddress.host() : null, userAgent);
+        return tinyUrlService.resolveRedirect(shortCode)
+                .onItemOrFailure().invoke((entry, failure) -> {
+                    int status = failure == null
+                            ? redirectStatus(entry)
+                            : GlobalExceptionHandler.statusOf(failure);
+                    if (isExistingLink(failure)) {
+                        // Rollups are per link; codes that never resolved would only fill them with junk
+                        clickAggregator.record(shortCode, status, visitorHash);
+                    }
+                    clickLog.append(shortCode, status, request.getHeader("Referer"), userAgent);
+                })
+                .map(entry -> redirect(shortCode, entry));
+    }
+
+    /**
+     * Builds the redirect to a tiny URL following its {@link RedirectPolicy}. Links with limits are never
+     * cached, since only the store can enforce them. With a permanent policy, links that never expire are
+     * redirected permanently and cached for {@code tiny.url.redirect.cache.max-age}, and links that expire are
+     * redirected temporarily and cached until they expire, at most as long. Other links get a bare 302.
+     * <p>
+     * The ETag of a permanent redirect covers what the response says: the short code, the target and the
+     * status. Neither the id, unknown for entries from some caches, nor the version, bumped by every counted
+     * click and not kept by the local cache, would tell the same redirect apart reliably.
+     */
+    private Response redirect(String shortCode, RedirectEntry entry) {
+        Response.ResponseBuilder response = Response.status(redirectStatus(entry))
+                .header(HttpHeaders.LOCATION, entry.originalUrl());
+        if (entry.hasLimits()) {
+            response.header(HttpHeaders.CACHE_CONTROL, NO_STORE);
+        } else if (entry.isPermanent()) {
+            response.header(HttpHeaders.CACHE_CONTROL, "public, max-age=" + redirectMaxAge.toSeconds())
+                    .tag(new EntityTag(Long.toHexString(Hashing.hash64(shortCode, entry.originalUrl())) + '-'
+                            + entry.redirectPolicy().statusCode()));
+        } else if (entry.redirectPolicy().isPermanent()) {
+            long maxAge = Math.min(entry.expiresAtEpochSecond() - RedirectEntry.nowEpochSecond(),
+                                   redirectMaxAge.toSeconds());
+            response.header(HttpHeaders.CACHE_CONTROL, maxAge > 0 ? "public, max-age=" + maxAge : NO_STORE);
+        }
+        return response.build();
+    }
+
+    /**
+     * Whether a redirect was answered for a link that exists: redirected, or refused because it expired,
+     * is used up or had too many attempts.
+     */
+    private static boolean isExistingLink(Throwable failure) {
+        return failure == null || failure instanceof UrlExpiredException || failure instanceof MaxAttemptsExceededException;
+    }
+
+    private static int redirectStatus(RedirectEntry entry) {
+        return entry.isPermanent() ? entry.redirectPolicy().statusCode() : Response.Status.FOUND.getStatusCode();
     }
 
     /**
      * Retrieves information about a tiny URL asynchronously.
+     * <p>
+     * The response carries a weak ETag derived from the version of the tiny URL; a request whose
+     * {@code If-None-Match} matches it gets a 304 without a body. Like the body, the version comes from the
+     * {@code tiny-url-info} cache when the link is cached there.
      *
      * @param shortCode The short code to retrieve information for
+     * @param request   The request, for its preconditions
      * @return Uni with Response containing URL details
      */
     @GET
-    @WithSession
+    @StoreSession
     @Path("/api/urls/info/{shortCode}")
     @Operation(
             summary = "Get information about a tiny URL",
@@ -139,6 +233,7 @@ public class TinyUrlController {
                     description = "URL information retrieved successfully",
                     content = @Content(schema = @Schema(implementation = TinyUrlResponse.class))
             ),
+            @APIResponse(responseCode = "304", description = "URL information unchanged since the ETag in If-None-Match"),
             @APIResponse(
                     responseCode = "404",
                     description = "URL not found",
@@ -147,10 +242,81 @@ public class TinyUrlController {
     })
     public Uni<Response> getTinyUrlInfo(
             @Parameter(description = "Short code of the URL", required = true)
-            @PathParam("shortCode") @NotEmpty String shortCode) {
+            @PathParam("shortCode") @NotEmpty String shortCode,
+            @Context Request request) {
 
         return tinyUrlService.getTinyUrlInfo(shortCode)
-                .map(response -> Response.ok(response).build());
+                .map(response -> conditionally(request, response, infoTag(response)));
+    }
+
+    /**
+     * Retrieves information about several tiny URLs in one call asynchronously.
+     * <p>
+     * The versions behind the ETag come from the {@code tiny-url-info} cache, like those of
+     * {@link #getTinyUrlInfo}, so a link is as fresh in a batch as on its own.
+     *
+     * @param request       The request containing the short codes to look up
+     * @param preconditions The request, for its preconditions
+     * @return Uni with Response containing a map of short code to URL details, or 304 if they are unchanged
+     * since the weak ETag in {@code If-None-Match}, which is derived from the versions of the tiny URLs
+     */
+    @POST
+    @StoreSession
+    @Path("/api/urls/info:batch")
+    @Operation(
+            summary = "Get information about several tiny URLs",
+            description = "Retrieves details about many tiny URLs at once without incrementing usage counters. " +
+                    "Codes that do not exist are omitted from the result."
+    )
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "URL information retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            ),
+            @APIResponse(responseCode = "304", description = "URL information unchanged since the ETag in If-None-Match"),
+            @APIResponse(
+                    responseCode = "400",
+                    description = "No short codes or too many short codes requested",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            )
+    })
+    public Uni<Response> getTinyUrlInfoBatch(
+            @RequestBody(
+                    description = "Short codes to look up",
+                    required = true,
+                    content = @Content(schema = @Schema(implementation = TinyUrlBatchInfoRequest.class))
+            )
+            @Valid @NotNull TinyUrlBatchInfoRequest request,
+            @Context Request preconditions) {
+
+        return tinyUrlService.getTinyUrlInfoBatch(request.getShortCodes())
+                .map(responses -> conditionally(preconditions, responses, batchInfoTag(responses)));
+    }
+
+    /**
+     * Answers 304 with the tag if the request's {@code If-None-Match} matches it, otherwise 200 with the body,
+     * so an unchanged body is not serialized.
+     */
+    private static Response conditionally(Request request, Object body, EntityTag tag) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        return notModified != null ? notModified.build() : Response.ok(body).tag(tag).build();
+    }
+
+    // The URL tells apart links that reused the short code of a deleted one, whose versions start over
+    private static EntityTag infoTag(TinyUrlResponse response) {
+        return new EntityTag(Long.toHexString(response.getVersion()) + '-'
+                + Long.toHexString(Hashing.hash64(response.getOriginalUrl())), true);
+    }
+
+    // Covers the code, URL and version of each link, in the order of the response
+    private static EntityTag batchInfoTag(Map<String, TinyUrlResponse> responses) {
+        long hash = responses.size();
+        for (Map.Entry<String, TinyUrlResponse> entry : responses.entrySet()) {
+            hash = hash * 31 + (Hashing.hash64(entry.getKey(), entry.getValue().getOriginalUrl())
+                    ^ entry.getValue().getVersion());
+        }
+        return new EntityTag(Long.toHexString(hash), true);
     }
 
     /**
@@ -161,7 +327,7 @@ public class TinyUrlController {
      */
     @DELETE
     @Path("/api/urls/{shortCode}")
-    @WithTransaction
+    @StoreTransaction
     @Operation(
             summary = "Deactivate a tiny URL",
             description = "Deactivates a tiny URL making it unavailable for future use asynchronously"
@@ -178,6 +344,54 @@ public class TinyUrlController {
                 .map(ignore -> Response.noContent().build());
     }
 
+    /**
+     * Retrieves click statistics of a tiny URL asynchronously.
+     *
+     * @param shortCode   The short code to retrieve statistics for
+     * @param from        Start of the range, inclusive
+     * @param to          End of the range, exclusive
+     * @param granularity Bucket size: minute, hour or day
+     * @return Uni with Response containing clicks per bucket
+     */
+    @GET
+    @StoreSession
+    @Path("/api/urls/{shortCode}/stats")
+    @Operation(
+            summary = "Get click statistics of a tiny URL",
+            description = "Returns redirect attempts per minute, hour or day from the click rollups. " +
+                    "Clicks show up after at most one aggregation flush interval."
+    )
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "Click statistics retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = ClickStatsResponse.class))
+            ),
+            @APIResponse(
+                    responseCode = "400",
+                    description = "Invalid range or granularity",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            ),
+            @APIResponse(
+                    responseCode = "404",
+                    description = "URL not found",
+                    content = @Content(schema = @Schema(implementation = Map.class))
+            )
+    })
+    public Uni<Response> getClickStats(
+            @Parameter(description = "Short code of the URL", required = true)
+            @PathParam("shortCode") @NotEmpty String shortCode,
+            @Parameter(description = "Start of the range (inclusive); defaults to one hour, day or 30 days before 'to'")
+            @QueryParam("from") LocalDateTime from,
+            @Parameter(description = "End of the range (exclusive); defaults to now")
+            @QueryParam("to") LocalDateTime to,
+            @Parameter(description = "Bucket size: minute, hour or day; defaults to hour")
+            @QueryParam("granularity") String granularity) {
+
+        return clickStatsService.getClickStats(shortCode, from, to, granularity)
+                .map(response -> Response.ok(response).build());
+    }
+
     /**
      * Updates the expiration time of a tiny URL asynchronously.
      *
@@ -187,7 +401,7 @@ public class TinyUrlController {
      */
     @PUT
     @Path("/api/urls/{shortCode}/expiration")
-    @WithTransaction
+    @StoreTransaction
     @Operation(
             summary = "Update expiration time of a tiny URL",
             description = "Sets a new expiration time for the tiny URL asynchronously"
@@ -222,7 +436,7 @@ public class TinyUrlController {
      * @return Uni with Response containing updated URL details
      */
     @PUT
-    @WithTransaction
+    @StoreTransaction
     @Path("/api/urls/{shortCode}/max-usage")
     @Operation(
             summary = "Update maximum usage limit of a tiny URL",
@@ -258,7 +472,7 @@ public class TinyUrlController {
      * @return Uni with Response containing updated URL details
      */
     @PUT
-    @WithTransaction
+    @StoreTransaction
     @Path("/api/urls/{shortCode}/max-attempts")
     @Operation(
             summary = "Update maximum attempts limit of a tiny URL",
@@ -0,0 +1,39 @@
+package org.techwitz.domain;
+
+/**
+ * How the redirect of a tiny URL is answered, and so whether browsers and proxies may cache it.
+ * <p>
+ * A permanent policy only takes effect for links without usage or attempt limits, since a cached redirect
+ * would bypass them; links that expire are redirected temporarily, cacheable until they expire.
+ */
+public enum RedirectPolicy {
+
+    /**
+     * 302 Found; the default, never cached longer than the link lives.
+     */
+    TEMPORARY(302),
+
+    /**
+     * 301 Moved Permanently, which clients may turn into a GET.
+     */
+    MOVED_PERMANENTLY(301),
+
+    /**
+     * 308 Permanent Redirect, which keeps the method and body of the request.
+     */
+    PERMANENT_REDIRECT(308);
+
+    private final int statusCode;
+
+    RedirectPolicy(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public boolean isPermanent() {
+        return this != TEMPORARY;
+    }
+}
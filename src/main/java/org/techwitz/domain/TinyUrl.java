@@ -49,6 +49,17 @@ public class TinyUrl extends PanacheEntity {
     @Column(nullable = false, name = "active")
     private boolean active;
 
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'TEMPORARY'")
+    @Column(nullable = false, name = "redirect_policy")
+    private RedirectPolicy redirectPolicy;
+
+    // Increased by the store on every change, including each counted access; not a JPA @Version, as the
+    // counters are updated by bulk statements that optimistic locking would not see
+    @ColumnDefault("0")
+    @Column(nullable = false, name = "version")
+    private long version;
+
     // Constructors, getters, and setters
     public TinyUrl() {
         this.createdAt = LocalDateTime.now();
@@ -56,6 +67,7 @@ public class TinyUrl extends PanacheEntity {
         this.usageCount = 0;
         this.attemptCount = 0;
         this.maxAttempts = 0; // Unlimited by default
+        this.redirectPolicy = RedirectPolicy.TEMPORARY;
     }
 
     public void incrementAttemptCount() {
@@ -85,4 +97,8 @@ public class TinyUrl extends PanacheEntity {
     public void incrementUsageCount() {
         this.usageCount++;
     }
+
+    public void incrementVersion() {
+        this.version++;
+    }
 }
@@ -0,0 +1,51 @@
+package org.techwitz.dto;
+
+import lombok.Data;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Schema(description = "Click statistics of a tiny URL over a time range")
+public class ClickStatsResponse {
+
+    @Schema(description = "The short code")
+    private String shortCode;
+
+    @Schema(description = "Bucket size: minute, hour or day")
+    private String granularity;
+
+    @Schema(description = "Start of the range, inclusive")
+    private LocalDateTime from;
+
+    @Schema(description = "End of the range, exclusive")
+    private LocalDateTime to;
+
+    @Schema(description = "Clicks in the whole range")
+    private long totalClicks;
+
+    @Schema(description = "Estimated distinct visitors (client address and user agent) over the whole days overlapping the range, " +
+            "within about 2%")
+    private long estimatedUniqueVisitors;
+
+    @Schema(description = "Buckets with at least one click, in time order")
+    private List<Bucket> buckets;
+
+    @Data
+    @Schema(description = "Click counts for one bucket")
+    public static class Bucket {
+
+        @Schema(description = "Start of the bucket")
+        private LocalDateTime start;
+
+        @Schema(description = "All redirect attempts")
+        private long clicks;
+
+        @Schema(description = "Attempts answered with a redirect")
+        private long redirected;
+
+        @Schema(description = "Attempts answered with an error")
+        private long rejected;
+    }
+}
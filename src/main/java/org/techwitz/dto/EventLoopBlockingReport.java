@@ -0,0 +1,47 @@
+package org.techwitz.dto;
+
+import lombok.Data;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Schema(description = "Event-loop tasks that ran longer than the blocking threshold, grouped by stack")
+public class EventLoopBlockingReport {
+
+    @Schema(description = "Tasks running longer than this are reported as blocking")
+    private long thresholdMillis;
+
+    @Schema(description = "Blocking tasks detected since startup or the last reset")
+    private long blockedTasks;
+
+    @Schema(description = "Blocking tasks for which no stack was captured because of the capture rate limit")
+    private long uncapturedTasks;
+
+    @Schema(description = "Blocking sites, most frequent first")
+    private List<Site> sites;
+
+    @Data
+    @Schema(description = "A distinct stack seen on a blocked event loop")
+    public static class Site {
+
+        @Schema(description = "Stack frames of the event-loop thread when the block was detected, innermost first")
+        private List<String> stack;
+
+        @Schema(description = "Number of blocking tasks captured with this stack")
+        private long count;
+
+        @Schema(description = "Total observed blocked time in milliseconds")
+        private long totalBlockedMillis;
+
+        @Schema(description = "Longest observed blocked time in milliseconds")
+        private long maxBlockedMillis;
+
+        @Schema(description = "Event-loop thread of the most recent occurrence")
+        private String lastThread;
+
+        @Schema(description = "Time of the most recent occurrence")
+        private LocalDateTime lastSeen;
+    }
+}
@@ -0,0 +1,41 @@
+package org.techwitz.dto;
+
+import lombok.Data;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Schema(description = "Most clicked short codes over a recent time window")
+public class HotLinksResponse {
+
+    @Schema(description = "The window actually covered, rounded up to whole tracking slices (ISO-8601 duration)")
+    private String window;
+
+    @Schema(description = "When the ranking was computed")
+    private LocalDateTime generatedAt;
+
+    @Schema(description = "All clicks in the window")
+    private long totalClicks;
+
+    @Schema(description = "Estimates may exceed the true count by up to this many clicks (with high probability)")
+    private long maxOvercount;
+
+    @Schema(description = "Hottest short codes, hottest first")
+    private List<HotLink> links;
+
+    @Data
+    @Schema(description = "A hot short code")
+    public static class HotLink {
+
+        @Schema(description = "The short code")
+        private String shortCode;
+
+        @Schema(description = "Estimated clicks in the window (never an undercount)")
+        private long estimatedClicks;
+
+        @Schema(description = "Estimated share of all clicks in the window")
+        private double share;
+    }
+}
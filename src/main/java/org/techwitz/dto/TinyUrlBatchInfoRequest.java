@@ -0,0 +1,16 @@
+package org.techwitz.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.List;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "Request object for retrieving information about several tiny URLs at once")
+public class TinyUrlBatchInfoRequest {
+
+    @Schema(description = "Short codes to look up", required = true, examples = "[\"Ab3C7z\", \"x9YqT2\"]")
+    private List<String> shortCodes;
+}
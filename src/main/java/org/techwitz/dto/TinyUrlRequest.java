@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.techwitz.domain.RedirectPolicy;
 
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -26,4 +27,9 @@ public class TinyUrlRequest {
 
     @Schema(description = "Maximum number of access attempts allowed (0 for unlimited)", examples = "10")
     private int maxAttempts;
+
+    @Schema(description = "How redirects are answered: TEMPORARY (302, default), MOVED_PERMANENTLY (301) or "
+            + "PERMANENT_REDIRECT (308). Permanent redirects are cached by browsers, so they are only used for "
+            + "links that never expire and have no usage or attempt limits", examples = "TEMPORARY")
+    private RedirectPolicy redirectPolicy;
 }
@@ -2,6 +2,7 @@ package org.techwitz.dto;
 
 import lombok.Data;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.techwitz.domain.RedirectPolicy;
 
 import java.time.LocalDateTime;
 
@@ -33,6 +34,12 @@ public class TinyUrlResponse {
     @Schema(description = "Current attempt count")
     private int attemptCount;
 
+    @Schema(description = "How redirects are answered")
+    private RedirectPolicy redirectPolicy;
+
+    @Schema(description = "Version of the tiny URL, increased by every change including each counted access")
+    private long version;
+
     // Getters and setters...
 
     public int getMaxAttempts() {
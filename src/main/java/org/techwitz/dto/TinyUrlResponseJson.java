@@ -0,0 +1,91 @@
+package org.techwitz.dto;
+
+import org.techwitz.util.JsonBytes;
+
+/**
+ * Encodes a {@link TinyUrlResponse} as the JSON Jackson would write for it, field for field, without
+ * reflection: field names are pre-encoded, and so is the base URL short URLs start with.
+ */
+public final class TinyUrlResponseJson {
+
+    private static final byte[] ORIGINAL_URL = JsonBytes.ascii("{\"originalUrl\":");
+    private static final byte[] SHORT_URL = JsonBytes.ascii(",\"shortUrl\":");
+    private static final byte[] EXPIRATION_TIME = JsonBytes.ascii(",\"expirationTime\":");
+    private static final byte[] ONE_TIME_USE = JsonBytes.ascii(",\"oneTimeUse\":");
+    private static final byte[] MAX_USAGE = JsonBytes.ascii(",\"maxUsage\":");
+    private static final byte[] USAGE_COUNT = JsonBytes.ascii(",\"usageCount\":");
+    private static final byte[] MAX_ATTEMPTS = JsonBytes.ascii(",\"maxAttempts\":");
+    private static final byte[] ATTEMPT_COUNT = JsonBytes.ascii(",\"attemptCount\":");
+    private static final byte[] REDIRECT_POLICY = JsonBytes.ascii(",\"redirectPolicy\":");
+    private static final byte[] VERSION = JsonBytes.ascii(",\"version\":");
+    private static final int NAMES_SIZE = ORIGINAL_URL.length + SHORT_URL.length + EXPIRATION_TIME.length
+            + ONE_TIME_USE.length + MAX_USAGE.length + USAGE_COUNT.length + MAX_ATTEMPTS.length
+            + ATTEMPT_COUNT.length + REDIRECT_POLICY.length + VERSION.length + 1;
+
+    private final String baseUrl;
+    private final byte[] encodedBaseUrl;
+
+    /**
+     * @param baseUrl The base URL of short URLs, {@code tiny.url.base.url}
+     */
+    public TinyUrlResponseJson(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.encodedBaseUrl = new byte[JsonBytes.contentSize(baseUrl, 0)];
+        JsonBytes.writeContent(encodedBaseUrl, 0, baseUrl, 0);
+    }
+
+    /**
+     * Encodes a response into a new, exactly sized byte array.
+     *
+     * @param response The response
+     * @return The UTF-8 encoded JSON
+     */
+    public byte[] encode(TinyUrlResponse response) {
+        String shortUrl = response.getShortUrl();
+        boolean prefixed = shortUrl != null && shortUrl.startsWith(baseUrl);
+        String redirectPolicy = response.getRedirectPolicy() == null ? null : response.getRedirectPolicy().name();
+        int size = NAMES_SIZE
+                + JsonBytes.stringSize(response.getOriginalUrl())
+                + (prefixed ? 2 + encodedBaseUrl.length + JsonBytes.contentSize(shortUrl, baseUrl.length())
+                            : JsonBytes.stringSize(shortUrl))
+                + JsonBytes.dateTimeSize(response.getExpirationTime())
+                + JsonBytes.booleanSize(response.isOneTimeUse())
+                + JsonBytes.longSize(response.getMaxUsage())
+                + JsonBytes.longSize(response.getUsageCount())
+                + JsonBytes.longSize(response.getMaxAttempts())
+                + JsonBytes.longSize(response.getAttemptCount())
+                + JsonBytes.stringSize(redirectPolicy)
+                + JsonBytes.longSize(response.getVersion());
+
+        byte[] json = new byte[size];
+        int position = JsonBytes.write(json, 0, ORIGINAL_URL);
+        position = JsonBytes.writeString(json, position, response.getOriginalUrl());
+        position = JsonBytes.write(json, position, SHORT_URL);
+        if (prefixed) {
+            json[position++] = '"';
+            position = JsonBytes.write(json, position, encodedBaseUrl);
+            position = JsonBytes.writeContent(json, position, shortUrl, baseUrl.length());
+            json[position++] = '"';
+        } else {
+            position = JsonBytes.writeString(json, position, shortUrl);
+        }
+        position = JsonBytes.write(json, position, EXPIRATION_TIME);
+        position = JsonBytes.writeDateTime(json, position, response.getExpirationTime());
+        position = JsonBytes.write(json, position, ONE_TIME_USE);
+        position = JsonBytes.writeBoolean(json, position, response.isOneTimeUse());
+        position = JsonBytes.write(json, position, MAX_USAGE);
+        position = JsonBytes.writeLong(json, position, response.getMaxUsage());
+        position = JsonBytes.write(json, position, USAGE_COUNT);
+        position = JsonBytes.writeLong(json, position, response.getUsageCount());
+        position = JsonBytes.write(json, position, MAX_ATTEMPTS);
+        position = JsonBytes.writeLong(json, position, response.getMaxAttempts());
+        position = JsonBytes.write(json, position, ATTEMPT_COUNT);
+        position = JsonBytes.writeLong(json, position, response.getAttemptCount());
+        position = JsonBytes.write(json, position, REDIRECT_POLICY);
+        position = JsonBytes.writeString(json, position, redirectPolicy);
+        position = JsonBytes.write(json, position, VERSION);
+        position = JsonBytes.writeLong(json, position, response.getVersion());
+        json[position] = '}';
+        return json;
+    }
+}
@@ -1,6 +1,12 @@
 package org.techwitz.exception;
 
 public class MaxAttemptsExceededException extends TinyUrlException {
+    public static final String MESSAGE = "Maximum number of attempts exceeded for this URL";
+
+    public MaxAttemptsExceededException() {
+        super(MESSAGE);
+    }
+
     public MaxAttemptsExceededException(String message) {
         super(message);
     }
@@ -0,0 +1,7 @@
+package org.techwitz.exception;
+
+public class StoreUnavailableException extends TinyUrlException {
+    public StoreUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,12 @@
 package org.techwitz.exception;
 
 public class UrlExpiredException extends TinyUrlException {
+    public static final String MESSAGE = "The tiny URL has expired or reached its usage limit";
+
+    public UrlExpiredException() {
+        super(MESSAGE);
+    }
+
     public UrlExpiredException(String message) {
         super(message);
     }
@@ -0,0 +1,66 @@
+package org.techwitz.interceptor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Passes a stream through unchanged while keeping a copy of at most {@code limit} bytes of what
+ * the downstream reader actually consumed. Nothing is read ahead, so the body is never buffered twice.
+ */
+class BoundedCaptureInputStream extends FilterInputStream {
+
+    private final byte[] captured;
+    private int capturedLength;
+    private boolean truncated;
+
+    BoundedCaptureInputStream(InputStream in, int limit) {
+        super(in);
+        this.captured = new byte[limit];
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            if (capturedLength < captured.length) {
+                captured[capturedLength++] = (byte) b;
+            } else {
+                truncated = true;
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            int room = captured.length - capturedLength;
+            int copy = Math.min(room, n);
+            if (copy > 0) {
+                System.arraycopy(b, off, captured, capturedLength, copy);
+                capturedLength += copy;
+            }
+            if (copy < n) {
+                truncated = true;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // A reset would replay bytes that have already been captured
+        return false;
+    }
+
+    byte[] captured() {
+        return Arrays.copyOf(captured, capturedLength);
+    }
+
+    boolean isTruncated() {
+        return truncated;
+    }
+}
@@ -0,0 +1,54 @@
+package org.techwitz.interceptor;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latency of every matched resource method in an {@link OperationTimer} named
+ * {@code endpoint.<Resource>.<method>} and tagged with {@code endpoint}.
+ */
+@Provider
+public class EndpointMetricsFilter {
+
+    public static final String TIMER_PREFIX = "endpoint.";
+    private static final String START_PROPERTY = EndpointMetricsFilter.class.getName() + ".start";
+
+    private final Map<Method, OperationTimer> timers = new ConcurrentHashMap<>();
+
+    @ServerRequestFilter
+    public void startTimer(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @ServerResponseFilter
+    public void recordTimer(ContainerRequestContext requestContext, ResourceInfo resourceInfo) {
+        Long start = (Long) requestContext.getProperty(START_PROPERTY);
+        Method method = resourceInfo.getResourceMethod();
+        if (start == null || method == null) {
+            return;
+        }
+        timerFor(method).recordSince(start);
+    }
+
+    private OperationTimer timerFor(Method method) {
+        OperationTimer timer = timers.get(method);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(method, m -> {
+                String endpoint = m.getDeclaringClass().getSimpleName() + "." + m.getName();
+                return LoggingUtils.timer(TIMER_PREFIX + endpoint, new Tag("endpoint", endpoint));
+            });
+        }
+        return timer;
+    }
+}
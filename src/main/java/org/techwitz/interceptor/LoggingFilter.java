@@ -1,5 +1,6 @@
 package org.techwitz.interceptor;
 
+import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerResponseContext;
 import jakarta.ws.rs.ext.Provider;
@@ -7,22 +8,37 @@ import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.server.ServerRequestFilter;
 import org.jboss.resteasy.reactive.server.ServerResponseFilter;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Assigns request IDs and produces sampled request log lines.
+ * <p>
+ * Only sampled requests (see {@link RequestLogSampler}) are logged, and only those get their body
+ * captured. Capture is bounded and happens as the body is consumed, and all formatting happens on the
+ * {@link RequestLogWriter} thread, so unsampled requests cost little more than an MDC update.
+ */
 @Provider
 public class LoggingFilter {
 
     private static final Logger LOG = Logger.getLogger(LoggingFilter.class);
     private static final String REQUEST_ID = "X-Request-ID";
+    private static final String SAMPLED_START_PROPERTY = LoggingFilter.class.getName() + ".start";
+    private static final String CAPTURE_PROPERTY = LoggingFilter.class.getName() + ".capture";
+
+    @Inject
+    RequestLogSampler sampler;
+
+    @Inject
+    RequestLogWriter writer;
 
     @ServerRequestFilter
-    public void logRequestFilter(ContainerRequestContext requestContext) throws IOException {
+    public void logRequestFilter(ContainerRequestContext requestContext) {
         // Generate or get request ID
         String requestId = requestContext.getHeaderString(REQUEST_ID);
-        if (requestId == null || requestId.trim().isEmpty()) {
+        if (requestId == null || requestId.isBlank()) {
             requestId = UUID.randomUUID().toString();
             requestContext.getHeaders().add(REQUEST_ID, requestId);
         }
@@ -30,77 +46,53 @@ public class LoggingFilter {
         // Store request ID in MDC for correlated logging
         org.jboss.logging.MDC.put("requestId", requestId);
 
-        // Log request details
-        String method = requestContext.getMethod();
-        String path = requestContext.getUriInfo().getPath();
-        String contentType = requestContext.getHeaderString("Content-Type");
-
-        StringBuilder requestLogBuilder = new StringBuilder();
-        requestLogBuilder.append("Incoming request | ")
-                .append("ID: ").append(requestId).append(" | ")
-                .append("Method: ").append(method).append(" | ")
-                .append("Path: ").append(path).append(" | ")
-                .append("Content-Type: ").append(contentType);
-
-        // Log headers if needed (optional)
-        if (LOG.isDebugEnabled()) {
-            requestLogBuilder.append(" | Headers: ").append(requestContext.getHeaders());
+        if (!sampler.sample(requestContext.getUriInfo().getPath())) {
+            return;
         }
+        requestContext.setProperty(SAMPLED_START_PROPERTY, System.nanoTime());
 
-        // Log payload for POST, PUT methods
+        // Capture the payload for POST, PUT methods as the resource reads it
+        String method = requestContext.getMethod();
+        String contentType = requestContext.getHeaderString("Content-Type");
         if (("POST".equals(method) || "PUT".equals(method)) && contentType != null &&
-                contentType.contains("application/json")) {
-
-            // Read the entity stream
-            byte[] entityBytes = requestContext.getEntityStream().readAllBytes();
-            String entity = new String(entityBytes, StandardCharsets.UTF_8);
-
-            // Need to reset the entity stream for further processing
-            requestContext.setEntityStream(new ByteArrayInputStream(entityBytes));
-
-            // Append payload to log (consider truncating for large payloads)
-            if (entity.length() > 1000) {
-                requestLogBuilder.append(" | Payload: ").append(entity.substring(0, 997)).append("...");
-            } else {
-                requestLogBuilder.append(" | Payload: ").append(entity);
-            }
+                contentType.contains("application/json") && requestContext.hasEntity()) {
+            BoundedCaptureInputStream capture =
+                    new BoundedCaptureInputStream(requestContext.getEntityStream(), sampler.getMaxBodyBytes());
+            requestContext.setEntityStream(capture);
+            requestContext.setProperty(CAPTURE_PROPERTY, capture);
         }
-
-        LOG.info(requestLogBuilder.toString());
     }
 
     @ServerResponseFilter
     public void logResponseFilter(ContainerRequestContext requestContext,
                                   ContainerResponseContext responseContext) {
-        // Get request ID from MDC
-        String requestId = (String) org.jboss.logging.MDC.get("requestId");
-
-        // Log response details
-        String method = requestContext.getMethod();
-        String path = requestContext.getUriInfo().getPath();
-        int status = responseContext.getStatus();
-
-        StringBuilder responseLogBuilder = new StringBuilder();
-        responseLogBuilder.append("Outgoing response | ")
-                .append("ID: ").append(requestId).append(" | ")
-                .append("Method: ").append(method).append(" | ")
-                .append("Path: ").append(path).append(" | ")
-                .append("Status: ").append(status);
-
-        // Log response entity if available and not too large
-        Object entity = responseContext.getEntity();
-        if (entity != null) {
-            String entityStr = entity.toString();
-            if (entityStr.length() > 1000) {
-                responseLogBuilder.append(" | Response: ").append(entityStr.substring(0, 997)).append("...");
-            } else {
-                responseLogBuilder.append(" | Response: ").append(entityStr);
+        try {
+            Long start = (Long) requestContext.getProperty(SAMPLED_START_PROPERTY);
+            int status = responseContext.getStatus();
+            boolean sampled = start != null;
+            if (!sampled && !(status >= 500 && sampler.isEnabled() && sampler.isAlwaysLogServerErrors())) {
+                return;
             }
-        }
 
-        LOG.info(responseLogBuilder.toString());
-
-        // Clear MDC
-        org.jboss.logging.MDC.clear();
+            BoundedCaptureInputStream capture = (BoundedCaptureInputStream) requestContext.getProperty(CAPTURE_PROPERTY);
+            Map<String, List<String>> headers = sampled && LOG.isDebugEnabled()
+                    ? new HashMap<>(requestContext.getHeaders())
+                    : null;
+
+            writer.submit(new RequestLogEntry(
+                    (String) org.jboss.logging.MDC.get("requestId"),
+                    requestContext.getMethod(),
+                    requestContext.getUriInfo().getPath(),
+                    requestContext.getHeaderString("Content-Type"),
+                    status,
+                    sampled ? System.nanoTime() - start : -1,
+                    headers,
+                    capture != null ? capture.captured() : null,
+                    capture != null && capture.isTruncated(),
+                    sampled && sampler.isCaptureResponse() ? responseContext.getEntity() : null));
+        } finally {
+            // Clear MDC
+            org.jboss.logging.MDC.clear();
+        }
     }
 }
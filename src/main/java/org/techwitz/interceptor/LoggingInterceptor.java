@@ -1,14 +1,35 @@
 package org.techwitz.interceptor;
 
 import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
 import jakarta.interceptor.AroundInvoke;
 import jakarta.interceptor.Interceptor;
 import jakarta.interceptor.InvocationContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
 import org.jboss.logging.Logger;
 import io.smallrye.mutiny.Uni;
+import org.techwitz.exception.TinyUrlException;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Records a latency histogram ({@link OperationTimer}) and success/failure counters for every
+ * {@link Loggable} method, tagged by class and method.
+ * <p>
+ * Entry/exit lines are only written at DEBUG level and only for a sampled fraction of calls
+ * ({@code tiny.url.interceptor.log-sample-rate}); arguments and results are formatted only when a
+ * line is actually written. Business failures ({@link TinyUrlException}) are counted but not logged
+ * as errors; anything else is always logged.
+ */
 @Loggable
 @Interceptor
 @Priority(Interceptor.Priority.APPLICATION)
@@ -16,38 +37,110 @@ public class LoggingInterceptor {
 
     private static final Logger LOG = Logger.getLogger(LoggingInterceptor.class);
 
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.interceptor.log-sample-rate", defaultValue = "1.0")
+    double logSampleRate;
+
+    private final Map<Method, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+
     @AroundInvoke
     public Object logMethodCall(InvocationContext context) throws Exception {
-        final String className = context.getTarget().getClass().getName();
-        final String methodName = context.getMethod().getName();
-        final Object[] parameters = context.getParameters();
+        final MethodMetrics metrics = metricsFor(context.getMethod());
+        final boolean logCall = LOG.isDebugEnabled() && sampled();
 
         // Log method entry
-        LOG.infof("Entering: %s.%s with parameters: %s",
-                className, methodName, Arrays.toString(parameters));
+        if (logCall) {
+            LOG.debugf("Entering: %s.%s with parameters: %s",
+                    metrics.className, metrics.methodName, Arrays.toString(context.getParameters()));
+        }
 
+        final long start = System.nanoTime();
         try {
             // Get the result and handle reactive types specially
             Object result = context.proceed();
 
-            // For reactive results, we need to add logging to the reactive chain
-            if (result instanceof Uni<?>) {
-                return ((Uni<?>) result)
-                        .onItem().invoke(item -> LOG.infof("Exiting: %s.%s with result: %s",
-                                className, methodName, item))
-                        .onFailure().invoke(failure -> LOG.errorf(failure,
-                                "Failed execution: %s.%s with error: %s",
-                                className, methodName, failure.getMessage()));
-            } else {
-                // For non-reactive results, log directly
-                LOG.infof("Exiting: %s.%s with result: %s",
-                        className, methodName, result);
-                return result;
+            // For reactive results, the call completes when the Uni does
+            if (result instanceof Uni<?> uni) {
+                return uni.onItemOrFailure().invoke((item, failure) -> {
+                    if (failure == null) {
+                        metrics.success(System.nanoTime() - start);
+                        if (logCall) {
+                            LOG.debugf("Exiting: %s.%s with result: %s", metrics.className, metrics.methodName, item);
+                        }
+                    } else {
+                        metrics.failure(System.nanoTime() - start);
+                        logFailure(metrics, failure, logCall);
+                    }
+                });
+            }
+
+            metrics.success(System.nanoTime() - start);
+            if (logCall) {
+                LOG.debugf("Exiting: %s.%s with result: %s", metrics.className, metrics.methodName, result);
             }
+            return result;
         } catch (Exception e) {
-            LOG.errorf(e, "Exception in: %s.%s with error: %s",
-                    className, methodName, e.getMessage());
+            metrics.failure(System.nanoTime() - start);
+            logFailure(metrics, e, logCall);
             throw e;
         }
     }
+
+    private static void logFailure(MethodMetrics metrics, Throwable failure, boolean logCall) {
+        if (!(failure instanceof TinyUrlException)) {
+            LOG.errorf(failure, "Failed execution: %s.%s with error: %s",
+                    metrics.className, metrics.methodName, failure.getMessage());
+        } else if (logCall) {
+            LOG.debugf("Failed execution: %s.%s with error: %s",
+                    metrics.className, metrics.methodName, failure.getMessage());
+        }
+    }
+
+    private boolean sampled() {
+        return logSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < logSampleRate;
+    }
+
+    private MethodMetrics metricsFor(Method method) {
+        MethodMetrics metrics = methodMetrics.get(method);
+        if (metrics == null) {
+            metrics = methodMetrics.computeIfAbsent(method, m -> new MethodMetrics(metricRegistry, m));
+        }
+        return metrics;
+    }
+
+    /**
+     * Metric handles for one intercepted method, resolved once so the registry is not consulted per call.
+     */
+    static final class MethodMetrics {
+        private static final String CALLS = "serviceMethodCalls";
+
+        final String className;
+        final String methodName;
+        private final OperationTimer duration;
+        private final Counter successes;
+        private final Counter failures;
+
+        MethodMetrics(MetricRegistry registry, Method method) {
+            this.className = method.getDeclaringClass().getName();
+            this.methodName = method.getName();
+            Tag classTag = new Tag("class", method.getDeclaringClass().getSimpleName());
+            Tag methodTag = new Tag("method", methodName);
+            this.duration = LoggingUtils.timer(
+                    classTag.getTagValue() + "." + methodName, classTag, methodTag);
+            this.successes = registry.counter(CALLS, classTag, methodTag, new Tag("outcome", "success"));
+            this.failures = registry.counter(CALLS, classTag, methodTag, new Tag("outcome", "failure"));
+        }
+
+        void success(long nanos) {
+            duration.recordNanos(nanos);
+            successes.inc();
+        }
+
+        void failure(long nanos) {
+            duration.recordNanos(nanos);
+            failures.inc();
+        }
+    }
 }
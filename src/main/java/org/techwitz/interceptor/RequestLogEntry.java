@@ -0,0 +1,31 @@
+package org.techwitz.interceptor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Raw data for one request log line. Instances are created on the request thread and only
+ * formatted on the {@link RequestLogWriter} thread.
+ *
+ * @param requestId        The correlation ID of the request
+ * @param method           The HTTP method
+ * @param path             The request path
+ * @param contentType      The request content type, may be null
+ * @param status           The response status
+ * @param durationNanos    The time between the request and response filters, or -1 if unknown
+ * @param headers          Snapshot of the request headers, or null if not captured
+ * @param requestBody      The captured prefix of the request body, or null if not captured
+ * @param bodyTruncated    Whether the request body was longer than the captured prefix
+ * @param responseEntity   The response entity, or null if not captured
+ */
+record RequestLogEntry(String requestId,
+                       String method,
+                       String path,
+                       String contentType,
+                       int status,
+                       long durationNanos,
+                       Map<String, List<String>> headers,
+                       byte[] requestBody,
+                       boolean bodyTruncated,
+                       Object responseEntity) {
+}
@@ -0,0 +1,120 @@
+package org.techwitz.interceptor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which requests get a request log line, using per-route sampling rates.
+ * <p>
+ * Routes are configured as {@code pathPrefix=rate} pairs; the longest matching prefix wins and
+ * requests that match no prefix use the default rate.
+ */
+@ApplicationScoped
+public class RequestLogSampler {
+    private static final Logger LOG = Logger.getLogger(RequestLogSampler.class);
+
+    @ConfigProperty(name = "tiny.url.request-log.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.request-log.sample-rate", defaultValue = "1.0")
+    double defaultSampleRate;
+
+    @ConfigProperty(name = "tiny.url.request-log.route-sample-rates")
+    Optional<List<String>> routeSampleRates;
+
+    @ConfigProperty(name = "tiny.url.request-log.max-body-bytes", defaultValue = "1000")
+    int maxBodyBytes;
+
+    @ConfigProperty(name = "tiny.url.request-log.capture-response", defaultValue = "false")
+    boolean captureResponse;
+
+    @ConfigProperty(name = "tiny.url.request-log.always-log-server-errors", defaultValue = "true")
+    boolean alwaysLogServerErrors;
+
+    private String[] prefixes = new String[0];
+    private double[] rates = new double[0];
+
+    @PostConstruct
+    void init() {
+        List<Route> routes = new ArrayList<>();
+        for (String route : routeSampleRates.orElse(List.of())) {
+            int separator = route.lastIndexOf('=');
+            if (separator <= 0) {
+                LOG.warnf("Ignoring malformed request log route sample rate: %s", route);
+                continue;
+            }
+            try {
+                routes.add(new Route(route.substring(0, separator).trim(),
+                        Double.parseDouble(route.substring(separator + 1).trim())));
+            } catch (NumberFormatException e) {
+                LOG.warnf("Ignoring malformed request log route sample rate: %s", route);
+            }
+        }
+        // Longest prefix first so the first match is the most specific one
+        routes.sort(Comparator.comparingInt((Route route) -> route.prefix().length()).reversed());
+
+        prefixes = new String[routes.size()];
+        rates = new double[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            prefixes[i] = routes.get(i).prefix();
+            rates[i] = routes.get(i).rate();
+        }
+        LOG.infof("Request log sampling: enabled=%s, default rate=%s, %d route overrides",
+                enabled, defaultSampleRate, prefixes.length);
+    }
+
+    /**
+     * @param path The request path
+     * @return The sampling rate that applies to the path
+     */
+    public double rateFor(String path) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (path.startsWith(prefixes[i])) {
+                return rates[i];
+            }
+        }
+        return defaultSampleRate;
+    }
+
+    /**
+     * @param path The request path
+     * @return true if this request should be logged in full
+     */
+    public boolean sample(String path) {
+        if (!enabled) {
+            return false;
+        }
+        double rate = rateFor(path);
+        if (rate >= 1.0) {
+            return true;
+        }
+        return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public boolean isCaptureResponse() {
+        return captureResponse;
+    }
+
+    public boolean isAlwaysLogServerErrors() {
+        return alwaysLogServerErrors;
+    }
+
+    private record Route(String prefix, double rate) {
+    }
+}
@@ -0,0 +1,147 @@
+package org.techwitz.interceptor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.jboss.logging.MDC;
+import org.techwitz.util.BoundedRingBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Formats and writes request log lines on a background thread.
+ * <p>
+ * Request threads only hand over a {@link RequestLogEntry} through a bounded ring buffer. When the
+ * buffer is full the entry is dropped and counted instead of blocking the event loop.
+ */
+@ApplicationScoped
+public class RequestLogWriter {
+    private static final Logger LOG = Logger.getLogger(LoggingFilter.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int DRAIN_BATCH = 256;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @Inject
+    RequestLogSampler sampler;
+
+    @ConfigProperty(name = "tiny.url.request-log.buffer-size", defaultValue = "8192")
+    int bufferSize;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private BoundedRingBuffer<RequestLogEntry> buffer;
+    private volatile boolean running;
+    private Thread worker;
+
+    @PostConstruct
+    void init() {
+        buffer = new BoundedRingBuffer<>(bufferSize);
+        metricRegistry.gauge("requestLogDropped", dropped::sum);
+        metricRegistry.gauge("requestLogWritten", written::sum);
+        metricRegistry.gauge("requestLogBuffered", buffer::size);
+
+        running = true;
+        worker = new Thread(this::run, "request-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an entry for writing. Never blocks.
+     *
+     * @param entry The entry to write
+     * @return true if the entry was queued, false if it was dropped
+     */
+    public boolean submit(RequestLogEntry entry) {
+        if (buffer.offer(entry)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        StringBuilder line = new StringBuilder(512);
+        while (running) {
+            if (buffer.drain(entry -> write(entry, line), DRAIN_BATCH) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // Flush whatever was queued before shutdown
+        buffer.drain(entry -> write(entry, line), Integer.MAX_VALUE);
+    }
+
+    private void write(RequestLogEntry entry, StringBuilder line) {
+        try {
+            line.setLength(0);
+            format(entry, line);
+            MDC.put("requestId", entry.requestId());
+            LOG.info(line.toString());
+            written.increment();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to write request log entry", e);
+        } finally {
+            MDC.remove("requestId");
+        }
+    }
+
+    void format(RequestLogEntry entry, StringBuilder line) {
+        line.append("Request | ID: ").append(entry.requestId())
+                .append(" | Method: ").append(entry.method())
+                .append(" | Path: ").append(entry.path())
+                .append(" | Status: ").append(entry.status());
+
+        if (entry.durationNanos() >= 0) {
+            line.append(" | Duration: ").append(entry.durationNanos() / 1_000).append(" us");
+        }
+        if (entry.contentType() != null) {
+            line.append(" | Content-Type: ").append(entry.contentType());
+        }
+        if (entry.headers() != null) {
+            line.append(" | Headers: ").append(entry.headers());
+        }
+        if (entry.requestBody() != null) {
+            line.append(" | Payload: ").append(new String(entry.requestBody(), StandardCharsets.UTF_8));
+            if (entry.bodyTruncated()) {
+                line.append("...");
+            }
+        }
+        if (entry.responseEntity() != null) {
+            // Pre-encoded JSON bodies are byte arrays
+            String response = entry.responseEntity() instanceof byte[] bytes
+                    ? new String(bytes, StandardCharsets.UTF_8)
+                    : String.valueOf(entry.responseEntity());
+            line.append(" | Response: ");
+            int maxLength = sampler.getMaxBodyBytes();
+            if (response.length() > maxLength) {
+                line.append(response, 0, maxLength).append("...");
+            } else {
+                line.append(response);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.CacheLookupEvent")
+@Label("Cache Lookup")
+@Description("Lookup of a tiny URL in the local redirect cache or the link details cache; "
+        + "details lookups include the load on a miss")
+public class CacheLookupEvent extends StageEvent {
+
+    public static final String REDIRECT = "redirect";
+    public static final String INFO = "info";
+    public static final String HIT = "hit";
+    public static final String MISS = "miss";
+
+    @Label("Cache")
+    @Description("redirect for the local redirect cache, info for the link details cache")
+    public String cache;
+
+    public CacheLookupEvent(String cache) {
+        this.cache = cache;
+    }
+}
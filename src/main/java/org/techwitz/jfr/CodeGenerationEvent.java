@@ -0,0 +1,15 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.CodeGenerationEvent")
+@Label("Code Generation")
+@Description("Uniqueness check of one generated candidate short code")
+public class CodeGenerationEvent extends StageEvent {
+
+    @Label("Attempt")
+    @Description("Zero-based attempt number; attempts above 0 followed a collision")
+    public int attempt;
+}
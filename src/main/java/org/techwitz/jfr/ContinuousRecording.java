@@ -0,0 +1,144 @@
+package org.techwitz.jfr;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.techwitz.exception.TinyUrlException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Optional always-on JFR recording.
+ * <p>
+ * The recording uses a low-overhead settings profile ({@code default} unless configured otherwise) and
+ * is kept on disk in the JVM's JFR repository, which rolls chunks off once they are older than
+ * {@code max-age} or the repository exceeds {@code max-size}. The repository location can be set with
+ * {@code -XX:FlightRecorderOptions:repository=...}. {@link #dump(Duration)} writes the most recent part
+ * of the recording to the dump directory.
+ */
+@ApplicationScoped
+public class ContinuousRecording {
+    private static final Logger LOG = Logger.getLogger(ContinuousRecording.class);
+    private static final DateTimeFormatter DUMP_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @ConfigProperty(name = "tiny.url.jfr.continuous.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.jfr.continuous.settings", defaultValue = "default")
+    String settings;
+
+    @ConfigProperty(name = "tiny.url.jfr.continuous.max-age", defaultValue = "PT30M")
+    Duration maxAge;
+
+    @ConfigProperty(name = "tiny.url.jfr.continuous.max-size-mb", defaultValue = "250")
+    long maxSizeMb;
+
+    @ConfigProperty(name = "tiny.url.jfr.continuous.stage-threshold", defaultValue = "PT0S")
+    Duration stageThreshold;
+
+    @ConfigProperty(name = "tiny.url.jfr.dump.directory", defaultValue = "logs/jfr")
+    Path dumpDirectory;
+
+    @ConfigProperty(name = "tiny.url.jfr.dump.max-files", defaultValue = "5")
+    int maxDumpFiles;
+
+    private volatile Recording recording;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            LOG.warn("JFR is not available in this runtime, continuous recording disabled");
+            return;
+        }
+        try {
+            Recording continuous = new Recording(Configuration.getConfiguration(settings));
+            continuous.setName("tiny-url-continuous");
+            continuous.setToDisk(true);
+            continuous.setMaxAge(maxAge);
+            continuous.setMaxSize(maxSizeMb * 1024 * 1024);
+            for (Class<? extends StageEvent> type : List.of(CacheLookupEvent.class, DbLookupEvent.class,
+                    LimitEvaluationEvent.class, CounterWriteEvent.class, CodeGenerationEvent.class,
+                    PersistEvent.class)) {
+                continuous.enable(type).withThreshold(stageThreshold);
+            }
+            continuous.start();
+            recording = continuous;
+            LOG.infof("Continuous JFR recording started with '%s' settings, keeping %d minutes / %d MB",
+                    settings, maxAge.toMinutes(), maxSizeMb);
+        } catch (IOException | ParseException e) {
+            LOG.errorf(e, "Failed to start continuous JFR recording with settings '%s'", settings);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        Recording continuous = recording;
+        recording = null;
+        if (continuous != null) {
+            continuous.close();
+        }
+    }
+
+    /**
+     * @return Whether the continuous recording is running
+     */
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    /**
+     * Writes roughly the last {@code window} of the recording to a new file in the dump directory. The
+     * window is applied per chunk, so the file can start somewhat earlier. Older dumps beyond
+     * {@code tiny.url.jfr.dump.max-files} are removed.
+     *
+     * @param window How far back to dump
+     * @return The written file
+     */
+    public Path dump(Duration window) {
+        if (recording == null) {
+            throw new TinyUrlException("Continuous JFR recording is not running");
+        }
+        try {
+            Files.createDirectories(dumpDirectory);
+            Path target = dumpDirectory.resolve("tiny-url-" + LocalDateTime.now().format(DUMP_NAME) + ".jfr");
+            try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+                snapshot.setMaxAge(window);
+                snapshot.dump(target);
+            }
+            LOG.infof("Dumped last %d minutes of JFR recording to %s", window.toMinutes(), target);
+            pruneDumps();
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to dump JFR recording", e);
+        }
+    }
+
+    private void pruneDumps() throws IOException {
+        List<Path> dumps;
+        try (Stream<Path> files = Files.list(dumpDirectory)) {
+            dumps = files.filter(file -> file.getFileName().toString().endsWith(".jfr"))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .toList();
+        }
+        for (Path old : dumps.subList(Math.min(dumps.size(), maxDumpFiles), dumps.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+}
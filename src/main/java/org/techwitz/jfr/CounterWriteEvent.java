@@ -0,0 +1,11 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.CounterWriteEvent")
+@Label("Counter Write")
+@Description("Write of the updated attempt and usage counters while resolving")
+public class CounterWriteEvent extends StageEvent {
+}
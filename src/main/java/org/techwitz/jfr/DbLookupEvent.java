@@ -0,0 +1,11 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.DbLookupEvent")
+@Label("Database Lookup")
+@Description("Lookup of a tiny URL by short code in the database")
+public class DbLookupEvent extends StageEvent {
+}
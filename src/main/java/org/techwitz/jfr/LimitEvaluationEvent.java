@@ -0,0 +1,11 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.LimitEvaluationEvent")
+@Label("Limit Evaluation")
+@Description("Evaluation of attempt, usage and expiration limits while resolving")
+public class LimitEvaluationEvent extends StageEvent {
+}
@@ -0,0 +1,11 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.techwitz.PersistEvent")
+@Label("Persist")
+@Description("Insert of a newly created tiny URL")
+public class PersistEvent extends StageEvent {
+}
@@ -0,0 +1,26 @@
+package org.techwitz.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base type of the JFR events emitted for each stage of resolving and creating tiny URLs.
+ * <p>
+ * Short codes are capabilities, so events carry {@link String#hashCode()} of the code rather than the
+ * code itself; that is enough to correlate the stages of one request within a recording.
+ */
+@Category({"Tiny URL", "Stages"})
+@StackTrace(false)
+public abstract class StageEvent extends Event {
+
+    @Label("Short Code Hash")
+    @Description("String.hashCode() of the short code, 0 for multi-code operations")
+    public int shortCodeHash;
+
+    @Label("Outcome")
+    @Description("Result of the stage, or the simple name of the exception it failed with")
+    public String outcome;
+}
@@ -0,0 +1,103 @@
+package org.techwitz.jfr;
+
+import io.smallrye.mutiny.Uni;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Wraps service stages in {@link StageEvent}s.
+ * <p>
+ * When no recording has the event enabled the stage is returned untouched, so the only cost is
+ * allocating the event.
+ */
+public final class StageEvents {
+
+    public static final String SUCCESS = "success";
+
+    private StageEvents() {
+    }
+
+    /**
+     * Records an asynchronous stage from subscription until it emits an item or fails.
+     *
+     * @param <T>       The item type of the stage
+     * @param event     A new, not yet begun event
+     * @param shortCode The short code the stage works on, or null
+     * @param stage     The stage
+     * @param outcome   Maps the item to the outcome to record
+     * @return The stage, recording the event
+     */
+    public static <T> Uni<T> record(StageEvent event, String shortCode, Uni<T> stage,
+                                    Function<? super T, String> outcome) {
+        if (!event.isEnabled()) {
+            return stage;
+        }
+        event.shortCodeHash = hash(shortCode);
+        return stage
+                .onSubscription().invoke(event::begin)
+                .onItemOrFailure().invoke((item, failure) -> {
+                    event.outcome = failure == null ? outcome.apply(item) : failure.getClass().getSimpleName();
+                    event.commit();
+                });
+    }
+
+    /**
+     * Records an asynchronous stage with outcome {@value #SUCCESS} when it emits an item.
+     *
+     * @param <T>       The item type of the stage
+     * @param event     A new, not yet begun event
+     * @param shortCode The short code the stage works on, or null
+     * @param stage     The stage
+     * @return The stage, recording the event
+     */
+    public static <T> Uni<T> record(StageEvent event, String shortCode, Uni<T> stage) {
+        return record(event, shortCode, stage, item -> SUCCESS);
+    }
+
+    /**
+     * Records a synchronous stage with outcome {@value #SUCCESS} when it returns.
+     *
+     * @param <T>       The result type of the stage
+     * @param event     A new, not yet begun event
+     * @param shortCode The short code the stage works on, or null
+     * @param stage     The stage
+     * @return The result of the stage
+     */
+    public static <T> T record(StageEvent event, String shortCode, Supplier<T> stage) {
+        return record(event, shortCode, stage, result -> SUCCESS);
+    }
+
+    /**
+     * Records a synchronous stage.
+     *
+     * @param <T>       The result type of the stage
+     * @param event     A new, not yet begun event
+     * @param shortCode The short code the stage works on, or null
+     * @param stage     The stage
+     * @param outcome   Maps the result to the outcome to record
+     * @return The result of the stage
+     */
+    public static <T> T record(StageEvent event, String shortCode, Supplier<T> stage,
+                               Function<? super T, String> outcome) {
+        if (!event.isEnabled()) {
+            return stage.get();
+        }
+        event.shortCodeHash = hash(shortCode);
+        event.begin();
+        try {
+            T result = stage.get();
+            event.outcome = outcome.apply(result);
+            return result;
+        } catch (RuntimeException e) {
+            event.outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static int hash(String shortCode) {
+        return shortCode == null ? 0 : shortCode.hashCode();
+    }
+}
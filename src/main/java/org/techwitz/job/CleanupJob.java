@@ -1,10 +1,12 @@
 package org.techwitz.job;
 
-import org.techwitz.repository.TinyUrlRepository;
 import io.quarkus.scheduler.Scheduled;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
+import org.techwitz.storage.TinyUrlStore;
+
+import java.time.LocalDateTime;
 
 @ApplicationScoped
 public class CleanupJob {
@@ -12,7 +14,7 @@ public class CleanupJob {
     private static final Logger LOG = Logger.getLogger(CleanupJob.class);
 
     @Inject
-    TinyUrlRepository tinyUrlRepository;
+    TinyUrlStore tinyUrlStore;
 
     /**
      * Scheduled job to clean up expired tiny URLs asynchronously.
@@ -22,7 +24,7 @@ public class CleanupJob {
     void cleanupExpiredUrls() {
         LOG.info("Starting cleanup job for expired tiny URLs");
 
-        tinyUrlRepository.deleteExpiredUrlsAsync()
+        tinyUrlStore.deleteExpiredAsync(LocalDateTime.now())
                 .subscribe().with(
                         deletedCount -> LOG.info("Cleanup job completed. Deleted " + deletedCount + " expired tiny URLs"),
                         error -> LOG.error("Error during cleanup job", error)
@@ -0,0 +1,285 @@
+package org.techwitz.metrics;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxThread;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.dto.EventLoopBlockingReport;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Detects event-loop tasks that run longer than a threshold and aggregates their stacks.
+ * <p>
+ * A single daemon thread polls the start time Vert.x keeps for the task each event-loop thread is
+ * currently running ({@link VertxThread#startTime()}), which costs a field read per loop per check. Only
+ * when a task has been running longer than {@code tiny.url.metrics.blocking-watchdog.threshold} is the
+ * thread's stack captured, once per task and at most {@code max-captures-per-minute} times. Stacks are
+ * grouped into sites served by {@code GET /api/admin/event-loop/blocking}; blocked durations go to the
+ * {@code eventloop.blocked} timer.
+ */
+@ApplicationScoped
+public class EventLoopBlockingWatchdog {
+    private static final Logger LOG = Logger.getLogger(EventLoopBlockingWatchdog.class);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.threshold", defaultValue = "PT0.02S")
+    Duration threshold;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.check-interval", defaultValue = "PT0.005S")
+    Duration checkInterval;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.stack-depth", defaultValue = "24")
+    int stackDepth;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.max-sites", defaultValue = "200")
+    int maxSites;
+
+    @ConfigProperty(name = "tiny.url.metrics.blocking-watchdog.max-captures-per-minute", defaultValue = "120")
+    int maxCapturesPerMinute;
+
+    private final OperationTimer blockedTimer = LoggingUtils.timer("eventloop.blocked");
+    private final List<WatchedThread> watched = new CopyOnWriteArrayList<>();
+    private final Set<Thread> discovered = ConcurrentHashMap.newKeySet();
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final AtomicLong blockedTasks = new AtomicLong();
+    private final AtomicLong uncapturedTasks = new AtomicLong();
+
+    private Counter blockedCounter;
+    private Counter uncapturedCounter;
+    private long captureWindowStart;
+    private int capturesInWindow;
+    private volatile Thread checker;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        blockedCounter = metricRegistry.counter("eventLoopBlockedTasks");
+        uncapturedCounter = metricRegistry.counter("eventLoopBlockedTasksUncaptured");
+        metricRegistry.gauge("eventLoopBlockingSites", sites::size);
+
+        // Each event loop registers its own thread, found through a context created on it
+        for (Context context : EventLoops.contexts(vertx)) {
+            context.runOnContext(ignored -> watch(Thread.currentThread()));
+        }
+
+        Thread thread = new Thread(this::run, "event-loop-blocking-watchdog");
+        thread.setDaemon(true);
+        checker = thread;
+        thread.start();
+        LOG.infof("Event-loop blocking watchdog started, threshold %d ms, checked every %d ms",
+                threshold.toMillis(), checkInterval.toMillis());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        Thread thread = checker;
+        checker = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Builds the blocking report.
+     *
+     * @param limit Maximum number of sites to include
+     * @return The sites with the most blocking tasks, most frequent first
+     */
+    public EventLoopBlockingReport report(int limit) {
+        EventLoopBlockingReport report = new EventLoopBlockingReport();
+        report.setThresholdMillis(threshold.toMillis());
+        report.setBlockedTasks(blockedTasks.get());
+        report.setUncapturedTasks(uncapturedTasks.get());
+        report.setSites(sites.values().stream()
+                .sorted(Comparator.comparingLong((Site site) -> site.count).reversed())
+                .limit(Math.max(0, limit))
+                .map(Site::toReport)
+                .toList());
+        return report;
+    }
+
+    /**
+     * Clears the aggregated sites. The {@code /metrics} counters keep counting.
+     */
+    public void reset() {
+        sites.clear();
+        blockedTasks.set(0);
+        uncapturedTasks.set(0);
+    }
+
+    private void watch(Thread thread) {
+        if (thread instanceof VertxThread vertxThread && !vertxThread.isWorker() && discovered.add(thread)) {
+            watched.add(new WatchedThread(vertxThread));
+        }
+    }
+
+    private void run() {
+        long thresholdNanos = threshold.toNanos();
+        long intervalNanos = checkInterval.toNanos();
+        while (checker == Thread.currentThread()) {
+            long now = System.nanoTime();
+            for (WatchedThread thread : watched) {
+                check(thread, now, thresholdNanos);
+            }
+            LockSupport.parkNanos(intervalNanos);
+        }
+    }
+
+    private void check(WatchedThread watchedThread, long now, long thresholdNanos) {
+        // Vert.x sets this when a task starts and clears it when the task ends; 0 means idle
+        long start = watchedThread.thread.startTime();
+        if (watchedThread.trackedStart != 0 && start != watchedThread.trackedStart) {
+            finish(watchedThread);
+        }
+        if (start == 0 || now - start < thresholdNanos) {
+            return;
+        }
+        if (start == watchedThread.trackedStart) {
+            watchedThread.lastSeen = now;
+            return;
+        }
+
+        // A new task has crossed the threshold
+        watchedThread.trackedStart = start;
+        watchedThread.lastSeen = now;
+        blockedTasks.incrementAndGet();
+        blockedCounter.inc();
+        if (!tryAcquireCapture(now)) {
+            uncapturedTasks.incrementAndGet();
+            uncapturedCounter.inc();
+            watchedThread.site = null;
+            return;
+        }
+        StackTraceElement[] stack = watchedThread.thread.getStackTrace();
+        if (watchedThread.thread.startTime() != start) {
+            // The task finished while the stack was captured, so the stack belongs to something else
+            watchedThread.site = null;
+            return;
+        }
+        watchedThread.site = siteFor(stack, watchedThread.thread.getName());
+    }
+
+    private void finish(WatchedThread watchedThread) {
+        long blockedNanos = watchedThread.lastSeen - watchedThread.trackedStart;
+        blockedTimer.recordNanos(blockedNanos);
+        if (watchedThread.site != null) {
+            watchedThread.site.record(blockedNanos);
+        }
+        watchedThread.trackedStart = 0;
+        watchedThread.site = null;
+    }
+
+    private Site siteFor(StackTraceElement[] stack, String threadName) {
+        StackTraceElement[] frames = Arrays.copyOf(stack, Math.min(stack.length, stackDepth));
+        String key = Arrays.toString(frames);
+        Site site = sites.get(key);
+        if (site == null) {
+            if (sites.size() >= maxSites) {
+                return null;
+            }
+            site = new Site(frames);
+            sites.put(key, site);
+            LOG.warnf("Event-loop thread %s blocked for more than %d ms at:%n\t%s", threadName,
+                    threshold.toMillis(), String.join(System.lineSeparator() + "\t", site.stack));
+        }
+        site.occurred(threadName);
+        return site;
+    }
+
+    private boolean tryAcquireCapture(long now) {
+        if (now - captureWindowStart >= TimeUnit.MINUTES.toNanos(1)) {
+            captureWindowStart = now;
+            capturesInWindow = 0;
+        }
+        if (capturesInWindow >= maxCapturesPerMinute) {
+            return false;
+        }
+        capturesInWindow++;
+        return true;
+    }
+
+    /**
+     * Per-thread tracking state; only touched by the watchdog thread.
+     */
+    private static final class WatchedThread {
+        final VertxThread thread;
+        long trackedStart;
+        long lastSeen;
+        Site site;
+
+        WatchedThread(VertxThread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Aggregate for one distinct stack. Only the watchdog thread writes, so the fields are volatile for
+     * readers rather than atomic.
+     */
+    private static final class Site {
+        final List<String> stack;
+        volatile long count;
+        volatile long totalBlockedNanos;
+        volatile long maxBlockedNanos;
+        volatile String lastThread;
+        volatile LocalDateTime lastSeen;
+
+        Site(StackTraceElement[] frames) {
+            this.stack = Arrays.stream(frames).map(StackTraceElement::toString).toList();
+        }
+
+        void occurred(String threadName) {
+            count++;
+            lastThread = threadName;
+            lastSeen = LocalDateTime.now();
+        }
+
+        void record(long blockedNanos) {
+            totalBlockedNanos += blockedNanos;
+            if (blockedNanos > maxBlockedNanos) {
+                maxBlockedNanos = blockedNanos;
+            }
+        }
+
+        EventLoopBlockingReport.Site toReport() {
+            EventLoopBlockingReport.Site report = new EventLoopBlockingReport.Site();
+            report.setStack(stack);
+            report.setCount(count);
+            report.setTotalBlockedMillis(TimeUnit.NANOSECONDS.toMillis(totalBlockedNanos));
+            report.setMaxBlockedMillis(TimeUnit.NANOSECONDS.toMillis(maxBlockedNanos));
+            report.setLastThread(lastThread);
+            report.setLastSeen(lastSeen);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.techwitz.metrics;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Vert.x event-loop lag: at a fixed rate a probe task is submitted to every event loop from a
+ * separate thread, and the time until it runs is recorded in the {@code eventloop.lag} timer.
+ */
+@ApplicationScoped
+public class EventLoopLagProbe {
+    private static final Logger LOG = Logger.getLogger(EventLoopLagProbe.class);
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "tiny.url.metrics.event-loop-probe.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.metrics.event-loop-probe.interval", defaultValue = "PT0.1S")
+    Duration interval;
+
+    private final OperationTimer lag = LoggingUtils.timer("eventloop.lag");
+    private ScheduledExecutorService scheduler;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        List<Context> contexts = EventLoops.contexts(vertx);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-loop-lag-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodNanos = interval.toNanos();
+        scheduler.scheduleAtFixedRate(() -> {
+            for (Context context : contexts) {
+                long submitted = System.nanoTime();
+                context.runOnContext(ignored -> lag.recordSince(submitted));
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        LOG.infof("Event-loop lag probe started on %d event loops every %d ms", contexts.size(), interval.toMillis());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public OperationTimer getLagTimer() {
+        return lag;
+    }
+}
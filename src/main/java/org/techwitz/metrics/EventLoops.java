@@ -0,0 +1,37 @@
+package org.techwitz.metrics;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.VertxInternal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers shared by the event-loop probes.
+ */
+final class EventLoops {
+
+    private EventLoops() {
+    }
+
+    /**
+     * Returns one context per event loop. {@link Vertx#getOrCreateContext()} cannot be used for this: called
+     * outside Vert.x it hands out the same sticky context every time, so each context is created on one of
+     * the loops of the Netty event-loop group instead.
+     *
+     * @param vertx The Vert.x instance
+     * @return One context per event loop, in the order of the group
+     */
+    static List<Context> contexts(Vertx vertx) {
+        VertxInternal internal = (VertxInternal) vertx;
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Context> contexts = new ArrayList<>();
+        for (EventExecutor executor : internal.getEventLoopGroup()) {
+            contexts.add(internal.createEventLoopContext((EventLoop) executor, internal.getWorkerPool(), classLoader));
+        }
+        return contexts;
+    }
+}
@@ -0,0 +1,32 @@
+package org.techwitz.metrics;
+
+import io.quarkus.vertx.VertxOptionsCustomizer;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.metrics.MetricsOptions;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Enables Vert.x metrics on the Quarkus-managed Vert.x instance, which {@link VertxRuntimeMetricsFactory} then
+ * installs as {@link VertxRuntimeMetrics}.
+ */
+@ApplicationScoped
+public class VertxMetricsCustomizer implements VertxOptionsCustomizer {
+    private static final Logger LOG = Logger.getLogger(VertxMetricsCustomizer.class);
+
+    @ConfigProperty(name = "tiny.url.metrics.vertx.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Override
+    public void accept(VertxOptions options) {
+        if (!enabled) {
+            return;
+        }
+        if (options.getMetricsOptions() != null && options.getMetricsOptions().getFactory() != null) {
+            LOG.warn("Vert.x metrics are already provided by another extension, pool and Redis metrics disabled");
+            return;
+        }
+        options.setMetricsOptions(new MetricsOptions().setEnabled(true));
+    }
+}
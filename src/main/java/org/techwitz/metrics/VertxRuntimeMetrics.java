@@ -0,0 +1,128 @@
+package org.techwitz.metrics;
+
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.metrics.ClientMetrics;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import io.vertx.core.spi.metrics.VertxMetrics;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vert.x metrics SPI implementation that only tracks what the service needs: reactive SQL pool
+ * saturation and Redis command latency. Everything else falls back to the no-op defaults.
+ * <p>
+ * Vert.x creates this before CDI is available, so the collected values live in static fields and are
+ * read by {@code HealthMetricsLogger}.
+ */
+public class VertxRuntimeMetrics implements VertxMetrics {
+
+    private static final LongAdder SQL_POOL_IN_USE = new LongAdder();
+    private static final LongAdder SQL_POOL_WAITING = new LongAdder();
+    private static final LongAdder SQL_POOL_REJECTED = new LongAdder();
+    private static final LongAdder REDIS_RESETS = new LongAdder();
+
+    static final OperationTimer SQL_POOL_WAIT = LoggingUtils.timer("db.pool.wait");
+    static final OperationTimer REDIS_COMMAND = LoggingUtils.timer("redis.command");
+
+    @Override
+    public PoolMetrics<?> createPoolMetrics(String poolType, String poolName, int maxPoolSize) {
+        return "sql".equals(poolType) ? new SqlPoolMetrics() : null;
+    }
+
+    @Override
+    public ClientMetrics<?, ?, ?, ?> createClientMetrics(SocketAddress remoteAddress, String type, String namespace) {
+        return "redis".equals(type) ? new RedisClientMetrics() : null;
+    }
+
+    /**
+     * @return Connections currently checked out of the reactive SQL pools
+     */
+    public static long sqlPoolInUse() {
+        return SQL_POOL_IN_USE.sum();
+    }
+
+    /**
+     * @return Requests currently waiting for a reactive SQL pool connection
+     */
+    public static long sqlPoolWaiting() {
+        return SQL_POOL_WAITING.sum();
+    }
+
+    /**
+     * @return Requests rejected by the reactive SQL pools since startup
+     */
+    public static long sqlPoolRejected() {
+        return SQL_POOL_REJECTED.sum();
+    }
+
+    /**
+     * @return Redis requests reset before a response arrived since startup
+     */
+    public static long redisResets() {
+        return REDIS_RESETS.sum();
+    }
+
+    public static OperationTimer sqlPoolWaitTimer() {
+        return SQL_POOL_WAIT;
+    }
+
+    public static OperationTimer redisCommandTimer() {
+        return REDIS_COMMAND;
+    }
+
+    /**
+     * The metric object is the {@link System#nanoTime()} at which the request was queued.
+     */
+    static final class SqlPoolMetrics implements PoolMetrics<Long> {
+        @Override
+        public Long submitted() {
+            SQL_POOL_WAITING.increment();
+            return System.nanoTime();
+        }
+
+        @Override
+        public Long begin(Long queuedAt) {
+            SQL_POOL_WAITING.decrement();
+            SQL_POOL_IN_USE.increment();
+            if (queuedAt != null) {
+                SQL_POOL_WAIT.recordSince(queuedAt);
+            }
+            return queuedAt;
+        }
+
+        @Override
+        public void rejected(Long queuedAt) {
+            SQL_POOL_WAITING.decrement();
+            SQL_POOL_REJECTED.increment();
+        }
+
+        @Override
+        public void end(Long queuedAt, boolean succeeded) {
+            SQL_POOL_IN_USE.decrement();
+        }
+    }
+
+    /**
+     * The request metric is the {@link System#nanoTime()} at which the command was written.
+     */
+    static final class RedisClientMetrics implements ClientMetrics<Long, Object, Object, Object> {
+        @Override
+        public Long requestBegin(String uri, Object request) {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void responseEnd(Long requestMetric) {
+            if (requestMetric != null) {
+                REDIS_COMMAND.recordSince(requestMetric);
+            }
+        }
+
+        @Override
+        public void requestReset(Long requestMetric) {
+            REDIS_RESETS.increment();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.techwitz.metrics;
+
+import io.vertx.core.VertxOptions;
+import io.vertx.core.spi.VertxMetricsFactory;
+import io.vertx.core.spi.metrics.VertxMetrics;
+
+/**
+ * Creates {@link VertxRuntimeMetrics}. Registered as a Vert.x service provider in
+ * {@code META-INF/services/io.vertx.core.spi.VertxServiceProvider}, so every Vert.x instance loads it, but it
+ * only installs the metrics when {@link VertxMetricsCustomizer} has enabled them and no other extension has
+ * provided metrics first.
+ */
+public class VertxRuntimeMetricsFactory implements VertxMetricsFactory {
+
+    @Override
+    public VertxMetrics metrics(VertxOptions options) {
+        return new VertxRuntimeMetrics();
+    }
+}
@@ -0,0 +1,71 @@
+package org.techwitz.repository;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.techwitz.clicklog.ClickLogRecord;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Writes raw click events shipped from the click log into the {@code tiny_url_click_events} table.
+ * <p>
+ * The reactive client does not speak the COPY protocol, so a batch is sent as one array per column and
+ * expanded server side with {@code unnest}: a single statement and a single round trip per batch, no
+ * matter how many rows it holds.
+ */
+@ApplicationScoped
+public class ClickEventRepository {
+
+    private static final String INSERT = """
+            INSERT INTO tiny_url_click_events
+                (segment_id, record_offset, clicked_at, short_code, status, referrer, user_agent)
+            SELECT * FROM unnest($1::bigint[], $2::int[], $3::timestamp[], $4::varchar[], $5::smallint[],
+                                 $6::varchar[], $7::varchar[])
+            ON CONFLICT (segment_id, record_offset) DO NOTHING""";
+
+    @Inject
+    Pool pool;
+
+    /**
+     * Inserts records of one segment asynchronously. Records already stored are skipped, so a segment
+     * can be shipped again after a failure or a restart without duplicating clicks.
+     *
+     * @param segmentId The id of the segment the records were read from
+     * @param records   The records
+     * @return Uni with the number of rows inserted
+     */
+    public Uni<Integer> insertAllAsync(long segmentId, List<ClickLogRecord> records) {
+        if (records.isEmpty()) {
+            return Uni.createFrom().item(0);
+        }
+        int size = records.size();
+        Long[] segmentIds = new Long[size];
+        Integer[] offsets = new Integer[size];
+        LocalDateTime[] clickedAt = new LocalDateTime[size];
+        String[] shortCodes = new String[size];
+        Short[] statuses = new Short[size];
+        String[] referrers = new String[size];
+        String[] userAgents = new String[size];
+        ZoneId zone = ZoneId.systemDefault();
+        for (int i = 0; i < size; i++) {
+            ClickLogRecord record = records.get(i);
+            segmentIds[i] = segmentId;
+            offsets[i] = record.offset();
+            clickedAt[i] = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.epochMillis()), zone);
+            shortCodes[i] = record.shortCode();
+            statuses[i] = (short) record.status();
+            referrers[i] = record.referrer();
+            userAgents[i] = record.userAgent();
+        }
+        return pool.preparedQuery(INSERT)
+                .execute(Tuple.tuple(List.of(segmentIds, offsets, clickedAt, shortCodes, statuses, referrers,
+                                             userAgents)))
+                .map(rows -> rows.rowCount());
+    }
+}
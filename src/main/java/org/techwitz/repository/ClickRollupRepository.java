@@ -0,0 +1,89 @@
+package org.techwitz.repository;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.techwitz.analytics.ClickGranularity;
+import org.techwitz.analytics.ClickRollup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes the {@code tiny_url_clicks_rollup} table.
+ * <p>
+ * Uses the reactive SQL client directly rather than Panache: writes are multi-row upserts issued from
+ * the click aggregator thread, outside any Hibernate session.
+ */
+@ApplicationScoped
+public class ClickRollupRepository {
+
+    private static final String UPSERT = """
+            INSERT INTO tiny_url_clicks_rollup (short_code, bucket_start, clicks, redirected, rejected)
+            VALUES ($1, $2, $3, $4, $5)
+            ON CONFLICT (short_code, bucket_start) DO UPDATE SET
+                clicks = tiny_url_clicks_rollup.clicks + EXCLUDED.clicks,
+                redirected = tiny_url_clicks_rollup.redirected + EXCLUDED.redirected,
+                rejected = tiny_url_clicks_rollup.rejected + EXCLUDED.rejected""";
+
+    private static final String SELECT_BUCKETS = """
+            SELECT date_trunc($2, bucket_start) AS bucket,
+                   SUM(clicks) AS clicks, SUM(redirected) AS redirected, SUM(rejected) AS rejected
+            FROM tiny_url_clicks_rollup
+            WHERE short_code = $1 AND bucket_start >= $3 AND bucket_start < $4
+            GROUP BY bucket
+            ORDER BY bucket""";
+
+    @Inject
+    Pool pool;
+
+    /**
+     * Adds the given counts to the stored rollups in one batched, transactional upsert asynchronously.
+     *
+     * @param rollups The counts to add, at most one per short code and bucket
+     * @return Uni completing when the batch is written, failing when nothing of it was added
+     */
+    public Uni<Void> addAllAsync(Collection<ClickRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Tuple> batch = new ArrayList<>(rollups.size());
+        for (ClickRollup rollup : rollups) {
+            batch.add(Tuple.of(rollup.shortCode(), rollup.bucketStart(),
+                               rollup.clicks(), rollup.redirected(), rollup.rejected()));
+        }
+        // One transaction, so a batch whose write failed added nothing and can be retried; one that is
+        // only slow may still commit, so it must not be retried before it has failed
+        return pool.withTransaction(connection -> connection.preparedQuery(UPSERT).executeBatch(batch))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Finds the rollups of a short code summed up per bucket of the given granularity asynchronously.
+     *
+     * @param shortCode   The short code
+     * @param granularity The bucket size
+     * @param from        Start of the range, inclusive
+     * @param to          End of the range, exclusive
+     * @return Uni with the non-empty buckets in time order
+     */
+    public Uni<List<ClickRollup>> findBucketsAsync(String shortCode, ClickGranularity granularity,
+                                                   LocalDateTime from, LocalDateTime to) {
+        return pool.preparedQuery(SELECT_BUCKETS)
+                .execute(Tuple.of(shortCode, granularity.sqlUnit(), from, to))
+                .map(rows -> {
+                    List<ClickRollup> buckets = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        buckets.add(new ClickRollup(shortCode, row.getLocalDateTime("bucket"),
+                                                    row.getLong("clicks"), row.getLong("redirected"),
+                                                    row.getLong("rejected")));
+                    }
+                    return buckets;
+                });
+    }
+}
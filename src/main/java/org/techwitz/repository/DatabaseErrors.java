@@ -0,0 +1,30 @@
+package org.techwitz.repository;
+
+import io.vertx.sqlclient.DatabaseException;
+
+/**
+ * Classifies failures of the reactive SQL client.
+ */
+public final class DatabaseErrors {
+
+    private DatabaseErrors() {
+    }
+
+    /**
+     * Whether the database rejected the data itself, such as a value too long for its column, so
+     * writing the same data again can never succeed.
+     *
+     * @param failure The failure of a write
+     * @return Whether the failure is, or is caused by, a data exception (SQLSTATE class 22) or an
+     * integrity constraint violation (class 23)
+     */
+    public static boolean isRejectedData(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DatabaseException database && database.getSqlState() != null) {
+                String state = database.getSqlState();
+                return state.startsWith("22") || state.startsWith("23");
+            }
+        }
+        return false;
+    }
+}
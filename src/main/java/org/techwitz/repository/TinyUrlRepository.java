@@ -1,14 +1,63 @@
 package org.techwitz.repository;
 
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import org.techwitz.domain.TinyUrl;
 import io.quarkus.hibernate.reactive.panache.PanacheRepository;
+import io.smallrye.common.vertx.VertxContext;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.techwitz.storage.LimitsUpdate;
+import org.techwitz.storage.TinyUrlStore;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 
+/**
+ * The Postgres storage engine, on Hibernate Reactive Panache. Methods must run in a Hibernate session
+ * ({@link #withSession} or {@link #withTransaction}, e.g. through {@link org.techwitz.storage.StoreSession});
+ * updates join the current transaction.
+ */
 @ApplicationScoped
-public class TinyUrlRepository implements PanacheRepository<TinyUrl> {
+@IfBuildProperty(name = "tiny.url.storage.engine", stringValue = "postgres", enableIfMissing = true)
+public class TinyUrlRepository implements PanacheRepository<TinyUrl>, TinyUrlStore {
+
+    @Inject
+    Vertx vertx;
+
+    // Mirrors TinyUrl#isExpired after counting the attempt, so the check and the increment are one statement
+    private static final String RECORD_ACCESS = """
+            attemptCount = attemptCount + 1, usageCount = usageCount + 1, version = version + 1
+            where shortCode = ?1
+              and active = true
+              and (expirationTime is null or expirationTime >= ?2)
+              and (oneTimeUse = false or usageCount < 1)
+              and (maxUsage <= 0 or usageCount < maxUsage)
+              and (maxAttempts <= 0 or attemptCount + 1 < maxAttempts)""";
+
+    private static final String RECORD_ACCESSES = """
+            attemptCount = attemptCount + ?2, usageCount = usageCount + ?2, version = version + 1
+            where shortCode = ?1
+              and active = true
+              and (expirationTime is null or expirationTime >= ?3)
+              and oneTimeUse = false
+              and maxUsage <= 0
+              and maxAttempts <= 0""";
+
+    @Override
+    public <T> Uni<T> withSession(Supplier<Uni<T>> work) {
+        return Panache.withSession(work);
+    }
+
+    @Override
+    public <T> Uni<T> withTransaction(Supplier<Uni<T>> work) {
+        return Panache.withTransaction(work);
+    }
 
     /**
      * Finds a tiny URL by its short code asynchronously.
@@ -16,10 +65,31 @@ public class TinyUrlRepository implements PanacheRepository<TinyUrl> {
      * @param shortCode The short code to search for
      * @return Uni containing the TinyUrl if found, or null if not found
      */
+    @Override
     public Uni<TinyUrl> findByShortCodeAsync(String shortCode) {
         return find("shortCode", shortCode).firstResult();
     }
 
+    /**
+     * Finds a tiny URL in a session of its own, opened on a new duplicated Vert.x context, so the query
+     * can run while the caller's session is busy.
+     */
+    @Override
+    public Uni<TinyUrl> findByShortCodeDetachedAsync(String shortCode) {
+        return onNewContext(Panache.withSession(() -> findByShortCodeAsync(shortCode)));
+    }
+
+    /**
+     * Finds the tiny URLs for several short codes with a single IN query asynchronously.
+     *
+     * @param shortCodes The short codes to search for
+     * @return Uni with List of the tiny URLs that exist; unknown codes are absent
+     */
+    @Override
+    public Uni<List<TinyUrl>> findByShortCodesAsync(Collection<String> shortCodes) {
+        return list("shortCode in ?1", shortCodes);
+    }
+
     /**
      * Finds all expired tiny URLs asynchronously.
      *
@@ -45,8 +115,12 @@ public class TinyUrlRepository implements PanacheRepository<TinyUrl> {
      * @return Uni with Number of records deleted
      */
     public Uni<Long> deleteExpiredUrlsAsync() {
-        LocalDateTime now = LocalDateTime.now();
-        return delete("expirationTime < ?1 AND expirationTime IS NOT NULL", now);
+        return deleteExpiredAsync(LocalDateTime.now());
+    }
+
+    @Override
+    public Uni<Long> deleteExpiredAsync(LocalDateTime before) {
+        return delete("expirationTime < ?1 AND expirationTime IS NOT NULL", before);
     }
 
     /**
@@ -58,4 +132,61 @@ public class TinyUrlRepository implements PanacheRepository<TinyUrl> {
     public Uni<TinyUrl> persistAsync(TinyUrl tinyUrl) {
         return persistAndFlush(tinyUrl);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Uni<TinyUrl> insertAsync(TinyUrl tinyUrl) {
+        return persistAndFlush(tinyUrl);
+    }
+
+    /**
+     * Counts an access with a single conditional UPDATE, so concurrent redirects of the same code
+     * neither lose increments nor exceed a limit. Runs in its own transaction unless one is active.
+     */
+    @Override
+    public Uni<Boolean> recordAccessAsync(String shortCode, LocalDateTime now) {
+        return Panache.withTransaction(() -> update(RECORD_ACCESS, shortCode, now))
+                .map(updated -> updated > 0);
+    }
+
+    @Override
+    public Uni<Boolean> recordAttemptAsync(String shortCode) {
+        return Panache.withTransaction(() -> update(
+                        "attemptCount = attemptCount + 1, version = version + 1 where shortCode = ?1", shortCode))
+                .map(updated -> updated > 0);
+    }
+
+    /**
+     * Counts the accesses with a single conditional UPDATE, in a transaction of its own on a new
+     * duplicated Vert.x context, so it can run outside of a request (e.g. from the scheduler).
+     */
+    @Override
+    public Uni<Boolean> recordAccessesAsync(String shortCode, int count, LocalDateTime now) {
+        return onNewContext(Panache.withTransaction(() -> update(RECORD_ACCESSES, shortCode, count, now)))
+                .map(updated -> updated > 0);
+    }
+
+    @Override
+    public Uni<TinyUrl> deactivateAsync(String shortCode) {
+        return findByShortCodeAsync(shortCode)
+                .onItem().ifNotNull().transformToUni(tinyUrl -> {
+                    tinyUrl.setActive(false);
+                    tinyUrl.incrementVersion();
+                    return persistAsync(tinyUrl);
+                });
+    }
+
+    @Override
+    public Uni<TinyUrl> updateLimitsAsync(String shortCode, LimitsUpdate update) {
+        return findByShortCodeAsync(shortCode)
+                .onItem().ifNotNull().transformToUni(tinyUrl -> {
+                    update.applyTo(tinyUrl);
+                    tinyUrl.incrementVersion();
+                    return persistAsync(tinyUrl);
+                });
+    }
+
+    private <T> Uni<T> onNewContext(Uni<T> work) {
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+        return work.runSubscriptionOn(task -> context.runOnContext(ignored -> task.run()));
+    }
+}
@@ -0,0 +1,127 @@
+package org.techwitz.repository;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.techwitz.analytics.VisitorSketchKey;
+import org.techwitz.util.HyperLogLog;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the daily unique-visitor sketches in {@code tiny_url_visitors_hll}.
+ * <p>
+ * Sketches are merged, not overwritten: within one transaction missing rows are created empty, the
+ * affected rows are locked, merged with the new sketches in memory and written back. Merging is
+ * idempotent, so retrying a batch after a failure cannot inflate the estimates.
+ */
+@ApplicationScoped
+public class VisitorSketchRepository {
+
+    private static final String INSERT_MISSING = """
+            INSERT INTO tiny_url_visitors_hll (short_code, bucket_day, sketch)
+            VALUES ($1, $2, $3)
+            ON CONFLICT (short_code, bucket_day) DO NOTHING""";
+
+    private static final String SELECT_FOR_UPDATE = """
+            SELECT short_code, bucket_day, sketch
+            FROM tiny_url_visitors_hll
+            WHERE short_code = ANY($1) AND bucket_day = ANY($2)
+            FOR UPDATE""";
+
+    private static final String UPDATE = """
+            UPDATE tiny_url_visitors_hll SET sketch = $3
+            WHERE short_code = $1 AND bucket_day = $2""";
+
+    private static final String SELECT_RANGE = """
+            SELECT sketch
+            FROM tiny_url_visitors_hll
+            WHERE short_code = $1 AND bucket_day >= $2 AND bucket_day <= $3""";
+
+    @Inject
+    Pool pool;
+
+    /**
+     * Merges the given sketches into the stored ones in one transaction asynchronously.
+     *
+     * @param sketches The sketches to merge, by short code and day
+     * @return Uni completing when the sketches are written
+     */
+    public Uni<Void> mergeAllAsync(Map<VisitorSketchKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return pool.withTransaction(connection -> mergeAll(connection, sketches));
+    }
+
+    private Uni<Void> mergeAll(SqlConnection connection, Map<VisitorSketchKey, HyperLogLog> sketches) {
+        List<Tuple> inserts = new ArrayList<>(sketches.size());
+        List<String> codes = new ArrayList<>(sketches.size());
+        List<LocalDate> days = new ArrayList<>();
+        for (Map.Entry<VisitorSketchKey, HyperLogLog> entry : sketches.entrySet()) {
+            VisitorSketchKey key = entry.getKey();
+            inserts.add(Tuple.of(key.shortCode(), key.day(),
+                                 Buffer.buffer(new HyperLogLog(entry.getValue().precision()).toBytes())));
+            codes.add(key.shortCode());
+            if (!days.contains(key.day())) {
+                days.add(key.day());
+            }
+        }
+
+        return connection.preparedQuery(INSERT_MISSING).executeBatch(inserts)
+                .flatMap(ignored -> connection.preparedQuery(SELECT_FOR_UPDATE)
+                        .execute(Tuple.of(codes.toArray(String[]::new), days.toArray(LocalDate[]::new))))
+                .flatMap(rows -> {
+                    Map<VisitorSketchKey, byte[]> stored = new HashMap<>(rows.size() * 2);
+                    for (Row row : rows) {
+                        stored.put(new VisitorSketchKey(row.getString("short_code"), row.getLocalDate("bucket_day")),
+                                   row.getBuffer("sketch").getBytes());
+                    }
+                    List<Tuple> updates = new ArrayList<>(sketches.size());
+                    for (Map.Entry<VisitorSketchKey, HyperLogLog> entry : sketches.entrySet()) {
+                        HyperLogLog merged = entry.getValue();
+                        byte[] existing = stored.get(entry.getKey());
+                        if (existing != null) {
+                            HyperLogLog persisted = HyperLogLog.fromBytes(existing);
+                            if (persisted.precision() == merged.precision()) {
+                                persisted.merge(merged);
+                                merged = persisted;
+                            }
+                        }
+                        updates.add(Tuple.of(entry.getKey().shortCode(), entry.getKey().day(),
+                                             Buffer.buffer(merged.toBytes())));
+                    }
+                    return connection.preparedQuery(UPDATE).executeBatch(updates);
+                })
+                .replaceWithVoid();
+    }
+
+    /**
+     * Finds the daily sketches of a short code asynchronously.
+     *
+     * @param shortCode The short code
+     * @param fromDay   First day, inclusive
+     * @param toDay     Last day, inclusive
+     * @return Uni with the stored sketches
+     */
+    public Uni<List<HyperLogLog>> findAsync(String shortCode, LocalDate fromDay, LocalDate toDay) {
+        return pool.preparedQuery(SELECT_RANGE)
+                .execute(Tuple.of(shortCode, fromDay, toDay))
+                .map(rows -> {
+                    List<HyperLogLog> sketches = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        sketches.add(HyperLogLog.fromBytes(row.getBuffer("sketch").getBytes()));
+                    }
+                    return sketches;
+                });
+    }
+}
@@ -1,11 +1,21 @@
 package org.techwitz.scheduler;
 
+import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.HdrHistogram.Histogram;
 import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Metadata;
 import org.jboss.logging.Logger;
+import org.techwitz.interceptor.EndpointMetricsFilter;
+import org.techwitz.metrics.VertxRuntimeMetrics;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
 
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
@@ -18,8 +28,41 @@ public class HealthMetricsLogger {
     @Inject
     MetricRegistry metricRegistry;
 
+    // Values of the previous run, used to report deltas for the last interval
+    private long lastRunNanos = System.nanoTime();
+    private long lastGcCount = totalGcCount();
+    private long lastGcTimeMillis = totalGcTimeMillis();
+    private long lastAllocatedBytes = totalAllocatedBytes();
+
+    private volatile long intervalGcCount;
+    private volatile long intervalGcTimeMillis;
+    private volatile double allocationRateBytesPerSecond;
+
+    void onStart(@Observes StartupEvent event) {
+        metricRegistry.gauge(Metadata.builder()
+                .withName("gcPauseTime")
+                .withDescription("Total GC time over the last health metrics interval")
+                .withUnit(MetricUnits.MILLISECONDS)
+                .build(), this, logger -> logger.intervalGcTimeMillis);
+        metricRegistry.gauge(Metadata.builder()
+                .withName("gcCount")
+                .withDescription("Number of GC runs over the last health metrics interval")
+                .build(), this, logger -> logger.intervalGcCount);
+        metricRegistry.gauge(Metadata.builder()
+                .withName("allocationRate")
+                .withDescription("Heap allocation rate over the last health metrics interval")
+                .withUnit(MetricUnits.BYTES + "/" + MetricUnits.SECONDS)
+                .build(), this, logger -> logger.allocationRateBytesPerSecond);
+        metricRegistry.gauge("dbPoolInUse", VertxRuntimeMetrics::sqlPoolInUse);
+        metricRegistry.gauge("dbPoolWaiting", VertxRuntimeMetrics::sqlPoolWaiting);
+        metricRegistry.gauge("dbPoolRejected", VertxRuntimeMetrics::sqlPoolRejected);
+    }
+
     /**
      * Logs system health metrics every 5 minutes.
+     * <p>
+     * GC and allocation figures cover the time since the previous run; latency percentiles cover the
+     * last operation metrics interval ({@code tiny.url.metrics.interval}).
      */
     @Scheduled(every = "5m")
     void logHealthMetrics() {
@@ -42,7 +85,81 @@ public class HealthMetricsLogger {
         LOG.infof("HEALTH_METRICS | Memory: %d/%d MB (%.2f%%) | CPU Load: %.2f | Threads: %d (Peak: %d)",
                 heapUsed, heapMax, heapUtilization, systemLoad, threadCount, peakThreadCount);
 
+        // GC and allocation metrics for the interval since the previous run
+        long now = System.nanoTime();
+        double intervalSeconds = Math.max(1e-3, (now - lastRunNanos) / 1e9);
+        long gcCount = totalGcCount();
+        long gcTimeMillis = totalGcTimeMillis();
+        long allocatedBytes = totalAllocatedBytes();
+        intervalGcCount = gcCount - lastGcCount;
+        intervalGcTimeMillis = gcTimeMillis - lastGcTimeMillis;
+        allocationRateBytesPerSecond = allocatedBytes < 0 ? -1 : (allocatedBytes - lastAllocatedBytes) / intervalSeconds;
+        lastRunNanos = now;
+        lastGcCount = gcCount;
+        lastGcTimeMillis = gcTimeMillis;
+        lastAllocatedBytes = allocatedBytes;
+
+        LOG.infof("HEALTH_METRICS | GC: %d runs, %d ms (%.2f%% of interval) | Allocation: %.1f MB/s",
+                intervalGcCount, intervalGcTimeMillis, intervalGcTimeMillis / (intervalSeconds * 10),
+                allocationRateBytesPerSecond / (1024 * 1024));
+
+        // Where time goes: event loop, reactive pool, Redis
+        Histogram lag = LoggingUtils.timer("eventloop.lag").lastInterval();
+        Histogram poolWait = VertxRuntimeMetrics.sqlPoolWaitTimer().lastInterval();
+        Histogram redis = VertxRuntimeMetrics.redisCommandTimer().lastInterval();
+        LOG.infof("HEALTH_METRICS | Event loop lag p99/max: %d/%d us | DB pool in use: %d, waiting: %d, " +
+                        "wait p99/max: %d/%d us | Redis p50/p99: %d/%d us (%d commands)",
+                micros(lag, 99.0), lag.getMaxValue() / 1_000,
+                VertxRuntimeMetrics.sqlPoolInUse(), VertxRuntimeMetrics.sqlPoolWaiting(),
+                micros(poolWait, 99.0), poolWait.getMaxValue() / 1_000,
+                micros(redis, 50.0), micros(redis, 99.0), redis.getTotalCount());
+
+        // Per-endpoint latency
+        for (OperationTimer timer : LoggingUtils.timers()) {
+            if (!timer.getName().startsWith(EndpointMetricsFilter.TIMER_PREFIX)) {
+                continue;
+            }
+            Histogram interval = timer.lastInterval();
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            LOG.infof("HEALTH_METRICS | Endpoint: %s | Count: %d | p50: %d us | p90: %d us | p99: %d us | p999: %d us",
+                    timer.getName().substring(EndpointMetricsFilter.TIMER_PREFIX.length()),
+                    interval.getTotalCount(), micros(interval, 50.0), micros(interval, 90.0),
+                    micros(interval, 99.0), micros(interval, 99.9));
+        }
+
         // Reset peak thread count to track periods
         threadMXBean.resetPeakThreadCount();
     }
+
+    private static long micros(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1_000;
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long totalGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static long totalAllocatedBytes() {
+        // Not available on every VM (e.g. some native images)
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()
+                && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return threadMXBean.getTotalThreadAllocatedBytes();
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,90 @@
+package org.techwitz.scheduler;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.HdrHistogram.Histogram;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Closes an interval on every {@link OperationTimer} and publishes the interval percentiles as gauges.
+ * <p>
+ * Each timer is exported as {@code operationLatency} with a {@code quantile} tag (p50, p90, p99, p999,
+ * max) in nanoseconds, plus {@code operationCount} and {@code operationRate} for the last interval.
+ */
+@ApplicationScoped
+public class OperationMetricsExporter {
+    private static final Logger LOG = Logger.getLogger(OperationMetricsExporter.class);
+
+    private static final Metadata LATENCY = Metadata.builder()
+            .withName("operationLatency")
+            .withDescription("Operation latency percentiles over the last metrics interval")
+            .withUnit(MetricUnits.NANOSECONDS)
+            .build();
+    private static final Metadata COUNT = Metadata.builder()
+            .withName("operationCount")
+            .withDescription("Number of operations completed in the last metrics interval")
+            .build();
+    private static final Metadata RATE = Metadata.builder()
+            .withName("operationRate")
+            .withDescription("Operations per second in the last metrics interval")
+            .withUnit(MetricUnits.PER_SECOND)
+            .build();
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.metrics.log-intervals", defaultValue = "false")
+    boolean logIntervals;
+
+    private final Set<String> exported = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Rolls all operation timers into a new interval.
+     */
+    @Scheduled(every = "${tiny.url.metrics.interval:60s}")
+    void rollIntervals() {
+        for (OperationTimer timer : LoggingUtils.timers()) {
+            Histogram interval = timer.rollInterval();
+            if (exported.add(timer.getName())) {
+                register(timer);
+            }
+            if (logIntervals && interval.getTotalCount() > 0) {
+                LOG.infof("OPERATION_METRICS | Operation: %s | Count: %d | p50: %d us | p99: %d us | p999: %d us | Max: %d us",
+                        timer.getName(), interval.getTotalCount(),
+                        interval.getValueAtPercentile(50.0) / 1_000,
+                        interval.getValueAtPercentile(99.0) / 1_000,
+                        interval.getValueAtPercentile(99.9) / 1_000,
+                        interval.getMaxValue() / 1_000);
+            }
+        }
+    }
+
+    private void register(OperationTimer timer) {
+        Tag[] tags = timer.getTags();
+        registerPercentile(timer, tags, "p50", 50.0);
+        registerPercentile(timer, tags, "p90", 90.0);
+        registerPercentile(timer, tags, "p99", 99.0);
+        registerPercentile(timer, tags, "p999", 99.9);
+        registerPercentile(timer, tags, "max", 100.0);
+        metricRegistry.gauge(COUNT, timer, t -> t.lastInterval().getTotalCount(), tags);
+        metricRegistry.gauge(RATE, timer, OperationTimer::rate, tags);
+    }
+
+    private void registerPercentile(OperationTimer timer, Tag[] tags, String quantile, double percentile) {
+        Tag[] withQuantile = Arrays.copyOf(tags, tags.length + 1);
+        withQuantile[tags.length] = new Tag("quantile", quantile);
+        metricRegistry.gauge(LATENCY, timer, t -> t.percentile(percentile), withQuantile);
+    }
+}
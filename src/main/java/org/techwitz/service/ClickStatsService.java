@@ -0,0 +1,130 @@
+package org.techwitz.service;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.techwitz.analytics.ClickGranularity;
+import org.techwitz.analytics.ClickRollup;
+import org.techwitz.dto.ClickStatsResponse;
+import org.techwitz.exception.TinyUrlException;
+import org.techwitz.exception.UrlNotFoundException;
+import org.techwitz.interceptor.Loggable;
+import org.techwitz.repository.ClickRollupRepository;
+import org.techwitz.repository.VisitorSketchRepository;
+import org.techwitz.storage.TinyUrlStore;
+import org.techwitz.util.HyperLogLog;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Loggable
+@ApplicationScoped
+public class ClickStatsService {
+
+    @Inject
+    TinyUrlStore tinyUrlStore;
+
+    @Inject
+    ClickRollupRepository clickRollupRepository;
+
+    @Inject
+    VisitorSketchRepository visitorSketchRepository;
+
+    @ConfigProperty(name = "tiny.url.analytics.stats.max-buckets", defaultValue = "10000")
+    long maxBuckets;
+
+    /**
+     * Retrieves the click statistics of a tiny URL asynchronously.
+     * <p>
+     * Rollups are written by the click aggregator, so the most recent clicks show up after at most one
+     * flush interval. Without a range the last hour (minute), day (hour) or 30 days (day) is returned.
+     * Unique visitors are estimated by merging the daily sketches of the days the range touches.
+     *
+     * @param shortCode   The short code to retrieve statistics for
+     * @param from        Start of the range, inclusive; truncated to the granularity
+     * @param to          End of the range, exclusive; defaults to now
+     * @param granularity Bucket size: minute, hour or day; defaults to hour
+     * @return Uni with the statistics
+     */
+    public Uni<ClickStatsResponse> getClickStats(String shortCode, LocalDateTime from, LocalDateTime to,
+                                                 String granularity) {
+        ClickGranularity bucketSize = granularity == null
+                ? ClickGranularity.HOUR
+                : ClickGranularity.fromParameter(granularity);
+        LocalDateTime rangeEnd = to != null ? to : LocalDateTime.now();
+        LocalDateTime rangeStart = bucketSize.truncate(from != null ? from : rangeEnd.minus(defaultRange(bucketSize)));
+        if (!rangeStart.isBefore(rangeEnd)) {
+            return Uni.createFrom().failure(new TinyUrlException("'from' must be before 'to'"));
+        }
+        if (bucketSize.bucketsBetween(rangeStart, rangeEnd) > maxBuckets) {
+            return Uni.createFrom().failure(new TinyUrlException(
+                    "At most " + maxBuckets + " buckets can be requested at once, use a coarser granularity"));
+        }
+
+        log.debug("Retrieving click stats for short code: {} from {} to {} per {}",
+                  shortCode, rangeStart, rangeEnd, bucketSize.sqlUnit());
+        return tinyUrlStore.findByShortCodeAsync(shortCode)
+                .onItem().ifNull().failWith(() -> new UrlNotFoundException("Tiny URL not found for code: " + shortCode))
+                .flatMap(tinyUrl -> Uni.combine().all().unis(
+                        clickRollupRepository.findBucketsAsync(shortCode, bucketSize, rangeStart, rangeEnd),
+                        visitorSketchRepository.findAsync(shortCode, rangeStart.toLocalDate(),
+                                                          rangeEnd.minusNanos(1).toLocalDate())
+                ).asTuple())
+                .map(results -> {
+                    ClickStatsResponse response = buildResponse(shortCode, bucketSize, rangeStart, rangeEnd,
+                                                                results.getItem1());
+                    response.setEstimatedUniqueVisitors(estimateUnion(results.getItem2()));
+                    return response;
+                });
+    }
+
+    private static Duration defaultRange(ClickGranularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> Duration.ofHours(1);
+            case HOUR -> Duration.ofDays(1);
+            case DAY -> Duration.ofDays(30);
+        };
+    }
+
+    private static long estimateUnion(List<HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return 0;
+        }
+        HyperLogLog union = new HyperLogLog(sketches.get(0).precision());
+        for (HyperLogLog sketch : sketches) {
+            if (sketch.precision() == union.precision()) {
+                union.merge(sketch);
+            }
+        }
+        return union.estimate();
+    }
+
+    private static ClickStatsResponse buildResponse(String shortCode, ClickGranularity granularity,
+                                                    LocalDateTime from, LocalDateTime to, List<ClickRollup> rollups) {
+        List<ClickStatsResponse.Bucket> buckets = new ArrayList<>(rollups.size());
+        long total = 0;
+        for (ClickRollup rollup : rollups) {
+            ClickStatsResponse.Bucket bucket = new ClickStatsResponse.Bucket();
+            bucket.setStart(rollup.bucketStart());
+            bucket.setClicks(rollup.clicks());
+            bucket.setRedirected(rollup.redirected());
+            bucket.setRejected(rollup.rejected());
+            buckets.add(bucket);
+            total += rollup.clicks();
+        }
+
+        ClickStatsResponse response = new ClickStatsResponse();
+        response.setShortCode(shortCode);
+        response.setGranularity(granularity.sqlUnit());
+        response.setFrom(from);
+        response.setTo(to);
+        response.setTotalClicks(total);
+        response.setBuckets(buckets);
+        return response;
+    }
+}
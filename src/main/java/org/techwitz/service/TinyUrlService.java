@@ -1,25 +1,46 @@
 package org.techwitz.service;
 
-import io.quarkus.cache.CacheResult;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.techwitz.cache.LocalRedirectCache;
+import org.techwitz.cache.RedirectEntry;
+import org.techwitz.cache.TinyUrlInfoCache;
+import org.techwitz.cache.Tombstones;
 import org.techwitz.domain.TinyUrl;
 import org.techwitz.dto.TinyUrlRequest;
 import org.techwitz.dto.TinyUrlResponse;
 import org.techwitz.exception.MaxAttemptsExceededException;
+import org.techwitz.exception.StoreUnavailableException;
 import org.techwitz.exception.TinyUrlException;
 import org.techwitz.exception.UrlExpiredException;
 import org.techwitz.exception.UrlNotFoundException;
 import org.techwitz.interceptor.Loggable;
-import org.techwitz.repository.TinyUrlRepository;
+import org.techwitz.jfr.CacheLookupEvent;
+import org.techwitz.jfr.CodeGenerationEvent;
+import org.techwitz.jfr.CounterWriteEvent;
+import org.techwitz.jfr.DbLookupEvent;
+import org.techwitz.jfr.LimitEvaluationEvent;
+import org.techwitz.jfr.PersistEvent;
+import org.techwitz.jfr.StageEvents;
+import org.techwitz.storage.LimitsUpdate;
+import org.techwitz.storage.PendingAccesses;
+import org.techwitz.storage.StoreCircuitBreaker;
+import org.techwitz.storage.TinyUrlStore;
 import org.techwitz.util.ShortCodeGenerator;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 @Slf4j
 @Loggable
@@ -27,17 +48,43 @@ import java.time.LocalDateTime;
 public class TinyUrlService {
 
     @Inject
-    TinyUrlRepository tinyUrlRepository;
+    TinyUrlStore tinyUrlStore;
 
     @Inject
     ShortCodeGenerator shortCodeGenerator;
 
+    @Inject
+    LocalRedirectCache localRedirectCache;
+
+    @Inject
+    TinyUrlInfoCache tinyUrlInfoCache;
+
+    @Inject
+    StoreCircuitBreaker storeCircuitBreaker;
+
+    @Inject
+    PendingAccesses pendingAccesses;
+
+    @Inject
+    Tombstones tombstones;
+
     @ConfigProperty(name = "tiny.url.base.url")
     String baseUrl;
 
     @ConfigProperty(name = "tiny.url.code.length", defaultValue = "6")
     int shortCodeLength;
 
+    @ConfigProperty(name = "tiny.url.info.batch.max-size", defaultValue = "1000")
+    int batchInfoMaxSize;
+
+    @ConfigProperty(name = "tiny.url.tombstones.record-attempts", defaultValue = "false")
+    boolean recordDeadAttempts;
+
+    // Background refreshes of cached redirects, outside of the session of the request that saw them stale
+    private final Function<String, Uni<RedirectEntry>> redirectReloader = code ->
+            storeCircuitBreaker.call(tinyUrlStore.findByShortCodeDetachedAsync(code))
+                    .map(tinyUrl -> tinyUrl == null ? null : RedirectEntry.from(tinyUrl));
+
     /**
      * Creates a new tiny URL based on the provided request asynchronously.
      *
@@ -53,6 +100,9 @@ public class TinyUrlService {
         tinyUrl.setOneTimeUse(request.isOneTimeUse());
         tinyUrl.setMaxUsage(request.getMaxUsage());
         tinyUrl.setMaxAttempts(request.getMaxAttempts());
+        if (request.getRedirectPolicy() != null) {
+            tinyUrl.setRedirectPolicy(request.getRedirectPolicy());
+        }
         tinyUrl.setAttemptCount(0); // Explicitly set to ensure it's not null
         tinyUrl.setUsageCount(0);   // Explicitly set to ensure it's not null
         tinyUrl.setActive(true);
@@ -67,76 +117,207 @@ public class TinyUrlService {
                 })
                 .flatMap(entity -> {
                     log.debug("Persisting tiny URL: {}", entity);
-                    return tinyUrlRepository.persistAsync(entity);
+                    return StageEvents.record(new PersistEvent(), entity.getShortCode(),
+                                              tinyUrlStore.insertAsync(entity));
                 })
                 .map(this::buildResponse);
     }
 
     /**
      * Retrieves the original URL for a given short code and updates usage statistics asynchronously.
+     * <p>
+     * The tiny URL is taken from the {@link LocalRedirectCache} when it is there, so a cached redirect costs
+     * a single store call; entries past the cache's soft TTL are refreshed in the background. The limits
+     * are checked on the cached or loaded entry to report why it cannot be used, and again by the store when
+     * counting the access, which is what makes concurrent redirects safe: whichever redirect would exceed a
+     * limit is refused, without losing the increments of the others.
+     * <p>
+     * Links found dead are added to the {@link Tombstones}, and later requests for them fail before any
+     * lookup; whether those still count an attempt in the store is {@code tiny.url.tombstones.record-attempts}.
+     * <p>
+     * While the {@link StoreCircuitBreaker} is open, redirects are served in degraded mode: links without
+     * limits are served from the cache however old their entry, and their accesses are counted by
+     * {@link PendingAccesses} until the store is back. Links with limits, and links that are not cached,
+     * fail with a {@link StoreUnavailableException}.
      *
      * @param shortCode The short code to resolve
      * @return Uni with the original URL
      */
     public Uni<String> resolveUrl(String shortCode) {
-        log.info("Resolving URL for short code: {}", shortCode);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(tinyUrl -> {
-                    // Always increment the attempt count first
-                    tinyUrl.incrementAttemptCount();
-                    log.info(
-                            "Incremented attempt count for URL with short code: {}, new count: {}",
-                            shortCode, tinyUrl.getAttemptCount());
-
-                    // Check if max attempts exceeded
-                    if (tinyUrl.getMaxAttempts() > 0 && tinyUrl.getAttemptCount() > tinyUrl.getMaxAttempts()) {
-                        log.warn(
-                                "Maximum attempts exceeded for URL with short code: {}, attempts: {}, max: {}",
-                                shortCode, tinyUrl.getAttemptCount(), tinyUrl.getMaxAttempts());
-                        throw new MaxAttemptsExceededException("Maximum number of attempts exceeded for this URL");
-                    }
-
-                    if (tinyUrl.isExpired()) {
-                        log.warn("URL with short code {} has expired or reached its usage limit", shortCode);
-                        throw new UrlExpiredException("The tiny URL has expired or reached its usage limit");
-                    }
+        return resolveRedirect(shortCode).map(RedirectEntry::originalUrl);
+    }
 
-                    // If we got here, the URL is valid and can be used
-                    tinyUrl.incrementUsageCount();
-                    log.info(
-                            "Incremented usage count for URL with short code: {}, new count: {}",
-                            shortCode, tinyUrl.getUsageCount());
-                    return tinyUrl;
-                })
-                .flatMap(tinyUrlRepository::persistAsync)
-                .map(tinyUrl -> {
-                    String originalUrl = tinyUrl.getOriginalUrl();
-                    log.info("Resolved URL with short code: {} to original URL: {}", shortCode, originalUrl);
-                    return originalUrl;
+    /**
+     * Same as {@link #resolveUrl(String)}, with the rest of the tiny URL the redirect response depends on,
+     * such as its {@link org.techwitz.domain.RedirectPolicy}.
+     *
+     * @param shortCode The short code to resolve
+     * @return Uni with the redirect entry of the tiny URL, its counters as before this access
+     */
+    public Uni<RedirectEntry> resolveRedirect(String shortCode) {
+        log.debug("Resolving URL for short code: {}", shortCode);
+        int deadStatus = tombstones.statusOf(shortCode);
+        if (deadStatus != 0) {
+            return rejectDead(shortCode, deadStatus);
+        }
+        RedirectEntry cached = StageEvents.record(new CacheLookupEvent(CacheLookupEvent.REDIRECT), shortCode,
+                                                  () -> localRedirectCache.get(shortCode, redirectReloader),
+                                                  entry -> entry != null ? CacheLookupEvent.HIT : CacheLookupEvent.MISS);
+        Uni<RedirectEntry> lookup = cached != null
+                ? Uni.createFrom().item(cached)
+                : findTinyUrlByShortCodeAsync(shortCode).map(tinyUrl -> {
+                    RedirectEntry entry = RedirectEntry.from(tinyUrl);
+                    localRedirectCache.put(shortCode, entry);
+                    return entry;
                 });
+        Uni<RedirectEntry> resolved = lookup
+                .map(entry -> StageEvents.record(new LimitEvaluationEvent(), shortCode,
+                                                 () -> checkLimits(shortCode, entry)))
+                .flatMap(entry -> StageEvents.record(new CounterWriteEvent(), shortCode, storeCircuitBreaker.call(
+                                tinyUrlStore.recordAccessAsync(shortCode, LocalDateTime.now())))
+                        .map(counted -> {
+                            if (!counted) {
+                                localRedirectCache.invalidate(shortCode);
+                                tombstones.add(shortCode, Tombstones.GONE);
+                                log.warn("URL with short code {} was used up by a concurrent access", shortCode);
+                                throw new UrlExpiredException();
+                            }
+                            localRedirectCache.recordAccess(shortCode);
+                            return entry;
+                        }))
+                .invoke(entry -> log.debug("Resolved URL with short code: {} to original URL: {}",
+                                           shortCode, entry.originalUrl()));
+        // Only while the breaker is open do store calls fail fast, so only then is the fallback needed
+        return storeCircuitBreaker.isOpen()
+                ? resolved.onFailure(StoreUnavailableException.class).recoverWithUni(() -> resolveDegraded(shortCode))
+                : resolved;
+    }
+
+    private Uni<RedirectEntry> resolveDegraded(String shortCode) {
+        RedirectEntry entry = localRedirectCache.getAnyAge(shortCode);
+        if (entry == null || entry.hasLimits()) {
+            log.warn("Store unavailable, cannot resolve {} short code: {}", entry == null ? "uncached" : "limited", shortCode);
+            return Uni.createFrom().failure(new StoreUnavailableException(
+                    "The tiny URL cannot be resolved while the store is unavailable, please retry later"));
+        }
+        checkLimits(shortCode, entry);
+        pendingAccesses.record(shortCode, LocalDateTime.now());
+        log.debug("Resolved URL with short code: {} from cache in degraded mode", shortCode);
+        return Uni.createFrom().item(entry);
+    }
+
+    private Uni<RedirectEntry> rejectDead(String shortCode, int status) {
+        log.debug("Short code {} is known to be dead, status {}", shortCode, status);
+        TinyUrlException failure = status == Tombstones.TOO_MANY_REQUESTS
+                ? new MaxAttemptsExceededException()
+                : new UrlExpiredException();
+        if (!recordDeadAttempts) {
+            return Uni.createFrom().failure(failure);
+        }
+        return storeCircuitBreaker.call(tinyUrlStore.recordAttemptAsync(shortCode))
+                .onItemOrFailure().transformToUni((counted, error) -> Uni.createFrom().failure(failure));
+    }
+
+    private RedirectEntry checkLimits(String shortCode, RedirectEntry entry) {
+        // The attempt being made counts, but is only stored by the store once it is allowed
+        int attemptCount = entry.attemptCount() + 1;
+
+        // Check if max attempts exceeded
+        if (entry.maxAttempts() > 0 && attemptCount > entry.maxAttempts()) {
+            log.warn(
+                    "Maximum attempts exceeded for URL with short code: {}, attempts: {}, max: {}",
+                    shortCode, attemptCount, entry.maxAttempts());
+            tombstones.add(shortCode, Tombstones.TOO_MANY_REQUESTS);
+            throw new MaxAttemptsExceededException();
+        }
+
+        if (entry.isExpired(RedirectEntry.nowEpochSecond())
+                || (entry.maxAttempts() > 0 && attemptCount >= entry.maxAttempts())) {
+            log.warn("URL with short code {} has expired or reached its usage limit", shortCode);
+            tombstones.add(shortCode, Tombstones.GONE);
+            throw new UrlExpiredException();
+        }
+        return entry;
     }
 
     private Uni<TinyUrl> findTinyUrlByShortCodeAsync(String shortCode) {
         log.debug("Finding tiny URL by short code: {}", shortCode);
-        return tinyUrlRepository.findByShortCodeAsync(shortCode)
+        return StageEvents.record(new DbLookupEvent(), shortCode,
+                                  storeCircuitBreaker.call(tinyUrlStore.findByShortCodeAsync(shortCode)),
+                                  tinyUrl -> tinyUrl == null ? "not-found" : "found")
                 .onItem().ifNull().failWith(() ->
                                                     new UrlNotFoundException("Tiny URL not found for code: " + shortCode));
     }
 
     /**
      * Retrieves information about a tiny URL without incrementing its usage count asynchronously.
+     * <p>
+     * Served from the {@link TinyUrlInfoCache}, which refreshes popular links in the background.
      *
      * @param shortCode The short code to retrieve information for
      * @return Uni with Response containing URL details
      */
-    @CacheResult(cacheName = "tiny-url-info")
     public Uni<TinyUrlResponse> getTinyUrlInfo(String shortCode) {
-        log.info("Retrieving tiny URL info for short code: {}", shortCode);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(this::buildResponse);
+        log.debug("Retrieving tiny URL info for short code: {}", shortCode);
+        // The cache only tells a miss by calling the loader, which marks the event
+        CacheLookupEvent lookup = new CacheLookupEvent(CacheLookupEvent.INFO);
+        return StageEvents.record(lookup, shortCode, tinyUrlInfoCache.get(shortCode,
+                () -> {
+                    lookup.outcome = CacheLookupEvent.MISS;
+                    return findTinyUrlByShortCodeAsync(shortCode).map(this::buildResponse);
+                },
+                () -> tinyUrlStore.findByShortCodeDetachedAsync(shortCode)
+                        .map(tinyUrl -> tinyUrl == null ? null : buildResponse(tinyUrl))),
+                response -> lookup.outcome == null ? CacheLookupEvent.HIT : CacheLookupEvent.MISS);
+    }
+
+    /**
+     * Retrieves information about several tiny URLs without incrementing their usage counts asynchronously.
+     * <p>
+     * Served from the {@link TinyUrlInfoCache} like {@link #getTinyUrlInfo(String)}, so both are as fresh as
+     * each other; the links that are not cached are loaded with a single IN query. Codes that do not exist are
+     * left out of the result.
+     *
+     * @param shortCodes The short codes to retrieve information for
+     * @return Uni with a map of short code to URL details, in request order
+     */
+    public Uni<Map<String, TinyUrlResponse>> getTinyUrlInfoBatch(List<String> shortCodes) {
+        if (shortCodes == null || shortCodes.isEmpty()) {
+            return Uni.createFrom().failure(new TinyUrlException("At least one short code is required"));
+        }
+        if (shortCodes.size() > batchInfoMaxSize) {
+            return Uni.createFrom().failure(new TinyUrlException(
+                    "At most " + batchInfoMaxSize + " short codes can be requested at once"));
+        }
+
+        Set<String> codes = new LinkedHashSet<>(shortCodes);
+        log.debug("Retrieving tiny URL info for {} short codes", codes.size());
+        return tinyUrlInfoCache.getAll(codes,
+                        misses -> StageEvents.record(new DbLookupEvent(), null,
+                                                     tinyUrlStore.findByShortCodesAsync(misses),
+                                                     found -> found.size() == misses.size() ? "found" : "partial")
+                                .map(found -> {
+                                    Map<String, TinyUrlResponse> loaded = new HashMap<>(found.size() * 2);
+                                    for (TinyUrl tinyUrl : found) {
+                                        loaded.put(tinyUrl.getShortCode(), buildResponse(tinyUrl));
+                                    }
+                                    return loaded;
+                                }),
+                        code -> tinyUrlStore.findByShortCodeDetachedAsync(code)
+                                .map(tinyUrl -> tinyUrl == null ? null : buildResponse(tinyUrl)))
+                .map(found -> {
+                    Map<String, TinyUrlResponse> responses = new LinkedHashMap<>(found.size() * 2);
+                    for (String code : codes) {
+                        TinyUrlResponse response = found.get(code);
+                        if (response != null) {
+                            responses.put(code, response);
+                        }
+                    }
+                    return responses;
+                });
     }
 
-    private TinyUrlResponse buildResponse(TinyUrl tinyUrl) {
+    TinyUrlResponse buildResponse(TinyUrl tinyUrl) {
         TinyUrlResponse response = new TinyUrlResponse();
         response.setOriginalUrl(tinyUrl.getOriginalUrl());
         response.setShortUrl(baseUrl + tinyUrl.getShortCode());
@@ -146,6 +327,8 @@ public class TinyUrlService {
         response.setUsageCount(tinyUrl.getUsageCount());
         response.setMaxAttempts(tinyUrl.getMaxAttempts());
         response.setAttemptCount(tinyUrl.getAttemptCount());
+        response.setRedirectPolicy(tinyUrl.getRedirectPolicy());
+        response.setVersion(tinyUrl.getVersion());
         return response;
     }
 
@@ -157,13 +340,11 @@ public class TinyUrlService {
      */
     public Uni<Void> deactivateTinyUrl(String shortCode) {
         log.info("Deactivating tiny URL with short code: {}", shortCode);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(tinyUrl -> {
-                    tinyUrl.setActive(false);
-                    log.info("Deactivated tiny URL with short code: {}", shortCode);
-                    return tinyUrl;
-                })
-                .flatMap(tinyUrlRepository::persistAsync)
+        return tinyUrlStore.deactivateAsync(shortCode)
+                .onItem().ifNull().failWith(() -> new UrlNotFoundException("Tiny URL not found for code: " + shortCode))
+                .invoke(() -> log.info("Deactivated tiny URL with short code: {}", shortCode))
+                .call(() -> invalidateCachedEntry(shortCode))
+                .invoke(() -> tombstones.add(shortCode, Tombstones.GONE))
                 .replaceWithVoid();
     }
 
@@ -176,13 +357,9 @@ public class TinyUrlService {
      */
     public Uni<TinyUrlResponse> updateExpirationTime(String shortCode, LocalDateTime expirationTime) {
         log.info("Updating expiration time for short code: {} to: {}", shortCode, expirationTime);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(tinyUrl -> {
-                    tinyUrl.setExpirationTime(expirationTime);
-                    log.info("Updated expiration time for short code: {} to: {}", shortCode, expirationTime);
-                    return tinyUrl;
-                })
-                .flatMap(tinyUrlRepository::persistAsync)
+        return updateLimits(shortCode, LimitsUpdate.expirationTime(expirationTime))
+                .invoke(() -> log.info("Updated expiration time for short code: {} to: {}", shortCode, expirationTime))
+                .call(() -> invalidateCachedEntry(shortCode))
                 .map(this::buildResponse);
     }
 
@@ -197,13 +374,9 @@ public class TinyUrlService {
      */
     public Uni<TinyUrlResponse> updateMaxUsage(String shortCode, int maxUsage) {
         log.info("Updating maximum usage limit for short code: {} to: {}", shortCode, maxUsage);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(tinyUrl -> {
-                    tinyUrl.setMaxUsage(maxUsage);
-                    log.info("Updated maximum usage limit for short code: {} to: {}", shortCode, maxUsage);
-                    return tinyUrl;
-                })
-                .flatMap(tinyUrlRepository::persistAsync)
+        return updateLimits(shortCode, LimitsUpdate.maxUsage(maxUsage))
+                .invoke(() -> log.info("Updated maximum usage limit for short code: {} to: {}", shortCode, maxUsage))
+                .call(() -> invalidateCachedEntry(shortCode))
                 .map(this::buildResponse);
     }
 
@@ -216,16 +389,26 @@ public class TinyUrlService {
      */
     public Uni<TinyUrlResponse> updateMaxAttempts(String shortCode, int maxAttempts) {
         log.info("Updating maximum attempts for short code: {} to: {}", shortCode, maxAttempts);
-        return findTinyUrlByShortCodeAsync(shortCode)
-                .map(tinyUrl -> {
-                    tinyUrl.setMaxAttempts(maxAttempts);
-                    log.info("Updated maximum attempts for short code: {} to: {}", shortCode, maxAttempts);
-                    return tinyUrl;
-                })
-                .flatMap(tinyUrlRepository::persistAsync)
+        return updateLimits(shortCode, LimitsUpdate.maxAttempts(maxAttempts))
+                .invoke(() -> log.info("Updated maximum attempts for short code: {} to: {}", shortCode, maxAttempts))
+                .call(() -> invalidateCachedEntry(shortCode))
                 .map(this::buildResponse);
     }
 
+    private Uni<TinyUrl> updateLimits(String shortCode, LimitsUpdate update) {
+        return tinyUrlStore.updateLimitsAsync(shortCode, update)
+                .onItem().ifNull().failWith(() -> new UrlNotFoundException("Tiny URL not found for code: " + shortCode));
+    }
+
+    private Uni<Void> invalidateCachedEntry(String shortCode) {
+        localRedirectCache.invalidate(shortCode);
+        tombstones.remove(shortCode);
+        return tinyUrlInfoCache.invalidate(shortCode)
+                .onFailure().invoke(failure -> log.warn(
+                        "Failed to invalidate cached entry for short code: {}: {}", shortCode, failure.getMessage()))
+                .onFailure().recoverWithNull();
+    }
+
     private Uni<String> generateUniqueShortCodeAsync() {
         return generateUniqueCodeWithRetry(0);
     }
@@ -240,9 +423,13 @@ public class TinyUrlService {
         String shortCode = shortCodeGenerator.generate(shortCodeLength);
         log.debug("Generated candidate code: {} (attempt {})", shortCode, attempts);
 
-        return tinyUrlRepository.findByShortCodeAsync(shortCode)
+        CodeGenerationEvent event = new CodeGenerationEvent();
+        event.attempt = attempts;
+        return StageEvents.record(event, shortCode, tinyUrlStore.findByShortCodeAsync(shortCode),
+                                  existing -> existing == null ? "unique" : "collision")
                 .onItem().transform(existing -> {
-                    return existing == null ? shortCode : null;
+                    // The code of a deleted link may still be tombstoned on this node
+                    return existing == null && tombstones.statusOf(shortCode) == 0 ? shortCode : null;
                 })
                 .onItem().ifNull().switchTo(() -> {
                     // Existing code found, retry with new code
@@ -250,7 +437,7 @@ public class TinyUrlService {
                 });
     }
 
-    private void validateUrl(String url) {
+    void validateUrl(String url) {
         try {
             new URI(url);
         } catch (URISyntaxException e) {
@@ -0,0 +1,394 @@
+package org.techwitz.storage;
+
+import org.techwitz.domain.TinyUrl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * The data file of {@link LogTinyUrlStore}: an append-only, memory-mapped sequence of records.
+ * <p>
+ * Layout: a {@value #HEADER_SIZE}-byte header (magic, version, generation, first id to hand out) followed
+ * by records, each a 4-byte body length, the CRC32C of the body and the body. A put record holds a whole
+ * tiny URL; an access record holds the counters of a short code after a redirect. A length of 0 or a CRC
+ * that does not match ends the log, which is where a crash cut it short; everything after it is zeroed
+ * when the log is opened, so it cannot be mistaken for records later. The file grows by doubling its
+ * mapping. Not thread-safe: the store serializes appends and keeps reads away from them.
+ */
+final class DataLog implements AutoCloseable {
+
+    static final int HEADER_SIZE = 32;
+    static final int MAGIC = 0x5455444c; // "TUDL"
+    static final int VERSION = 1;
+    static final byte PUT = 1;
+    static final byte ACCESS = 2;
+
+    // The largest mapping a MappedByteBuffer can hold, rounded down to a page
+    private static final int MAX_SIZE = Integer.MAX_VALUE & ~0xfff;
+    private static final int RECORD_HEADER = 8;
+    // Body offsets: type, code length, code, then the fields below relative to the end of the code
+    private static final int CODE = 3;
+    private static final int ID = 0;
+    private static final int EXPIRATION = 8;
+    private static final int CREATED_AT = 16;
+    private static final int USAGE = 24;
+    private static final int MAX_USAGE = 28;
+    private static final int MAX_ATTEMPTS = 32;
+    private static final int ATTEMPTS = 36;
+    private static final int FLAGS = 40;
+    private static final int URL = 41;
+    private static final int ACCESS_USAGE = 0;
+    private static final int ACCESS_ATTEMPTS = 4;
+
+    private final FileChannel channel;
+    private final long generation;
+    private final long firstId;
+    private Path path;
+    private volatile MappedByteBuffer buffer;
+    private int end = HEADER_SIZE;
+
+    private DataLog(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.generation = buffer.getLong(8);
+        this.firstId = buffer.getLong(16);
+    }
+
+    /**
+     * Creates and maps a new, empty log file.
+     *
+     * @param path       The file to create; must not exist
+     * @param generation The generation, incremented by every compaction
+     * @param firstId    The first id new tiny URLs get, so ids are not reused after compaction
+     * @param size       The initial file size in bytes
+     * @return The log
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static DataLog create(Path path, long generation, long firstId, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, generation);
+        buffer.putLong(16, firstId);
+        return new DataLog(path, channel, buffer);
+    }
+
+    /**
+     * Maps an existing log file. Its end is unknown until it is {@link #scan scanned}.
+     *
+     * @param path The file
+     * @return The log
+     * @throws IOException if the file cannot be mapped or is not a log
+     */
+    static DataLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > MAX_SIZE) {
+            channel.close();
+            throw new IOException("Not a tiny URL log, unexpected size " + size + ": " + path);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a tiny URL log of version " + VERSION + ": " + path);
+        }
+        return new DataLog(path, channel, buffer);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long firstId() {
+        return firstId;
+    }
+
+    /**
+     * @return The position the next record is appended at
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * Appends a put record with the current state of a tiny URL.
+     *
+     * @return The offset of the record
+     */
+    int appendPut(TinyUrl tinyUrl) {
+        byte[] code = tinyUrl.getShortCode().getBytes(StandardCharsets.UTF_8);
+        byte[] url = tinyUrl.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        int fields = reserve(PUT, code, URL + 4 + url.length);
+        buffer.putLong(fields + ID, tinyUrl.id);
+        buffer.putLong(fields + EXPIRATION, StoredRows.toMicros(tinyUrl.getExpirationTime()));
+        buffer.putLong(fields + CREATED_AT, StoredRows.toMicros(tinyUrl.getCreatedAt()));
+        buffer.putInt(fields + USAGE, tinyUrl.getUsageCount());
+        buffer.putInt(fields + MAX_USAGE, tinyUrl.getMaxUsage());
+        buffer.putInt(fields + MAX_ATTEMPTS, tinyUrl.getMaxAttempts());
+        buffer.putInt(fields + ATTEMPTS, tinyUrl.getAttemptCount());
+        buffer.put(fields + FLAGS, StoredRows.flags(tinyUrl.isOneTimeUse(), tinyUrl.isActive(), tinyUrl.getRedirectPolicy()));
+        buffer.putInt(fields + URL, url.length);
+        buffer.put(fields + URL + 4, url);
+        return seal();
+    }
+
+    /**
+     * Appends an access record with the counters of a short code.
+     *
+     * @return The offset of the record
+     */
+    int appendAccess(byte[] code, int usage, int attempts) {
+        int fields = reserve(ACCESS, code, 8);
+        buffer.putInt(fields + ACCESS_USAGE, usage);
+        buffer.putInt(fields + ACCESS_ATTEMPTS, attempts);
+        return seal();
+    }
+
+    /**
+     * Writes the record header and code at the end, growing the file if needed.
+     *
+     * @return The position of the fields following the code
+     */
+    private int reserve(byte type, byte[] code, int fieldsSize) {
+        int bodySize = CODE + code.length + fieldsSize;
+        ensureCapacity(RECORD_HEADER + bodySize);
+        int body = end + RECORD_HEADER;
+        buffer.putInt(end, bodySize);
+        buffer.put(body, type);
+        buffer.putShort(body + 1, (short) code.length);
+        buffer.put(body + CODE, code);
+        return body + CODE + code.length;
+    }
+
+    private int seal() {
+        int offset = end;
+        int bodySize = buffer.getInt(offset);
+        buffer.putInt(offset + 4, crc(offset + RECORD_HEADER, bodySize));
+        end = offset + RECORD_HEADER + bodySize;
+        return offset;
+    }
+
+    private void ensureCapacity(int recordSize) {
+        if ((long) end + recordSize <= buffer.capacity()) {
+            return;
+        }
+        long size = Math.max((long) buffer.capacity() * 2, (long) end + recordSize);
+        if (size > MAX_SIZE) {
+            if ((long) end + recordSize > MAX_SIZE) {
+                throw new IllegalStateException("Tiny URL log is full: " + path);
+            }
+            size = MAX_SIZE;
+        }
+        try {
+            // The old mapping stays valid for readers still holding it; the GC unmaps it
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to grow tiny URL log " + path, e);
+        }
+    }
+
+    /**
+     * Reads records from a position up to the first one that is incomplete or corrupt, which becomes
+     * the end of the log, and zeroes the file from there.
+     *
+     * @param from    A record position, e.g. {@link #HEADER_SIZE}
+     * @param visitor Called for every valid record, in order
+     * @return The end of the log
+     */
+    int scan(int from, RecordVisitor visitor) {
+        int position = from;
+        int capacity = buffer.capacity();
+        while (position + RECORD_HEADER + CODE <= capacity) {
+            int bodySize = buffer.getInt(position);
+            if (bodySize < CODE || bodySize > capacity - position - RECORD_HEADER
+                    || buffer.getInt(position + 4) != crc(position + RECORD_HEADER, bodySize)) {
+                break;
+            }
+            byte type = type(position);
+            if (type != PUT && type != ACCESS) {
+                break;
+            }
+            visitor.visit(position, type, shortCode(position));
+            position += RECORD_HEADER + bodySize;
+        }
+        end = position;
+        zero(position, capacity);
+        return position;
+    }
+
+    /**
+     * Clears what a crash left behind; only writes where there is something, so the unused part of the
+     * file stays sparse.
+     */
+    private void zero(int from, int to) {
+        int position = from;
+        for (; position < to && (position & 7) != 0; position++) {
+            buffer.put(position, (byte) 0);
+        }
+        for (; position + 8 <= to; position += 8) {
+            if (buffer.getLong(position) != 0) {
+                buffer.putLong(position, 0);
+            }
+        }
+        for (; position < to; position++) {
+            buffer.put(position, (byte) 0);
+        }
+    }
+
+    /**
+     * @return Whether a record of the given type starts at the offset, as far as the header tells
+     */
+    boolean isRecord(int offset, byte type) {
+        return offset >= HEADER_SIZE && offset <= end - RECORD_HEADER - CODE && type(offset) == type;
+    }
+
+    byte type(int offset) {
+        return buffer.get(offset + RECORD_HEADER);
+    }
+
+    int recordSize(int offset) {
+        return RECORD_HEADER + buffer.getInt(offset);
+    }
+
+    /**
+     * Compares the short code of a record without decoding it. While the log is {@link #scan scanned},
+     * the offset can be past the records read so far, or past the end of the log if the index is ahead
+     * of it after a crash; what is there is compared all the same.
+     */
+    boolean codeEquals(int offset, byte[] code) {
+        if (offset < HEADER_SIZE || offset > buffer.capacity() - RECORD_HEADER - CODE - code.length) {
+            return false;
+        }
+        int body = offset + RECORD_HEADER;
+        if (buffer.getShort(body + 1) != code.length) {
+            return false;
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (buffer.get(body + CODE + i) != code[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String shortCode(int offset) {
+        int body = offset + RECORD_HEADER;
+        byte[] code = new byte[buffer.getShort(body + 1)];
+        buffer.get(body + CODE, code);
+        return new String(code, StandardCharsets.UTF_8);
+    }
+
+    long id(int put) {
+        return buffer.getLong(fields(put) + ID);
+    }
+
+    long expirationMicros(int put) {
+        return buffer.getLong(fields(put) + EXPIRATION);
+    }
+
+    int maxUsage(int put) {
+        return buffer.getInt(fields(put) + MAX_USAGE);
+    }
+
+    int maxAttempts(int put) {
+        return buffer.getInt(fields(put) + MAX_ATTEMPTS);
+    }
+
+    byte flags(int put) {
+        return buffer.get(fields(put) + FLAGS);
+    }
+
+    /**
+     * @return The usage count of a put or access record
+     */
+    int usage(int offset) {
+        return buffer.getInt(fields(offset) + (type(offset) == PUT ? USAGE : ACCESS_USAGE));
+    }
+
+    /**
+     * @return The attempt count of a put or access record
+     */
+    int attempts(int offset) {
+        return buffer.getInt(fields(offset) + (type(offset) == PUT ? ATTEMPTS : ACCESS_ATTEMPTS));
+    }
+
+    /**
+     * Decodes a put record.
+     *
+     * @return A new entity, detached from the log
+     */
+    TinyUrl readPut(int put) {
+        int fields = fields(put);
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.id = buffer.getLong(fields + ID);
+        tinyUrl.setShortCode(shortCode(put));
+        byte[] url = new byte[buffer.getInt(fields + URL)];
+        buffer.get(fields + URL + 4, url);
+        tinyUrl.setOriginalUrl(new String(url, StandardCharsets.UTF_8));
+        tinyUrl.setExpirationTime(StoredRows.fromMicros(buffer.getLong(fields + EXPIRATION)));
+        tinyUrl.setCreatedAt(StoredRows.fromMicros(buffer.getLong(fields + CREATED_AT)));
+        tinyUrl.setUsageCount(buffer.getInt(fields + USAGE));
+        tinyUrl.setMaxUsage(buffer.getInt(fields + MAX_USAGE));
+        tinyUrl.setMaxAttempts(buffer.getInt(fields + MAX_ATTEMPTS));
+        tinyUrl.setAttemptCount(buffer.getInt(fields + ATTEMPTS));
+        byte flags = buffer.get(fields + FLAGS);
+        tinyUrl.setOneTimeUse((flags & StoredRows.ONE_TIME_USE) != 0);
+        tinyUrl.setActive((flags & StoredRows.ACTIVE) != 0);
+        tinyUrl.setRedirectPolicy(StoredRows.redirectPolicy(flags));
+        return tinyUrl;
+    }
+
+    private int fields(int offset) {
+        int body = offset + RECORD_HEADER;
+        return body + CODE + buffer.getShort(body + 1);
+    }
+
+    private int crc(int from, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(from, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a range of the log to the disk.
+     */
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    /**
+     * Renames the file, e.g. once a compacted log is complete.
+     */
+    void moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        path = target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives the records of a {@link #scan}.
+     */
+    interface RecordVisitor {
+        void visit(int offset, byte type, String shortCode);
+    }
+}
@@ -0,0 +1,373 @@
+package org.techwitz.storage;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.techwitz.domain.TinyUrl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import static org.techwitz.storage.StoredRows.ACTIVE;
+import static org.techwitz.storage.StoredRows.NO_TIME;
+import static org.techwitz.storage.StoredRows.ONE_TIME_USE;
+import static org.techwitz.storage.StoredRows.fromMicros;
+import static org.techwitz.storage.StoredRows.toMicros;
+
+/**
+ * The in-memory storage engine, for tests, benchmarks and edge nodes without a database.
+ * <p>
+ * Rows live in parallel primitive arrays (one slot per tiny URL, times as epoch microseconds), found
+ * through an open-addressing index from short code to slot with linear probing and backward-shift
+ * deletion, so a million links cost a handful of arrays rather than a million entity objects. Reads
+ * share a {@link StampedLock}, writes are exclusive and never wait for I/O. Entities handed out are
+ * copies; changing them has no effect on the store. Nothing survives a restart.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "tiny.url.storage.engine", stringValue = "memory")
+public class InMemoryTinyUrlStore implements TinyUrlStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Slot + 1 per index entry, 0 for empty; the length is a power of two
+    private int[] index;
+    private String[] shortCodes;
+    private String[] originalUrls;
+    private long[] ids;
+    private long[] expirationTimes;
+    private long[] createdAts;
+    private int[] usageCounts;
+    private int[] maxUsages;
+    private int[] maxAttempts;
+    private int[] attemptCounts;
+    private byte[] flags;
+    private long[] versions;
+    private int[] freeSlots;
+    private int freeCount;
+    private int usedSlots;
+    private int size;
+    private long nextId = 1;
+
+    public InMemoryTinyUrlStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity Number of tiny URLs to size the arrays for; they grow as needed
+     */
+    public InMemoryTinyUrlStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        index = new int[tableSizeFor(capacity)];
+        shortCodes = new String[capacity];
+        originalUrls = new String[capacity];
+        ids = new long[capacity];
+        expirationTimes = new long[capacity];
+        createdAts = new long[capacity];
+        usageCounts = new int[capacity];
+        maxUsages = new int[capacity];
+        maxAttempts = new int[capacity];
+        attemptCounts = new int[capacity];
+        flags = new byte[capacity];
+        versions = new long[capacity];
+        freeSlots = new int[16];
+    }
+
+    @Override
+    public Uni<TinyUrl> findByShortCodeAsync(String shortCode) {
+        return Uni.createFrom().item(() -> {
+            long stamp = lock.readLock();
+            try {
+                int slot = find(shortCode);
+                return slot < 0 ? null : toEntity(slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<List<TinyUrl>> findByShortCodesAsync(Collection<String> shortCodes) {
+        return Uni.createFrom().item(() -> {
+            List<TinyUrl> found = new ArrayList<>(shortCodes.size());
+            long stamp = lock.readLock();
+            try {
+                for (String shortCode : shortCodes) {
+                    int slot = find(shortCode);
+                    if (slot >= 0) {
+                        found.add(toEntity(slot));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public Uni<TinyUrl> insertAsync(TinyUrl tinyUrl) {
+        return Uni.createFrom().item(() -> {
+            long stamp = lock.writeLock();
+            try {
+                if (find(tinyUrl.getShortCode()) >= 0) {
+                    throw new IllegalStateException("Short code already exists: " + tinyUrl.getShortCode());
+                }
+                int slot = allocateSlot();
+                tinyUrl.id = nextId++;
+                shortCodes[slot] = tinyUrl.getShortCode();
+                originalUrls[slot] = tinyUrl.getOriginalUrl();
+                ids[slot] = tinyUrl.id;
+                expirationTimes[slot] = toMicros(tinyUrl.getExpirationTime());
+                createdAts[slot] = toMicros(tinyUrl.getCreatedAt());
+                usageCounts[slot] = tinyUrl.getUsageCount();
+                maxUsages[slot] = tinyUrl.getMaxUsage();
+                maxAttempts[slot] = tinyUrl.getMaxAttempts();
+                attemptCounts[slot] = tinyUrl.getAttemptCount();
+                flags[slot] = StoredRows.flags(tinyUrl.isOneTimeUse(), tinyUrl.isActive(), tinyUrl.getRedirectPolicy());
+                versions[slot] = tinyUrl.getVersion();
+                addToIndex(slot);
+                size++;
+                return tinyUrl;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<Boolean> recordAccessAsync(String shortCode, LocalDateTime now) {
+        return Uni.createFrom().item(() -> {
+            long nowMicros = toMicros(now);
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(shortCode);
+                if (slot < 0 || !StoredRows.accessAllowed(flags[slot], expirationTimes[slot], usageCounts[slot],
+                        maxUsages[slot], attemptCounts[slot], maxAttempts[slot], nowMicros)) {
+                    return false;
+                }
+                attemptCounts[slot]++;
+                usageCounts[slot]++;
+                versions[slot]++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<Boolean> recordAttemptAsync(String shortCode) {
+        return Uni.createFrom().item(() -> {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(shortCode);
+                if (slot < 0) {
+                    return false;
+                }
+                attemptCounts[slot]++;
+                versions[slot]++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<TinyUrl> deactivateAsync(String shortCode) {
+        return Uni.createFrom().item(() -> {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(shortCode);
+                if (slot < 0) {
+                    return null;
+                }
+                flags[slot] &= ~ACTIVE;
+                versions[slot]++;
+                return toEntity(slot);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<TinyUrl> updateLimitsAsync(String shortCode, LimitsUpdate update) {
+        return Uni.createFrom().item(() -> {
+            long stamp = lock.writeLock();
+            try {
+                int slot = find(shortCode);
+                if (slot < 0) {
+                    return null;
+                }
+                switch (update.limit()) {
+                    case EXPIRATION_TIME -> expirationTimes[slot] = toMicros(update.expirationTime());
+                    case MAX_USAGE -> maxUsages[slot] = update.value();
+                    case MAX_ATTEMPTS -> maxAttempts[slot] = update.value();
+                }
+                versions[slot]++;
+                return toEntity(slot);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    @Override
+    public Uni<Long> deleteExpiredAsync(LocalDateTime before) {
+        return Uni.createFrom().item(() -> {
+            long beforeMicros = toMicros(before);
+            long deleted = 0;
+            long stamp = lock.writeLock();
+            try {
+                for (int slot = 0; slot < usedSlots; slot++) {
+                    if (shortCodes[slot] != null && expirationTimes[slot] != NO_TIME
+                            && expirationTimes[slot] < beforeMicros) {
+                        removeFromIndex(slot);
+                        freeSlot(slot);
+                        deleted++;
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * @return Number of tiny URLs stored
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private TinyUrl toEntity(int slot) {
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.id = ids[slot];
+        tinyUrl.setShortCode(shortCodes[slot]);
+        tinyUrl.setOriginalUrl(originalUrls[slot]);
+        tinyUrl.setExpirationTime(fromMicros(expirationTimes[slot]));
+        tinyUrl.setCreatedAt(fromMicros(createdAts[slot]));
+        tinyUrl.setUsageCount(usageCounts[slot]);
+        tinyUrl.setMaxUsage(maxUsages[slot]);
+        tinyUrl.setMaxAttempts(maxAttempts[slot]);
+        tinyUrl.setAttemptCount(attemptCounts[slot]);
+        tinyUrl.setOneTimeUse((flags[slot] & ONE_TIME_USE) != 0);
+        tinyUrl.setActive((flags[slot] & ACTIVE) != 0);
+        tinyUrl.setRedirectPolicy(StoredRows.redirectPolicy(flags[slot]));
+        tinyUrl.setVersion(versions[slot]);
+        return tinyUrl;
+    }
+
+    private int find(String shortCode) {
+        if (shortCode == null) {
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int position = hash(shortCode) & mask; ; position = (position + 1) & mask) {
+            int entry = index[position];
+            if (entry == 0) {
+                return -1;
+            }
+            if (shortCodes[entry - 1].equals(shortCode)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void addToIndex(int slot) {
+        if ((size + 1) * 2 > index.length) {
+            rehash(index.length * 2);
+        }
+        int mask = index.length - 1;
+        int position = hash(shortCodes[slot]) & mask;
+        while (index[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        index[position] = slot + 1;
+    }
+
+    private void removeFromIndex(int slot) {
+        int mask = index.length - 1;
+        int hole = hash(shortCodes[slot]) & mask;
+        while (index[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        // Backward-shift deletion: move later entries of the probe run into the hole, no tombstones
+        for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = hash(shortCodes[index[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void rehash(int tableSize) {
+        int[] old = index;
+        index = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int position = hash(shortCodes[entry - 1]) & mask;
+                while (index[position] != 0) {
+                    position = (position + 1) & mask;
+                }
+                index[position] = entry;
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (usedSlots == shortCodes.length) {
+            int capacity = shortCodes.length * 2;
+            shortCodes = Arrays.copyOf(shortCodes, capacity);
+            originalUrls = Arrays.copyOf(originalUrls, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            expirationTimes = Arrays.copyOf(expirationTimes, capacity);
+            createdAts = Arrays.copyOf(createdAts, capacity);
+            usageCounts = Arrays.copyOf(usageCounts, capacity);
+            maxUsages = Arrays.copyOf(maxUsages, capacity);
+            maxAttempts = Arrays.copyOf(maxAttempts, capacity);
+            attemptCounts = Arrays.copyOf(attemptCounts, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        return usedSlots++;
+    }
+
+    private void freeSlot(int slot) {
+        shortCodes[slot] = null;
+        originalUrls[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    private static int hash(String shortCode) {
+        int hash = shortCode.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+}
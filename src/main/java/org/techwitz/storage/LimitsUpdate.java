@@ -0,0 +1,47 @@
+package org.techwitz.storage;
+
+import org.techwitz.domain.TinyUrl;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change to the limits of a tiny URL, applied by {@link TinyUrlStore#updateLimitsAsync}.
+ * Exactly one limit is changed per update.
+ *
+ * @param limit The limit to change
+ * @param expirationTime The new expiration time, null for none; used by {@link Limit#EXPIRATION_TIME}
+ * @param value The new maximum, 0 for unlimited; used by {@link Limit#MAX_USAGE} and {@link Limit#MAX_ATTEMPTS}
+ */
+public record LimitsUpdate(Limit limit, LocalDateTime expirationTime, int value) {
+
+    public enum Limit {
+        EXPIRATION_TIME,
+        MAX_USAGE,
+        MAX_ATTEMPTS
+    }
+
+    public static LimitsUpdate expirationTime(LocalDateTime expirationTime) {
+        return new LimitsUpdate(Limit.EXPIRATION_TIME, expirationTime, 0);
+    }
+
+    public static LimitsUpdate maxUsage(int maxUsage) {
+        return new LimitsUpdate(Limit.MAX_USAGE, null, maxUsage);
+    }
+
+    public static LimitsUpdate maxAttempts(int maxAttempts) {
+        return new LimitsUpdate(Limit.MAX_ATTEMPTS, null, maxAttempts);
+    }
+
+    /**
+     * Applies the change to an entity.
+     *
+     * @param tinyUrl The entity to change
+     */
+    public void applyTo(TinyUrl tinyUrl) {
+        switch (limit) {
+            case EXPIRATION_TIME -> tinyUrl.setExpirationTime(expirationTime);
+            case MAX_USAGE -> tinyUrl.setMaxUsage(value);
+            case MAX_ATTEMPTS -> tinyUrl.setMaxAttempts(value);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.techwitz.storage;
+
+import org.techwitz.util.Hashing;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The index of {@link LogTinyUrlStore}: a memory-mapped open-addressing hash table from short code to
+ * the latest put record of its tiny URL in the {@link DataLog}, along with the current counters.
+ * <p>
+ * Layout: a {@value #HEADER_SIZE}-byte header (magic, version, generation, slot count, checkpoint)
+ * followed by {@value #SLOT_SIZE}-byte slots: the 64-bit hash of the short code (0 for an empty slot),
+ * the offset of the put record, the usage and attempt counts, and the offset of the access record they
+ * were last written to (0 if they are those of the put record). Hashes can collide, so a lookup also
+ * compares the short code in the put record. Entries are only removed by compaction, which builds a new
+ * index, so probing needs no tombstones.
+ * <p>
+ * The checkpoint is the log position up to which the index is known to be complete and on disk. Slots
+ * are updated in place and the page cache writes them back at any time, so after a crash the index can
+ * also hold changes of records past the checkpoint, including ones the log lost; the store replays the
+ * log from the checkpoint and rebuilds the index if a slot points past the end of what survived.
+ * Not thread-safe, like the log.
+ */
+final class LogIndex implements AutoCloseable {
+
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 32;
+    static final int MAGIC = 0x54554958; // "TUIX"
+    static final int VERSION = 1;
+    static final int CHECKPOINT = 24;
+
+    private static final int SLOT_KEY = 0;
+    private static final int SLOT_PUT = 8;
+    private static final int SLOT_USAGE = 12;
+    private static final int SLOT_ATTEMPTS = 16;
+    private static final int SLOT_ACCESS = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long generation;
+    private final int slotCount;
+    private final int mask;
+    private Path path;
+    private int size;
+
+    private LogIndex(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.generation = buffer.getLong(8);
+        this.slotCount = buffer.getInt(16);
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * Creates and maps a new, empty index file.
+     *
+     * @param path       The file to create; replaced if it exists
+     * @param generation The generation of the log it indexes
+     * @param slotCount  The number of slots, a power of two
+     * @return The index
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static LogIndex create(Path path, long generation, int slotCount) throws IOException {
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, generation);
+        buffer.putInt(16, slotCount);
+        buffer.putLong(CHECKPOINT, DataLog.HEADER_SIZE);
+        return new LogIndex(path, channel, buffer);
+    }
+
+    /**
+     * Maps an existing index file and counts its entries.
+     *
+     * @param path The file
+     * @return The index
+     * @throws IOException if the file cannot be mapped or is not an index
+     */
+    static LogIndex open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        MappedByteBuffer buffer = fileSize >= HEADER_SIZE && fileSize <= Integer.MAX_VALUE
+                ? channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize)
+                : null;
+        if (buffer == null || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || Integer.bitCount(buffer.getInt(16)) != 1
+                || fileSize != HEADER_SIZE + (long) buffer.getInt(16) * SLOT_SIZE) {
+            channel.close();
+            throw new IOException("Not a tiny URL index of version " + VERSION + ": " + path);
+        }
+        LogIndex index = new LogIndex(path, channel, buffer);
+        for (int slot = 0; slot < index.slotCount; slot++) {
+            if (!index.isEmpty(slot)) {
+                index.size++;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The number of slots for a number of entries, keeping the table at most half full
+     */
+    static int slotsFor(int entries, int minimum) {
+        int slots = Integer.highestOneBit(Math.max(minimum, entries * 2 + 1) - 1) << 1;
+        return Math.max(slots, 16);
+    }
+
+    static long key(String shortCode) {
+        long hash = Hashing.hash64(shortCode);
+        return hash == 0 ? 1 : hash;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return (size + 1) * 2 > slotCount;
+    }
+
+    int checkpoint() {
+        return (int) buffer.getLong(CHECKPOINT);
+    }
+
+    /**
+     * Records that every record before a log position is in the index, once the index is on disk.
+     * The log must already be on disk up to that position.
+     */
+    void checkpoint(int position) {
+        buffer.force();
+        buffer.putLong(CHECKPOINT, position);
+        buffer.force(CHECKPOINT, 8);
+    }
+
+    int home(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    int next(int slot) {
+        return (slot + 1) & mask;
+    }
+
+    boolean isEmpty(int slot) {
+        return key(slot) == 0;
+    }
+
+    long key(int slot) {
+        return buffer.getLong(offset(slot) + SLOT_KEY);
+    }
+
+    int put(int slot) {
+        return buffer.getInt(offset(slot) + SLOT_PUT);
+    }
+
+    int usage(int slot) {
+        return buffer.getInt(offset(slot) + SLOT_USAGE);
+    }
+
+    int attempts(int slot) {
+        return buffer.getInt(offset(slot) + SLOT_ATTEMPTS);
+    }
+
+    int access(int slot) {
+        return buffer.getInt(offset(slot) + SLOT_ACCESS);
+    }
+
+    /**
+     * Takes the first empty slot of the key's probe sequence; the caller has checked the short code is
+     * not in the index and that it is not {@link #isFull() full}.
+     */
+    int insert(long key, int put, int usage, int attempts) {
+        int slot = home(key);
+        while (!isEmpty(slot)) {
+            slot = next(slot);
+        }
+        int offset = offset(slot);
+        buffer.putInt(offset + SLOT_PUT, put);
+        buffer.putInt(offset + SLOT_USAGE, usage);
+        buffer.putInt(offset + SLOT_ATTEMPTS, attempts);
+        buffer.putInt(offset + SLOT_ACCESS, 0);
+        // The key makes the slot used, so it is written last
+        buffer.putLong(offset + SLOT_KEY, key);
+        size++;
+        return slot;
+    }
+
+    void updatePut(int slot, int put, int usage, int attempts) {
+        int offset = offset(slot);
+        buffer.putInt(offset + SLOT_PUT, put);
+        buffer.putInt(offset + SLOT_USAGE, usage);
+        buffer.putInt(offset + SLOT_ATTEMPTS, attempts);
+        buffer.putInt(offset + SLOT_ACCESS, 0);
+    }
+
+    void updateCounters(int slot, int usage, int attempts, int access) {
+        int offset = offset(slot);
+        buffer.putInt(offset + SLOT_USAGE, usage);
+        buffer.putInt(offset + SLOT_ATTEMPTS, attempts);
+        buffer.putInt(offset + SLOT_ACCESS, access);
+    }
+
+    /**
+     * Inserts every entry into another, larger index.
+     */
+    void copyTo(LogIndex target) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            long key = key(slot);
+            if (key != 0) {
+                int copy = target.insert(key, put(slot), usage(slot), attempts(slot));
+                target.updateCounters(copy, usage(slot), attempts(slot), access(slot));
+            }
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        path = target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,875 @@
+package org.techwitz.storage;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.util.LoggingUtils;
+import org.techwitz.util.OperationTimer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The embedded storage engine: tiny URLs persisted in local files, for nodes without a database.
+ * <p>
+ * Every change is appended to a {@link DataLog}: a whole record when a tiny URL is created, deactivated
+ * or gets new limits, a small access record with the new counters for each redirect. A memory-mapped
+ * {@link LogIndex} maps each short code to its latest put record and holds its current counters, so a
+ * lookup is a hash probe and a read of the mapped log, and a redirect an index update and an append.
+ * Every change is queued for a single committer thread, which applies what was queued under one write
+ * lock, growing the index on the way, and forces the log for everything appended since the last force,
+ * so concurrent writes share one fsync (group commit). Writes complete once their record is on disk.
+ * <p>
+ * The committer also checkpoints the index every {@code tiny.url.storage.log.checkpoint-interval}. On
+ * startup the log is replayed from the checkpoint up to the first incomplete record, which is cut off;
+ * if the index holds changes the log lost, it is rebuilt from the whole log. Compaction copies the live
+ * tiny URLs, with their counters folded in, to a new log generation and drops the expired and the
+ * deactivated ones: {@link #deleteExpiredAsync} compacts, and the committer compacts on its own once more
+ * than {@code compaction.garbage-ratio} of a log larger than {@code compaction.min-size-mb} is garbage.
+ * Compaction holds the write lock for the whole copy. Event loops never wait for the lock: changes only
+ * queue, and a lookup that finds the lock taken continues on a worker thread and comes back to its context.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "tiny.url.storage.engine", stringValue = "log")
+public class LogTinyUrlStore implements TinyUrlStore {
+    private static final Logger LOG = Logger.getLogger(LogTinyUrlStore.class);
+    private static final Pattern DATA_NAME = Pattern.compile("data-(\\d+)\\.log");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.storage.log.directory", defaultValue = "data/store")
+    String directory;
+
+    @ConfigProperty(name = "tiny.url.storage.log.initial-size-mb", defaultValue = "64")
+    int initialSizeMb;
+
+    @ConfigProperty(name = "tiny.url.storage.log.index-slots", defaultValue = "65536")
+    int indexSlots;
+
+    @ConfigProperty(name = "tiny.url.storage.log.group-commit-delay", defaultValue = "PT0S")
+    Duration groupCommitDelay;
+
+    @ConfigProperty(name = "tiny.url.storage.log.checkpoint-interval", defaultValue = "PT30S")
+    Duration checkpointInterval;
+
+    @ConfigProperty(name = "tiny.url.storage.log.compaction.min-size-mb", defaultValue = "64")
+    int compactionMinSizeMb;
+
+    @ConfigProperty(name = "tiny.url.storage.log.compaction.garbage-ratio", defaultValue = "0.5")
+    double compactionGarbageRatio;
+
+    private final OperationTimer fsyncTimer = LoggingUtils.timer("store.log.fsync");
+    private final OperationTimer compactionTimer = LoggingUtils.timer("store.log.compaction");
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder committedWrites = new LongAdder();
+    // Package-private, so tests can hold it like the committer does
+    final StampedLock lock = new StampedLock();
+    private final Queue<Write<?>> writes = new ConcurrentLinkedQueue<>();
+    private final Queue<Waiter<?>> waiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Compaction> compactionRequests = new ConcurrentLinkedQueue<>();
+    private Path root;
+    private DataLog log;
+    private LogIndex index;
+    private long liveBytes;
+    private long nextId;
+    // Only used by the committer thread, and by open and close before and after it runs
+    private int forced;
+    private volatile boolean running;
+    private Thread committer;
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Cannot open the tiny URL store in " + Paths.get(directory).toAbsolutePath(), e);
+        }
+        metricRegistry.gauge("storeLogBytes", this::getLogBytes);
+        metricRegistry.gauge("storeLiveBytes", this::getLiveBytes);
+        metricRegistry.gauge("storeTinyUrls", this::size);
+        metricRegistry.gauge("storeCommits", commits::sum);
+        metricRegistry.gauge("storeCommittedWrites", committedWrites::sum);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        close();
+    }
+
+    /**
+     * Opens or creates the files in {@code directory}, recovers them and starts the committer.
+     */
+    void open() throws IOException {
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        long generation = latestGeneration();
+        if (generation == 0) {
+            log = DataLog.create(dataPath(1), 1, 1, initialSizeMb << 20);
+            log.force(0, DataLog.HEADER_SIZE);
+            syncDirectory();
+        } else {
+            log = DataLog.open(dataPath(generation));
+        }
+        index = recoverIndex();
+        forced = log.end();
+
+        running = true;
+        committer = new Thread(this::runCommitter, "tiny-url-store-committer");
+        committer.setDaemon(true);
+        committer.start();
+        LOG.infof("Tiny URL store opened in %s: %d tiny URLs, %d of %d log bytes live, generation %d",
+                root.toAbsolutePath(), index.size(), liveBytes, log.end(), log.generation());
+    }
+
+    /**
+     * Stops the committer after a last commit and checkpoint, so the next start needs no replay.
+     */
+    void close() {
+        if (committer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(committer);
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        committer = null;
+        long stamp = lock.writeLock();
+        try {
+            commit(log.end());
+            index.checkpoint(log.end());
+            log.close();
+            index.close();
+        } catch (IOException e) {
+            LOG.warnf("Failed to close the tiny URL store cleanly: %s", e.getMessage());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        failWrites();
+        failPending(new IllegalStateException("Tiny URL store is closed"));
+        Compaction request;
+        while ((request = compactionRequests.poll()) != null) {
+            request.done().completeExceptionally(new IllegalStateException("Tiny URL store is closed"));
+        }
+    }
+
+    @Override
+    public Uni<TinyUrl> findByShortCodeAsync(String shortCode) {
+        byte[] code = encode(shortCode);
+        return read(() -> {
+            int slot = find(LogIndex.key(shortCode), code);
+            return slot < 0 ? null : toEntity(slot);
+        });
+    }
+
+    @Override
+    public Uni<List<TinyUrl>> findByShortCodesAsync(Collection<String> shortCodes) {
+        return read(() -> {
+            List<TinyUrl> found = new ArrayList<>(shortCodes.size());
+            for (String shortCode : shortCodes) {
+                int slot = find(LogIndex.key(shortCode), encode(shortCode));
+                if (slot >= 0) {
+                    found.add(toEntity(slot));
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public Uni<TinyUrl> insertAsync(TinyUrl tinyUrl) {
+        long key = LogIndex.key(tinyUrl.getShortCode());
+        byte[] code = encode(tinyUrl.getShortCode());
+        return write(() -> {
+            checkOpen();
+            if (find(key, code) >= 0) {
+                throw new IllegalStateException("Short code already exists: " + tinyUrl.getShortCode());
+            }
+            ensureIndexCapacity();
+            tinyUrl.id = nextId++;
+            int put = log.appendPut(tinyUrl);
+            index.insert(key, put, tinyUrl.getUsageCount(), tinyUrl.getAttemptCount());
+            tinyUrl.setVersion(version(put, 0));
+            liveBytes += liveSize(put);
+            return Result.whenDurable(tinyUrl);
+        });
+    }
+
+    @Override
+    public Uni<Boolean> recordAccessAsync(String shortCode, LocalDateTime now) {
+        long key = LogIndex.key(shortCode);
+        byte[] code = encode(shortCode);
+        long nowMicros = StoredRows.toMicros(now);
+        return write(() -> {
+            checkOpen();
+            int slot = find(key, code);
+            if (slot < 0) {
+                return Result.now(false);
+            }
+            int put = index.put(slot);
+            int usage = index.usage(slot);
+            int attempts = index.attempts(slot);
+            if (!StoredRows.accessAllowed(log.flags(put), log.expirationMicros(put), usage, log.maxUsage(put),
+                    attempts, log.maxAttempts(put), nowMicros)) {
+                return Result.now(false);
+            }
+            int access = log.appendAccess(code, usage + 1, attempts + 1);
+            index.updateCounters(slot, usage + 1, attempts + 1, access);
+            return Result.whenDurable(true);
+        });
+    }
+
+    @Override
+    public Uni<Boolean> recordAttemptAsync(String shortCode) {
+        long key = LogIndex.key(shortCode);
+        byte[] code = encode(shortCode);
+        return write(() -> {
+            checkOpen();
+            int slot = find(key, code);
+            if (slot < 0) {
+                return Result.now(false);
+            }
+            int usage = index.usage(slot);
+            int attempts = index.attempts(slot) + 1;
+            int access = log.appendAccess(code, usage, attempts);
+            index.updateCounters(slot, usage, attempts, access);
+            return Result.whenDurable(true);
+        });
+    }
+
+    @Override
+    public Uni<TinyUrl> deactivateAsync(String shortCode) {
+        return rewrite(shortCode, tinyUrl -> tinyUrl.setActive(false));
+    }
+
+    @Override
+    public Uni<TinyUrl> updateLimitsAsync(String shortCode, LimitsUpdate update) {
+        return rewrite(shortCode, update::applyTo);
+    }
+
+    @Override
+    public Uni<Long> deleteExpiredAsync(LocalDateTime before) {
+        return Uni.createFrom().completionStage(() -> {
+            checkOpen();
+            Compaction compaction = new Compaction(StoredRows.toMicros(before), new CompletableFuture<>());
+            compactionRequests.add(compaction);
+            LockSupport.unpark(committer);
+            return compaction.done();
+        });
+    }
+
+    /**
+     * @return Number of tiny URLs stored
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Size of the log, including records superseded since the last compaction
+     */
+    public long getLogBytes() {
+        long stamp = lock.readLock();
+        try {
+            return log.end();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Size of the records a compaction would keep, apart from expired ones
+     */
+    public long getLiveBytes() {
+        long stamp = lock.readLock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Appends a new put record for a changed tiny URL.
+     */
+    private Uni<TinyUrl> rewrite(String shortCode, Consumer<TinyUrl> change) {
+        byte[] code = encode(shortCode);
+        return write(() -> {
+            checkOpen();
+            int slot = find(LogIndex.key(shortCode), code);
+            if (slot < 0) {
+                return Result.now(null);
+            }
+            int previous = index.put(slot);
+            TinyUrl tinyUrl = toEntity(slot);
+            change.accept(tinyUrl);
+            int put = log.appendPut(tinyUrl);
+            index.updatePut(slot, put, tinyUrl.getUsageCount(), tinyUrl.getAttemptCount());
+            tinyUrl.setVersion(version(put, 0));
+            liveBytes += liveSize(put) - liveSize(previous);
+            return Result.whenDurable(tinyUrl);
+        });
+    }
+
+    /**
+     * Runs a lookup holding the read lock. On a Vert.x event loop the lock is only taken if it is free;
+     * while the committer or compaction holds it, the lookup continues on a worker thread and its result is
+     * emitted on the caller's context.
+     */
+    private <T> Uni<T> read(Supplier<T> lookup) {
+        return Uni.createFrom().deferred(() -> {
+            if (Context.isOnEventLoopThread()) {
+                long stamp = lock.tryReadLock();
+                if (stamp != 0) {
+                    return Uni.createFrom().emitter(emitter -> run(stamp, lookup, emitter));
+                }
+                Context context = Vertx.currentContext();
+                return Uni.createFrom().<T>emitter(emitter -> run(lock.readLock(), lookup, emitter))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                        .emitOn(task -> context.runOnContext(ignored -> task.run()));
+            }
+            return Uni.createFrom().emitter(emitter -> run(lock.readLock(), lookup, emitter));
+        });
+    }
+
+    /**
+     * Runs the lookup and releases the lock before its result is emitted, so whatever the caller does
+     * next with the store does not run under the lock.
+     */
+    private <T> void run(long stamp, Supplier<T> lookup, UniEmitter<? super T> emitter) {
+        T item;
+        try {
+            item = lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        emitter.complete(item);
+    }
+
+    /**
+     * Queues a change for the committer thread, which runs it holding the write lock. Its result is
+     * emitted on the caller's Vert.x context, if there is one.
+     */
+    private <T> Uni<T> write(Locked<T> operation) {
+        return Uni.createFrom().emitter(emitter -> {
+            checkOpen();
+            writes.add(new Write<>(operation, Vertx.currentContext(), emitter));
+            if (running) {
+                LockSupport.unpark(committer);
+            } else {
+                // Closed meanwhile, after the queue was failed
+                failWrites();
+            }
+        });
+    }
+
+    /**
+     * @return The bytes a put record adds to the live bytes: none once deactivated, since compaction drops it
+     */
+    private long liveSize(int put) {
+        return (log.flags(put) & StoredRows.ACTIVE) != 0 ? log.recordSize(put) : 0;
+    }
+
+    private int find(long key, byte[] code) {
+        for (int slot = index.home(key); !index.isEmpty(slot); slot = index.next(slot)) {
+            if (index.key(slot) == key && log.codeEquals(index.put(slot), code)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private TinyUrl toEntity(int slot) {
+        TinyUrl tinyUrl = log.readPut(index.put(slot));
+        tinyUrl.setUsageCount(index.usage(slot));
+        tinyUrl.setAttemptCount(index.attempts(slot));
+        tinyUrl.setVersion(version(index.put(slot), index.access(slot)));
+        return tinyUrl;
+    }
+
+    /**
+     * Every change of a tiny URL appends a record, so the position of its latest record, put or access, is
+     * its version. Compaction moves records to a new generation, which is the high half.
+     */
+    private long version(int put, int access) {
+        return log.generation() << 32 | Math.max(put, access);
+    }
+
+    private void checkOpen() {
+        if (!running) {
+            throw new IllegalStateException("Tiny URL store is closed");
+        }
+    }
+
+    /**
+     * Runs the queued changes under one write lock, after growing the index if it is getting full, so
+     * inserts rarely have to. Writes that wait for the disk are queued in log order for the next commit;
+     * the results of the others are emitted once the lock is released.
+     */
+    private void applyWrites() {
+        if (writes.isEmpty()) {
+            return;
+        }
+        List<Runnable> emits = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            ensureIndexCapacity();
+            Write<?> write;
+            while ((write = writes.poll()) != null) {
+                apply(write, emits);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        emits.forEach(Runnable::run);
+    }
+
+    private <T> void apply(Write<T> write, List<Runnable> emits) {
+        try {
+            Result<T> result = write.operation().run();
+            Waiter<T> waiter = new Waiter<>(log.end(), write.context(), write.emitter(), result.item());
+            if (result.durable()) {
+                waiters.add(waiter);
+            } else {
+                emits.add(waiter::complete);
+            }
+        } catch (RuntimeException e) {
+            Waiter<T> waiter = new Waiter<>(log.end(), write.context(), write.emitter(), null);
+            emits.add(() -> waiter.fail(e));
+        }
+    }
+
+    private void runCommitter() {
+        long delayNanos = groupCommitDelay.toNanos();
+        long checkpointNanos = checkpointInterval.toNanos();
+        long lastCheckpoint = System.nanoTime();
+        while (running) {
+            if (writes.isEmpty() && waiters.isEmpty() && compactionRequests.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } else if (delayNanos > 0) {
+                // Lets more writes join the next fsync
+                LockSupport.parkNanos(this, delayNanos);
+            }
+            try {
+                applyWrites();
+                commit(currentEnd());
+                Compaction request;
+                while ((request = compactionRequests.poll()) != null) {
+                    try {
+                        request.done().complete(compact(request.expiredBeforeMicros()));
+                    } catch (IOException | RuntimeException e) {
+                        request.done().completeExceptionally(e);
+                    }
+                }
+                if (needsCompaction()) {
+                    compact(StoredRows.NO_TIME);
+                }
+                if (System.nanoTime() - lastCheckpoint >= checkpointNanos) {
+                    checkpoint();
+                    lastCheckpoint = System.nanoTime();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.errorf(e, "Tiny URL store commit failed, failing %d pending writes", waiters.size());
+                failPending(e);
+                LockSupport.parkNanos(this, FAILURE_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    private int currentEnd() {
+        long stamp = lock.readLock();
+        try {
+            return log.end();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forces the log up to a position it has reached and completes the writes before it. The log is
+     * only replaced by compaction, which runs on the committer thread too, so it is safe to read it
+     * without the lock here.
+     */
+    private void commit(int end) {
+        if (end > forced) {
+            long start = System.nanoTime();
+            log.force(forced, end);
+            forced = end;
+            fsyncTimer.recordSince(start);
+            commits.increment();
+        }
+        Waiter<?> waiter;
+        while ((waiter = waiters.peek()) != null && waiter.position() <= forced) {
+            waiters.poll();
+            committedWrites.increment();
+            waiter.complete();
+        }
+    }
+
+    private void failWrites() {
+        IllegalStateException closed = new IllegalStateException("Tiny URL store is closed");
+        Write<?> write;
+        while ((write = writes.poll()) != null) {
+            new Waiter<>(0, write.context(), write.emitter(), null).fail(closed);
+        }
+    }
+
+    private void failPending(Throwable failure) {
+        Waiter<?> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.fail(failure);
+        }
+    }
+
+    private void checkpoint() {
+        LogIndex current;
+        int end;
+        long stamp = lock.readLock();
+        try {
+            current = index;
+            end = log.end();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        commit(end);
+        // Slots changed meanwhile are written too, which is fine: they are past the checkpoint
+        current.checkpoint(end);
+    }
+
+    private boolean needsCompaction() {
+        long stamp = lock.readLock();
+        try {
+            long size = log.end();
+            return size >= ((long) compactionMinSizeMb << 20)
+                    && size - DataLog.HEADER_SIZE - liveBytes > compactionGarbageRatio * size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the live tiny URLs to the next log generation and switches to it.
+     *
+     * @param expiredBeforeMicros Tiny URLs expiring before this time are dropped, as are deactivated ones
+     * @return The number of tiny URLs dropped
+     */
+    private long compact(long expiredBeforeMicros) throws IOException {
+        long start = System.nanoTime();
+        long stamp = lock.writeLock();
+        try {
+            commit(log.end());
+            long generation = log.generation() + 1;
+            int size = (int) Math.min(Integer.MAX_VALUE & ~0xfff,
+                    Math.max((long) initialSizeMb << 20, (liveBytes + DataLog.HEADER_SIZE) * 2));
+            Path dataTemp = temporary(dataPath(generation));
+            Path indexTemp = temporary(indexPath(generation));
+            Files.deleteIfExists(dataTemp);
+            DataLog compacted = DataLog.create(dataTemp, generation, nextId, size);
+            LogIndex compactedIndex = LogIndex.create(indexTemp, generation,
+                    LogIndex.slotsFor(index.size(), indexSlots));
+            long expired = 0;
+            long deactivated = 0;
+            long live = 0;
+            for (int slot = 0; slot < index.slotCount(); slot++) {
+                if (index.isEmpty(slot)) {
+                    continue;
+                }
+                int put = index.put(slot);
+                long expiration = log.expirationMicros(put);
+                if (expiration != StoredRows.NO_TIME && expiration < expiredBeforeMicros) {
+                    expired++;
+                    continue;
+                }
+                if ((log.flags(put) & StoredRows.ACTIVE) == 0) {
+                    deactivated++;
+                    continue;
+                }
+                int copy = compacted.appendPut(toEntity(slot));
+                compactedIndex.insert(index.key(slot), copy, index.usage(slot), index.attempts(slot));
+                live += compacted.recordSize(copy);
+            }
+            compacted.force(0, compacted.end());
+            compactedIndex.checkpoint(compacted.end());
+            // The new generation takes over once its log has its final name
+            compacted.moveTo(dataPath(generation));
+            compactedIndex.moveTo(indexPath(generation));
+            syncDirectory();
+
+            DataLog previous = log;
+            LogIndex previousIndex = index;
+            log = compacted;
+            index = compactedIndex;
+            liveBytes = live;
+            forced = compacted.end();
+            previous.close();
+            previousIndex.close();
+            Files.deleteIfExists(previous.path());
+            Files.deleteIfExists(previousIndex.path());
+            LOG.infof("Compacted tiny URL store to generation %d: %d tiny URLs in %d bytes, "
+                    + "%d expired and %d deactivated dropped", generation, index.size(), log.end(), expired, deactivated);
+            return expired + deactivated;
+        } finally {
+            lock.unlockWrite(stamp);
+            compactionTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * Doubles the index before it gets more than half full. Only the committer calls it, holding the write lock.
+     */
+    private void ensureIndexCapacity() {
+        if (!index.isFull()) {
+            return;
+        }
+        try {
+            resizeIndex(log.end());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow the tiny URL index", e);
+        }
+    }
+
+    /**
+     * Replaces the index with one twice the size.
+     *
+     * @param checkpoint The log position up to which the index is complete
+     */
+    private void resizeIndex(int checkpoint) throws IOException {
+        Path target = indexPath(log.generation());
+        LogIndex larger = LogIndex.create(temporary(target), log.generation(), index.slotCount() * 2);
+        index.copyTo(larger);
+        log.force(DataLog.HEADER_SIZE, checkpoint);
+        larger.checkpoint(checkpoint);
+        larger.moveTo(target);
+        index.close();
+        index = larger;
+    }
+
+    /**
+     * Opens the index of the current log and brings it up to date with the log, or rebuilds it. Also
+     * finds the end of the log, the live bytes and the next id.
+     */
+    private LogIndex recoverIndex() throws IOException {
+        Path path = indexPath(log.generation());
+        if (Files.exists(path)) {
+            try {
+                index = LogIndex.open(path);
+                int checkpoint = index.checkpoint();
+                if (index.generation() == log.generation() && checkpoint >= DataLog.HEADER_SIZE) {
+                    int end = log.scan(checkpoint, this::replay);
+                    if (summarize(end)) {
+                        LOG.debugf("Replayed %d bytes of the tiny URL log from the checkpoint", end - checkpoint);
+                        return index;
+                    }
+                }
+                LOG.warnf("Tiny URL index %s does not match the log, rebuilding it", path);
+                index.close();
+            } catch (IOException e) {
+                LOG.warnf("Cannot use tiny URL index %s, rebuilding it: %s", path, e.getMessage());
+            }
+        }
+        index = LogIndex.create(path, log.generation(), indexSlots);
+        int end = log.scan(DataLog.HEADER_SIZE, this::replay);
+        if (!summarize(end)) {
+            throw new IOException("Tiny URL log " + log.path() + " is inconsistent");
+        }
+        log.force(DataLog.HEADER_SIZE, end);
+        index.checkpoint(end);
+        return index;
+    }
+
+    private void replay(int offset, byte type, String shortCode) {
+        long key = LogIndex.key(shortCode);
+        int slot = find(key, encode(shortCode));
+        if (type == DataLog.PUT) {
+            if (slot < 0) {
+                if (index.isFull()) {
+                    try {
+                        resizeIndex(offset);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                index.insert(key, offset, log.usage(offset), log.attempts(offset));
+            } else {
+                index.updatePut(slot, offset, log.usage(offset), log.attempts(offset));
+            }
+        } else if (slot >= 0) {
+            index.updateCounters(slot, log.usage(offset), log.attempts(offset), offset);
+        }
+    }
+
+    /**
+     * Checks that every slot refers to records the log still has, and computes the live bytes and the
+     * next id.
+     *
+     * @return false if the index holds changes the log does not have
+     */
+    private boolean summarize(int end) {
+        long live = 0;
+        long maxId = log.firstId() - 1;
+        for (int slot = 0; slot < index.slotCount(); slot++) {
+            if (index.isEmpty(slot)) {
+                continue;
+            }
+            int put = index.put(slot);
+            int access = index.access(slot);
+            try {
+                if (put >= end || !log.isRecord(put, DataLog.PUT)
+                        || LogIndex.key(log.shortCode(put)) != index.key(slot)
+                        || access != 0 && (access >= end || !log.isRecord(access, DataLog.ACCESS))) {
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                // A slot pointing into the middle of a record
+                return false;
+            }
+            live += liveSize(put);
+            maxId = Math.max(maxId, log.id(put));
+        }
+        liveBytes = live;
+        nextId = maxId + 1;
+        return true;
+    }
+
+    /**
+     * @return The highest generation with a complete log, 0 if there is none; other files are deleted
+     */
+    private long latestGeneration() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(root)) {
+            files = list.toList();
+        }
+        long latest = 0;
+        for (Path file : files) {
+            Matcher matcher = DATA_NAME.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                latest = Math.max(latest, Long.parseLong(matcher.group(1)));
+            }
+        }
+        for (Path file : files) {
+            if (!file.equals(dataPath(latest)) && !file.equals(indexPath(latest))) {
+                LOG.infof("Deleting leftover tiny URL store file %s", file.getFileName());
+                Files.deleteIfExists(file);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Makes renames and new files in the directory durable.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(root, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform
+            LOG.debugf("Cannot sync directory %s: %s", root, e.getMessage());
+        }
+    }
+
+    private Path dataPath(long generation) {
+        return root.resolve("data-" + generation + ".log");
+    }
+
+    private Path indexPath(long generation) {
+        return root.resolve("index-" + generation + ".idx");
+    }
+
+    private static Path temporary(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static byte[] encode(String shortCode) {
+        return shortCode.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Compaction(long expiredBeforeMicros, CompletableFuture<Long> done) {
+    }
+
+    @FunctionalInterface
+    private interface Locked<T> {
+        /**
+         * Runs on the committer thread with the write lock held.
+         */
+        Result<T> run();
+    }
+
+    private record Write<T>(Locked<T> operation, Context context, UniEmitter<? super T> emitter) {
+    }
+
+    /**
+     * The result of a change: emitted at once, or once the change's write is on disk.
+     */
+    private record Result<T>(T item, boolean durable) {
+        static <T> Result<T> now(T item) {
+            return new Result<>(item, false);
+        }
+
+        static <T> Result<T> whenDurable(T item) {
+            return new Result<>(item, true);
+        }
+    }
+
+    private record Waiter<T>(int position, Context context, UniEmitter<? super T> emitter, T item) {
+
+        void complete() {
+            if (context != null) {
+                context.runOnContext(ignored -> emitter.complete(item));
+            } else {
+                emitter.complete(item);
+            }
+        }
+
+        void fail(Throwable failure) {
+            if (context != null) {
+                context.runOnContext(ignored -> emitter.fail(failure));
+            } else {
+                emitter.fail(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.techwitz.storage;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accesses served while the store was unavailable, counted in memory per short code and replayed with
+ * {@link TinyUrlStore#recordAccessesAsync} once the {@link StoreCircuitBreaker} has closed again.
+ * <p>
+ * At most {@code tiny.url.degraded.max-pending-codes} codes are held; accesses to further codes are
+ * dropped and counted, as are pending accesses still unreplayed at shutdown. Only links without limits are
+ * served in degraded mode, so a lost count never lets a link be used more than it allows.
+ */
+@ApplicationScoped
+public class PendingAccesses {
+    private static final Logger LOG = Logger.getLogger(PendingAccesses.class);
+
+    @Inject
+    TinyUrlStore tinyUrlStore;
+
+    @Inject
+    StoreCircuitBreaker storeCircuitBreaker;
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.degraded.max-pending-codes", defaultValue = "100000")
+    int maxPendingCodes;
+
+    @ConfigProperty(name = "tiny.url.degraded.replay-timeout", defaultValue = "PT5S")
+    Duration replayTimeout;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        metricRegistry.gauge("degradedAccessesRecorded", recorded::sum);
+        metricRegistry.gauge("degradedAccessesReplayed", replayed::sum);
+        metricRegistry.gauge("degradedAccessesDropped", dropped::sum);
+        metricRegistry.gauge("degradedAccessesPendingCodes", pending::size);
+    }
+
+    /**
+     * Counts an access served without the store.
+     *
+     * @param shortCode The short code
+     * @param now       The time of the access
+     */
+    public void record(String shortCode, LocalDateTime now) {
+        if (pending.size() >= maxPendingCodes && !pending.containsKey(shortCode)) {
+            dropped.increment();
+            return;
+        }
+        pending.merge(shortCode, new Pending(1, now), Pending::plus);
+        recorded.increment();
+    }
+
+    @Scheduled(every = "${tiny.url.degraded.replay-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void replay() {
+        if (pending.isEmpty() || storeCircuitBreaker.isOpen()) {
+            return;
+        }
+        int codes = 0;
+        for (String shortCode : pending.keySet()) {
+            Pending accesses = pending.remove(shortCode);
+            if (accesses == null) {
+                continue;
+            }
+            try {
+                boolean counted = storeCircuitBreaker.call(
+                                tinyUrlStore.recordAccessesAsync(shortCode, accesses.count(), accesses.lastAccess()))
+                        .await().atMost(replayTimeout);
+                if (counted) {
+                    replayed.add(accesses.count());
+                } else {
+                    // Deleted, deactivated, expired or given limits meanwhile
+                    dropped.add(accesses.count());
+                }
+                codes++;
+            } catch (RuntimeException e) {
+                // Kept, and retried with the next replay
+                pending.merge(shortCode, accesses, Pending::plus);
+                LOG.warnf("Replay of degraded-mode accesses stopped after %d codes, %d left: %s",
+                        codes, pending.size(), e.getMessage());
+                return;
+            }
+        }
+        LOG.infof("Replayed degraded-mode accesses of %d codes", codes);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        int codes = pending.size();
+        if (codes > 0) {
+            LOG.warnf("%d codes with degraded-mode accesses not replayed before shutdown", codes);
+        }
+    }
+
+    private record Pending(int count, LocalDateTime lastAccess) {
+        Pending plus(Pending other) {
+            return new Pending(count + other.count,
+                    lastAccess.isAfter(other.lastAccess) ? lastAccess : other.lastAccess);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+import org.techwitz.exception.StoreUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker in front of the {@link TinyUrlStore} calls of the redirect path.
+ * <p>
+ * After {@code tiny.url.degraded.failure-threshold} consecutive calls that failed or took longer than
+ * {@code slow-call-threshold}, the breaker opens: calls fail at once with a {@link StoreUnavailableException}
+ * instead of piling up on a store that is failing over, and redirects are served in degraded mode (see
+ * {@code TinyUrlService#resolveUrl}). Every {@code open-duration} one call is let through as a trial; the
+ * breaker closes when it succeeds, and stays open otherwise.
+ * <p>
+ * The state is reported by the {@code store-circuit-breaker} readiness check, which stays UP while the
+ * breaker is open since the node still serves cached redirects, and by the {@code storeCircuitBreakerState}
+ * gauge (0 closed, 1 half-open, 2 open).
+ */
+@Readiness
+@ApplicationScoped
+public class StoreCircuitBreaker implements HealthCheck {
+    private static final Logger LOG = Logger.getLogger(StoreCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    @Inject
+    MetricRegistry metricRegistry;
+
+    @ConfigProperty(name = "tiny.url.degraded.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "tiny.url.degraded.failure-threshold", defaultValue = "5")
+    int failureThreshold;
+
+    @ConfigProperty(name = "tiny.url.degraded.slow-call-threshold", defaultValue = "PT1S")
+    Duration slowCallThreshold;
+
+    @ConfigProperty(name = "tiny.url.degraded.open-duration", defaultValue = "PT10S")
+    Duration openDuration;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // When the breaker opened or its last trial call started, System.nanoTime()
+    private final AtomicLong openedAt = new AtomicLong();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile State state = State.CLOSED;
+    private long slowCallNanos;
+    private long openNanos;
+
+    public StoreCircuitBreaker() {
+    }
+
+    /**
+     * Creates an enabled breaker without metrics, for tests.
+     */
+    public StoreCircuitBreaker(int failureThreshold, Duration slowCallThreshold, Duration openDuration) {
+        this.enabled = true;
+        this.failureThreshold = failureThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        slowCallNanos = slowCallThreshold.toNanos();
+        openNanos = openDuration.toNanos();
+        if (metricRegistry != null) {
+            metricRegistry.gauge("storeCircuitBreakerState", () -> state.ordinal());
+            metricRegistry.gauge("storeCircuitBreakerOpened", opened::sum);
+            metricRegistry.gauge("storeCircuitBreakerRejected", rejected::sum);
+        }
+    }
+
+    /**
+     * Guards a store call.
+     *
+     * @param operation The store call, subscribed right away by the caller
+     * @return Uni with the result of the call, or failing with a {@link StoreUnavailableException} if the
+     * breaker is open
+     */
+    public <T> Uni<T> call(Uni<T> operation) {
+        if (!enabled) {
+            return operation;
+        }
+        if (!tryAcquire()) {
+            rejected.increment();
+            return Uni.createFrom().failure(new StoreUnavailableException("The store is unavailable"));
+        }
+        long started = System.nanoTime();
+        return operation.onItemOrFailure().invoke(
+                (item, failure) -> record(failure == null && System.nanoTime() - started <= slowCallNanos));
+    }
+
+    /**
+     * @return true while calls are refused, apart from the occasional trial call
+     */
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("store-circuit-breaker")
+                .up()
+                .withData("state", state.name())
+                .withData("consecutiveFailures", consecutiveFailures.get())
+                .build();
+    }
+
+    private boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        // One trial call per open duration; a trial that never completes does not keep the breaker open forever
+        long since = openedAt.get();
+        long now = System.nanoTime();
+        if (now - since < openNanos || !openedAt.compareAndSet(since, now)) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    private void record(boolean success) {
+        if (success) {
+            consecutiveFailures.set(0);
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                LOG.info("Store circuit breaker closed, the store is available again");
+            }
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            openedAt.set(System.nanoTime());
+            if (state == State.CLOSED) {
+                opened.increment();
+                LOG.warnf("Store circuit breaker opened after %d failed or slow calls, serving redirects in degraded mode",
+                        failures);
+            }
+            state = State.OPEN;
+        }
+    }
+}
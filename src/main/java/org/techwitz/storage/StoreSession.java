@@ -0,0 +1,19 @@
+package org.techwitz.storage;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method returning a {@link io.smallrye.mutiny.Uni} in a session of the {@link TinyUrlStore}, see
+ * {@link TinyUrlStore#withSession}. With the Postgres engine this is {@code @WithSession}; engines without
+ * sessions run the method as is, so they need no datasource.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StoreSession {
+}
@@ -0,0 +1,37 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Runs {@link StoreSession} methods in a session of the active storage engine.
+ */
+@StoreSession
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 200)
+public class StoreSessionInterceptor {
+
+    @Inject
+    TinyUrlStore tinyUrlStore;
+
+    @AroundInvoke
+    public Object withSession(InvocationContext context) {
+        return tinyUrlStore.withSession(() -> proceed(context));
+    }
+
+    /**
+     * Proceeds with an invocation of a method returning a {@link Uni}, turning exceptions into a failed Uni.
+     */
+    @SuppressWarnings("unchecked")
+    static Uni<Object> proceed(InvocationContext context) {
+        try {
+            return (Uni<Object>) context.proceed();
+        } catch (Exception e) {
+            return Uni.createFrom().failure(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.techwitz.storage;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method returning a {@link io.smallrye.mutiny.Uni} in a transaction of the {@link TinyUrlStore}, see
+ * {@link TinyUrlStore#withTransaction}. With the Postgres engine this is {@code @WithTransaction}.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StoreTransaction {
+}
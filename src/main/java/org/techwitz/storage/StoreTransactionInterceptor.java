@@ -0,0 +1,24 @@
+package org.techwitz.storage;
+
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Runs {@link StoreTransaction} methods in a transaction of the active storage engine.
+ */
+@StoreTransaction
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 200)
+public class StoreTransactionInterceptor {
+
+    @Inject
+    TinyUrlStore tinyUrlStore;
+
+    @AroundInvoke
+    public Object withTransaction(InvocationContext context) {
+        return tinyUrlStore.withTransaction(() -> StoreSessionInterceptor.proceed(context));
+    }
+}
@@ -0,0 +1,61 @@
+package org.techwitz.storage;
+
+import org.techwitz.domain.RedirectPolicy;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encoding and access rule shared by the engines that keep rows themselves rather than in a database.
+ * Times are stored as epoch microseconds of the local date-time, the precision of a Postgres timestamp.
+ */
+final class StoredRows {
+
+    static final long NO_TIME = Long.MIN_VALUE;
+    static final byte ONE_TIME_USE = 1;
+    static final byte ACTIVE = 2;
+    // Bits 2 and 3 hold the ordinal of the redirect policy; rows written before it existed read as temporary
+    static final int POLICY_SHIFT = 2;
+    static final int POLICY_MASK = 3 << POLICY_SHIFT;
+    private static final RedirectPolicy[] POLICIES = RedirectPolicy.values();
+
+    private StoredRows() {
+    }
+
+    static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        if (micros == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    static byte flags(boolean oneTimeUse, boolean active, RedirectPolicy redirectPolicy) {
+        int policy = redirectPolicy == null ? 0 : redirectPolicy.ordinal() << POLICY_SHIFT;
+        return (byte) ((oneTimeUse ? ONE_TIME_USE : 0) | (active ? ACTIVE : 0) | policy);
+    }
+
+    static RedirectPolicy redirectPolicy(byte flags) {
+        return POLICIES[(flags & POLICY_MASK) >>> POLICY_SHIFT];
+    }
+
+    /**
+     * Same rules as {@link org.techwitz.domain.TinyUrl#isExpired()} after counting the attempt, see
+     * {@link TinyUrlStore#recordAccessAsync}.
+     */
+    static boolean accessAllowed(byte flags, long expirationMicros, int usage, int maxUsage, int attempts,
+                                 int maxAttempts, long nowMicros) {
+        return (flags & ACTIVE) != 0
+                && (expirationMicros == NO_TIME || expirationMicros >= nowMicros)
+                && ((flags & ONE_TIME_USE) == 0 || usage < 1)
+                && (maxUsage <= 0 || usage < maxUsage)
+                && (maxAttempts <= 0 || attempts + 1 < maxAttempts);
+    }
+}
@@ -0,0 +1,146 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import org.techwitz.domain.TinyUrl;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Storage of tiny URLs.
+ * <p>
+ * The engine is chosen at build time with {@code tiny.url.storage.engine}: {@code postgres} (default,
+ * {@link org.techwitz.repository.TinyUrlRepository}), {@code log} ({@link LogTinyUrlStore}) or
+ * {@code memory} ({@link InMemoryTinyUrlStore}).
+ * Every engine must pass {@code TinyUrlStoreConformanceTest}. Entities returned by an engine are only
+ * written back through the methods of this interface; whether changing them directly is visible to
+ * later reads is engine specific.
+ * <p>
+ * Every change to a tiny URL, including each counted access or attempt, increases its
+ * {@link TinyUrl#getVersion() version}, which clients use to tell whether it changed. Versions only ever grow
+ * for a given tiny URL, but need not be consecutive.
+ */
+public interface TinyUrlStore {
+
+    /**
+     * Runs work in a session of this engine, joining the current one if there is one. Engines without
+     * sessions just run it.
+     *
+     * @param work The work, calling methods of this store
+     * @return Uni with the result of the work
+     */
+    default <T> Uni<T> withSession(Supplier<Uni<T>> work) {
+        return work.get();
+    }
+
+    /**
+     * Runs work in a transaction of this engine, joining the current one if there is one. Engines without
+     * transactions just run it; each of their changes is atomic on its own.
+     *
+     * @param work The work, calling methods of this store
+     * @return Uni with the result of the work
+     */
+    default <T> Uni<T> withTransaction(Supplier<Uni<T>> work) {
+        return work.get();
+    }
+
+    /**
+     * @param shortCode The short code
+     * @return Uni with the tiny URL, or null if there is none
+     */
+    Uni<TinyUrl> findByShortCodeAsync(String shortCode);
+
+    /**
+     * Finds a tiny URL independently of the caller, e.g. for a background cache refresh started by a
+     * request, which must not share that request's session. Engines without sessions just find it.
+     *
+     * @param shortCode The short code
+     * @return Uni with the tiny URL, or null if there is none
+     */
+    default Uni<TinyUrl> findByShortCodeDetachedAsync(String shortCode) {
+        return findByShortCodeAsync(shortCode);
+    }
+
+    /**
+     * @param shortCodes The short codes
+     * @return Uni with the tiny URLs that exist, in no particular order
+     */
+    Uni<List<TinyUrl>> findByShortCodesAsync(Collection<String> shortCodes);
+
+    /**
+     * Stores a new tiny URL.
+     *
+     * @param tinyUrl The tiny URL; its short code must not exist yet
+     * @return Uni with the stored tiny URL, its id assigned
+     */
+    Uni<TinyUrl> insertAsync(TinyUrl tinyUrl);
+
+    /**
+     * Counts one access, atomically and only if the tiny URL still allows it: it is active, not
+     * expired at {@code now}, below its usage limit (one use if one-time), and the access would stay
+     * below its attempt limit, as checked by {@link TinyUrl#isExpired()} after counting the attempt.
+     * On success both the attempt and the usage count are incremented; otherwise nothing changes.
+     *
+     * @param shortCode The short code
+     * @param now       The time of the access
+     * @return Uni with true if the access was counted, false if the tiny URL is missing or used up
+     */
+    Uni<Boolean> recordAccessAsync(String shortCode, LocalDateTime now);
+
+    /**
+     * Counts an attempt that was refused, e.g. a request for a link known to be dead, whatever the state of
+     * the tiny URL. The usage count is left alone.
+     *
+     * @param shortCode The short code
+     * @return Uni with true if the attempt was counted, false if the tiny URL is missing
+     */
+    Uni<Boolean> recordAttemptAsync(String shortCode);
+
+    /**
+     * Counts several accesses to a tiny URL without limits at once, e.g. redirects served from a cache
+     * while the store was unavailable. Nothing is counted if it is missing, inactive, expired at
+     * {@code now}, one-time or has a usage or attempt limit. Like {@link #findByShortCodeDetachedAsync},
+     * independent of the caller's session.
+     *
+     * @param shortCode The short code
+     * @param count     The number of accesses
+     * @param now       The time of the last access
+     * @return Uni with true if the accesses were counted
+     */
+    default Uni<Boolean> recordAccessesAsync(String shortCode, int count, LocalDateTime now) {
+        return findByShortCodeDetachedAsync(shortCode).flatMap(tinyUrl -> {
+            if (tinyUrl == null || count <= 0 || tinyUrl.isOneTimeUse() || tinyUrl.getMaxUsage() > 0
+                    || tinyUrl.getMaxAttempts() > 0) {
+                return Uni.createFrom().item(false);
+            }
+            Uni<Boolean> counted = recordAccessAsync(shortCode, now);
+            for (int i = 1; i < count; i++) {
+                counted = counted.flatMap(ok -> ok ? recordAccessAsync(shortCode, now) : Uni.createFrom().item(false));
+            }
+            return counted;
+        });
+    }
+
+    /**
+     * @param shortCode The short code
+     * @return Uni with the deactivated tiny URL, or null if there is none
+     */
+    Uni<TinyUrl> deactivateAsync(String shortCode);
+
+    /**
+     * @param shortCode The short code
+     * @param update    The change
+     * @return Uni with the updated tiny URL, or null if there is none
+     */
+    Uni<TinyUrl> updateLimitsAsync(String shortCode, LimitsUpdate update);
+
+    /**
+     * Deletes the tiny URLs whose expiration time is before the given time.
+     *
+     * @param before The cut-off
+     * @return Uni with the number of tiny URLs deleted
+     */
+    Uni<Long> deleteExpiredAsync(LocalDateTime before);
+}
@@ -0,0 +1,78 @@
+package org.techwitz.util;
+
+import java.util.Arrays;
+
+/**
+ * Codec between short codes over the {@link ShortCodeGenerator} alphabet and {@code long} keys.
+ * <p>
+ * Codes are read as bijective base-62 numbers (digits 1 to 62, least significant first), so every code of
+ * up to {@value #MAX_LENGTH} characters has its own key, codes that only differ in leading {@code 'a'}s
+ * included, and no code maps to 0, which callers can use as an empty marker. A 6-character code takes at
+ * most 36 bits. Strings that are longer or use other characters cannot be encoded.
+ */
+public final class Base62 {
+
+    /**
+     * Longest code that fits: 62 + 62^2 + ... + 62^10 is below 2^63.
+     */
+    public static final int MAX_LENGTH = 10;
+
+    /**
+     * Returned by {@link #encode(CharSequence)} for strings that are not base-62 codes.
+     */
+    public static final long INVALID = -1;
+
+    private static final int RADIX = 62;
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < RADIX; i++) {
+            DIGITS[ShortCodeGenerator.ALLOWED_CHARS.charAt(i)] = (byte) i;
+        }
+    }
+
+    private Base62() {
+    }
+
+    /**
+     * Encodes a short code.
+     *
+     * @param code The code
+     * @return The key, positive for a non-empty code, or {@link #INVALID} if the code is null, longer than
+     * {@value #MAX_LENGTH} characters or not base-62
+     */
+    public static long encode(CharSequence code) {
+        if (code == null || code.length() > MAX_LENGTH) {
+            return INVALID;
+        }
+        long key = 0;
+        for (int i = code.length() - 1; i >= 0; i--) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            key = key * RADIX + digit + 1;
+        }
+        return key;
+    }
+
+    /**
+     * Decodes a key produced by {@link #encode(CharSequence)}.
+     *
+     * @param key The key, not negative
+     * @return The short code
+     */
+    public static String decode(long key) {
+        Guard.isTrue(key >= 0, "Base-62 keys are not negative");
+        char[] chars = new char[MAX_LENGTH];
+        int length = 0;
+        while (key > 0) {
+            key--;
+            chars[length++] = ShortCodeGenerator.ALLOWED_CHARS.charAt((int) (key % RADIX));
+            key /= RADIX;
+        }
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,118 @@
+package org.techwitz.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer ring buffer.
+ * <p>
+ * Producers never block: {@link #offer(Object)} returns false when the buffer is full and the caller
+ * decides whether to drop or count the element. Each slot carries a sequence number (Vyukov's bounded
+ * queue), so producers only contend on a single CAS and the consumer does not CAS at all.
+ *
+ * @param <E> The element type
+ */
+public final class BoundedRingBuffer<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong producerPosition = new AtomicLong();
+    private volatile long consumerPosition;
+
+    /**
+     * Creates a ring buffer.
+     *
+     * @param requestedCapacity The minimum capacity; rounded up to the next power of two
+     */
+    public BoundedRingBuffer(int requestedCapacity) {
+        Guard.isTrue(requestedCapacity > 0 && requestedCapacity <= 1 << 30,
+                "Ring buffer capacity must be between 1 and 2^30");
+        int capacity = Integer.highestOneBit(requestedCapacity);
+        if (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is room. Safe to call from any number of threads.
+     *
+     * @param element The element to add
+     * @return true if the element was added, false if the buffer was full
+     */
+    public boolean offer(E element) {
+        long position = producerPosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (producerPosition.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = producerPosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = producerPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the single consumer thread.
+     *
+     * @return The element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = consumerPosition;
+        int index = (int) position & mask;
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        slots[index] = null;
+        sequences.setRelease(index, position + slots.length);
+        consumerPosition = position + 1;
+        return element;
+    }
+
+    /**
+     * Removes up to {@code limit} elements and hands them to the consumer, oldest first.
+     * Must only be called from the single consumer thread.
+     *
+     * @param consumer The consumer to receive each element
+     * @param limit    The maximum number of elements to drain
+     * @return The number of elements drained
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return The approximate number of elements currently buffered
+     */
+    public int size() {
+        long size = producerPosition.get() - consumerPosition;
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,104 @@
+package org.techwitz.util;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch over string keys with conservative update.
+ * <p>
+ * Memory is {@code depth * width} ints regardless of how many distinct keys are added, and both
+ * {@link #add(String)} and {@link #estimate(String)} cost {@code O(depth)}. Estimates never undercount;
+ * with probability {@code 1 - e^-depth} they overcount by at most {@code e / width * total()}. Not
+ * thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final int[] counters;
+    private long total;
+
+    /**
+     * Creates a sketch.
+     *
+     * @param depth          Number of hash rows
+     * @param requestedWidth Minimum counters per row; rounded up to the next power of two
+     */
+    public CountMinSketch(int depth, int requestedWidth) {
+        Guard.isTrue(depth > 0 && depth <= 16, "Count-Min Sketch depth must be between 1 and 16");
+        Guard.isTrue(requestedWidth > 0 && requestedWidth <= 1 << 24,
+                "Count-Min Sketch width must be between 1 and 2^24");
+        int width = Integer.highestOneBit(requestedWidth);
+        if (width < requestedWidth) {
+            width <<= 1;
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new int[depth * width];
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param key The key
+     * @return The estimated count of the key after the update
+     */
+    public int add(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        // Conservative update: only raise the counters that hold the current minimum
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(row, h1, h2)]);
+        }
+        int updated = estimate == Integer.MAX_VALUE ? estimate : estimate + 1;
+        for (int row = 0; row < depth; row++) {
+            int index = index(row, h1, h2);
+            if (counters[index] < updated) {
+                counters[index] = updated;
+            }
+        }
+        total++;
+        return updated;
+    }
+
+    /**
+     * @param key The key
+     * @return The estimated count of the key
+     */
+    public int estimate(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(row, h1, h2)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return Number of occurrences added since creation or the last {@link #clear()}
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return Counters per row
+     */
+    public int width() {
+        return mask + 1;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    private int index(int row, int h1, int h2) {
+        // Kirsch-Mitzenmacher: row hashes derived from two base hashes
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+}
@@ -0,0 +1,59 @@
+package org.techwitz.util;
+
+/**
+ * Non-cryptographic 64-bit hashing for sketches.
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Hashes a string: 64-bit FNV-1a over the chars followed by the MurmurHash3 finalizer. Unlike
+     * {@link String#hashCode()} the result is well mixed in all 64 bits, even for short keys.
+     *
+     * @param value The string to hash
+     * @return The hash
+     */
+    public static long hash64(CharSequence value) {
+        return fmix64(fnv1a(FNV_OFFSET, value));
+    }
+
+    /**
+     * Hashes two strings as one key; null is hashed like the empty string.
+     *
+     * @param first  The first part
+     * @param second The second part
+     * @return The hash
+     */
+    public static long hash64(CharSequence first, CharSequence second) {
+        long hash = fnv1a(FNV_OFFSET, first);
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        hash = (hash ^ 0xffff) * FNV_PRIME;
+        return fmix64(fnv1a(hash, second));
+    }
+
+    private static long fnv1a(long hash, CharSequence value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,296 @@
+package org.techwitz.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality sketch over 64-bit hashes.
+ * <p>
+ * With precision {@code p} the sketch has {@code 2^p} registers and a standard error of about
+ * {@code 1.04 / sqrt(2^p)} (1.6% at the default of 12). Small sketches are kept sparse, as a small hash
+ * table of the non-zero registers, and switch to a dense byte-per-register array once that would be
+ * smaller. Sketches of the same precision can be {@linkplain #merge(HyperLogLog) merged} in any order
+ * and any number of times, so per-node and per-bucket sketches combine freely. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final byte VERSION = 1;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int INITIAL_SPARSE_CAPACITY = 16;
+
+    private final int precision;
+    private final int registerCount;
+    private byte[] dense;
+    // Open addressing by register index; an entry is (index + 1) << 8 | rank, 0 means empty
+    private int[] sparse;
+    private int sparseSize;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision Number of index bits, between 4 and 16
+     */
+    public HyperLogLog(int precision) {
+        Guard.isTrue(precision >= 4 && precision <= 16, "HyperLogLog precision must be between 4 and 16");
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.sparse = new int[INITIAL_SPARSE_CAPACITY];
+    }
+
+    /**
+     * Adds an element by its 64-bit hash, e.g. from {@link Hashing#hash64(CharSequence)}.
+     *
+     * @param hash The hash of the element
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        set(index, rank);
+    }
+
+    /**
+     * Merges another sketch into this one: afterwards this sketch estimates the union.
+     *
+     * @param other A sketch with the same precision
+     */
+    public void merge(HyperLogLog other) {
+        Guard.isTrue(other.precision == precision, "Cannot merge HyperLogLog sketches of different precision");
+        if (other.dense != null) {
+            if (dense == null) {
+                toDense();
+            }
+            for (int i = 0; i < registerCount; i++) {
+                if (other.dense[i] > dense[i]) {
+                    dense[i] = other.dense[i];
+                }
+            }
+            return;
+        }
+        for (int entry : other.sparse) {
+            if (entry != 0) {
+                set((entry >>> 8) - 1, entry & 0xff);
+            }
+        }
+    }
+
+    /**
+     * @return The estimated number of distinct elements added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        if (dense != null) {
+            for (byte rank : dense) {
+                if (rank == 0) {
+                    zeros++;
+                }
+                sum += Math.scalb(1.0, -rank);
+            }
+        } else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int entry : sparse) {
+                if (entry != 0) {
+                    sum += Math.scalb(1.0, -(entry & 0xff));
+                }
+            }
+        }
+
+        double estimate = alpha() * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public boolean isSparse() {
+        return dense == null;
+    }
+
+    /**
+     * Serializes the sketch: a version byte, the precision, a mode byte, then either one byte per
+     * register (dense) or the number of non-zero registers followed by (index delta varint, rank byte)
+     * pairs in index order (sparse).
+     *
+     * @return The encoded sketch
+     */
+    public byte[] toBytes() {
+        if (dense != null) {
+            byte[] bytes = new byte[3 + registerCount];
+            bytes[0] = VERSION;
+            bytes[1] = (byte) precision;
+            bytes[2] = DENSE;
+            System.arraycopy(dense, 0, bytes, 3, registerCount);
+            return bytes;
+        }
+
+        int[] entries = new int[sparseSize];
+        int count = 0;
+        for (int entry : sparse) {
+            if (entry != 0) {
+                entries[count++] = entry;
+            }
+        }
+        // The index is in the high bits, so this sorts by index
+        Arrays.sort(entries);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + sparseSize * 3);
+        out.write(VERSION);
+        out.write(precision);
+        out.write(SPARSE);
+        writeVarInt(out, sparseSize);
+        int previousIndex = 0;
+        for (int entry : entries) {
+            int index = (entry >>> 8) - 1;
+            writeVarInt(out, index - previousIndex);
+            out.write(entry & 0xff);
+            previousIndex = index;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a sketch written by {@link #toBytes()}.
+     *
+     * @param bytes The encoded sketch
+     * @return The sketch
+     * @throws IllegalArgumentException if the bytes are not a valid sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < 3 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Not a HyperLogLog sketch");
+        }
+        int precision = bytes[1];
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Invalid HyperLogLog precision: " + precision);
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        int maxRank = 64 - precision + 1;
+        if (bytes[2] == DENSE) {
+            if (bytes.length != 3 + sketch.registerCount) {
+                throw new IllegalArgumentException("Truncated HyperLogLog sketch");
+            }
+            sketch.dense = Arrays.copyOfRange(bytes, 3, bytes.length);
+            sketch.sparse = null;
+            for (byte rank : sketch.dense) {
+                if (rank < 0 || rank > maxRank) {
+                    throw new IllegalArgumentException("Invalid HyperLogLog register value: " + rank);
+                }
+            }
+            return sketch;
+        }
+        if (bytes[2] != SPARSE) {
+            throw new IllegalArgumentException("Unknown HyperLogLog encoding: " + bytes[2]);
+        }
+
+        int[] position = {3};
+        int count = readVarInt(bytes, position);
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            index += readVarInt(bytes, position);
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated HyperLogLog sketch");
+            }
+            int rank = bytes[position[0]++];
+            if (index >= sketch.registerCount || rank <= 0 || rank > maxRank) {
+                throw new IllegalArgumentException("Invalid HyperLogLog register " + index + " = " + rank);
+            }
+            sketch.set(index, rank);
+        }
+        return sketch;
+    }
+
+    private void set(int index, int rank) {
+        if (dense != null) {
+            if (rank > dense[index]) {
+                dense[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int mask = sparse.length - 1;
+        int slot = (index * 0x9E3779B1) >>> 16 & mask;
+        while (true) {
+            int entry = sparse[slot];
+            if (entry == 0) {
+                sparse[slot] = (index + 1) << 8 | rank;
+                sparseSize++;
+                if (sparseSize > registerCount / 8) {
+                    toDense();
+                } else if (sparseSize * 2 > sparse.length) {
+                    growSparse();
+                }
+                return;
+            }
+            if ((entry >>> 8) - 1 == index) {
+                if (rank > (entry & 0xff)) {
+                    sparse[slot] = (index + 1) << 8 | rank;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void growSparse() {
+        int[] old = sparse;
+        sparse = new int[old.length * 2];
+        sparseSize = 0;
+        for (int entry : old) {
+            if (entry != 0) {
+                set((entry >>> 8) - 1, entry & 0xff);
+            }
+        }
+    }
+
+    private void toDense() {
+        dense = new byte[registerCount];
+        for (int entry : sparse) {
+            if (entry != 0) {
+                dense[(entry >>> 8) - 1] = (byte) (entry & 0xff);
+            }
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private double alpha() {
+        return switch (registerCount) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / registerCount);
+        };
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated HyperLogLog sketch");
+            }
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in HyperLogLog sketch");
+    }
+}
@@ -0,0 +1,244 @@
+package org.techwitz.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Hand-written JSON encoding into exactly sized byte arrays, for responses on hot paths that should not go
+ * through Jackson's reflection and date formatting. Also works in a native image, as nothing is reflective.
+ * <p>
+ * A value is encoded in two passes, like {@link org.techwitz.cache.RedirectEntryCodec}: its size is added up
+ * with the {@code *Size} methods, then the array of that size is filled with the matching {@code write*}
+ * methods, each returning the position after what it wrote. Output matches Jackson's with the Quarkus defaults:
+ * strings escaped the same way, date-times as ISO-8601 local date-times.
+ */
+public final class JsonBytes {
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private JsonBytes() {
+    }
+
+    /**
+     * Pre-encodes a constant such as a field name with its quotes and separators; it must be ASCII.
+     *
+     * @param value The text
+     * @return Its bytes
+     */
+    public static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static int write(byte[] target, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, target, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    /**
+     * @return The size of a string, quoted and escaped, or of null
+     */
+    public static int stringSize(CharSequence value) {
+        return value == null ? NULL.length : 2 + contentSize(value, 0);
+    }
+
+    public static int writeString(byte[] target, int position, CharSequence value) {
+        if (value == null) {
+            return write(target, position, NULL);
+        }
+        target[position++] = '"';
+        position = writeContent(target, position, value, 0);
+        target[position++] = '"';
+        return position;
+    }
+
+    /**
+     * @return The size of the part of a string from a char index, escaped but without quotes
+     */
+    public static int contentSize(CharSequence value, int from) {
+        int size = 0;
+        int length = value.length();
+        for (int i = from; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                size += c == '"' || c == '\\' ? 2 : c >= 0x20 ? 1 : isShortEscape(c) ? 2 : 6;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isSurrogate(c)) {
+                // Jackson escapes each surrogate rather than encoding the code point as 4 bytes
+                size += 6;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the part of a string from a char index, escaped but without quotes.
+     */
+    public static int writeContent(byte[] target, int position, CharSequence value, int from) {
+        int length = value.length();
+        for (int i = from; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    target[position++] = '\\';
+                    target[position++] = (byte) c;
+                } else if (c >= 0x20) {
+                    target[position++] = (byte) c;
+                } else if (isShortEscape(c)) {
+                    target[position++] = '\\';
+                    target[position++] = (byte) shortEscape(c);
+                } else {
+                    position = writeUnicodeEscape(target, position, c);
+                }
+            } else if (c < 0x800) {
+                target[position++] = (byte) (0xc0 | c >> 6);
+                target[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                position = writeUnicodeEscape(target, position, c);
+            } else {
+                target[position++] = (byte) (0xe0 | c >> 12);
+                target[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                target[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return position;
+    }
+
+    public static int booleanSize(boolean value) {
+        return value ? TRUE.length : FALSE.length;
+    }
+
+    public static int writeBoolean(byte[] target, int position, boolean value) {
+        return write(target, position, value ? TRUE : FALSE);
+    }
+
+    public static int longSize(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int size = value < 0 ? 2 : 1;
+        for (long rest = Math.abs(value); rest >= 10; rest /= 10) {
+            size++;
+        }
+        return size;
+    }
+
+    public static int writeLong(byte[] target, int position, long value) {
+        if (value == Long.MIN_VALUE) {
+            return write(target, position, ascii(Long.toString(value)));
+        }
+        int end = position + longSize(value);
+        if (value < 0) {
+            target[position] = '-';
+            value = -value;
+        }
+        int digit = end;
+        do {
+            target[--digit] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    /**
+     * @return The size of a date-time as Jackson writes it with {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME},
+     * quoted, or of null
+     */
+    public static int dateTimeSize(LocalDateTime value) {
+        if (value == null) {
+            return NULL.length;
+        }
+        if (!hasFourDigitYear(value)) {
+            return stringSize(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+        }
+        // Quoted "yyyy-MM-ddTHH:mm:ss", then the fraction without trailing zeros
+        int nano = value.getNano();
+        return nano == 0 ? 21 : 22 + fractionDigits(nano);
+    }
+
+    public static int writeDateTime(byte[] target, int position, LocalDateTime value) {
+        if (value == null) {
+            return write(target, position, NULL);
+        }
+        if (!hasFourDigitYear(value)) {
+            return writeString(target, position, DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+        }
+        target[position++] = '"';
+        position = writeDigits(target, position, value.getYear(), 4);
+        target[position++] = '-';
+        position = writeDigits(target, position, value.getMonthValue(), 2);
+        target[position++] = '-';
+        position = writeDigits(target, position, value.getDayOfMonth(), 2);
+        target[position++] = 'T';
+        position = writeDigits(target, position, value.getHour(), 2);
+        target[position++] = ':';
+        position = writeDigits(target, position, value.getMinute(), 2);
+        target[position++] = ':';
+        position = writeDigits(target, position, value.getSecond(), 2);
+        int nano = value.getNano();
+        if (nano != 0) {
+            int digits = fractionDigits(nano);
+            target[position++] = '.';
+            for (int i = digits; i < 9; i++) {
+                nano /= 10;
+            }
+            position = writeDigits(target, position, nano, digits);
+        }
+        target[position++] = '"';
+        return position;
+    }
+
+    private static boolean hasFourDigitYear(LocalDateTime value) {
+        return value.getYear() >= 0 && value.getYear() <= 9999;
+    }
+
+    /**
+     * @return The number of fraction digits of a nano-of-second once trailing zeros are dropped
+     */
+    private static int fractionDigits(int nano) {
+        int digits = 9;
+        while (nano % 10 == 0) {
+            nano /= 10;
+            digits--;
+        }
+        return digits;
+    }
+
+    private static int writeDigits(byte[] target, int position, int value, int digits) {
+        for (int i = position + digits - 1; i >= position; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int writeUnicodeEscape(byte[] target, int position, char c) {
+        target[position++] = '\\';
+        target[position++] = 'u';
+        target[position++] = HEX[c >> 12];
+        target[position++] = HEX[c >> 8 & 0xf];
+        target[position++] = HEX[c >> 4 & 0xf];
+        target[position++] = HEX[c & 0xf];
+        return position;
+    }
+
+    private static boolean isShortEscape(char c) {
+        return c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f';
+    }
+
+    private static char shortEscape(char c) {
+        return switch (c) {
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case '\t' -> 't';
+            case '\b' -> 'b';
+            default -> 'f';
+        };
+    }
+}
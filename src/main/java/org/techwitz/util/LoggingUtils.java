@@ -1,17 +1,77 @@
 package org.techwitz.util;
 
 import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.metrics.Tag;
 import org.jboss.logging.Logger;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
- * Utility class for logging operations.
+ * Utility class for timing and logging operations.
+ * <p>
+ * Every named operation gets an {@link OperationTimer}. Timers are created on first use and exported
+ * as percentile gauges by {@code OperationMetricsExporter}; the per-operation log lines are written at
+ * DEBUG level only.
  */
 public class LoggingUtils {
 
     private static final Logger LOG = Logger.getLogger(LoggingUtils.class);
 
+    private static final Map<String, OperationTimer> TIMERS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the timer for an operation, creating it on first use. Callers on hot paths should keep
+     * the returned reference instead of looking it up per call.
+     *
+     * @param operationName The name of the operation
+     * @return The timer for the operation
+     */
+    public static OperationTimer timer(String operationName) {
+        OperationTimer timer = TIMERS.get(operationName);
+        return timer != null ? timer : timer(operationName, new Tag("operation", operationName));
+    }
+
+    /**
+     * Returns the timer for an operation, creating it with the given export tags on first use.
+     *
+     * @param operationName The name of the operation
+     * @param tags          The tags to export the timer's gauges with
+     * @return The timer for the operation
+     */
+    public static OperationTimer timer(String operationName, Tag... tags) {
+        OperationTimer timer = TIMERS.get(operationName);
+        if (timer == null) {
+            timer = TIMERS.computeIfAbsent(operationName, name -> new OperationTimer(name, tags));
+        }
+        return timer;
+    }
+
+    /**
+     * @return All timers created so far
+     */
+    public static Collection<OperationTimer> timers() {
+        return Collections.unmodifiableCollection(TIMERS.values());
+    }
+
+    /**
+     * Times an asynchronous operation without logging.
+     *
+     * @param <T> The return type of the operation
+     * @param operationName The name of the operation to time
+     * @param supplier The operation to execute
+     * @return The result of the operation
+     */
+    public static <T> Uni<T> timeOperation(String operationName, Supplier<Uni<T>> supplier) {
+        OperationTimer timer = timer(operationName);
+        long startTime = System.nanoTime();
+        return supplier.get()
+                .onTermination().invoke(() -> timer.recordSince(startTime));
+    }
+
     /**
      * Logs an operation with timing information.
      *
@@ -21,25 +81,32 @@ public class LoggingUtils {
      * @return The result of the operation
      */
     public static <T> Uni<T> logOperation(String operationName, Supplier<Uni<T>> supplier) {
-        long startTime = System.currentTimeMillis();
+        OperationTimer timer = timer(operationName);
+        long startTime = System.nanoTime();
 
-        LOG.infof("Starting operation: %s", operationName);
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("Starting operation: %s", operationName);
+        }
 
         return supplier.get()
                 .onItem().invoke(item -> {
-                    long endTime = System.currentTimeMillis();
-                    LOG.infof("Completed operation: %s in %d ms with result: %s",
-                            operationName, (endTime - startTime), item);
+                    long elapsed = System.nanoTime() - startTime;
+                    timer.recordNanos(elapsed);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debugf("Completed operation: %s in %d us with result: %s",
+                                operationName, elapsed / 1_000, item);
+                    }
                 })
                 .onFailure().invoke(failure -> {
-                    long endTime = System.currentTimeMillis();
-                    LOG.errorf(failure, "Failed operation: %s in %d ms with error: %s",
-                            operationName, (endTime - startTime), failure.getMessage());
+                    long elapsed = System.nanoTime() - startTime;
+                    timer.recordNanos(elapsed);
+                    LOG.errorf(failure, "Failed operation: %s in %d us with error: %s",
+                            operationName, elapsed / 1_000, failure.getMessage());
                 });
     }
 
     /**
-     * Logs service metrics for an operation.
+     * Times an operation and logs its service metrics.
      *
      * @param <T> The return type of the operation
      * @param operationName The name of the operation to log
@@ -48,12 +115,12 @@ public class LoggingUtils {
      * @return The result of the operation
      */
     public static <T> Uni<T> logServiceMetrics(String operationName, String metadata, Supplier<Uni<T>> supplier) {
-        String requestId = (String) org.jboss.logging.MDC.get("requestId");
-
-        LOG.infof("SERVICE_METRIC | Operation: %s | RequestID: %s | Metadata: %s",
-                operationName, requestId, metadata);
+        if (LOG.isDebugEnabled()) {
+            String requestId = (String) org.jboss.logging.MDC.get("requestId");
+            LOG.debugf("SERVICE_METRIC | Operation: %s | RequestID: %s | Metadata: %s",
+                    operationName, requestId, metadata);
+        }
 
-        return supplier.get();
+        return timeOperation(operationName, supplier);
     }
 }
-
@@ -0,0 +1,175 @@
+package org.techwitz.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from positive {@code long} keys to {@code int} values, such as
+ * {@link Base62} short code keys to record offsets.
+ * <p>
+ * Keys and values live in two parallel arrays with linear probing and backward-shift deletion, so there
+ * are no entry objects, boxing or tombstones: an entry costs 12 bytes per slot, and the table is kept at
+ * most three quarters full, doubling when needed. Ten million entries fit in 2^24 slots, about 200 MB.
+ * Key 0 marks an empty slot and cannot be stored. Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    /**
+     * Returned by {@link #get(long)} and {@link #remove(long)} for keys that are not in the map.
+     */
+    public static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expectedSize Number of entries to size the table for; it grows as needed
+     */
+    public LongIntHashMap(int expectedSize) {
+        Guard.isTrue(expectedSize >= 0 && expectedSize <= 1 << 29, "Expected size must be between 0 and 2^29");
+        int slots = Integer.highestOneBit(Math.max(16, expectedSize + expectedSize / 3) * 2 - 1);
+        keys = new long[slots];
+        values = new int[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * @return The value of a key, or {@link #MISSING}
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return MISSING;
+        }
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == 0) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Maps a key to a value.
+     *
+     * @param key   The key, positive
+     * @param value The value, not negative
+     * @return The previous value of the key, or {@link #MISSING}
+     */
+    public int put(long key, int value) {
+        Guard.isTrue(key > 0, "Keys must be positive");
+        Guard.isTrue(value >= 0, "Values must not be negative");
+        int slot = slot(key, mask);
+        for (long current = keys[slot]; current != 0; current = keys[slot]) {
+            if (current == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 4L > keys.length * 3L) {
+            resize(keys.length * 2);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key
+     * @return The value it had, or {@link #MISSING}
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            return MISSING;
+        }
+        int hole = slot(key, mask);
+        while (keys[hole] != key) {
+            if (keys[hole] == 0) {
+                return MISSING;
+            }
+            hole = (hole + 1) & mask;
+        }
+        int removed = values[hole];
+        // Backward-shift deletion: move later entries of the probe run into the hole, no tombstones
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the action for each entry, in no particular order. The map must not be changed meanwhile.
+     */
+    public void forEach(EntryConsumer action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry, keeping the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    /**
+     * @return Bytes taken by the table
+     */
+    public long sizeInBytes() {
+        return keys.length * 12L;
+    }
+
+    private void resize(int slots) {
+        Guard.isTrue(slots > 0, "Hash map cannot grow past 2^30 slots");
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[slots];
+        values = new int[slots];
+        mask = slots - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // Fibonacci hashing; base-62 keys are dense in their low bits, so take the well-mixed high bits
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+}
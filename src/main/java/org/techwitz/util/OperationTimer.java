@@ -0,0 +1,93 @@
+package org.techwitz.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.microprofile.metrics.Tag;
+
+/**
+ * Nanosecond-resolution latency recorder for one named operation.
+ * <p>
+ * Recording goes through an HdrHistogram {@link Recorder}, which is wait-free for writers and does
+ * not allocate once the histogram has grown to the observed range. Readers see fixed interval
+ * snapshots produced by {@link #rollInterval()}, so percentiles describe the last interval rather
+ * than the lifetime of the process.
+ */
+public final class OperationTimer {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+    private final Tag[] tags;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private volatile Histogram lastInterval = new Histogram(SIGNIFICANT_DIGITS);
+    private volatile long intervalStartMillis = System.currentTimeMillis();
+    private volatile long intervalEndMillis = intervalStartMillis;
+
+    OperationTimer(String name, Tag[] tags) {
+        this.name = name;
+        this.tags = tags;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values are recorded as zero
+     */
+    public void recordNanos(long nanos) {
+        recorder.recordValue(Math.max(0L, nanos));
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}.
+     *
+     * @param startNanos A value previously obtained from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Closes the current interval and makes it available through {@link #lastInterval()}.
+     *
+     * @return The histogram of the interval that was just closed
+     */
+    public synchronized Histogram rollInterval() {
+        Histogram interval = recorder.getIntervalHistogram();
+        long now = System.currentTimeMillis();
+        intervalStartMillis = intervalEndMillis;
+        intervalEndMillis = now;
+        lastInterval = interval;
+        return interval;
+    }
+
+    /**
+     * @return The histogram of the most recently closed interval; must not be modified
+     */
+    public Histogram lastInterval() {
+        return lastInterval;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100
+     * @return The value at the percentile in the last interval, in nanoseconds
+     */
+    public long percentile(double percentile) {
+        return lastInterval.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return The number of recordings per second in the last interval
+     */
+    public double rate() {
+        long millis = intervalEndMillis - intervalStartMillis;
+        return millis <= 0 ? 0.0 : lastInterval.getTotalCount() * 1000.0 / millis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Tag[] getTags() {
+        return tags.clone();
+    }
+}
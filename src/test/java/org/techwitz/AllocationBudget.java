@@ -0,0 +1,81 @@
+package org.techwitz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the bytes a code path allocates per call on the calling thread and checks them against the
+ * budget declared in {@code allocation-budgets.properties}.
+ * <p>
+ * The path is warmed up first so the JIT has compiled it (escape analysis removes many allocations
+ * only then), then measured in several rounds; the lowest round counts, which filters out allocations
+ * made by class loading or compilation in between. Only allocations on the calling thread are seen, so
+ * paths under test must complete synchronously.
+ */
+public final class AllocationBudget {
+
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 10_000;
+    private static final Properties BUDGETS = load();
+
+    private AllocationBudget() {
+    }
+
+    /**
+     * Fails if the path allocates more bytes per call than its budget.
+     *
+     * @param path The budget key
+     * @param call One call of the path
+     */
+    public static void assertWithinBudget(String path, Runnable call) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation measurement not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        String budgetValue = BUDGETS.getProperty(path);
+        if (budgetValue == null) {
+            throw new IllegalArgumentException("No allocation budget declared for " + path);
+        }
+        long budget = Long.parseLong(budgetValue.trim());
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                call.run();
+            }
+            long after = threads.getThreadAllocatedBytes(threadId);
+            lowest = Math.min(lowest, (after - before) / CALLS_PER_ROUND);
+        }
+
+        System.out.printf("Allocation %s: %d bytes per call, budget %d%n", path, lowest, budget);
+        long perCall = lowest;
+        assertTrue(perCall <= budget, () -> path + " allocates " + perCall + " bytes per call, budget is "
+                + budget + ". Remove the new allocation, or raise the budget in allocation-budgets.properties "
+                + "if it is intended.");
+    }
+
+    private static Properties load() {
+        Properties properties = new Properties();
+        try (InputStream in = AllocationBudget.class.getResourceAsStream("/allocation-budgets.properties")) {
+            if (in == null) {
+                throw new IllegalStateException("allocation-budgets.properties not found");
+            }
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,230 @@
+package org.techwitz.analytics;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import io.vertx.sqlclient.DatabaseException;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+import org.techwitz.repository.ClickRollupRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickAggregatorTest {
+
+    @Test
+    void foldsClicksIntoMinuteBuckets() {
+        RecordingRepository repository = new RecordingRepository();
+        HotLinkTracker hotLinks = hotLinkTracker();
+        ClickAggregator aggregator = aggregator(repository, hotLinks, Duration.ofHours(1));
+
+        aggregator.init();
+        for (int i = 0; i < 3; i++) {
+            aggregator.record("hot", 302, 0);
+        }
+        aggregator.record("hot", 404, 0);
+        aggregator.record("warm", 301, 0);
+        aggregator.record("warm", 410, 0);
+        // Shutdown drains the buffer and flushes once
+        aggregator.shutdown();
+
+        assertEquals(1, repository.written.size());
+        List<ClickRollup> rollups = repository.written.get(0);
+        assertUniqueBuckets(rollups);
+        assertEquals(Map.of("hot", List.of(4L, 3L, 1L), "warm", List.of(2L, 1L, 1L)), totals(rollups));
+        assertEquals("hot", hotLinks.hottest(Duration.ofMinutes(5), 1).getLinks().get(0).getShortCode());
+    }
+
+    @Test
+    void failedFlushesAreMergedIntoTheNext() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        repository.failing = true;
+        ClickAggregator aggregator = aggregator(repository, hotLinkTracker(), Duration.ofMillis(20));
+
+        aggregator.init();
+        try {
+            aggregator.record("a", 302, 0);
+            aggregator.record("a", 302, 0);
+            awaitTrue(() -> !repository.failed.isEmpty());
+
+            aggregator.record("a", 404, 0);
+            aggregator.record("b", 302, 0);
+            int failedBefore = repository.failed.size();
+            awaitTrue(() -> repository.failed.size() > failedBefore
+                    && totals(last(repository.failed)).containsKey("b"));
+            repository.failing = false;
+            awaitTrue(() -> !repository.written.isEmpty());
+        } finally {
+            aggregator.shutdown();
+        }
+
+        // Everything from the failed flushes arrives once, in the first flush that succeeds
+        assertEquals(1, repository.written.size());
+        List<ClickRollup> rollups = repository.written.get(0);
+        assertUniqueBuckets(rollups);
+        assertEquals(Map.of("a", List.of(3L, 2L, 1L), "b", List.of(1L, 1L, 0L)), totals(rollups));
+    }
+
+    @Test
+    void runningWritesAreNotRetried() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        repository.stall = new CompletableFuture<>();
+        ClickAggregator aggregator = aggregator(repository, hotLinkTracker(), Duration.ofMillis(20));
+        aggregator.flushTimeout = Duration.ofMillis(20);
+
+        aggregator.init();
+        try {
+            aggregator.record("a", 302, 0);
+            aggregator.record("a", 302, 0);
+            awaitTrue(() -> !repository.stalled.isEmpty());
+
+            // Well past the flush timeout, the first write may still commit
+            aggregator.record("b", 302, 0);
+            Thread.sleep(200);
+            assertEquals(1, repository.stalled.size());
+            assertTrue(repository.written.isEmpty());
+
+            CompletableFuture<Void> stall = repository.stall;
+            repository.stall = null;
+            stall.complete(null);
+            awaitTrue(() -> !repository.written.isEmpty());
+        } finally {
+            aggregator.shutdown();
+        }
+
+        assertEquals(Map.of("a", List.of(2L, 2L, 0L)), totals(repository.stalled.get(0)));
+        assertEquals(1, repository.written.size());
+        assertEquals(Map.of("b", List.of(1L, 1L, 0L)), totals(repository.written.get(0)));
+    }
+
+    @Test
+    void rejectedBucketsAreDropped() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        repository.failing = true;
+        repository.failure = new DatabaseException("value too long for type character varying(10)", 0, "22001", null) {
+        };
+        ClickAggregator aggregator = aggregator(repository, hotLinkTracker(), Duration.ofMillis(20));
+
+        aggregator.init();
+        try {
+            aggregator.record("much-too-long", 302, 0);
+            awaitTrue(() -> !repository.failed.isEmpty());
+            repository.failing = false;
+
+            aggregator.record("b", 302, 0);
+            awaitTrue(() -> !repository.written.isEmpty());
+        } finally {
+            aggregator.shutdown();
+        }
+
+        assertEquals(1, repository.failed.size());
+        assertEquals(1, repository.written.size());
+        assertEquals(Map.of("b", List.of(1L, 1L, 0L)), totals(repository.written.get(0)));
+    }
+
+    private static ClickAggregator aggregator(ClickRollupRepository repository, HotLinkTracker hotLinks,
+                                              Duration flushInterval) {
+        UniqueVisitorTracker uniqueVisitors = new UniqueVisitorTracker();
+        uniqueVisitors.enabled = false;
+
+        ClickAggregator aggregator = new ClickAggregator();
+        aggregator.clickRollupRepository = repository;
+        aggregator.hotLinkTracker = hotLinks;
+        aggregator.uniqueVisitorTracker = uniqueVisitors;
+        aggregator.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        aggregator.enabled = true;
+        aggregator.bufferSize = 1024;
+        aggregator.flushInterval = flushInterval;
+        aggregator.flushTimeout = Duration.ofSeconds(5);
+        aggregator.maxPendingBuckets = 1000;
+        return aggregator;
+    }
+
+    private static HotLinkTracker hotLinkTracker() {
+        HotLinkTracker tracker = new HotLinkTracker();
+        tracker.slice = Duration.ofMinutes(1);
+        tracker.sliceCount = 10;
+        tracker.depth = 4;
+        tracker.width = 256;
+        tracker.capacity = 10;
+        tracker.init();
+        return tracker;
+    }
+
+    /**
+     * Sums clicks, redirected and rejected per short code; a run may straddle a minute boundary.
+     */
+    private static Map<String, List<Long>> totals(List<ClickRollup> rollups) {
+        Map<String, long[]> sums = new HashMap<>();
+        for (ClickRollup rollup : rollups) {
+            long[] sum = sums.computeIfAbsent(rollup.shortCode(), code -> new long[3]);
+            sum[0] += rollup.clicks();
+            sum[1] += rollup.redirected();
+            sum[2] += rollup.rejected();
+        }
+        Map<String, List<Long>> totals = new HashMap<>();
+        sums.forEach((code, sum) -> totals.put(code, List.of(sum[0], sum[1], sum[2])));
+        return totals;
+    }
+
+    private static void assertUniqueBuckets(List<ClickRollup> rollups) {
+        Set<String> buckets = new HashSet<>();
+        for (ClickRollup rollup : rollups) {
+            assertTrue(buckets.add(rollup.shortCode() + "@" + rollup.bucketStart()), rollups::toString);
+            assertEquals(rollup.clicks(), rollup.redirected() + rollup.rejected());
+        }
+    }
+
+    private static <T> T last(List<T> list) {
+        return list.get(list.size() - 1);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Keeps every batch handed to it instead of writing to the database, failing with {@link #failure}
+     * while {@link #failing} and completing with {@link #stall} while set.
+     */
+    private static final class RecordingRepository extends ClickRollupRepository {
+        final List<List<ClickRollup>> written = new CopyOnWriteArrayList<>();
+        final List<List<ClickRollup>> failed = new CopyOnWriteArrayList<>();
+        final List<List<ClickRollup>> stalled = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+        volatile RuntimeException failure = new IllegalStateException("Database unavailable");
+        volatile CompletableFuture<Void> stall;
+
+        @Override
+        public Uni<Void> addAllAsync(Collection<ClickRollup> rollups) {
+            if (failing) {
+                failed.add(new ArrayList<>(rollups));
+                return Uni.createFrom().failure(failure);
+            }
+            CompletableFuture<Void> stall = this.stall;
+            if (stall != null) {
+                stalled.add(new ArrayList<>(rollups));
+                return Uni.createFrom().completionStage(stall);
+            }
+            written.add(new ArrayList<>(rollups));
+            return Uni.createFrom().voidItem();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.techwitz.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.techwitz.dto.HotLinksResponse;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotLinkTrackerTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void ranksTheHottestCodesInTheWindow() {
+        HotLinkTracker tracker = tracker(3);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            tracker.record("hot", now);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.record("warm", now - MINUTE);
+        }
+        for (int i = 0; i < 5; i++) {
+            tracker.record("cool", now);
+        }
+        // Only the heap capacity is tracked per slice; single clicks on many codes must not evict the hot ones
+        for (int i = 0; i < 100; i++) {
+            tracker.record("tail-" + i, now);
+        }
+
+        HotLinksResponse response = tracker.hottest(Duration.ofMinutes(5), 2);
+        assertEquals(175, response.getTotalClicks());
+        assertEquals(List.of("hot", "warm"), codes(response));
+        HotLinksResponse.HotLink hottest = response.getLinks().get(0);
+        assertTrue(hottest.getEstimatedClicks() >= 50
+                && hottest.getEstimatedClicks() <= 50 + response.getMaxOvercount(), hottest::toString);
+        assertEquals((double) hottest.getEstimatedClicks() / 175, hottest.getShare(), 1e-9);
+        assertEquals(Duration.ofMinutes(5).toString(), response.getWindow());
+    }
+
+    @Test
+    void oldClicksLeaveTheWindow() {
+        HotLinkTracker tracker = tracker(10);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            tracker.record("old", now - 7 * MINUTE);
+        }
+        for (int i = 0; i < 3; i++) {
+            tracker.record("new", now);
+        }
+
+        assertEquals(List.of("new"), codes(tracker.hottest(Duration.ofMinutes(5), 10)));
+        assertEquals(List.of("old", "new"), codes(tracker.hottest(Duration.ofMinutes(10), 10)));
+
+    }
+
+    @Test
+    void reusedSlicesStartEmpty() {
+        HotLinkTracker tracker = tracker(10);
+        long now = System.currentTimeMillis();
+        // Ten slices: twelve minutes ago and two minutes ago share a slot in the ring
+        for (int i = 0; i < 30; i++) {
+            tracker.record("ancient", now - 12 * MINUTE);
+        }
+        tracker.record("recent", now - 2 * MINUTE);
+
+        HotLinksResponse response = tracker.hottest(tracker.maxWindow(), 10);
+        assertEquals(List.of("recent"), codes(response));
+        assertEquals(1, response.getLinks().get(0).getEstimatedClicks());
+        assertEquals(1, response.getTotalClicks());
+
+        // Clicks older than anything the ring holds are ignored
+        tracker.record("ancient", now - 12 * MINUTE);
+        assertEquals(1, tracker.hottest(tracker.maxWindow(), 10).getTotalClicks());
+    }
+
+    private static HotLinkTracker tracker(int capacity) {
+        HotLinkTracker tracker = new HotLinkTracker();
+        tracker.slice = Duration.ofMinutes(1);
+        tracker.sliceCount = 10;
+        tracker.depth = 4;
+        tracker.width = 1024;
+        tracker.capacity = capacity;
+        tracker.init();
+        return tracker;
+    }
+
+    private static List<String> codes(HotLinksResponse response) {
+        return response.getLinks().stream().map(HotLinksResponse.HotLink::getShortCode).toList();
+    }
+}
@@ -0,0 +1,98 @@
+package org.techwitz.analytics;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.sqlclient.DatabaseException;
+import org.junit.jupiter.api.Test;
+import org.techwitz.repository.VisitorSketchRepository;
+import org.techwitz.util.HyperLogLog;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UniqueVisitorTrackerTest {
+
+    @Test
+    void tracksRedirectedClicksOnly() {
+        RecordingRepository repository = new RecordingRepository();
+        UniqueVisitorTracker tracker = tracker(repository);
+
+        long now = System.currentTimeMillis();
+        tracker.record(new ClickEvent("a", now, 302, 0x9E3779B97F4A7C15L));
+        tracker.record(new ClickEvent("a", now, 301, 0xC2B2AE3D27D4EB4FL));
+        tracker.record(new ClickEvent("a", now, 410, 0x165667B19E3779F9L));
+        tracker.record(new ClickEvent("missing", now, 404, 0x27D4EB2F165667C5L));
+        tracker.flush(Duration.ofSeconds(1));
+
+        assertEquals(1, repository.merged.size());
+        Map<VisitorSketchKey, HyperLogLog> sketches = repository.merged.get(0);
+        assertEquals(Set.of("a"), codes(sketches));
+        assertEquals(2, sketches.values().iterator().next().estimate());
+    }
+
+    @Test
+    void rejectedSketchesAreDropped() {
+        RecordingRepository repository = new RecordingRepository();
+        repository.failure = new DatabaseException("value too long for type character varying(10)", 0, "22001", null) {
+        };
+        UniqueVisitorTracker tracker = tracker(repository);
+
+        tracker.record(new ClickEvent("a", System.currentTimeMillis(), 302, 1));
+        tracker.flush(Duration.ofSeconds(1));
+
+        assertEquals(0, tracker.getPendingCount());
+        assertEquals(1, tracker.getRejectedCount());
+        tracker.flush(Duration.ofSeconds(1));
+        assertEquals(1, repository.merged.size());
+    }
+
+    @Test
+    void failedSketchesStayPending() {
+        RecordingRepository repository = new RecordingRepository();
+        repository.failure = new IllegalStateException("Database unavailable");
+        UniqueVisitorTracker tracker = tracker(repository);
+
+        tracker.record(new ClickEvent("a", System.currentTimeMillis(), 302, 1));
+        tracker.flush(Duration.ofSeconds(1));
+        assertEquals(1, tracker.getPendingCount());
+
+        repository.failure = null;
+        tracker.flush(Duration.ofSeconds(1));
+        assertEquals(0, tracker.getPendingCount());
+        assertEquals(Set.of("a"), codes(repository.merged.get(1)));
+    }
+
+    private static UniqueVisitorTracker tracker(VisitorSketchRepository repository) {
+        UniqueVisitorTracker tracker = new UniqueVisitorTracker();
+        tracker.visitorSketchRepository = repository;
+        tracker.enabled = true;
+        tracker.precision = 12;
+        tracker.maxPendingSketches = 100;
+        return tracker;
+    }
+
+    private static Set<String> codes(Map<VisitorSketchKey, HyperLogLog> sketches) {
+        Set<String> codes = new HashSet<>();
+        sketches.keySet().forEach(key -> codes.add(key.shortCode()));
+        return codes;
+    }
+
+    /**
+     * Keeps every batch handed to it instead of writing to the database, failing with {@link #failure} if set.
+     */
+    private static final class RecordingRepository extends VisitorSketchRepository {
+        final List<Map<VisitorSketchKey, HyperLogLog>> merged = new ArrayList<>();
+        RuntimeException failure;
+
+        @Override
+        public Uni<Void> mergeAllAsync(Map<VisitorSketchKey, HyperLogLog> sketches) {
+            merged.add(Map.copyOf(sketches));
+            return failure != null ? Uni.createFrom().failure(failure) : Uni.createFrom().voidItem();
+        }
+    }
+}
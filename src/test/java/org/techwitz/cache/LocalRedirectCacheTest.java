@@ -0,0 +1,187 @@
+package org.techwitz.cache;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import org.junit.jupiter.api.Test;
+import org.techwitz.domain.RedirectPolicy;
+import org.techwitz.util.Base62;
+import org.techwitz.util.ShortCodeGenerator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalRedirectCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Test
+    void codesRoundTripThroughDistinctKeys() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        Set<Long> keys = new HashSet<>();
+        for (String code : List.of("", "a", "aa", "aaa", "ba", "ab", "9999999999", "Ab3C7z")) {
+            long key = Base62.encode(code);
+            assertTrue(keys.add(key), code);
+            assertEquals(code, Base62.decode(key));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            String code = generator.generate(1 + i % Base62.MAX_LENGTH);
+            assertEquals(code, Base62.decode(Base62.encode(code)));
+        }
+        assertTrue(Base62.encode("999999") < 1L << 36);
+        assertEquals(Base62.INVALID, Base62.encode("abc-d"));
+        assertEquals(Base62.INVALID, Base62.encode("aaaaaaaaaaa"));
+    }
+
+    @Test
+    void cachesCountsAndInvalidates() {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 16, TTL, TTL);
+        cache.put("Ab3C7z", entry(7, "https://example.com/é", 3));
+
+        RedirectEntry cached = cache.get("Ab3C7z");
+        assertEquals(entry(7, "https://example.com/é", 3), cached);
+
+        cache.recordAccess("Ab3C7z");
+        assertEquals(1, cache.get("Ab3C7z").usageCount());
+        assertEquals(1, cache.get("Ab3C7z").attemptCount());
+
+        cache.invalidate("Ab3C7z");
+        assertNull(cache.get("Ab3C7z"));
+        assertEquals(0, cache.size());
+
+        // Not base-62, never cached
+        cache.put("not-a-code", entry(8, "https://example.com/", 0));
+        assertNull(cache.get("not-a-code"));
+    }
+
+    @Test
+    void concurrentAccessesAreAllCounted() throws InterruptedException {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 16, TTL, TTL);
+        cache.put("Ab3C7z", entry(7, "https://example.com/", 0));
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    cache.recordAccess("Ab3C7z");
+                    // Lookups run alongside
+                    cache.get("Ab3C7z");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        RedirectEntry cached = cache.get("Ab3C7z");
+        assertEquals(40_000, cached.usageCount());
+        assertEquals(40_000, cached.attemptCount());
+    }
+
+    @Test
+    void entriesOlderThanTheTtlAreMisses() throws InterruptedException {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 16, Duration.ofMillis(1), Duration.ofMillis(1));
+        cache.put("Ab3C7z", entry(7, "https://example.com/", 0));
+        Thread.sleep(10);
+        assertNull(cache.get("Ab3C7z"));
+    }
+
+    @Test
+    void servesStaleEntriesWhileASingleRefreshRuns() throws InterruptedException {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 16, Duration.ofMillis(1), TTL);
+        cache.put("Ab3C7z", entry(7, "https://example.com/old", 0));
+        Thread.sleep(10);
+
+        AtomicInteger reloads = new AtomicInteger();
+        List<UniEmitter<? super RedirectEntry>> pending = new ArrayList<>();
+        Function<String, Uni<RedirectEntry>> reloader = code -> {
+            reloads.incrementAndGet();
+            return Uni.createFrom().emitter(pending::add);
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals("https://example.com/old", cache.get("Ab3C7z", reloader).originalUrl());
+        }
+        assertEquals(1, reloads.get());
+
+        pending.get(0).complete(entry(7, "https://example.com/new", 0));
+        assertEquals("https://example.com/new", cache.get("Ab3C7z").originalUrl());
+        assertEquals(1, reloads.get());
+    }
+
+    @Test
+    void refreshesDoNotUndoInvalidations() throws InterruptedException {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 16, Duration.ofMillis(1), TTL);
+        cache.put("Ab3C7z", entry(7, "https://example.com/old", 0));
+        Thread.sleep(10);
+
+        List<UniEmitter<? super RedirectEntry>> pending = new ArrayList<>();
+        cache.get("Ab3C7z", code -> Uni.createFrom().emitter(pending::add));
+        // Updated and invalidated while the refresh read the old entry
+        cache.invalidate("Ab3C7z");
+        pending.get(0).complete(entry(7, "https://example.com/old", 0));
+        assertNull(cache.get("Ab3C7z"));
+
+        // Loads after the invalidation are cached, and so are refreshes started after it
+        cache.put("Ab3C7z", entry(7, "https://example.com/new", 0));
+        Thread.sleep(10);
+        cache.get("Ab3C7z", code -> Uni.createFrom().emitter(pending::add));
+        pending.get(1).complete(entry(7, "https://example.com/newer", 0));
+        assertEquals("https://example.com/newer", cache.get("Ab3C7z").originalUrl());
+    }
+
+    @Test
+    void evictsOldestEntriesAsTheArenaWraps() {
+        Random random = new Random(42);
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        // Room for a few hundred records, so the arena wraps many times, with padding at its end
+        LocalRedirectCache cache = new LocalRedirectCache(32 * 1024, TTL, TTL);
+        Map<String, RedirectEntry> model = new HashMap<>();
+        List<String> order = new ArrayList<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            String code = i % 3 == 0 && !order.isEmpty()
+                    ? order.get(order.size() - 1 - random.nextInt(Math.min(order.size(), 50)))
+                    : generator.generate(6);
+            if (i % 17 == 0) {
+                cache.invalidate(code);
+                model.remove(code);
+                continue;
+            }
+            RedirectEntry entry = entry(i, "https://example.com/" + "x".repeat(random.nextInt(200)), i % 5);
+            cache.put(code, entry);
+            model.put(code, entry);
+            order.add(code);
+        }
+
+        // Whatever survived eviction is exactly what was last put, and the most recent puts all survived
+        int found = 0;
+        for (Map.Entry<String, RedirectEntry> expected : model.entrySet()) {
+            RedirectEntry cached = cache.get(expected.getKey());
+            if (cached != null) {
+                assertEquals(expected.getValue(), cached, expected.getKey());
+                found++;
+            }
+        }
+        assertEquals(cache.size(), found);
+        assertNotEquals(0, found);
+        String last = order.get(order.size() - 1);
+        assertEquals(model.get(last), cache.get(last));
+    }
+
+    private static RedirectEntry entry(long id, String url, int maxUsage) {
+        return new RedirectEntry(id, url, id % 2 == 0 ? RedirectEntry.NO_EXPIRATION : 1_900_000_000L + id,
+                maxUsage == 1, true, 0, maxUsage, 0, 0, RedirectPolicy.values()[(int) (id % 3)], 0L);
+    }
+}
@@ -0,0 +1,96 @@
+package org.techwitz.cache;
+
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CaffeineCache;
+import io.smallrye.mutiny.Uni;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An in-process {@link Cache} for tests: loads on a miss, keeps what loaded, and caches nothing for a failed load.
+ * It passes for a {@link CaffeineCache}, without expiration or size bound.
+ */
+class MapCache implements CaffeineCache {
+    final Map<Object, Object> values = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "map";
+    }
+
+    @Override
+    public Object getDefaultKey() {
+        return "default";
+    }
+
+    @Override
+    public <K, V> Uni<V> get(K key, Function<K, V> valueLoader) {
+        return getAsync(key, k -> Uni.createFrom().item(valueLoader.apply(k)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Uni<V> getAsync(K key, Function<K, Uni<V>> valueLoader) {
+        return Uni.createFrom().deferred(() -> {
+            V cached = (V) values.get(key);
+            return cached != null
+                    ? Uni.createFrom().item(cached)
+                    : valueLoader.apply(key).invoke(value -> values.put(key, value));
+        });
+    }
+
+    @Override
+    public Uni<Void> invalidate(Object key) {
+        return Uni.createFrom().voidItem().invoke(() -> values.remove(key));
+    }
+
+    @Override
+    public Uni<Void> invalidateAll() {
+        return Uni.createFrom().voidItem().invoke(values::clear);
+    }
+
+    @Override
+    public Uni<Void> invalidateIf(Predicate<Object> predicate) {
+        return Uni.createFrom().voidItem().invoke(() -> values.keySet().removeIf(predicate));
+    }
+
+    @Override
+    public <T extends Cache> T as(Class<T> type) {
+        return type.cast(this);
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return values.keySet();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> getIfPresent(Object key) {
+        V cached = (V) values.get(key);
+        return cached != null ? CompletableFuture.completedFuture(cached) : null;
+    }
+
+    @Override
+    public <V> void put(Object key, CompletableFuture<V> valueFuture) {
+        values.put(key, valueFuture.join());
+    }
+
+    @Override
+    public void setExpireAfterWrite(Duration duration) {
+    }
+
+    @Override
+    public void setExpireAfterAccess(Duration duration) {
+    }
+
+    @Override
+    public void setMaximumSize(long maximumSize) {
+    }
+}
@@ -0,0 +1,128 @@
+package org.techwitz.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.techwitz.analytics.HotLinkTracker;
+import org.techwitz.dto.HotLinksResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RedirectCacheSnapshotTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @TempDir
+    Path directory;
+
+    private final List<String> hotCodes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        hotCodes.clear();
+    }
+
+    @Test
+    void restoresCachedEntries() {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 20, TTL, TTL);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(code(i), entry(i, RedirectEntry.NO_EXPIRATION));
+        }
+        // Already expired when loaded, so skipped
+        cache.put("expired", entry(5000, RedirectEntry.nowEpochSecond() - 10));
+        cache.invalidate(code(7));
+        assertEquals(1000, snapshot(cache).write());
+
+        LocalRedirectCache restored = new LocalRedirectCache(1 << 20, TTL, TTL);
+        assertEquals(999, snapshot(restored).load());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i == 7 ? null : entry(i, RedirectEntry.NO_EXPIRATION), restored.get(code(i)), code(i));
+        }
+        assertNull(restored.get("expired"));
+    }
+
+    @Test
+    void keepsTheHottestEntriesWhenLimited() {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 20, TTL, TTL);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(code(i), entry(i, RedirectEntry.NO_EXPIRATION));
+        }
+        hotCodes.addAll(List.of(code(3), code(1), code(2)));
+        RedirectCacheSnapshot snapshot = snapshot(cache);
+        snapshot.maxEntries = 10;
+        assertEquals(10, snapshot.write());
+
+        LocalRedirectCache restored = new LocalRedirectCache(1 << 20, TTL, TTL);
+        assertEquals(10, snapshot(restored).load());
+        // The hottest, then the most recently cached others
+        for (int i : new int[]{1, 2, 3, 993, 999}) {
+            assertNotNull(restored.get(code(i)), code(i));
+        }
+        assertNull(restored.get(code(992)));
+    }
+
+    @Test
+    void ignoresCorruptAndOldSnapshots() throws IOException, InterruptedException {
+        LocalRedirectCache cache = new LocalRedirectCache(1 << 20, TTL, TTL);
+        cache.put(code(1), entry(1, RedirectEntry.NO_EXPIRATION));
+        snapshot(cache).write();
+
+        RedirectCacheSnapshot old = snapshot(new LocalRedirectCache(1 << 20, TTL, TTL));
+        old.maxAge = Duration.ZERO;
+        Thread.sleep(5);
+        assertEquals(0, old.load());
+
+        try (FileChannel channel = FileChannel.open(directory.resolve("snapshot"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), RedirectCacheSnapshot.HEADER_SIZE + 20);
+        }
+        assertEquals(0, snapshot(new LocalRedirectCache(1 << 20, TTL, TTL)).load());
+    }
+
+    private RedirectCacheSnapshot snapshot(LocalRedirectCache cache) {
+        RedirectCacheSnapshot snapshot = new RedirectCacheSnapshot();
+        snapshot.cache = cache;
+        snapshot.hotLinkTracker = new HotLinkTracker() {
+            @Override
+            public Duration maxWindow() {
+                return Duration.ofHours(1);
+            }
+
+            @Override
+            public synchronized HotLinksResponse hottest(Duration window, int limit) {
+                List<HotLinksResponse.HotLink> links = new ArrayList<>();
+                for (String code : hotCodes) {
+                    HotLinksResponse.HotLink link = new HotLinksResponse.HotLink();
+                    link.setShortCode(code);
+                    links.add(link);
+                }
+                HotLinksResponse response = new HotLinksResponse();
+                response.setLinks(links);
+                return response;
+            }
+        };
+        snapshot.enabled = true;
+        snapshot.file = directory.resolve("snapshot").toString();
+        snapshot.maxEntries = 100_000;
+        snapshot.maxAge = Duration.ofHours(1);
+        return snapshot;
+    }
+
+    private static String code(int i) {
+        return "c" + i;
+    }
+
+    private static RedirectEntry entry(long id, long expiresAtEpochSecond) {
+        return new RedirectEntry(id, "https://example.com/" + id, expiresAtEpochSecond, false, true, 0, 0, 0, 0);
+    }
+}
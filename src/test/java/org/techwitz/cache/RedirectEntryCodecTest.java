@@ -0,0 +1,64 @@
+package org.techwitz.cache;
+
+import org.junit.jupiter.api.Test;
+import org.techwitz.domain.RedirectPolicy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RedirectEntryCodecTest {
+
+    @Test
+    void entriesRoundTrip() {
+        RedirectEntry[] entries = {
+                new RedirectEntry(0, "", RedirectEntry.NO_EXPIRATION, false, false, 0, 0, 0, 0,
+                        RedirectPolicy.TEMPORARY, 0),
+                new RedirectEntry(Long.MAX_VALUE, "https://example.com/é/€/😀", -62_135_596_800L,
+                        true, true, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 7, RedirectPolicy.PERMANENT_REDIRECT,
+                        Long.MAX_VALUE),
+                new RedirectEntry(42, "https://example.com/" + "x".repeat(300), 1_900_000_000L, false, true,
+                        3, 10, 4, 20, RedirectPolicy.MOVED_PERMANENTLY, 1L << 40)
+        };
+        for (RedirectEntry entry : entries) {
+            byte[] bytes = RedirectEntryCodec.encode(entry);
+            assertEquals(RedirectEntryCodec.encodedSize(entry), bytes.length);
+            assertEquals(entry, RedirectEntryCodec.decode(bytes));
+
+            // Direct buffers, at an offset, advance past the entry
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+            direct.put((byte) 1);
+            RedirectEntryCodec.encode(entry, direct);
+            direct.put((byte) 2).put((byte) 3).flip().position(1);
+            assertEquals(entry, RedirectEntryCodec.decode(direct));
+            assertEquals(bytes.length + 1, direct.position());
+        }
+    }
+
+    @Test
+    void malformedInputIsRejected() {
+        byte[] bytes = RedirectEntryCodec.encode(new RedirectEntry(7, "https://example.com", 1_900_000_000L,
+                false, true, 1, 2, 3, 4, RedirectPolicy.MOVED_PERMANENTLY, 5));
+
+        byte[] oldVersion = bytes.clone();
+        oldVersion[0] = 1;
+        assertThrows(IllegalArgumentException.class, () -> RedirectEntryCodec.decode(oldVersion));
+
+        // Policy bits 3-4 set to 3, past the last policy
+        byte[] unknownPolicy = bytes.clone();
+        unknownPolicy[1] |= 3 << 3;
+        assertThrows(IllegalArgumentException.class, () -> RedirectEntryCodec.decode(unknownPolicy));
+
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IllegalArgumentException.class, () -> RedirectEntryCodec.decode(truncated));
+        }
+
+        byte[] endlessVarint = new byte[12];
+        endlessVarint[0] = RedirectEntryCodec.VERSION;
+        Arrays.fill(endlessVarint, 2, endlessVarint.length, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> RedirectEntryCodec.decode(endlessVarint));
+    }
+}
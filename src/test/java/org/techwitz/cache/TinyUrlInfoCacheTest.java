@@ -0,0 +1,154 @@
+package org.techwitz.cache;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import org.junit.jupiter.api.Test;
+import org.techwitz.dto.TinyUrlResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyUrlInfoCacheTest {
+
+    private final Map<String, TinyUrlResponse> store = new HashMap<>();
+    private final List<List<String>> batches = new ArrayList<>();
+    private int singleLoads;
+
+    @Test
+    void batchesAndSingleLookupsShareTheCache() {
+        TinyUrlInfoCache cache = new TinyUrlInfoCache(new MapCache(), Duration.ofMinutes(4), Duration.ofMinutes(5));
+        store("a", 1);
+        store("b", 1);
+        store("c", 1);
+
+        assertEquals(1, get(cache, "a").getVersion());
+        Map<String, TinyUrlResponse> found = getAll(cache, "a", "b", "missing");
+        assertEquals(Set.of("a", "b"), found.keySet());
+        assertEquals(List.of(List.of("b", "missing")), batches);
+
+        // Cached by the batch, so neither lookup goes to the store, even once the store has moved on
+        store("b", 2);
+        assertEquals(1, get(cache, "b").getVersion());
+        assertEquals(1, getAll(cache, "a", "b").get("b").getVersion());
+        assertEquals(1, singleLoads);
+        assertEquals(1, batches.size());
+
+        // Dropped entries are loaded again
+        cache.invalidate("b").await().indefinitely();
+        assertEquals(2, getAll(cache, "b", "c").get("b").getVersion());
+        assertEquals(List.of("b", "c"), batches.get(1));
+    }
+
+    @Test
+    void batchesReadTheCacheOnce() {
+        MapCache backend = new MapCache();
+        List<List<String>> reads = new ArrayList<>();
+        TinyUrlInfoCache cache = new TinyUrlInfoCache(backend, codes -> {
+            // Like an MGET: one call for all the codes, only those found in the result
+            reads.add(List.copyOf(codes));
+            Map<String, CachedInfo> found = new HashMap<>();
+            for (String code : codes) {
+                if (backend.values.containsKey(code)) {
+                    found.put(code, (CachedInfo) backend.values.get(code));
+                }
+            }
+            return Uni.createFrom().item(found);
+        }, Duration.ofMinutes(4), Duration.ofMinutes(5));
+        store("a", 1);
+        store("b", 1);
+        get(cache, "a");
+
+        assertEquals(Set.of("a", "b"), getAll(cache, "a", "b", "missing").keySet());
+        assertEquals(List.of(List.of("a", "b", "missing")), reads);
+        assertEquals(List.of(List.of("b", "missing")), batches);
+        assertEquals(1, getAll(cache, "b").get("b").getVersion());
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void batchesLoadEverythingWhenTheCacheCannotBeRead() {
+        TinyUrlInfoCache cache = new TinyUrlInfoCache(new MapCache(),
+                codes -> Uni.createFrom().failure(new IllegalStateException("Redis unavailable")),
+                Duration.ofMinutes(4), Duration.ofMinutes(5));
+        store("a", 1);
+        get(cache, "a");
+        assertEquals(Set.of("a"), getAll(cache, "a", "missing").keySet());
+        assertEquals(List.of(List.of("a", "missing")), batches);
+    }
+
+    @Test
+    void expiredEntriesAreLoadedAgain() {
+        TinyUrlInfoCache cache = new TinyUrlInfoCache(new MapCache(), Duration.ofMillis(-1), Duration.ofMillis(-1));
+        store("a", 1);
+        getAll(cache, "a");
+        store("a", 2);
+        assertEquals(2, getAll(cache, "a").get("a").getVersion());
+        assertEquals(2, batches.size());
+        assertTrue(getAll(cache, "gone").isEmpty());
+    }
+
+    @Test
+    void refreshesDoNotUndoInvalidations() {
+        TinyUrlInfoCache cache = new TinyUrlInfoCache(new MapCache(), Duration.ofMillis(-1), Duration.ofMinutes(5));
+        store("a", 1);
+        store("b", 1);
+        get(cache, "a");
+        getAll(cache, "b");
+
+        // Both refreshes read version 1, then the links are updated and invalidated before they finish
+        List<UniEmitter<? super TinyUrlResponse>> pending = new ArrayList<>();
+        Function<String, Uni<TinyUrlResponse>> slowReloader = code -> Uni.createFrom().emitter(pending::add);
+        cache.get("a", () -> Uni.createFrom().item(store.get("a")), () -> slowReloader.apply("a"))
+                .await().indefinitely();
+        cache.getAll(List.of("b"), misses -> Uni.createFrom().item(Map.of()), slowReloader).await().indefinitely();
+        assertEquals(2, pending.size());
+        TinyUrlResponse a1 = store.get("a");
+        TinyUrlResponse b1 = store.get("b");
+        store("a", 2);
+        store("b", 2);
+        cache.invalidate("a").await().indefinitely();
+        cache.invalidate("b").await().indefinitely();
+        pending.get(0).complete(a1);
+        pending.get(1).complete(b1);
+
+        assertEquals(2, get(cache, "a").getVersion());
+        assertEquals(2, getAll(cache, "b").get("b").getVersion());
+    }
+
+    private void store(String code, long version) {
+        TinyUrlResponse response = new TinyUrlResponse();
+        response.setShortUrl("http://localhost:8080/t/" + code);
+        response.setVersion(version);
+        store.put(code, response);
+    }
+
+    private TinyUrlResponse get(TinyUrlInfoCache cache, String code) {
+        return cache.get(code, () -> {
+            singleLoads++;
+            return Uni.createFrom().item(store.get(code));
+        }, () -> Uni.createFrom().item(store.get(code))).await().indefinitely();
+    }
+
+    private Map<String, TinyUrlResponse> getAll(TinyUrlInfoCache cache, String... codes) {
+        Function<List<String>, Uni<Map<String, TinyUrlResponse>>> batchLoader = misses -> {
+            batches.add(List.copyOf(misses));
+            Map<String, TinyUrlResponse> loaded = new HashMap<>();
+            for (String code : misses) {
+                if (store.containsKey(code)) {
+                    loaded.put(code, store.get(code));
+                }
+            }
+            return Uni.createFrom().item(loaded);
+        };
+        return cache.getAll(List.of(codes), batchLoader, code -> Uni.createFrom().item(store.get(code)))
+                .await().indefinitely();
+    }
+}
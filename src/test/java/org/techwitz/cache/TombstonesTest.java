@@ -0,0 +1,92 @@
+package org.techwitz.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TombstonesTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void remembersStatusUntilRemoved() {
+        Tombstones tombstones = new Tombstones(2, Duration.ofHours(1));
+        tombstones.add("Ab3C7z", Tombstones.GONE);
+        tombstones.add("Zz9", Tombstones.TOO_MANY_REQUESTS);
+        assertEquals(Tombstones.GONE, tombstones.statusOf("Ab3C7z"));
+        assertEquals(Tombstones.TOO_MANY_REQUESTS, tombstones.statusOf("Zz9"));
+        assertEquals(0, tombstones.statusOf("alive"));
+
+        // Full, so further codes are not kept, but known ones are updated
+        tombstones.add("third", Tombstones.GONE);
+        assertEquals(0, tombstones.statusOf("third"));
+        tombstones.add("Zz9", Tombstones.GONE);
+        assertEquals(Tombstones.GONE, tombstones.statusOf("Zz9"));
+
+        tombstones.remove("Ab3C7z");
+        assertEquals(0, tombstones.statusOf("Ab3C7z"));
+        assertEquals(1, tombstones.size());
+    }
+
+    @Test
+    void tombstonesPastTheTtlAreIgnored() {
+        Tombstones tombstones = new Tombstones(10, Duration.ofMinutes(-1));
+        tombstones.add("Ab3C7z", Tombstones.GONE);
+        assertEquals(0, tombstones.statusOf("Ab3C7z"));
+    }
+
+    @Test
+    void expiredTombstonesArePurgedWithoutPersistence() {
+        Tombstones tombstones = new Tombstones(2, Duration.ofMinutes(-1));
+        tombstones.add("Ab3C7z", Tombstones.GONE);
+        tombstones.add("Zz9", Tombstones.TOO_MANY_REQUESTS);
+        assertEquals(2, tombstones.size());
+
+        // Unpersisted, so only the schedule frees the room they hold
+        tombstones.purgeAndWritePeriodically();
+        assertEquals(0, tombstones.size());
+        tombstones.add("third", Tombstones.GONE);
+        assertEquals(1, tombstones.size());
+
+        Tombstones live = new Tombstones(2, Duration.ofHours(1));
+        live.add("Ab3C7z", Tombstones.GONE);
+        assertEquals(0, live.purgeExpired());
+        assertEquals(Tombstones.GONE, live.statusOf("Ab3C7z"));
+    }
+
+    @Test
+    void survivesRestartsButNotCorruption() throws IOException {
+        Tombstones tombstones = persisted();
+        for (int i = 0; i < 1000; i++) {
+            tombstones.add("c" + i, i % 2 == 0 ? Tombstones.GONE : Tombstones.TOO_MANY_REQUESTS);
+        }
+        assertEquals(1000, tombstones.write());
+
+        Tombstones restored = persisted();
+        assertEquals(1000, restored.load());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? Tombstones.GONE : Tombstones.TOO_MANY_REQUESTS, restored.statusOf("c" + i));
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.resolve("tombstones"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), Tombstones.HEADER_SIZE + 5);
+        }
+        assertEquals(0, persisted().load());
+    }
+
+    private Tombstones persisted() {
+        Tombstones tombstones = new Tombstones(100_000, Duration.ofHours(1));
+        tombstones.persist = true;
+        tombstones.file = directory.resolve("tombstones").toString();
+        return tombstones;
+    }
+}
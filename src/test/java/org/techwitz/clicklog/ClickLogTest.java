@@ -0,0 +1,160 @@
+package org.techwitz.clicklog;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.techwitz.repository.ClickEventRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickLogTest {
+
+    // About 530 bytes per record, so a 1 MB segment holds under 2000
+    private static final String USER_AGENT = "Mozilla/5.0 ".repeat(40);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rollsOverAndShipsSealedSegmentsAfterARestart() throws Exception {
+        RecordingRepository repository = new RecordingRepository();
+        ClickLog log = clickLog(repository, 8);
+        log.onStart(null);
+        // The shipper prepares the spare segment the first roll swaps in
+        awaitTrue(() -> segmentFiles() == 2);
+
+        for (int i = 0; i < 3000; i++) {
+            log.append("code-" + i, 302, "https://referrer.example", USER_AGENT);
+        }
+        assertEquals(3000, log.getAppendedCount());
+        assertEquals(0, log.getDroppedCount());
+        // The full segment is shipped and deleted; the active one is not due yet
+        awaitTrue(() -> !repository.shipped.isEmpty() && repository.shipped.size() < 3000 && segmentFiles() == 2);
+        int shippedBeforeStop = repository.shipped.size();
+        log.onStop(null);
+        assertEquals(shippedBeforeStop, repository.shipped.size());
+
+        // The active segment stays on disk and is shipped by the next instance
+        ClickLog restarted = clickLog(repository, 8);
+        restarted.onStart(null);
+        try {
+            awaitTrue(() -> repository.shipped.size() == 3000);
+        } finally {
+            restarted.onStop(null);
+        }
+
+        Set<String> codes = new HashSet<>();
+        Set<String> keys = new HashSet<>();
+        for (Shipped shipped : repository.shipped) {
+            ClickLogRecord record = shipped.record();
+            assertTrue(keys.add(shipped.segmentId() + "@" + record.offset()));
+            assertTrue(codes.add(record.shortCode()));
+            assertEquals(302, record.status());
+            assertEquals("https://referrer.example", record.referrer());
+            assertEquals(USER_AGENT, record.userAgent());
+        }
+        assertEquals(3000, codes.size());
+    }
+
+    @Test
+    void dropsClicksWhileShippingIsBackedUp() throws Exception {
+        RecordingRepository repository = new RecordingRepository();
+        repository.failing = true;
+        ClickLog log = clickLog(repository, 1);
+        log.onStart(null);
+        try {
+            awaitTrue(() -> segmentFiles() == 2);
+
+            // With one segment allowed to wait, the log stops once the first one is full
+            for (int i = 0; i < 3000; i++) {
+                log.append("code-" + i, 302, null, USER_AGENT);
+            }
+            long appended = log.getAppendedCount();
+            assertTrue(appended > 0 && appended < 3000, () -> appended + " appended");
+            assertEquals(3000, appended + log.getDroppedCount());
+            awaitTrue(() -> repository.failures > 1);
+            assertTrue(log.getShipperLagMillis() > 0);
+
+            // Once the database is back the backlog is shipped and clicks are logged again
+            repository.failing = false;
+            awaitTrue(() -> repository.shipped.size() == appended);
+            awaitTrue(() -> {
+                log.append("again", 302, null, null);
+                return log.getAppendedCount() > appended;
+            });
+        } finally {
+            log.onStop(null);
+        }
+    }
+
+    private ClickLog clickLog(ClickEventRepository repository, int maxSegments) {
+        ClickLog log = new ClickLog();
+        log.clickEventRepository = repository;
+        log.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        log.enabled = true;
+        log.directory = directory.toString();
+        log.segmentSizeMb = 1;
+        log.maxSegments = maxSegments;
+        log.rollInterval = Duration.ofHours(1);
+        log.shipInterval = Duration.ofMillis(20);
+        log.shipBatchSize = 500;
+        log.shipTimeout = Duration.ofSeconds(5);
+        log.maxFieldBytes = 512;
+        return log;
+    }
+
+    private long segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private record Shipped(long segmentId, ClickLogRecord record) {
+    }
+
+    /**
+     * Keeps shipped records instead of inserting them, failing while {@link #failing}.
+     */
+    private static final class RecordingRepository extends ClickEventRepository {
+        final List<Shipped> shipped = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+        volatile int failures;
+
+        @Override
+        public Uni<Integer> insertAllAsync(long segmentId, List<ClickLogRecord> records) {
+            if (failing) {
+                failures++;
+                return Uni.createFrom().failure(new IllegalStateException("Database unavailable"));
+            }
+            for (ClickLogRecord record : records) {
+                shipped.add(new Shipped(segmentId, record));
+            }
+            return Uni.createFrom().item(records.size());
+        }
+    }
+}
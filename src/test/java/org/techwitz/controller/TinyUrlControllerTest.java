@@ -0,0 +1,153 @@
+package org.techwitz.controller;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.junit.jupiter.api.Test;
+import org.techwitz.storage.LogEngineTest;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The caching headers and conditional requests of {@link TinyUrlController}, on the log engine so no
+ * database is needed.
+ */
+@QuarkusTest
+@TestProfile(LogEngineTest.LogEngine.class)
+class TinyUrlControllerTest {
+
+    private static final long MAX_AGE = TimeUnit.HOURS.toSeconds(24);
+
+    @Test
+    void limitedRedirectsAreNotStored() {
+        String shortCode = create("{\"originalUrl\":\"https://example.com/limited\",\"maxUsage\":5,"
+                + "\"redirectPolicy\":\"PERMANENT_REDIRECT\"}");
+
+        ExtractableResponse<Response> redirect = redirect(shortCode, 302);
+        assertEquals("no-store", redirect.header("Cache-Control"));
+        assertNull(redirect.header("ETag"));
+    }
+
+    @Test
+    void expiringPermanentRedirectsAreCachedUntilTheyExpire() {
+        String soon = create("{\"originalUrl\":\"https://example.com/soon\",\"redirectPolicy\":\"PERMANENT_REDIRECT\","
+                + "\"expirationTime\":\"" + LocalDateTime.now().plusHours(1).withNano(0) + "\"}");
+        ExtractableResponse<Response> redirect = redirect(soon, 302);
+        long maxAge = maxAge(redirect.header("Cache-Control"));
+        assertTrue(maxAge > 3500 && maxAge <= 3600, redirect.header("Cache-Control"));
+        assertNull(redirect.header("ETag"));
+
+        // Capped at tiny.url.redirect.cache.max-age
+        String later = create("{\"originalUrl\":\"https://example.com/later\",\"redirectPolicy\":\"MOVED_PERMANENTLY\","
+                + "\"expirationTime\":\"" + LocalDateTime.now().plusDays(2).withNano(0) + "\"}");
+        assertEquals(MAX_AGE, maxAge(redirect(later, 302).header("Cache-Control")));
+    }
+
+    @Test
+    void permanentRedirectsAreCachedWithATag() {
+        String shortCode = create("{\"originalUrl\":\"https://example.com/forever\",\"redirectPolicy\":\"MOVED_PERMANENTLY\"}");
+
+        ExtractableResponse<Response> redirect = redirect(shortCode, 301);
+        assertEquals("public, max-age=" + MAX_AGE, redirect.header("Cache-Control"));
+        assertEquals("https://example.com/forever", redirect.header("Location"));
+        String tag = redirect.header("ETag");
+        assertNotNull(tag);
+        // Counted clicks do not change it
+        assertEquals(tag, redirect(shortCode, 301).header("ETag"));
+    }
+
+    @Test
+    void infoIsTaggedByVersion() {
+        String shortCode = create("{\"originalUrl\":\"https://example.com/info\"}");
+
+        String tag = info(shortCode, null, 200).header("ETag");
+        assertNotNull(tag);
+        assertTrue(tag.startsWith("W/"), tag);
+        assertEquals(tag, info(shortCode, null, 200).header("ETag"));
+        ExtractableResponse<Response> unchanged = info(shortCode, tag, 304);
+        assertEquals("", unchanged.body().asString());
+
+        given().when().put("/api/urls/" + shortCode + "/max-usage?maxUsage=5").then().statusCode(200);
+        String updated = info(shortCode, tag, 200).header("ETag");
+        assertNotEquals(tag, updated);
+        info(shortCode, updated, 304);
+
+        given().when().delete("/api/urls/" + shortCode).then().statusCode(204);
+        assertNotEquals(updated, info(shortCode, updated, 200).header("ETag"));
+    }
+
+    @Test
+    void batchInfoIsTaggedByTheVersionsOfItsLinks() {
+        String first = create("{\"originalUrl\":\"https://example.com/first\"}");
+        String second = create("{\"originalUrl\":\"https://example.com/second\"}");
+        String body = "{\"shortCodes\":[\"" + first + "\",\"" + second + "\"]}";
+
+        String tag = batchInfo(body, null, 200).header("ETag");
+        assertNotNull(tag);
+        assertTrue(tag.startsWith("W/"), tag);
+        batchInfo(body, tag, 304);
+        // Another set of links has another tag
+        assertNotEquals(tag, batchInfo("{\"shortCodes\":[\"" + first + "\"]}", null, 200).header("ETag"));
+
+        given().when().put("/api/urls/" + second + "/max-attempts?maxAttempts=3").then().statusCode(200);
+        String updated = batchInfo(body, tag, 200).header("ETag");
+        assertNotEquals(tag, updated);
+        batchInfo(body, updated, 304);
+
+        given().when().delete("/api/urls/" + first).then().statusCode(204);
+        assertNotEquals(updated, batchInfo(body, updated, 200).header("ETag"));
+    }
+
+    private static String create(String body) {
+        String shortUrl = given()
+                .contentType(ContentType.JSON)
+                .body(body)
+                .when().post("/api/urls")
+                .then().statusCode(201)
+                .extract().path("shortUrl");
+        return shortUrl.substring(shortUrl.lastIndexOf('/') + 1);
+    }
+
+    private static ExtractableResponse<Response> redirect(String shortCode, int status) {
+        return given().redirects().follow(false)
+                .when().get("/t/" + shortCode)
+                .then().statusCode(status)
+                .extract();
+    }
+
+    private static ExtractableResponse<Response> info(String shortCode, String ifNoneMatch, int status) {
+        RequestSpecification request = given();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return request.when().get("/api/urls/info/" + shortCode)
+                .then().statusCode(status)
+                .extract();
+    }
+
+    private static ExtractableResponse<Response> batchInfo(String body, String ifNoneMatch, int status) {
+        RequestSpecification request = given().contentType(ContentType.JSON).body(body);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return request.when().post("/api/urls/info:batch")
+                .then().statusCode(status)
+                .extract();
+    }
+
+    private static long maxAge(String cacheControl) {
+        assertTrue(cacheControl.startsWith("public, max-age="), cacheControl);
+        return Long.parseLong(cacheControl.substring("public, max-age=".length()));
+    }
+}
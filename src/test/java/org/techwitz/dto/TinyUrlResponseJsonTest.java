@@ -0,0 +1,63 @@
+package org.techwitz.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.techwitz.config.GlobalExceptionHandler;
+import org.techwitz.domain.RedirectPolicy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TinyUrlResponseJsonTest {
+
+    private static final String BASE_URL = "http://localhost:8080/t/";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final TinyUrlResponseJson json = new TinyUrlResponseJson(BASE_URL);
+
+    @Test
+    void writesWhatJacksonWrites() throws Exception {
+        TinyUrlResponse response = new TinyUrlResponse();
+        response.setOriginalUrl("https://example.com/path?q=\"quoted\"\\back\tslash\u0001/ünïcødé/€/\uD83D\uDE00/\uDC00");
+        response.setShortUrl(BASE_URL + "Ab3C7z");
+        response.setExpirationTime(LocalDateTime.of(2030, 1, 1, 12, 0, 5, 120_000_000));
+        response.setOneTimeUse(true);
+        response.setMaxUsage(1_000);
+        response.setUsageCount(-10);
+        response.setMaxAttempts(Integer.MAX_VALUE);
+        response.setAttemptCount(Integer.MIN_VALUE);
+        response.setRedirectPolicy(RedirectPolicy.PERMANENT_REDIRECT);
+        response.setVersion(1L << 40);
+        assertSameAsJackson(response);
+
+        response.setExpirationTime(LocalDateTime.of(2030, 1, 1, 0, 0));
+        response.setShortUrl("https://elsewhere.example/Ab3C7z");
+        assertSameAsJackson(response);
+
+        assertSameAsJackson(new TinyUrlResponse());
+    }
+
+    @Test
+    void errorBodiesMatchJackson() throws Exception {
+        for (String message : new String[]{"Tiny URL not found for code: Ab3C7z", "\"quoted\" é", null}) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", message);
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(error)),
+                    objectMapper.readTree(GlobalExceptionHandler.errorBody(message)));
+        }
+    }
+
+    private void assertSameAsJackson(TinyUrlResponse response) throws Exception {
+        byte[] encoded = json.encode(response);
+        // Exactly sized: a wrong size leaves trailing zeros or fails to write
+        assertEquals(new String(objectMapper.writeValueAsBytes(response), StandardCharsets.UTF_8),
+                new String(encoded, StandardCharsets.UTF_8));
+    }
+}
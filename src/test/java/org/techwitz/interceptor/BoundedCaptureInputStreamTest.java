@@ -0,0 +1,49 @@
+package org.techwitz.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCaptureInputStreamTest {
+
+    private static final byte[] BODY = "{\"originalUrl\":\"https://example.com\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void passesEverythingThroughAndCapturesUpToTheBound() throws IOException {
+        BoundedCaptureInputStream stream = new BoundedCaptureInputStream(new ByteArrayInputStream(BODY), 10);
+        // Mixed single-byte and bulk reads, as JSON parsers do
+        assertEquals(BODY[0], stream.read());
+        byte[] rest = new byte[BODY.length];
+        int read = stream.read(rest, 1, 4);
+        read += stream.read(rest, 1 + read, rest.length - 1 - read);
+        assertEquals(BODY.length - 1, read);
+        assertEquals(-1, stream.read());
+        rest[0] = BODY[0];
+        assertArrayEquals(BODY, rest);
+
+        assertArrayEquals("{\"original".getBytes(StandardCharsets.UTF_8), stream.captured());
+        assertTrue(stream.isTruncated());
+        assertFalse(stream.markSupported());
+    }
+
+    @Test
+    void bodiesWithinTheBoundAreNotTruncated() throws IOException {
+        BoundedCaptureInputStream stream = new BoundedCaptureInputStream(new ByteArrayInputStream(BODY), BODY.length);
+        assertArrayEquals(BODY, stream.readAllBytes());
+        assertArrayEquals(BODY, stream.captured());
+        assertFalse(stream.isTruncated());
+
+        // Only what was consumed is captured
+        BoundedCaptureInputStream partial = new BoundedCaptureInputStream(new ByteArrayInputStream(BODY), 100);
+        partial.read(new byte[5]);
+        assertEquals(5, partial.captured().length);
+        assertFalse(partial.isTruncated());
+    }
+}
@@ -0,0 +1,90 @@
+package org.techwitz.interceptor;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import jakarta.interceptor.InvocationContext;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.techwitz.AllocationBudget.assertWithinBudget;
+
+/**
+ * Allocation budget of {@link LoggingInterceptor} around a {@link Uni} returning method, on top of
+ * the method itself; every {@link Loggable} service call pays it.
+ */
+class LoggingInterceptorAllocationTest {
+
+    @Test
+    void interceptedCall() throws Exception {
+        LoggingInterceptor interceptor = new LoggingInterceptor();
+        interceptor.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        interceptor.logSampleRate = 0.01;
+        Uni<String> result = Uni.createFrom().item("https://example.com/some/long/path");
+        InvocationContext context = new ResolveContext(
+                LoggingInterceptorAllocationTest.class.getDeclaredMethod("resolve", String.class), result);
+
+        assertWithinBudget("interceptor.logMethodCall", () -> {
+            try {
+                ((Uni<?>) interceptor.logMethodCall(context)).await().indefinitely();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @SuppressWarnings("unused")
+    private Uni<String> resolve(String shortCode) {
+        return null;
+    }
+
+    /**
+     * Proceeds to a prepared result, so only the interceptor's allocations are measured.
+     */
+    private record ResolveContext(Method method, Uni<String> result) implements InvocationContext {
+        private static final Object[] PARAMETERS = {"Ab3C7z"};
+
+        @Override
+        public Object getTarget() {
+            return this;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return PARAMETERS;
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return Map.of();
+        }
+
+        @Override
+        public Object proceed() {
+            return result;
+        }
+    }
+}
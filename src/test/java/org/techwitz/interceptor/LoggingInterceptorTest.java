@@ -0,0 +1,117 @@
+package org.techwitz.interceptor;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.smallrye.mutiny.Uni;
+import jakarta.interceptor.InvocationContext;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.jupiter.api.Test;
+import org.techwitz.exception.UrlNotFoundException;
+import org.techwitz.util.LoggingUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoggingInterceptorTest {
+
+    private final MetricRegistry registry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+
+    @Test
+    void countsOutcomesAndTimesEveryCall() throws Exception {
+        LoggingInterceptor interceptor = new LoggingInterceptor();
+        interceptor.metricRegistry = registry;
+        interceptor.logSampleRate = 0.0;
+        Method resolve = LoggingInterceptorTest.class.getDeclaredMethod("resolve", String.class);
+        Method count = LoggingInterceptorTest.class.getDeclaredMethod("count", String.class);
+        LoggingUtils.timer("LoggingInterceptorTest.resolve").rollInterval();
+        LoggingUtils.timer("LoggingInterceptorTest.count").rollInterval();
+
+        // Reactive calls complete, and are counted, when their Uni does
+        Uni<?> succeeded = (Uni<?>) interceptor.logMethodCall(context(resolve, () -> Uni.createFrom().item("url")));
+        assertEquals(0, calls("resolve", "success"));
+        assertEquals("url", succeeded.await().indefinitely());
+        Uni<?> failed = (Uni<?>) interceptor.logMethodCall(context(resolve,
+                () -> Uni.createFrom().failure(new UrlNotFoundException("gone"))));
+        assertThrows(UrlNotFoundException.class, () -> failed.await().indefinitely());
+
+        // Synchronous calls, including ones that throw
+        assertEquals(3, interceptor.logMethodCall(context(count, () -> 3)));
+        IllegalStateException failure = new IllegalStateException("boom");
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> interceptor.logMethodCall(context(count, () -> {
+                    throw failure;
+                }))));
+
+        assertEquals(1, calls("resolve", "success"));
+        assertEquals(1, calls("resolve", "failure"));
+        assertEquals(1, calls("count", "success"));
+        assertEquals(1, calls("count", "failure"));
+        assertEquals(2, LoggingUtils.timer("LoggingInterceptorTest.resolve").rollInterval().getTotalCount());
+        assertEquals(2, LoggingUtils.timer("LoggingInterceptorTest.count").rollInterval().getTotalCount());
+    }
+
+    private long calls(String method, String outcome) {
+        return registry.counter("serviceMethodCalls", new Tag("class", "LoggingInterceptorTest"),
+                new Tag("method", method), new Tag("outcome", outcome)).getCount();
+    }
+
+    @SuppressWarnings("unused")
+    private Uni<String> resolve(String shortCode) {
+        return null;
+    }
+
+    @SuppressWarnings("unused")
+    private int count(String shortCode) {
+        return 0;
+    }
+
+    private static InvocationContext context(Method method, Callable<Object> proceed) {
+        return new InvocationContext() {
+            @Override
+            public Object getTarget() {
+                return this;
+            }
+
+            @Override
+            public Object getTimer() {
+                return null;
+            }
+
+            @Override
+            public Method getMethod() {
+                return method;
+            }
+
+            @Override
+            public Constructor<?> getConstructor() {
+                return null;
+            }
+
+            @Override
+            public Object[] getParameters() {
+                return new Object[]{"Ab3C7z"};
+            }
+
+            @Override
+            public void setParameters(Object[] params) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<String, Object> getContextData() {
+                return Map.of();
+            }
+
+            @Override
+            public Object proceed() throws Exception {
+                return proceed.call();
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package org.techwitz.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestLogSamplerTest {
+
+    @Test
+    void longestMatchingPrefixSetsTheRate() {
+        RequestLogSampler sampler = sampler(0.5, "/t/=0.01", "/api/=0.2", "/api/urls/info=0", "malformed",
+                "/health=often", "/t/=");
+        assertEquals(0.01, sampler.rateFor("/t/Ab3C7z"));
+        assertEquals(0.2, sampler.rateFor("/api/urls"));
+        assertEquals(0.0, sampler.rateFor("/api/urls/info/Ab3C7z"));
+        assertEquals(0.5, sampler.rateFor("/health"));
+    }
+
+    @Test
+    void samplesAtTheConfiguredRates() {
+        RequestLogSampler sampler = sampler(1.0, "/t/=0.1", "/never/=0");
+        int samples = 100_000;
+        int sampled = 0;
+        for (int i = 0; i < samples; i++) {
+            assertTrue(sampler.sample("/api/urls"));
+            assertFalse(sampler.sample("/never/x"));
+            if (sampler.sample("/t/Ab3C7z")) {
+                sampled++;
+            }
+        }
+        // 0.1 of 100k, binomial standard deviation ~95, so this is over 10 deviations wide
+        assertEquals(10_000, sampled, 1_000);
+
+        sampler.enabled = false;
+        assertFalse(sampler.sample("/api/urls"));
+    }
+
+    private static RequestLogSampler sampler(double defaultRate, String... routes) {
+        RequestLogSampler sampler = new RequestLogSampler();
+        sampler.enabled = true;
+        sampler.defaultSampleRate = defaultRate;
+        sampler.routeSampleRates = Optional.of(List.of(routes));
+        sampler.init();
+        return sampler;
+    }
+}
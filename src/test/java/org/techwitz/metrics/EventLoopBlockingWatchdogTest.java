@@ -0,0 +1,104 @@
+package org.techwitz.metrics;
+
+import io.smallrye.metrics.MetricRegistries;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+import org.techwitz.dto.EventLoopBlockingReport;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLoopBlockingWatchdogTest {
+
+    @Test
+    void capturesTasksThatBlockTheEventLoop() throws Exception {
+        Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(4));
+        EventLoopBlockingWatchdog watchdog = new EventLoopBlockingWatchdog();
+        watchdog.vertx = vertx;
+        watchdog.metricRegistry = MetricRegistries.get(MetricRegistry.Type.APPLICATION);
+        watchdog.enabled = true;
+        watchdog.threshold = Duration.ofMillis(50);
+        watchdog.checkInterval = Duration.ofMillis(2);
+        watchdog.stackDepth = 24;
+        watchdog.maxSites = 200;
+        watchdog.maxCapturesPerMinute = 120;
+        try {
+            watchdog.onStart(null);
+            List<Context> loops = EventLoops.contexts(vertx);
+            // Let every loop register with the watchdog, then run tasks well under the threshold
+            for (Context loop : loops) {
+                run(loop, () -> {
+                });
+            }
+            for (int i = 0; i < 50; i++) {
+                run(loops.get(i % loops.size()), () -> {
+                });
+            }
+            assertEquals(0, watchdog.report(10).getBlockedTasks());
+
+            // Loops other than the first are watched too
+            run(loops.get(1), EventLoopBlockingWatchdogTest::blockFor200Millis);
+            String blockedThread = run(loops.get(3), EventLoopBlockingWatchdogTest::blockFor200Millis);
+            run(loops.get(3), () -> {
+            });
+            awaitTrue(() -> watchdog.report(10).getSites().size() == 1
+                    && watchdog.report(10).getSites().get(0).getCount() == 2
+                    && watchdog.report(10).getSites().get(0).getTotalBlockedMillis() > 0);
+
+            EventLoopBlockingReport report = watchdog.report(10);
+            assertEquals(2, report.getBlockedTasks());
+            assertEquals(0, report.getUncapturedTasks());
+            EventLoopBlockingReport.Site site = report.getSites().get(0);
+            assertEquals(blockedThread, site.getLastThread());
+            assertNotEquals(run(loops.get(0), () -> {
+            }), blockedThread);
+            assertTrue(site.getStack().stream().anyMatch(frame -> frame.contains("blockFor200Millis")), site.getStack()::toString);
+            assertTrue(site.getMaxBlockedMillis() >= 100, () -> site.getMaxBlockedMillis() + " ms");
+
+            watchdog.reset();
+            assertEquals(0, watchdog.report(10).getBlockedTasks());
+        } finally {
+            watchdog.onStop(null);
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void blockFor200Millis() {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Runs a task on a context and waits for it.
+     *
+     * @return The name of the thread it ran on
+     */
+    private static String run(Context context, Runnable task) throws Exception {
+        CompletableFuture<String> done = new CompletableFuture<>();
+        context.runOnContext(ignored -> {
+            task.run();
+            done.complete(Thread.currentThread().getName());
+        });
+        return done.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.techwitz.metrics;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLoopsTest {
+
+    @Test
+    void oneContextRunsOnEachEventLoop() throws Exception {
+        Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(4));
+        try {
+            List<Context> contexts = EventLoops.contexts(vertx);
+            assertEquals(4, contexts.size());
+
+            List<CompletableFuture<Thread>> threads = new ArrayList<>();
+            for (Context context : contexts) {
+                CompletableFuture<Thread> thread = new CompletableFuture<>();
+                context.runOnContext(ignored -> thread.complete(Thread.currentThread()));
+                threads.add(thread);
+            }
+            Set<Thread> distinct = new HashSet<>();
+            for (CompletableFuture<Thread> thread : threads) {
+                Thread eventLoop = thread.get(10, TimeUnit.SECONDS);
+                assertTrue(eventLoop.getName().startsWith("vert.x-eventloop-thread-"), eventLoop::getName);
+                distinct.add(eventLoop);
+            }
+            assertEquals(4, distinct.size());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.techwitz.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.impl.VertxInternal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VertxMetricsCustomizerTest {
+
+    @Test
+    void enabledMetricsAreInstalledThroughTheServiceProvider() {
+        Vertx vertx = Vertx.vertx(customized(true));
+        try {
+            assertInstanceOf(VertxRuntimeMetrics.class, ((VertxInternal) vertx).metricsSPI());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().join();
+        }
+    }
+
+    @Test
+    void disabledMetricsAreNotInstalled() {
+        Vertx vertx = Vertx.vertx(customized(false));
+        try {
+            assertFalse(vertx.isMetricsEnabled());
+            assertNull(((VertxInternal) vertx).metricsSPI());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().join();
+        }
+    }
+
+    private static VertxOptions customized(boolean enabled) {
+        VertxMetricsCustomizer customizer = new VertxMetricsCustomizer();
+        customizer.enabled = enabled;
+        VertxOptions options = new VertxOptions();
+        customizer.accept(options);
+        return options;
+    }
+}
@@ -0,0 +1,93 @@
+package org.techwitz.service;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.techwitz.cache.LocalRedirectCache;
+import org.techwitz.cache.TinyUrlInfoCache;
+import org.techwitz.cache.Tombstones;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.dto.TinyUrlRequest;
+import org.techwitz.repository.TinyUrlRepository;
+import org.techwitz.storage.StoreCircuitBreaker;
+import org.techwitz.util.ShortCodeGenerator;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.techwitz.AllocationBudget.assertWithinBudget;
+
+/**
+ * Allocation budgets of the {@link TinyUrlService} paths behind the redirect, create and info endpoints,
+ * with an in-memory repository so only the service's own garbage is measured.
+ */
+class TinyUrlServiceAllocationTest {
+
+    private static final String SHORT_CODE = "Ab3C7z";
+
+    private TinyUrlService service;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryRepository repository = new InMemoryRepository();
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode(SHORT_CODE);
+        tinyUrl.setOriginalUrl("https://example.com/some/long/path?with=query");
+        tinyUrl.setActive(true);
+        repository.rows.put(SHORT_CODE, tinyUrl);
+
+        service = new TinyUrlService();
+        service.baseUrl = "http://localhost:8080/t/";
+        service.shortCodeLength = 6;
+        service.shortCodeGenerator = new ShortCodeGenerator();
+        service.tinyUrlStore = repository;
+        service.localRedirectCache = new LocalRedirectCache(1 << 20, Duration.ofMinutes(5), Duration.ofMinutes(5));
+        service.tinyUrlInfoCache = new TinyUrlInfoCache();
+        service.tombstones = new Tombstones(1000, Duration.ofHours(1));
+        service.storeCircuitBreaker = new StoreCircuitBreaker(5, Duration.ofSeconds(1), Duration.ofSeconds(10));
+    }
+
+    @Test
+    void resolveRedirect() {
+        assertWithinBudget("service.resolveRedirect", () -> service.resolveRedirect(SHORT_CODE).await().indefinitely());
+    }
+
+    @Test
+    void createTinyUrl() {
+        TinyUrlRequest request = new TinyUrlRequest();
+        request.setOriginalUrl("https://example.com/some/long/path?with=query");
+        assertWithinBudget("service.createTinyUrl", () -> service.createTinyUrl(request).await().indefinitely());
+    }
+
+    @Test
+    void getTinyUrlInfo() {
+        assertWithinBudget("service.getTinyUrlInfo",
+                () -> service.getTinyUrlInfo(SHORT_CODE).await().indefinitely());
+    }
+
+    /**
+     * Completes synchronously, so everything allocated for a call is allocated on the calling thread.
+     * Inserting does not store the entity, so creating links does not grow the map during the test, and
+     * accesses are always allowed without being counted.
+     */
+    static final class InMemoryRepository extends TinyUrlRepository {
+        final Map<String, TinyUrl> rows = new HashMap<>();
+
+        @Override
+        public Uni<TinyUrl> findByShortCodeAsync(String shortCode) {
+            return Uni.createFrom().item(rows.get(shortCode));
+        }
+
+        @Override
+        public Uni<TinyUrl> insertAsync(TinyUrl tinyUrl) {
+            return Uni.createFrom().item(tinyUrl);
+        }
+
+        @Override
+        public Uni<Boolean> recordAccessAsync(String shortCode, LocalDateTime now) {
+            return Uni.createFrom().item(true);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.techwitz.service;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.techwitz.cache.LocalRedirectCache;
+import org.techwitz.cache.TinyUrlInfoCache;
+import org.techwitz.cache.Tombstones;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.dto.TinyUrlRequest;
+import org.techwitz.jfr.CacheLookupEvent;
+import org.techwitz.storage.StoreCircuitBreaker;
+import org.techwitz.util.ShortCodeGenerator;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The stage events {@link TinyUrlService} emits, read back from a JFR recording.
+ */
+class TinyUrlServiceEventsTest {
+
+    private static final String SHORT_CODE = "Ab3C7z";
+
+    private TinyUrlService service;
+
+    @BeforeEach
+    void setUp() {
+        TinyUrlServiceAllocationTest.InMemoryRepository repository = new TinyUrlServiceAllocationTest.InMemoryRepository();
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode(SHORT_CODE);
+        tinyUrl.setOriginalUrl("https://example.com/some/long/path?with=query");
+        tinyUrl.setActive(true);
+        repository.rows.put(SHORT_CODE, tinyUrl);
+
+        service = new TinyUrlService();
+        service.baseUrl = "http://localhost:8080/t/";
+        service.shortCodeLength = 6;
+        service.shortCodeGenerator = new ShortCodeGenerator();
+        service.tinyUrlStore = repository;
+        service.localRedirectCache = new LocalRedirectCache(1 << 20, Duration.ofMinutes(5), Duration.ofMinutes(5));
+        service.tinyUrlInfoCache = new TinyUrlInfoCache();
+        service.tombstones = new Tombstones(1000, Duration.ofHours(1));
+        service.storeCircuitBreaker = new StoreCircuitBreaker(5, Duration.ofSeconds(1), Duration.ofSeconds(10));
+    }
+
+    @Test
+    void resolvesRecordCacheLookups(@TempDir Path dir) throws Exception {
+        List<RecordedEvent> events = record(dir, () -> {
+            service.resolveRedirect(SHORT_CODE).await().indefinitely();
+            service.resolveRedirect(SHORT_CODE).await().indefinitely();
+            service.getTinyUrlInfo(SHORT_CODE).await().indefinitely();
+        });
+
+        List<RecordedEvent> lookups = ofType(events, "org.techwitz.CacheLookupEvent");
+        assertEquals(3, lookups.size());
+        assertLookup(lookups.get(0), CacheLookupEvent.REDIRECT, CacheLookupEvent.MISS);
+        assertLookup(lookups.get(1), CacheLookupEvent.REDIRECT, CacheLookupEvent.HIT);
+        // The details cache is disabled, so every lookup loads
+        assertLookup(lookups.get(2), CacheLookupEvent.INFO, CacheLookupEvent.MISS);
+
+        List<RecordedEvent> dbLookups = ofType(events, "org.techwitz.DbLookupEvent");
+        assertEquals(2, dbLookups.size());
+        dbLookups.forEach(event -> assertEquals("found", event.getString("outcome")));
+        assertEquals(2, ofType(events, "org.techwitz.CounterWriteEvent").size());
+        assertEquals(SHORT_CODE.hashCode(), lookups.get(0).getInt("shortCodeHash"));
+    }
+
+    @Test
+    void createsRecordCodeGenerationAndPersist(@TempDir Path dir) throws Exception {
+        TinyUrlRequest request = new TinyUrlRequest();
+        request.setOriginalUrl("https://example.com/some/long/path?with=query");
+
+        List<RecordedEvent> events = record(dir, () -> service.createTinyUrl(request).await().indefinitely());
+
+        List<RecordedEvent> generations = ofType(events, "org.techwitz.CodeGenerationEvent");
+        assertEquals(1, generations.size());
+        assertEquals("unique", generations.get(0).getString("outcome"));
+        List<RecordedEvent> persists = ofType(events, "org.techwitz.PersistEvent");
+        assertEquals(1, persists.size());
+        assertEquals("success", persists.get(0).getString("outcome"));
+        assertEquals(generations.get(0).getInt("shortCodeHash"), persists.get(0).getInt("shortCodeHash"));
+    }
+
+    private static void assertLookup(RecordedEvent event, String cache, String outcome) {
+        assertEquals(cache, event.getString("cache"));
+        assertEquals(outcome, event.getString("outcome"));
+    }
+
+    private static List<RecordedEvent> record(Path dir, Runnable calls) throws Exception {
+        Path file = dir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("CacheLookupEvent", "CodeGenerationEvent", "CounterWriteEvent",
+                                       "DbLookupEvent", "LimitEvaluationEvent", "PersistEvent")) {
+                recording.enable("org.techwitz." + name).withoutThreshold();
+            }
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .toList();
+    }
+}
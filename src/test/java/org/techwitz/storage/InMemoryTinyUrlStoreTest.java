@@ -0,0 +1,64 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.techwitz.domain.TinyUrl;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InMemoryTinyUrlStoreTest extends TinyUrlStoreConformanceTest {
+
+    private InMemoryTinyUrlStore store;
+
+    @BeforeEach
+    void setUp() {
+        // Small, so the tests also grow the arrays and the index
+        store = new InMemoryTinyUrlStore(4);
+    }
+
+    @Override
+    TinyUrlStore store() {
+        return store;
+    }
+
+    @Override
+    <T> T await(Supplier<Uni<T>> operation) {
+        return operation.get().await().indefinitely();
+    }
+
+    @Test
+    void indexSurvivesChurn() {
+        LocalDateTime past = LocalDateTime.now().minusDays(1);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                TinyUrl tinyUrl = new TinyUrl();
+                tinyUrl.setShortCode("r" + round + "-" + i);
+                tinyUrl.setOriginalUrl("https://example.com/" + i);
+                tinyUrl.setActive(true);
+                // Every other one expires, leaving holes in the probe runs
+                tinyUrl.setExpirationTime(i % 2 == 0 ? past : null);
+                await(() -> store.insertAsync(tinyUrl));
+            }
+            assertEquals(50, await(() -> store.deleteExpiredAsync(LocalDateTime.now())));
+        }
+
+        assertEquals(20 * 50, store.size());
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                String shortCode = "r" + round + "-" + i;
+                TinyUrl found = await(() -> store.findByShortCodeAsync(shortCode));
+                if (i % 2 == 0) {
+                    assertNull(found, shortCode);
+                } else {
+                    assertNotNull(found, shortCode);
+                }
+            }
+        }
+    }
+}
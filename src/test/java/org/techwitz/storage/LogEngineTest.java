@@ -0,0 +1,95 @@
+package org.techwitz.storage;
+
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Starts the application with the log engine and no reachable database, as on an edge node. Other tests of
+ * the endpoints use its profile too.
+ */
+@QuarkusTest
+@TestProfile(LogEngineTest.LogEngine.class)
+public class LogEngineTest {
+
+    @Inject
+    TinyUrlStore tinyUrlStore;
+
+    @Test
+    void servesLinksWithoutADatabase() {
+        // A single store bean, the log engine
+        assertInstanceOf(LogTinyUrlStore.class, ClientProxy.unwrap(tinyUrlStore));
+
+        String shortUrl = given()
+                .contentType(ContentType.JSON)
+                .body("{\"originalUrl\":\"https://example.com/edge\"}")
+                .when().post("/api/urls")
+                .then().statusCode(201)
+                .extract().path("shortUrl");
+        String shortCode = shortUrl.substring(shortUrl.lastIndexOf('/') + 1);
+
+        given().redirects().follow(false)
+                .when().get("/t/" + shortCode)
+                .then().statusCode(302)
+                .header("Location", "https://example.com/edge");
+        given()
+                .when().get("/api/urls/info/" + shortCode)
+                .then().statusCode(200);
+    }
+
+    @Test
+    void permanentRedirectsOfTheSameUrlHaveTheirOwnTags() {
+        String first = permanentRedirectTag(createPermanent());
+        String second = permanentRedirectTag(createPermanent());
+        assertNotNull(first);
+        assertNotEquals(first, second);
+    }
+
+    private static String createPermanent() {
+        String shortUrl = given()
+                .contentType(ContentType.JSON)
+                .body("{\"originalUrl\":\"https://example.com/moved\",\"redirectPolicy\":\"PERMANENT_REDIRECT\"}")
+                .when().post("/api/urls")
+                .then().statusCode(201)
+                .extract().path("shortUrl");
+        return shortUrl.substring(shortUrl.lastIndexOf('/') + 1);
+    }
+
+    private static String permanentRedirectTag(String shortCode) {
+        return given().redirects().follow(false)
+                .when().get("/t/" + shortCode)
+                .then().statusCode(308)
+                .extract().header("ETag");
+    }
+
+    public static class LogEngine implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            try {
+                return Map.of(
+                        "tiny.url.storage.engine", "log",
+                        "tiny.url.storage.log.directory", Files.createTempDirectory("tiny-url-store").toString(),
+                        // Nothing listens there; the log engine must not need it
+                        "quarkus.datasource.reactive.url", "postgresql://localhost:1/unreachable",
+                        "tiny.url.analytics.enabled", "false");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.techwitz.domain.TinyUrl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogTinyUrlStoreTest extends TinyUrlStoreConformanceTest {
+
+    @TempDir
+    Path directory;
+
+    private LogTinyUrlStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Override
+    TinyUrlStore store() {
+        return store;
+    }
+
+    @Override
+    <T> T await(Supplier<Uni<T>> operation) {
+        return operation.get().await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void reopenedStoreHasTheSameTinyUrls() throws IOException {
+        TinyUrl tinyUrl = tinyUrl("reopen", null);
+        tinyUrl.setMaxUsage(3);
+        await(() -> store.insertAsync(tinyUrl));
+        await(() -> store.recordAccessAsync("reopen", LocalDateTime.now()));
+        await(() -> store.updateLimitsAsync("reopen", LimitsUpdate.maxAttempts(5)));
+        await(() -> store.recordAccessAsync("reopen", LocalDateTime.now()));
+
+        reopen();
+        TinyUrl found = await(() -> store.findByShortCodeAsync("reopen"));
+        assertEquals(tinyUrl.id, found.id);
+        assertEquals(2, found.getUsageCount());
+        assertEquals(2, found.getAttemptCount());
+        assertEquals(5, found.getMaxAttempts());
+        assertTrue(await(() -> store.recordAccessAsync("reopen", LocalDateTime.now())));
+        assertFalse(await(() -> store.recordAccessAsync("reopen", LocalDateTime.now())));
+        // Ids keep increasing after a restart
+        TinyUrl next = await(() -> store.insertAsync(tinyUrl("next", null)));
+        assertTrue(next.id > tinyUrl.id);
+    }
+
+    @Test
+    void replaysLogFromCheckpoint() throws IOException {
+        await(() -> store.insertAsync(tinyUrl("before", null)));
+        store.close();
+        // As if the process had died right after the index was created: everything is replayed
+        write(directory.resolve("index-1.idx"), LogIndex.CHECKPOINT, ByteBuffer.allocate(8)
+                .putLong(0, DataLog.HEADER_SIZE));
+        store = open();
+        await(() -> store.recordAccessAsync("before", LocalDateTime.now()));
+
+        reopen();
+        assertEquals(1, await(() -> store.findByShortCodeAsync("before")).getUsageCount());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void rebuildsIndexFromLog() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            String shortCode = "code" + i;
+            await(() -> store.insertAsync(tinyUrl(shortCode, null)));
+            await(() -> store.recordAccessAsync(shortCode, LocalDateTime.now()));
+        }
+        store.close();
+        // Garbage in the index, e.g. pages written back before the log records they refer to
+        byte[] garbage = new byte[LogIndex.SLOT_SIZE * 8];
+        Arrays.fill(garbage, (byte) 0x7f);
+        write(directory.resolve("index-1.idx"), LogIndex.HEADER_SIZE, ByteBuffer.wrap(garbage));
+
+        store = open();
+        assertEquals(100, store.size());
+        for (int i = 0; i < 100; i++) {
+            String shortCode = "code" + i;
+            assertEquals(1, await(() -> store.findByShortCodeAsync(shortCode)).getUsageCount());
+        }
+    }
+
+    @Test
+    void cutsOffTornRecordAtEndOfLog() throws IOException {
+        await(() -> store.insertAsync(tinyUrl("kept", null)));
+        int end = (int) store.getLogBytes();
+        store.close();
+        // A record whose body never made it to the disk
+        write(directory.resolve("data-1.log"), end, ByteBuffer.allocate(12).putInt(0, 40).putInt(4, 0x1234));
+
+        store = open();
+        assertEquals(end, store.getLogBytes());
+        assertNotNull(await(() -> store.findByShortCodeAsync("kept")));
+        await(() -> store.insertAsync(tinyUrl("after", null)));
+        reopen();
+        assertNotNull(await(() -> store.findByShortCodeAsync("after")));
+    }
+
+    @Test
+    void compactionKeepsLiveTinyUrlsAndCounters() throws IOException {
+        TinyUrl expired = tinyUrl("expired", LocalDateTime.now().minusDays(1));
+        await(() -> store.insertAsync(expired));
+        await(() -> store.insertAsync(tinyUrl("live", null)));
+        for (int i = 0; i < 50; i++) {
+            await(() -> store.recordAccessAsync("live", LocalDateTime.now()));
+        }
+        long before = store.getLogBytes();
+
+        assertEquals(1, await(() -> store.deleteExpiredAsync(LocalDateTime.now())));
+        assertTrue(store.getLogBytes() < before);
+        assertEquals(store.getLogBytes() - DataLog.HEADER_SIZE, store.getLiveBytes());
+        assertNull(await(() -> store.findByShortCodeAsync("expired")));
+        assertEquals(50, await(() -> store.findByShortCodeAsync("live")).getUsageCount());
+
+        reopen();
+        assertEquals(50, await(() -> store.findByShortCodeAsync("live")).getUsageCount());
+        assertTrue(directory.resolve("data-2.log").toFile().exists());
+        assertFalse(directory.resolve("data-1.log").toFile().exists());
+        TinyUrl next = await(() -> store.insertAsync(tinyUrl("next", null)));
+        assertTrue(next.id > expired.id);
+    }
+
+    @Test
+    void compactionDropsDeactivatedTinyUrls() {
+        await(() -> store.insertAsync(tinyUrl("deactivated", null)));
+        await(() -> store.insertAsync(tinyUrl("expired", LocalDateTime.now().minusDays(1))));
+        await(() -> store.insertAsync(tinyUrl("live", null)));
+        await(() -> store.deactivateAsync("deactivated"));
+        assertFalse(await(() -> store.findByShortCodeAsync("deactivated")).isActive());
+
+        assertEquals(2, await(() -> store.deleteExpiredAsync(LocalDateTime.now())));
+        assertNull(await(() -> store.findByShortCodeAsync("deactivated")));
+        assertNull(await(() -> store.findByShortCodeAsync("expired")));
+        assertNotNull(await(() -> store.findByShortCodeAsync("live")));
+        assertEquals(1, store.size());
+        assertEquals(store.getLogBytes() - DataLog.HEADER_SIZE, store.getLiveBytes());
+    }
+
+    @Test
+    void eventLoopsDoNotWaitForTheWriteLock() throws Exception {
+        await(() -> store.insertAsync(tinyUrl("busy", null)));
+        Vertx vertx = Vertx.vertx();
+        try {
+            Context context = vertx.getOrCreateContext();
+            CompletableFuture<String> found = new CompletableFuture<>();
+            CompletableFuture<Boolean> counted = new CompletableFuture<>();
+            // As if compaction held the write lock
+            long stamp = store.lock.writeLock();
+            try {
+                context.runOnContext(ignored -> {
+                    store.findByShortCodeAsync("busy").subscribe().with(
+                            tinyUrl -> found.complete(Context.isOnEventLoopThread() ? tinyUrl.getShortCode() : null),
+                            found::completeExceptionally);
+                    store.recordAccessAsync("busy", LocalDateTime.now()).subscribe().with(
+                            ok -> counted.complete(ok && Context.isOnEventLoopThread()),
+                            counted::completeExceptionally);
+                });
+                // The event loop keeps running other tasks meanwhile
+                CompletableFuture<Void> ran = new CompletableFuture<>();
+                context.runOnContext(ignored -> ran.complete(null));
+                ran.get(5, TimeUnit.SECONDS);
+                assertFalse(found.isDone());
+                assertFalse(counted.isDone());
+            } finally {
+                store.lock.unlockWrite(stamp);
+            }
+            // Both complete once the lock is free, back on the event loop
+            assertEquals("busy", found.get(5, TimeUnit.SECONDS));
+            assertTrue(counted.get(5, TimeUnit.SECONDS));
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void eventLoopsDoNotWaitForReaders() throws Exception {
+        await(() -> store.insertAsync(tinyUrl("read", null)));
+        Vertx vertx = Vertx.vertx();
+        try {
+            Context context = vertx.getOrCreateContext();
+            CompletableFuture<Boolean> counted = new CompletableFuture<>();
+            // A lookup on another thread keeps the committer from taking the write lock
+            long stamp = store.lock.readLock();
+            try {
+                context.runOnContext(ignored -> store.recordAccessAsync("read", LocalDateTime.now()).subscribe().with(
+                        ok -> counted.complete(ok && Context.isOnEventLoopThread()),
+                        counted::completeExceptionally));
+                CompletableFuture<Void> ran = new CompletableFuture<>();
+                context.runOnContext(ignored -> ran.complete(null));
+                ran.get(5, TimeUnit.SECONDS);
+                assertFalse(counted.isDone());
+            } finally {
+                store.lock.unlockRead(stamp);
+            }
+            assertTrue(counted.get(5, TimeUnit.SECONDS));
+            assertEquals(1, await(() -> store.findByShortCodeAsync("read")).getUsageCount());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private LogTinyUrlStore open() throws IOException {
+        LogTinyUrlStore opened = new LogTinyUrlStore();
+        opened.directory = directory.toString();
+        opened.initialSizeMb = 1;
+        // Small, so the tests also grow the index
+        opened.indexSlots = 16;
+        opened.groupCommitDelay = Duration.ZERO;
+        opened.checkpointInterval = Duration.ofSeconds(30);
+        opened.compactionMinSizeMb = 64;
+        opened.compactionGarbageRatio = 0.5;
+        opened.open();
+        return opened;
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = open();
+    }
+
+    private static TinyUrl tinyUrl(String shortCode, LocalDateTime expirationTime) {
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode(shortCode);
+        tinyUrl.setOriginalUrl("https://example.com/" + shortCode);
+        tinyUrl.setExpirationTime(expirationTime);
+        tinyUrl.setActive(true);
+        return tinyUrl;
+    }
+
+    private static void write(Path file, long position, ByteBuffer content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(content, position);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+import org.techwitz.exception.StoreUnavailableException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StoreCircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesAfterASuccessfulTrial() throws InterruptedException {
+        StoreCircuitBreaker breaker = new StoreCircuitBreaker(3, Duration.ofSeconds(1), Duration.ofMillis(50));
+
+        fail(breaker);
+        fail(breaker);
+        assertEquals("ok", breaker.call(Uni.createFrom().item("ok")).await().indefinitely());
+        // A success resets the count
+        fail(breaker);
+        fail(breaker);
+        assertEquals(StoreCircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker);
+        assertEquals(StoreCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(StoreUnavailableException.class,
+                () -> breaker.call(Uni.createFrom().item("ok")).await().indefinitely());
+
+        // A failed trial keeps it open
+        Thread.sleep(60);
+        fail(breaker);
+        assertEquals(StoreCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(StoreUnavailableException.class,
+                () -> breaker.call(Uni.createFrom().item("ok")).await().indefinitely());
+
+        Thread.sleep(60);
+        assertEquals("ok", breaker.call(Uni.createFrom().item("ok")).await().indefinitely());
+        assertEquals(StoreCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        StoreCircuitBreaker breaker = new StoreCircuitBreaker(2, Duration.ofMillis(10), Duration.ofMinutes(1));
+        for (int i = 0; i < 2; i++) {
+            breaker.call(Uni.createFrom().item(() -> {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            })).await().indefinitely();
+        }
+        assertEquals(StoreCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private static void fail(StoreCircuitBreaker breaker) {
+        assertThrows(IllegalStateException.class, () -> breaker.call(
+                Uni.createFrom().failure(new IllegalStateException("down"))).await().indefinitely());
+    }
+}
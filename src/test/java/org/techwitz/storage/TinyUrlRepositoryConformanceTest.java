@@ -0,0 +1,34 @@
+package org.techwitz.storage;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.vertx.VertxContextSupport;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import org.techwitz.repository.TinyUrlRepository;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+@QuarkusTest
+class TinyUrlRepositoryConformanceTest extends TinyUrlStoreConformanceTest {
+
+    @Inject
+    TinyUrlRepository repository;
+
+    @Override
+    TinyUrlStore store() {
+        return repository;
+    }
+
+    @Override
+    <T> T await(Supplier<Uni<T>> operation) {
+        try {
+            return VertxContextSupport.subscribeAndAwait(() -> Panache.withTransaction(operation));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new CompletionException(e);
+        }
+    }
+}
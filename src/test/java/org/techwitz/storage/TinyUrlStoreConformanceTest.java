@@ -0,0 +1,324 @@
+package org.techwitz.storage;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+import org.techwitz.domain.RedirectPolicy;
+import org.techwitz.domain.TinyUrl;
+import org.techwitz.util.ShortCodeGenerator;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The behavior every {@link TinyUrlStore} engine must have. Short codes are random, so the suite can run
+ * against a database that is not emptied between tests.
+ */
+abstract class TinyUrlStoreConformanceTest {
+
+    private static final ShortCodeGenerator CODES = new ShortCodeGenerator();
+
+    /**
+     * @return The engine under test
+     */
+    abstract TinyUrlStore store();
+
+    /**
+     * Runs a store operation the way the engine requires and waits for it.
+     */
+    abstract <T> T await(Supplier<Uni<T>> operation);
+
+    @Test
+    void findsNothingForUnknownCode() {
+        assertNull(await(() -> store().findByShortCodeAsync(CODES.generate(10))));
+    }
+
+    @Test
+    void insertedTinyUrlCanBeFound() {
+        LocalDateTime expiration = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.MILLIS);
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setExpirationTime(expiration);
+        tinyUrl.setMaxUsage(5);
+        tinyUrl.setMaxAttempts(7);
+        tinyUrl.setRedirectPolicy(RedirectPolicy.PERMANENT_REDIRECT);
+        TinyUrl inserted = insert(tinyUrl);
+        assertNotNull(inserted.id);
+
+        TinyUrl found = find(tinyUrl.getShortCode());
+        assertEquals(inserted.id, found.id);
+        assertEquals(tinyUrl.getOriginalUrl(), found.getOriginalUrl());
+        assertEquals(expiration, found.getExpirationTime());
+        assertEquals(5, found.getMaxUsage());
+        assertEquals(7, found.getMaxAttempts());
+        assertEquals(0, found.getUsageCount());
+        assertEquals(0, found.getAttemptCount());
+        assertFalse(found.isOneTimeUse());
+        assertTrue(found.isActive());
+        assertEquals(RedirectPolicy.PERMANENT_REDIRECT, found.getRedirectPolicy());
+        assertEquals(RedirectPolicy.TEMPORARY, find(insert(newTinyUrl()).getShortCode()).getRedirectPolicy());
+    }
+
+    @Test
+    void insertRejectsExistingShortCode() {
+        TinyUrl tinyUrl = insert(newTinyUrl());
+        TinyUrl duplicate = newTinyUrl();
+        duplicate.setShortCode(tinyUrl.getShortCode());
+
+        assertThrows(RuntimeException.class, () -> insert(duplicate));
+    }
+
+    @Test
+    void findsSeveralCodesSkippingUnknownOnes() {
+        String first = insert(newTinyUrl()).getShortCode();
+        String second = insert(newTinyUrl()).getShortCode();
+
+        List<TinyUrl> found = await(() -> store().findByShortCodesAsync(List.of(first, CODES.generate(10), second)));
+        assertEquals(2, found.size());
+        assertTrue(found.stream().anyMatch(tinyUrl -> tinyUrl.getShortCode().equals(first)));
+        assertTrue(found.stream().anyMatch(tinyUrl -> tinyUrl.getShortCode().equals(second)));
+    }
+
+    @Test
+    void recordAccessCountsAttemptAndUsage() {
+        String shortCode = insert(newTinyUrl()).getShortCode();
+
+        assertTrue(recordAccess(shortCode));
+        assertTrue(recordAccess(shortCode));
+        TinyUrl found = find(shortCode);
+        assertEquals(2, found.getUsageCount());
+        assertEquals(2, found.getAttemptCount());
+    }
+
+    @Test
+    void recordAccessRefusesUnknownCode() {
+        assertFalse(recordAccess(CODES.generate(10)));
+    }
+
+    @Test
+    void recordAccessStopsAtMaxUsage() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setMaxUsage(2);
+        String shortCode = insert(tinyUrl).getShortCode();
+
+        assertTrue(recordAccess(shortCode));
+        assertTrue(recordAccess(shortCode));
+        assertFalse(recordAccess(shortCode));
+        assertEquals(2, find(shortCode).getUsageCount());
+        assertEquals(2, find(shortCode).getAttemptCount());
+    }
+
+    @Test
+    void recordAccessAllowsOneUseOfOneTimeUrl() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setOneTimeUse(true);
+        String shortCode = insert(tinyUrl).getShortCode();
+
+        assertTrue(recordAccess(shortCode));
+        assertFalse(recordAccess(shortCode));
+    }
+
+    @Test
+    void recordAccessStopsBeforeReachingMaxAttempts() {
+        // Same as TinyUrl#isExpired after counting the attempt: the attempt that reaches the limit fails
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setMaxAttempts(3);
+        String shortCode = insert(tinyUrl).getShortCode();
+
+        assertTrue(recordAccess(shortCode));
+        assertTrue(recordAccess(shortCode));
+        assertFalse(recordAccess(shortCode));
+        assertEquals(2, find(shortCode).getAttemptCount());
+    }
+
+    @Test
+    void recordAccessRefusesExpiredUrl() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setExpirationTime(LocalDateTime.now().minusMinutes(1));
+        String shortCode = insert(tinyUrl).getShortCode();
+
+        assertFalse(recordAccess(shortCode));
+        assertEquals(0, find(shortCode).getAttemptCount());
+    }
+
+    @Test
+    void concurrentAccessesNeverExceedMaxUsage() throws Exception {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setMaxUsage(40);
+        String shortCode = insert(tinyUrl).getShortCode();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    int counted = 0;
+                    for (int j = 0; j < 10; j++) {
+                        if (recordAccess(shortCode)) {
+                            counted++;
+                        }
+                    }
+                    return counted;
+                });
+            }
+            int counted = 0;
+            for (Future<Integer> result : executor.invokeAll(tasks)) {
+                counted += result.get();
+            }
+            assertEquals(40, counted);
+            assertEquals(40, find(shortCode).getUsageCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void recordAccessesCountsOnlyUrlsWithoutLimits() {
+        String unlimited = insert(newTinyUrl()).getShortCode();
+        TinyUrl limited = newTinyUrl();
+        limited.setMaxUsage(100);
+        String limitedCode = insert(limited).getShortCode();
+        TinyUrl expired = newTinyUrl();
+        expired.setExpirationTime(LocalDateTime.now().minusMinutes(1));
+        String expiredCode = insert(expired).getShortCode();
+
+        assertTrue(await(() -> store().recordAccessesAsync(unlimited, 3, LocalDateTime.now())));
+        assertEquals(3, find(unlimited).getUsageCount());
+        assertEquals(3, find(unlimited).getAttemptCount());
+        assertFalse(await(() -> store().recordAccessesAsync(limitedCode, 3, LocalDateTime.now())));
+        assertEquals(0, find(limitedCode).getUsageCount());
+        assertFalse(await(() -> store().recordAccessesAsync(expiredCode, 3, LocalDateTime.now())));
+        assertFalse(await(() -> store().recordAccessesAsync(CODES.generate(10), 3, LocalDateTime.now())));
+    }
+
+    @Test
+    void recordAttemptCountsOnlyTheAttempt() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setOneTimeUse(true);
+        String shortCode = insert(tinyUrl).getShortCode();
+        assertTrue(recordAccess(shortCode));
+
+        // Used up, yet the attempt is counted
+        assertTrue(await(() -> store().recordAttemptAsync(shortCode)));
+        assertEquals(1, find(shortCode).getUsageCount());
+        assertEquals(2, find(shortCode).getAttemptCount());
+        assertFalse(await(() -> store().recordAttemptAsync(CODES.generate(10))));
+    }
+
+    @Test
+    void everyChangeIncreasesTheVersion() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setMaxUsage(1);
+        String shortCode = insert(tinyUrl).getShortCode();
+        long version = find(shortCode).getVersion();
+        assertEquals(version, find(shortCode).getVersion());
+
+        assertTrue(recordAccess(shortCode));
+        version = assertVersionIncreased(shortCode, version);
+        assertFalse(recordAccess(shortCode));
+        assertEquals(version, find(shortCode).getVersion());
+        assertTrue(await(() -> store().recordAttemptAsync(shortCode)));
+        version = assertVersionIncreased(shortCode, version);
+        assertEquals(await(() -> store().updateLimitsAsync(shortCode, LimitsUpdate.maxUsage(5))).getVersion(),
+                find(shortCode).getVersion());
+        version = assertVersionIncreased(shortCode, version);
+        await(() -> store().deactivateAsync(shortCode));
+        assertVersionIncreased(shortCode, version);
+    }
+
+    @Test
+    void deactivatedUrlRefusesAccess() {
+        String shortCode = insert(newTinyUrl()).getShortCode();
+
+        TinyUrl deactivated = await(() -> store().deactivateAsync(shortCode));
+        assertFalse(deactivated.isActive());
+        assertFalse(find(shortCode).isActive());
+        assertFalse(recordAccess(shortCode));
+        assertNull(await(() -> store().deactivateAsync(CODES.generate(10))));
+    }
+
+    @Test
+    void updateLimitsChangesOneLimit() {
+        TinyUrl tinyUrl = newTinyUrl();
+        tinyUrl.setMaxUsage(1);
+        String shortCode = insert(tinyUrl).getShortCode();
+        assertTrue(recordAccess(shortCode));
+        assertFalse(recordAccess(shortCode));
+
+        TinyUrl updated = await(() -> store().updateLimitsAsync(shortCode, LimitsUpdate.maxUsage(3)));
+        assertEquals(3, updated.getMaxUsage());
+        assertTrue(recordAccess(shortCode));
+
+        LocalDateTime expiration = LocalDateTime.now().plusHours(1).truncatedTo(ChronoUnit.MILLIS);
+        await(() -> store().updateLimitsAsync(shortCode, LimitsUpdate.expirationTime(expiration)));
+        await(() -> store().updateLimitsAsync(shortCode, LimitsUpdate.maxAttempts(9)));
+        TinyUrl found = find(shortCode);
+        assertEquals(expiration, found.getExpirationTime());
+        assertEquals(9, found.getMaxAttempts());
+        assertEquals(3, found.getMaxUsage());
+
+        assertNull(await(() -> store().updateLimitsAsync(CODES.generate(10), LimitsUpdate.maxUsage(1))));
+    }
+
+    @Test
+    void deleteExpiredRemovesOnlyUrlsExpiredBeforeCutOff() {
+        LocalDateTime now = LocalDateTime.now();
+        TinyUrl expired = newTinyUrl();
+        expired.setExpirationTime(now.minusDays(2));
+        TinyUrl expiring = newTinyUrl();
+        expiring.setExpirationTime(now.plusDays(2));
+        String expiredCode = insert(expired).getShortCode();
+        String expiringCode = insert(expiring).getShortCode();
+        String permanentCode = insert(newTinyUrl()).getShortCode();
+
+        long deleted = await(() -> store().deleteExpiredAsync(now.minusDays(1)));
+        assertTrue(deleted >= 1);
+        assertNull(find(expiredCode));
+        assertNotNull(find(expiringCode));
+        assertNotNull(find(permanentCode));
+        // The code of a deleted tiny URL can be used again
+        TinyUrl reused = newTinyUrl();
+        reused.setShortCode(expiredCode);
+        insert(reused);
+        assertNotNull(find(expiredCode));
+    }
+
+    private TinyUrl newTinyUrl() {
+        TinyUrl tinyUrl = new TinyUrl();
+        tinyUrl.setShortCode(CODES.generate(10));
+        tinyUrl.setOriginalUrl("https://example.com/" + tinyUrl.getShortCode());
+        tinyUrl.setActive(true);
+        tinyUrl.setCreatedAt(LocalDateTime.now());
+        return tinyUrl;
+    }
+
+    private TinyUrl insert(TinyUrl tinyUrl) {
+        return await(() -> store().insertAsync(tinyUrl));
+    }
+
+    private TinyUrl find(String shortCode) {
+        return await(() -> store().findByShortCodeAsync(shortCode));
+    }
+
+    private long assertVersionIncreased(String shortCode, long previous) {
+        long version = find(shortCode).getVersion();
+        assertTrue(version > previous, "version " + version + " after " + previous);
+        return version;
+    }
+
+    private boolean recordAccess(String shortCode) {
+        return await(() -> store().recordAccessAsync(shortCode, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,87 @@
+package org.techwitz.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedRingBufferTest {
+
+    @Test
+    void fullBufferRejectsInsteadOfOverwriting() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        // The oldest elements are kept, and drained first
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drain(drained::add, 2));
+        assertEquals(List.of(0, 1), drained);
+
+        // Slots freed by the consumer are reused as the positions wrap around
+        for (int i = 4; i < 6; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(6));
+        assertEquals(4, buffer.drain(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void concurrentProducersLoseNothingButWhatDidNotFit() throws InterruptedException {
+        BoundedRingBuffer<long[]> buffer = new BoundedRingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        long[] rejected = new long[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            executor.execute(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    if (!buffer.offer(new long[]{producer, i})) {
+                        rejected[producer]++;
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        // Each producer's elements come out in the order it offered them
+        long[] last = {-1, -1, -1, -1};
+        long consumed = 0;
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertTrue(element[1] > last[(int) element[0]]);
+            last[(int) element[0]] = element[1];
+            consumed++;
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        long totalRejected = 0;
+        for (long r : rejected) {
+            totalRejected += r;
+        }
+        assertEquals((long) producers * perProducer, consumed + totalRejected);
+    }
+}
@@ -0,0 +1,66 @@
+package org.techwitz.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesStayWithinTheOvercountBound() {
+        int depth = 4;
+        CountMinSketch sketch = new CountMinSketch(depth, 1000);
+        assertEquals(1024, sketch.width());
+
+        // Skewed stream: a few heavy keys and a long tail, far more keys than counters per row
+        Random random = new Random(42);
+        Map<String, Integer> actual = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int rank = (int) Math.floor(Math.pow(5_000, random.nextDouble()));
+            String key = "code-" + rank;
+            int estimate = sketch.add(key);
+            int count = actual.merge(key, 1, Integer::sum);
+            assertTrue(estimate >= count, key);
+        }
+        assertEquals(100_000, sketch.total());
+
+        double bound = Math.E / sketch.width() * sketch.total();
+        int overBound = 0;
+        for (Map.Entry<String, Integer> entry : actual.entrySet()) {
+            int estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), entry::getKey);
+            if (estimate - entry.getValue() > bound) {
+                overBound++;
+            }
+        }
+        // Each key exceeds the bound with probability at most e^-depth, under 2%
+        assertTrue(overBound <= Math.exp(-depth) * actual.size(), overBound + " of " + actual.size());
+        assertTrue(sketch.estimate("never-added") <= bound);
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        CountMinSketch sketch = new CountMinSketch(2, 16);
+        for (int i = 0; i < 5; i++) {
+            sketch.add("a");
+        }
+        assertEquals(5, sketch.estimate("a"));
+        sketch.clear();
+        assertEquals(0, sketch.estimate("a"));
+        assertEquals(0, sketch.total());
+        assertEquals(1, sketch.add("a"));
+    }
+
+    @Test
+    void invalidDimensionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, 16));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(17, 16));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(4, 0));
+    }
+}
@@ -0,0 +1,111 @@
+package org.techwitz.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int precision : new int[]{10, HyperLogLog.DEFAULT_PRECISION, 14}) {
+            double standardError = 1.04 / Math.sqrt(1 << precision);
+            for (int cardinality : new int[]{10, 1_000, 10_000, 250_000}) {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                for (int i = 0; i < cardinality; i++) {
+                    sketch.add(visitor(i));
+                    // Duplicates do not count
+                    sketch.add(visitor(i / 2));
+                }
+                double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+                assertTrue(error <= 3 * standardError,
+                        () -> "p=" + precision + " n=" + cardinality + " estimate=" + sketch.estimate());
+            }
+        }
+    }
+
+    @Test
+    void mergedSketchesEstimateTheUnion() {
+        HyperLogLog first = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog second = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog small = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog all = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (int i = 0; i < 60_000; i++) {
+            first.add(visitor(i));
+            all.add(visitor(i));
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add(visitor(i));
+            all.add(visitor(i));
+        }
+        for (int i = 99_990; i < 100_010; i++) {
+            small.add(visitor(i));
+            all.add(visitor(i));
+        }
+        assertTrue(small.isSparse());
+        assertFalse(first.isSparse());
+
+        // Any order, any number of times, sparse into dense and dense into sparse
+        HyperLogLog merged = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        merged.merge(small);
+        merged.merge(first);
+        merged.merge(second);
+        merged.merge(first);
+        HyperLogLog reversed = HyperLogLog.fromBytes(second.toBytes());
+        reversed.merge(small);
+        reversed.merge(first);
+        assertEquals(all.estimate(), merged.estimate());
+        assertEquals(all.estimate(), reversed.estimate());
+        assertSameRegisters(all, merged);
+
+        double error = Math.abs(merged.estimate() - 100_010) / 100_010.0;
+        assertTrue(error <= 3 * 1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION), () -> "" + merged.estimate());
+
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void sketchesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        assertEquals(0, sketch.estimate());
+        assertRoundTrips(sketch);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(visitor(i));
+        }
+        assertTrue(sketch.isSparse());
+        assertRoundTrips(sketch);
+        for (int i = 100; i < 50_000; i++) {
+            sketch.add(visitor(i));
+        }
+        assertFalse(sketch.isSparse());
+        assertRoundTrips(sketch);
+
+        byte[] bytes = sketch.toBytes();
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        byte[] badPrecision = bytes.clone();
+        badPrecision[1] = 20;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(badPrecision));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[0]));
+    }
+
+    private static void assertRoundTrips(HyperLogLog sketch) {
+        HyperLogLog decoded = HyperLogLog.fromBytes(sketch.toBytes());
+        assertEquals(sketch.isSparse(), decoded.isSparse());
+        assertEquals(sketch.estimate(), decoded.estimate());
+        assertSameRegisters(sketch, decoded);
+    }
+
+    private static void assertSameRegisters(HyperLogLog expected, HyperLogLog actual) {
+        assertArrayEquals(expected.toBytes(), actual.toBytes());
+    }
+
+    private static long visitor(int i) {
+        return Hashing.hash64("visitor-" + i);
+    }
+}
@@ -0,0 +1,49 @@
+package org.techwitz.util;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationTimerTest {
+
+    @Test
+    void percentilesDescribeTheLastClosedInterval() {
+        OperationTimer timer = new OperationTimer("test", new Tag[0]);
+        for (int i = 1; i <= 1000; i++) {
+            timer.recordNanos(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        timer.recordNanos(-5);
+        // Nothing is visible until the interval is closed
+        assertEquals(0, timer.lastInterval().getTotalCount());
+
+        Histogram interval = timer.rollInterval();
+        assertSame(interval, timer.lastInterval());
+        assertEquals(1001, interval.getTotalCount());
+        assertEquals(0, interval.getMinValue());
+        // Three significant digits, so within 0.1%
+        assertEquals(500_000, timer.percentile(50), 500);
+        assertEquals(990_000, timer.percentile(99), 990);
+        assertEquals(1_000_000, timer.percentile(100), 1_000);
+        assertTrue(timer.rate() >= 0);
+
+        // The next interval starts empty
+        timer.recordNanos(42);
+        assertEquals(1, timer.rollInterval().getTotalCount());
+        assertEquals(42, timer.percentile(50));
+        assertEquals(0, timer.rollInterval().getTotalCount());
+    }
+
+    @Test
+    void timersAreCreatedOncePerOperation() {
+        OperationTimer timer = LoggingUtils.timer("OperationTimerTest.lookup", new Tag("operation", "lookup"));
+        assertSame(timer, LoggingUtils.timer("OperationTimerTest.lookup"));
+        assertEquals("lookup", timer.getTags()[0].getTagValue());
+        assertTrue(LoggingUtils.timers().contains(timer));
+    }
+}